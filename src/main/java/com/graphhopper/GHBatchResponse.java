@@ -0,0 +1,101 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import java.util.List;
+
+/**
+ * The responses of a batch of requests in the order of the requests plus some
+ * statistics about the whole batch.
+ *
+ * @author Peter Karich
+ */
+public class GHBatchResponse {
+
+    private final List<GHResponse> responses;
+    private int threads;
+    private double seconds;
+
+    public GHBatchResponse(List<GHResponse> responses) {
+        this.responses = responses;
+    }
+
+    /**
+     * @return the responses in the same order as the requests
+     */
+    public List<GHResponse> responses() {
+        return responses;
+    }
+
+    public GHResponse get(int index) {
+        return responses.get(index);
+    }
+
+    public int size() {
+        return responses.size();
+    }
+
+    /**
+     * @return the number of responses where a path was found
+     */
+    public int found() {
+        int found = 0;
+        for (GHResponse rsp : responses) {
+            if (rsp.found())
+                found++;
+        }
+        return found;
+    }
+
+    public GHBatchResponse threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @return the number of threads used to calculate the batch
+     */
+    public int threads() {
+        return threads;
+    }
+
+    public GHBatchResponse seconds(double seconds) {
+        this.seconds = seconds;
+        return this;
+    }
+
+    /**
+     * @return the wall clock time of the whole batch in seconds
+     */
+    public double seconds() {
+        return seconds;
+    }
+
+    public double routesPerSecond() {
+        if (seconds <= 0)
+            return 0;
+        return responses.size() / seconds;
+    }
+
+    @Override
+    public String toString() {
+        return "routes:" + size() + ", found:" + found() + ", threads:" + threads
+                + ", seconds:" + seconds + ", routes/s:" + routesPerSecond();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PointList;
+
+/**
+ * The distances and times from every source to every target of a matrix
+ * request. The values are stored row by row (one row per source) in
+ * primitive arrays.
+ *
+ * @author Peter Karich
+ */
+public class GHMatrixResponse {
+
+    private final int sources;
+    private final int targets;
+    private final double[] distances;
+    private final long[] times;
+    private PointList[] points;
+    private String debugInfo = "";
+
+    public GHMatrixResponse(int sources, int targets, double[] distances, long[] times) {
+        if (distances.length != sources * targets || times.length != sources * targets)
+            throw new IllegalArgumentException("Matrix " + sources + "x" + targets + " does not match the "
+                    + distances.length + " distances and " + times.length + " times");
+        this.sources = sources;
+        this.targets = targets;
+        this.distances = distances;
+        this.times = times;
+    }
+
+    public int sources() {
+        return sources;
+    }
+
+    public int targets() {
+        return targets;
+    }
+
+    public boolean found(int source, int target) {
+        return distances[source * targets + target] != Double.MAX_VALUE;
+    }
+
+    /**
+     * @return the distance in meter or Double.MAX_VALUE if not found
+     */
+    public double distance(int source, int target) {
+        return distances[source * targets + target];
+    }
+
+    /**
+     * @return the time in seconds or Long.MAX_VALUE if not found
+     */
+    public long time(int source, int target) {
+        return times[source * targets + target];
+    }
+
+    /**
+     * @return the distances of all pairs, row by row
+     */
+    public double[] distances() {
+        return distances;
+    }
+
+    /**
+     * @return the times of all pairs, row by row
+     */
+    public long[] times() {
+        return times;
+    }
+
+    public GHMatrixResponse points(PointList[] points) {
+        this.points = points;
+        return this;
+    }
+
+    /**
+     * @return the points of the path from source to target, only available
+     * if the paths were requested
+     */
+    public PointList points(int source, int target) {
+        if (points == null)
+            throw new IllegalStateException("No paths were requested");
+        return points[source * targets + target];
+    }
+
+    public GHMatrixResponse debugInfo(String debugInfo) {
+        this.debugInfo = debugInfo;
+        return this;
+    }
+
+    public String debugInfo() {
+        return debugInfo;
+    }
+
+    @Override
+    public String toString() {
+        return sources + "x" + targets + ", " + debugInfo;
+    }
+}
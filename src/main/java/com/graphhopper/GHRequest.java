@@ -28,6 +28,7 @@ import com.graphhopper.util.shapes.GHPoint;
 public class GHRequest {
 
     private String algo = "astar";
+    private String weighting = "";
     private GHPoint from;
     private GHPoint to;
     private double precision = 1;
@@ -58,7 +59,9 @@ public class GHRequest {
     /**
      * Possible values: astar (A* algorithm, default), astarbi (bidirectional
      * A*) dijkstra (Dijkstra), dijkstrabi and dijkstraNative (a bit faster
-     * bidirectional Dijkstra).
+     * bidirectional Dijkstra), dijkstrabiParallel (both directions on
+     * separate threads), alt and altbi (A* with landmarks), astaredge and
+     * dijkstrabiedge (edge based A* and bidirectional Dijkstra).
      */
     public GHRequest algorithm(String algo) {
         this.algo = algo;
@@ -69,6 +72,21 @@ public class GHRequest {
         return algo;
     }
 
+    /**
+     * Possible values: fastest and shortest. If empty the prepared default or
+     * shortest is used.
+     */
+    public GHRequest weighting(String weighting) {
+        if (weighting == null)
+            throw new IllegalArgumentException("Weighting cannot be null, use an empty string for the default");
+        this.weighting = weighting;
+        return this;
+    }
+
+    public String weighting() {
+        return weighting;
+    }
+
     public GHPoint from() {
         return from;
     }
@@ -94,6 +112,6 @@ public class GHRequest {
 
     @Override
     public String toString() {
-        return from + " " + to + " (" + algo + ")";
+        return from + " " + to + " (" + algo + (weighting.isEmpty() ? "" : ", " + weighting) + ")";
     }
 }
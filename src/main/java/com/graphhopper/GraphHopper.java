@@ -19,27 +19,52 @@
 package com.graphhopper;
 
 import com.graphhopper.reader.OSMReader;
+import com.graphhopper.routing.AStarEdgeBased;
+import com.graphhopper.routing.DijkstraBidirectionEdgeBased;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.ManyToManyAlgorithm;
+import com.graphhopper.routing.ManyToManyDijkstra;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.alt.PrepareLandmarks;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.AlgorithmPool;
 import com.graphhopper.routing.util.AlgorithmPreparation;
 import com.graphhopper.routing.util.FastestCarCalc;
 import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraphOverlay;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.Location2IDIndex;
 import com.graphhopper.storage.Location2IDQuadtree;
 import com.graphhopper.storage.MMapDirectory;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.TurnCostStorage;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.DouglasPeucker;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main wrapper of the offline API for a simple and efficient usage.
@@ -51,6 +76,7 @@ public class GraphHopper implements GraphHopperAPI {
 
     private Graph graph;
     private AlgorithmPreparation prepare;
+    private AlgorithmPool algoPool;
     private Location2IDIndex index;
     private boolean inMemory = true;
     private boolean storeOnFlush = true;
@@ -59,6 +85,17 @@ public class GraphHopper implements GraphHopperAPI {
     private String ghLocation = "";
     private boolean simplify = true;
     private boolean chFast = true;
+    private boolean chKeepBaseGraph = false;
+    private String[] chWeightings;
+    private boolean turnRestrictions = false;
+    private TurnCostStorage turnCosts;
+    private final Map<String, PrepareContractionHierarchies> chPreparations =
+            new LinkedHashMap<String, PrepareContractionHierarchies>();
+    // the landmarks of alt and altbi per weight calculation
+    private final Map<WeightCalculation, PrepareLandmarks> landmarks =
+            new HashMap<WeightCalculation, PrepareLandmarks>();
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService workers;
 
     public GraphHopper() {
     }
@@ -70,6 +107,7 @@ public class GraphHopper implements GraphHopperAPI {
         this();
         this.graph = g;
         initIndex(new RAMDirectory());
+        initRouting();
     }
 
     public GraphHopper forDesktop() {
@@ -114,11 +152,66 @@ public class GraphHopper implements GraphHopperAPI {
         return this;
     }
 
+    /**
+     * Enables contraction hierarchies for several weightings like fastest and
+     * shortest. The shortcuts and levels of every weighting are stored in
+     * separate files of the same graph folder and all weightings share the
+     * graph and the location index. The first weighting is used if a request
+     * does not specify one. All other algorithms use the graph without
+     * shortcuts. The names are case insensitive.
+     */
+    public GraphHopper chWeightings(String... weightings) {
+        if (weightings.length == 0)
+            throw new IllegalArgumentException("At least one weighting is necessary");
+        String[] tmp = new String[weightings.length];
+        for (int i = 0; i < weightings.length; i++) {
+            // lower case like the OSMReader as the names are keys and file names
+            tmp[i] = weightings[i].trim().toLowerCase();
+            Helper.createWeightCalculation(tmp[i]);
+        }
+        chUsage = true;
+        chWeightings = tmp;
+        return this;
+    }
+
+    /**
+     * Keeps the original graph while preparing contraction hierarchies, then
+     * all other algorithms can be used for the same graph too. Queries with CH
+     * are a bit slower as the edges to lower nodes need to be filtered.
+     */
+    public GraphHopper chKeepBaseGraph(boolean keepBaseGraph) {
+        chKeepBaseGraph = keepBaseGraph;
+        return this;
+    }
+
+    /**
+     * Imports the turn restrictions of OSM, which the edge based algorithms
+     * astaredge and dijkstrabiedge then avoid. A loaded graph folder uses its
+     * turn restrictions if they were imported.
+     */
+    public GraphHopper turnRestrictions(boolean turnRestrictions) {
+        this.turnRestrictions = turnRestrictions;
+        return this;
+    }
+
     public GraphHopper simplify(boolean doSimplify) {
         this.simplify = doSimplify;
         return this;
     }
 
+    /**
+     * The number of threads which calculate the routes of a batch, default is
+     * the number of available processors.
+     */
+    public GraphHopper workerThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one worker thread is necessary but was " + threads);
+        if (workers != null)
+            throw new IllegalStateException("Set the worker threads before routing the first batch");
+        workerThreads = threads;
+        return this;
+    }
+
     public GraphHopper graphHopperLocation(String ghLocation) {
         if (ghLocation != null)
             this.ghLocation = ghLocation;
@@ -159,19 +252,37 @@ public class GraphHopper implements GraphHopperAPI {
             } else
                 throw new IllegalStateException("either memory mapped or in-memory!");
 
-            if (chUsage) {
+            if (chWeightings != null) {
+                storage = new GraphStorage(dir);
+            } else if (chUsage) {
                 storage = new LevelGraphStorage(dir);
                 PrepareContractionHierarchies tmpPrepareCH = new PrepareContractionHierarchies();
                 if (chFast)
                     tmpPrepareCH.type(FastestCarCalc.DEFAULT);
                 else
                     tmpPrepareCH.type(ShortestCarCalc.DEFAULT);
+                tmpPrepareCH.removeHigher2LowerEdges(!chKeepBaseGraph);
                 prepare = tmpPrepareCH;
             } else
                 storage = new GraphStorage(dir);
 
             if (!storage.loadExisting())
                 throw new IllegalStateException("Couldn't load storage at " + graphHopperFile);
+            TurnCostStorage tmpTurnCosts = new TurnCostStorage(dir);
+            if (tmpTurnCosts.loadExisting())
+                turnCosts = tmpTurnCosts;
+            if (chWeightings != null) {
+                for (String weighting : chWeightings) {
+                    LevelGraphOverlay overlay = new LevelGraphOverlay(storage, weighting);
+                    if (!overlay.loadExisting())
+                        throw new IllegalStateException("Couldn't load the shortcuts of " + weighting
+                                + " at " + graphHopperFile);
+                    chPreparations.put(weighting, new PrepareContractionHierarchies().
+                            type(Helper.createWeightCalculation(weighting)).removeHigher2LowerEdges(false).
+                            graph(overlay));
+                }
+                prepare = chPreparations.values().iterator().next();
+            }
 
             graph = storage;
             initIndex(dir);
@@ -188,22 +299,35 @@ public class GraphHopper implements GraphHopperAPI {
                 } else
                     args.put("osmreader.dataaccess", "inmemory");
             }
-            if (chUsage) {
+            if (chWeightings != null) {
+                String str = "";
+                for (String weighting : chWeightings) {
+                    // a trailing comma enforces the overlays even for one weighting
+                    str += weighting + ",";
+                }
+                args.put("osmreader.chShortcuts", str);
+            } else if (chUsage) {
                 args.put("osmreader.levelgraph", "true");
                 args.put("osmreader.chShortcuts", "fastest");
+                args.put("osmreader.chKeepBaseGraph", "" + chKeepBaseGraph);
             }
+            if (turnRestrictions)
+                args.put("osmreader.turnRestrictions", "true");
 
             try {
                 OSMReader reader = OSMReader.osm2Graph(args);
                 graph = reader.graph();
                 prepare = reader.preparation();
+                chPreparations.putAll(reader.chPreparations());
                 index = reader.location2IDIndex();
+                turnCosts = reader.turnCosts();
             } catch (IOException ex) {
                 throw new RuntimeException("Cannot parse file " + graphHopperFile, ex);
             }
         } else
             throw new IllegalArgumentException("Unknown file end " + graphHopperFile);
 
+        initRouting();
         return this;
     }
 
@@ -216,20 +340,7 @@ public class GraphHopper implements GraphHopperAPI {
         String debug = "idLookup:" + sw.stop().getSeconds() + "s";
 
         sw = new StopWatch().start();
-        RoutingAlgorithm algo;
-        if (chUsage) {
-            prepare.graph(graph);
-            if (request.algorithm().equals("dijkstrabi"))
-                algo = prepare.createAlgo();
-            else if (request.algorithm().equals("astarbi"))
-                algo = ((PrepareContractionHierarchies) prepare).createAStar();
-            else
-                throw new IllegalStateException("Only dijkstrabi and astarbi is supported for levelgraph/CH!");
-        } else {
-            prepare = Helper.createAlgoPrepare(request.algorithm());
-            prepare.graph(graph);
-            algo = prepare.createAlgo();
-        }
+        RoutingAlgorithm algo = algoPool.get(algoKey(request));
         debug += ", algoInit:" + sw.stop().getSeconds() + "s";
 
         sw = new StopWatch().start();
@@ -246,6 +357,222 @@ public class GraphHopper implements GraphHopperAPI {
         return new GHResponse(points).distance(path.distance()).time(path.time()).debugInfo(debug);
     }
 
+    /**
+     * Splits the requests into chunks and routes them on the worker threads.
+     * Requests of the same algorithm are grouped into the same chunks, so a
+     * worker thread needs only a few algorithm instances from the pool.
+     */
+    @Override
+    public GHBatchResponse route(final List<GHRequest> requests) {
+        StopWatch sw = new StopWatch().start();
+        int size = requests.size();
+        final GHResponse[] responses = new GHResponse[size];
+        List<Integer> tmpOrder = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            requests.get(i).check();
+            tmpOrder.add(i);
+        }
+        // stable sort keeps the request order within one algorithm
+        Collections.sort(tmpOrder, new Comparator<Integer>() {
+            @Override public int compare(Integer o1, Integer o2) {
+                return algoKey(requests.get(o1)).compareTo(algoKey(requests.get(o2)));
+            }
+        });
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = tmpOrder.get(i);
+        }
+
+        int chunkSize = Math.max(1, Math.min(100, size / (workerThreads * 4)));
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int start = 0; start < size; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(size, start + chunkSize);
+            futures.add(workers().submit(new Runnable() {
+                @Override public void run() {
+                    for (int i = from; i < to; i++) {
+                        int index = order[i];
+                        responses[index] = route(requests.get(index));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while routing the batch", ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Cannot route the batch", ex.getCause());
+            }
+        }
+        return new GHBatchResponse(Arrays.asList(responses)).threads(workerThreads).
+                seconds(sw.stop().getSeconds());
+    }
+
+    private synchronized ExecutorService workers() {
+        if (workers == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "graphhopper-worker-" + counter.incrementAndGet());
+                    // do not prevent the JVM from exiting
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return workers;
+    }
+
+    /**
+     * Uses the bucket algorithm of contraction hierarchies if enabled and
+     * otherwise one Dijkstra per source.
+     */
+    @Override
+    public GHMatrixResponse matrix(List<GHPoint> sources, List<GHPoint> targets, boolean calcPaths) {
+        StopWatch sw = new StopWatch().start();
+        int[] from = findIDs(sources);
+        int[] to = findIDs(targets);
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+
+        ManyToManyAlgorithm algo;
+        if (chUsage)
+            algo = ((PrepareContractionHierarchies) prepare).createManyToMany();
+        else
+            algo = new ManyToManyDijkstra(graph);
+        sw = new StopWatch().start();
+        DistanceMatrix matrix = algo.calcPaths(calcPaths).calcMatrix(from, to);
+        debug += ", matrix (" + algo.name() + "):" + sw.stop().getSeconds() + "s";
+
+        GHMatrixResponse rsp = new GHMatrixResponse(from.length, to.length, matrix.distances(), matrix.times());
+        if (calcPaths) {
+            PointList[] points = new PointList[from.length * to.length];
+            for (int i = 0; i < from.length; i++) {
+                for (int j = 0; j < to.length; j++) {
+                    PointList tmpPoints = matrix.path(i, j).calcPoints();
+                    if (simplify)
+                        new DouglasPeucker().simplify(tmpPoints);
+                    points[i * to.length + j] = tmpPoints;
+                }
+            }
+            rsp.points(points);
+        }
+        return rsp.debugInfo(debug);
+    }
+
+    private int[] findIDs(List<GHPoint> points) {
+        int[] ids = new int[points.size()];
+        for (int i = 0; i < ids.length; i++) {
+            GHPoint point = points.get(i);
+            ids[i] = index.findID(point.lat, point.lon);
+        }
+        return ids;
+    }
+
+    /**
+     * Freezes the graph and creates the algorithm pool. Afterwards route does
+     * not modify any shared state and can be called from several threads.
+     */
+    private void initRouting() {
+        if (graph instanceof GraphStorage)
+            ((GraphStorage) graph).freeze();
+        if (!chPreparations.isEmpty()) {
+            // the preparations share the directory of the graph, so load their weights before any worker thread can
+            for (PrepareContractionHierarchies tmpPrepare : chPreparations.values()) {
+                tmpPrepare.weights();
+            }
+            initOverlayRouting();
+            return;
+        }
+        if (chUsage) {
+            prepare.graph(graph);
+            ((PrepareContractionHierarchies) prepare).weights();
+        }
+        final Graph baseGraph = chUsage && chKeepBaseGraph
+                ? ((PrepareContractionHierarchies) prepare).baseGraph() : graph;
+        algoPool = new AlgorithmPool() {
+            @Override protected RoutingAlgorithm createAlgo(String key) {
+                int index = key.indexOf('|');
+                String algorithm = key.substring(0, index);
+                String weighting = key.substring(index + 1);
+                if (!chUsage)
+                    return createFlexibleAlgo(graph, algorithm, Helper.createWeightCalculation(weighting));
+
+                if (!weighting.isEmpty() && Helper.createWeightCalculation(weighting)
+                        != ((PrepareContractionHierarchies) prepare).weights().weightCalculation())
+                    throw new IllegalStateException("Weighting " + weighting + " is not prepared. Use chWeightings");
+
+                if (algorithm.equals("dijkstrabi"))
+                    return ((PrepareContractionHierarchies) prepare).createQueryAlgo();
+                else if (algorithm.equals("astarbi"))
+                    return ((PrepareContractionHierarchies) prepare).createAStar();
+                else if (chKeepBaseGraph)
+                    return createFlexibleAlgo(baseGraph, algorithm,
+                            ((PrepareContractionHierarchies) prepare).weights().weightCalculation());
+                else
+                    throw new IllegalStateException("Only dijkstrabi and astarbi is supported for levelgraph/CH! "
+                            + "Use chKeepBaseGraph for other algorithms.");
+            }
+        };
+    }
+
+    /**
+     * Routes CH queries on the overlay of the requested weighting and all other
+     * algorithms on the shared graph.
+     */
+    private void initOverlayRouting() {
+        algoPool = new AlgorithmPool() {
+            @Override protected RoutingAlgorithm createAlgo(String key) {
+                int index = key.indexOf('|');
+                String algorithm = key.substring(0, index);
+                String weighting = key.substring(index + 1);
+                PrepareContractionHierarchies tmpPrepare = weighting.isEmpty()
+                        ? (PrepareContractionHierarchies) prepare : chPreparations.get(weighting.toLowerCase());
+                if (tmpPrepare == null)
+                    throw new IllegalStateException("Weighting " + weighting + " is not prepared, only "
+                            + chPreparations.keySet());
+                if (algorithm.equals("dijkstrabi"))
+                    return tmpPrepare.createQueryAlgo();
+                else if (algorithm.equals("astarbi"))
+                    return tmpPrepare.createAStar();
+                return createFlexibleAlgo(graph, algorithm, tmpPrepare.weights().weightCalculation());
+            }
+        };
+    }
+
+    /**
+     * Creates algorithms without CH. The landmarks of alt and altbi are
+     * prepared once per weight calculation and kept for this instance. The
+     * edge based algorithms get the turn costs of the graph.
+     */
+    private RoutingAlgorithm createFlexibleAlgo(Graph g, String algorithm, WeightCalculation weightCalc) {
+        if ("alt".equalsIgnoreCase(algorithm))
+            return landmarks(g, weightCalc).createAlgo();
+        if ("altbi".equalsIgnoreCase(algorithm))
+            return landmarks(g, weightCalc).createAStarBidirection();
+        RoutingAlgorithm algo = Helper.createAlgoFromString(g, algorithm, weightCalc);
+        if (algo instanceof AStarEdgeBased)
+            ((AStarEdgeBased) algo).turnCosts(turnCosts);
+        else if (algo instanceof DijkstraBidirectionEdgeBased)
+            ((DijkstraBidirectionEdgeBased) algo).turnCosts(turnCosts);
+        return algo;
+    }
+
+    private synchronized PrepareLandmarks landmarks(Graph g, WeightCalculation weightCalc) {
+        PrepareLandmarks tmp = landmarks.get(weightCalc);
+        if (tmp == null) {
+            tmp = new PrepareLandmarks().graph(g).type(weightCalc).doWork();
+            landmarks.put(weightCalc, tmp);
+        }
+        return tmp;
+    }
+
+    private String algoKey(GHRequest request) {
+        return request.algorithm() + "|" + request.weighting();
+    }
+
     private void initIndex(Directory dir) {
         Location2IDQuadtree tmp = new Location2IDQuadtree(graph, dir);
         if (!tmp.loadExisting())
@@ -18,6 +18,9 @@
  */
 package com.graphhopper;
 
+import com.graphhopper.util.shapes.GHPoint;
+import java.util.List;
+
 /**
  * Wrapper of the graphhopper online or offline API. Provides read only access.
  *
@@ -55,4 +58,18 @@ public interface GraphHopperAPI {
      * Calculates the path from specified request with startPoint to endPoint.
      */
     GHResponse route(GHRequest request);
+
+    /**
+     * Calculates the paths of all specified requests, possibly in parallel.
+     *
+     * @return the responses in the order of the requests
+     */
+    GHBatchResponse route(List<GHRequest> requests);
+
+    /**
+     * Calculates the distances and times from all sources to all targets.
+     *
+     * @param calcPaths if the points of every path should be calculated too
+     */
+    GHMatrixResponse matrix(List<GHPoint> sources, List<GHPoint> targets, boolean calcPaths);
 }
@@ -26,7 +26,7 @@ import gnu.trove.map.hash.TLongIntHashMap;
  *
  * @author Peter Karich
  */
-public class BigLongIntMap {
+public class BigLongIntMap implements LongIntMap {
 
     private TLongIntHashMap[] maps;
 
@@ -47,16 +47,19 @@ public class BigLongIntMap {
         }
     }
 
+    @Override
     public int put(long key, int value) {
         int segment = Math.abs((int) ((key >> 32) ^ key)) % maps.length;
         return maps[segment].put(key, value);
     }
 
+    @Override
     public int get(long key) {
         int segment = Math.abs((int) ((key >> 32) ^ key)) % maps.length;
         return maps[segment].get(key);
     }
 
+    @Override
     public long capacity() {
         long cap = 0;
         for (int i = 0; i < maps.length; i++) {
@@ -65,6 +68,7 @@ public class BigLongIntMap {
         return cap;
     }
 
+    @Override
     public long size() {
         long size = 0;
         for (int i = 0; i < maps.length; i++) {
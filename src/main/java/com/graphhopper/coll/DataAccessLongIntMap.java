@@ -0,0 +1,165 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+
+/**
+ * A hash map from long to int with open addressing which keeps its entries
+ * in a DataAccess of the specified Directory instead of the heap. E.g. with a
+ * SpillDirectory it moves into a memory mapped file if it gets too big.
+ *
+ * Every slot has three ints: the key xor Long.MIN_VALUE in two ints (so an
+ * empty slot is zero) and the value. This is why Long.MIN_VALUE is not
+ * supported as key. Call close to remove the DataAccess.
+ *
+ * @author Peter Karich
+ */
+public class DataAccessLongIntMap implements LongIntMap {
+
+    private static final float LOAD_FACTOR = 0.7f;
+    private final Directory dir;
+    private final String name;
+    private final int noNumber;
+    private DataAccess slots;
+    private int generation;
+    private long mask;
+    private long size;
+
+    public DataAccessLongIntMap(Directory dir, String name, long expectedSize, int noNumber) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("Expected size illegal " + expectedSize);
+        this.dir = dir;
+        this.name = name;
+        this.noNumber = noNumber;
+        slots = create(slotsFor(expectedSize));
+    }
+
+    private static long slotsFor(long entries) {
+        long minSlots = Math.max(16, (long) (entries / LOAD_FACTOR) + 1);
+        return Long.highestOneBit(minSlots - 1) << 1;
+    }
+
+    private DataAccess create(long slotCount) {
+        DataAccess da = dir.findCreate(name + generation);
+        generation++;
+        da.createNew(slotCount * 3 * 4);
+        mask = slotCount - 1;
+        return da;
+    }
+
+    private static long hash(long key) {
+        // the finalizer of MurmurHash3 as OSM ids are mostly consecutive
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * @return the slot of the key or the empty slot where it would be stored
+     */
+    private long findSlot(DataAccess da, long tmpMask, long stored) {
+        int high = (int) (stored >>> 32);
+        int low = (int) stored;
+        long slot = hash(stored) & tmpMask;
+        while (true) {
+            long pointer = slot * 3;
+            int tmpHigh = da.getInt(pointer);
+            int tmpLow = da.getInt(pointer + 1);
+            if (tmpHigh == high && tmpLow == low || tmpHigh == 0 && tmpLow == 0)
+                return slot;
+            slot = (slot + 1) & tmpMask;
+        }
+    }
+
+    @Override
+    public int put(long key, int value) {
+        if (key == Long.MIN_VALUE)
+            throw new IllegalArgumentException("Long.MIN_VALUE is not supported as key");
+        long stored = key ^ Long.MIN_VALUE;
+        long pointer = findSlot(slots, mask, stored) * 3;
+        if (slots.getInt(pointer) != 0 || slots.getInt(pointer + 1) != 0) {
+            int old = slots.getInt(pointer + 2);
+            slots.setInt(pointer + 2, value);
+            return old;
+        }
+
+        slots.setInt(pointer, (int) (stored >>> 32));
+        slots.setInt(pointer + 1, (int) stored);
+        slots.setInt(pointer + 2, value);
+        size++;
+        if (size > (mask + 1) * LOAD_FACTOR)
+            grow();
+        return noNumber;
+    }
+
+    @Override
+    public int get(long key) {
+        if (key == Long.MIN_VALUE)
+            return noNumber;
+        long stored = key ^ Long.MIN_VALUE;
+        long pointer = findSlot(slots, mask, stored) * 3;
+        if (slots.getInt(pointer) == 0 && slots.getInt(pointer + 1) == 0)
+            return noNumber;
+        return slots.getInt(pointer + 2);
+    }
+
+    private void grow() {
+        DataAccess old = slots;
+        long oldSlots = mask + 1;
+        slots = create(oldSlots * 2);
+        for (long slot = 0; slot < oldSlots; slot++) {
+            long pointer = slot * 3;
+            int high = old.getInt(pointer);
+            int low = old.getInt(pointer + 1);
+            if (high == 0 && low == 0)
+                continue;
+            long stored = (long) high << 32 | (low & 0xFFFFFFFFL);
+            long newPointer = findSlot(slots, mask, stored) * 3;
+            slots.setInt(newPointer, high);
+            slots.setInt(newPointer + 1, low);
+            slots.setInt(newPointer + 2, old.getInt(pointer + 2));
+        }
+        dir.remove(old);
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public long capacity() {
+        return (long) ((mask + 1) * LOAD_FACTOR);
+    }
+
+    /**
+     * Removes the DataAccess from the directory.
+     */
+    public void close() {
+        if (slots == null)
+            return;
+        dir.remove(slots);
+        slots = null;
+    }
+}
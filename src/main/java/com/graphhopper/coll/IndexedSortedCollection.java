@@ -0,0 +1,201 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * A priority queue of int keys (e.g. node ids) with int values (e.g. their
+ * priority) and the same semantics as MySortedCollection: the entry with the
+ * smallest value comes first and several keys can have the same value. It is
+ * a binary min heap with a dense position index over the keys, so there are
+ * no boxed objects and update is O(log n). Every key can be contained only
+ * once. Entries with the same value are ordered by their key, the larger
+ * key first, so the order is deterministic.
+ *
+ * It needs ~12 bytes per key, allocated in the constructor.
+ *
+ * @author Peter Karich
+ */
+public class IndexedSortedCollection {
+
+    private static final int NOT_CONTAINED = 0;
+    // 1-based heap of keys and their values
+    private int[] keys;
+    private int[] values;
+    private int size;
+    // position of a key in the heap, 0 means not contained
+    private int[] positions;
+
+    /**
+     * @param maxKeys the number of keys, the collection grows if larger keys
+     * are inserted
+     */
+    public IndexedSortedCollection(int maxKeys) {
+        maxKeys = Math.max(10, maxKeys);
+        keys = new int[maxKeys + 1];
+        values = new int[maxKeys + 1];
+        positions = new int[maxKeys];
+    }
+
+    public void clear() {
+        for (int i = 1; i <= size; i++) {
+            positions[keys[i]] = NOT_CONTAINED;
+        }
+        size = 0;
+    }
+
+    public boolean contains(int key) {
+        return key < positions.length && positions[key] != NOT_CONTAINED;
+    }
+
+    /**
+     * @return the value of the specified key
+     */
+    public int getValue(int key) {
+        if (!contains(key))
+            throw new IllegalStateException("Key " + key + " is not contained");
+        return values[positions[key]];
+    }
+
+    /**
+     * Changes the value of the specified key.
+     *
+     * @param oldValue the current value of the key, only used for
+     * verification
+     */
+    public void update(int key, int oldValue, int value) {
+        if (!contains(key))
+            throw new IllegalStateException("cannot update key " + key + " with value " + oldValue
+                    + " - did you insert " + key + "," + oldValue + " before?");
+        int pos = positions[key];
+        if (values[pos] != oldValue)
+            throw new IllegalStateException("cannot update key " + key + " with value " + oldValue
+                    + ", its value is " + values[pos]);
+        if (value < oldValue)
+            siftUp(pos, key, value);
+        else
+            siftDown(pos, key, value);
+    }
+
+    public void insert(int key, int value) {
+        if (contains(key))
+            throw new IllegalStateException("use update if you want to update " + key);
+        if (key >= positions.length)
+            positions = Arrays.copyOf(positions, Math.max(key + 1, positions.length * 3 / 2));
+        size++;
+        if (size >= keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        siftUp(size, key, value);
+    }
+
+    /**
+     * @return a copy of all contained keys in no specific order
+     */
+    public TIntArrayList keys() {
+        TIntArrayList list = new TIntArrayList(size);
+        for (int i = 1; i <= size; i++) {
+            list.add(keys[i]);
+        }
+        return list;
+    }
+
+    public int peekValue() {
+        if (size == 0)
+            throw new IllegalStateException("collection is already empty!?");
+        return values[1];
+    }
+
+    public int peekKey() {
+        if (size == 0)
+            throw new IllegalStateException("collection is already empty!?");
+        return keys[1];
+    }
+
+    /**
+     * @return removes the smallest entry (key and value) from this collection
+     */
+    public int pollKey() {
+        if (size == 0)
+            throw new IllegalStateException("collection is already empty!?");
+        int minKey = keys[1];
+        positions[minKey] = NOT_CONTAINED;
+        int lastKey = keys[size];
+        int lastValue = values[size];
+        size--;
+        if (size > 0)
+            siftDown(1, lastKey, lastValue);
+        return minKey;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static boolean less(int value, int key, int otherValue, int otherKey) {
+        return value < otherValue || value == otherValue && key > otherKey;
+    }
+
+    private void siftUp(int pos, int key, int value) {
+        while (pos > 1) {
+            int parent = pos >> 1;
+            if (!less(value, key, values[parent], keys[parent]))
+                break;
+            set(pos, keys[parent], values[parent]);
+            pos = parent;
+        }
+        set(pos, key, value);
+    }
+
+    private void siftDown(int pos, int key, int value) {
+        while (true) {
+            int child = pos << 1;
+            if (child > size)
+                break;
+            if (child < size && less(values[child + 1], keys[child + 1], values[child], keys[child]))
+                child++;
+            if (!less(values[child], keys[child], value, key))
+                break;
+            set(pos, keys[child], values[child]);
+            pos = child;
+        }
+        set(pos, key, value);
+    }
+
+    private void set(int pos, int key, int value) {
+        keys[pos] = key;
+        values[pos] = value;
+        positions[key] = pos;
+    }
+
+    @Override
+    public String toString() {
+        String str = "";
+        if (!isEmpty())
+            str = ", minEntry=(" + peekKey() + "=>" + peekValue() + ")";
+        return "size=" + size + str;
+    }
+}
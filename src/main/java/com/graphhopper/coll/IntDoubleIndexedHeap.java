@@ -0,0 +1,256 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import java.util.Arrays;
+
+/**
+ * A binary min heap of int elements (e.g. node ids) with double keys. In
+ * contrast to IntDoubleBinHeap it knows the position of every element in the
+ * heap, so update is a real decrease-key in O(log n) instead of a linear
+ * search.
+ *
+ * The position index is either a dense array over the elements (fastest, use
+ * it for small element ranges like node ids) or a hash map (for huge and
+ * sparsely used element ranges like edge keys).
+ *
+ * @author Peter Karich
+ */
+public class IntDoubleIndexedHeap implements BinHeapWrapper<Number, Integer> {
+
+    private static final int NOT_CONTAINED = 0;
+    private double[] keys;
+    private int[] elem;
+    private int size;
+    // position of an element in the heap, 0 means not contained (1-based indexing)
+    private int[] denseIndex;
+    private TIntIntHashMap sparseIndex;
+
+    /**
+     * Creates a heap with a sparse position index.
+     */
+    public IntDoubleIndexedHeap(int capacity) {
+        this(capacity, -1);
+    }
+
+    /**
+     * @param maxElements the initial size of a dense position index, it grows
+     * if larger elements are inserted. If negative a sparse index is used.
+     */
+    public IntDoubleIndexedHeap(int capacity, int maxElements) {
+        if (capacity < 10)
+            capacity = 10;
+        elem = new int[capacity + 1];
+        keys = new double[capacity + 1];
+        if (maxElements < 0)
+            sparseIndex = new TIntIntHashMap(capacity, 0.5f, -1, NOT_CONTAINED);
+        else
+            denseIndex = new int[maxElements];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int element) {
+        return position(element) != NOT_CONTAINED;
+    }
+
+    /**
+     * @return the key of the specified element or Double.MAX_VALUE if not
+     * contained
+     */
+    public double getKey(int element) {
+        int pos = position(element);
+        if (pos == NOT_CONTAINED)
+            return Double.MAX_VALUE;
+        return keys[pos];
+    }
+
+    @Override
+    public Double peekKey() {
+        return peek_key();
+    }
+
+    public double peek_key() {
+        if (size > 0)
+            return keys[1];
+        else
+            throw new IllegalStateException("An empty queue does not have a minimum key.");
+    }
+
+    @Override
+    public Integer peekElement() {
+        return peek_element();
+    }
+
+    public int peek_element() {
+        if (size > 0)
+            return elem[1];
+        else
+            throw new IllegalStateException("An empty queue does not have a minimum value.");
+    }
+
+    @Override
+    public Integer pollElement() {
+        return poll_element();
+    }
+
+    public int poll_element() {
+        if (size <= 0)
+            throw new IllegalStateException("An empty queue does not have a minimum value.");
+        int minElem = elem[1];
+        position(minElem, NOT_CONTAINED);
+        int lastElem = elem[size];
+        double lastKey = keys[size];
+        size--;
+        if (size > 0)
+            siftDown(1, lastKey, lastElem);
+        return minElem;
+    }
+
+    @Override
+    public void update(Number key, Integer element) {
+        update_(key.doubleValue(), element);
+    }
+
+    /**
+     * Changes the key of the specified element.
+     *
+     * @return false if the element is not contained
+     */
+    public boolean update_(double key, int element) {
+        int pos = position(element);
+        if (pos == NOT_CONTAINED)
+            return false;
+        if (key < keys[pos])
+            siftUp(pos, key, element);
+        else
+            siftDown(pos, key, element);
+        return true;
+    }
+
+    @Override
+    public void insert(Number key, Integer element) {
+        insert_(key.doubleValue(), element);
+    }
+
+    public void insert_(double key, int element) {
+        if (position(element) != NOT_CONTAINED)
+            throw new IllegalStateException("Element " + element + " is already contained, use update instead");
+        size++;
+        if (size >= elem.length)
+            ensureCapacity(elem.length * 2);
+        siftUp(size, key, element);
+    }
+
+    /**
+     * Inserts the element or changes its key if already contained.
+     */
+    public void insertOrUpdate(double key, int element) {
+        if (!update_(key, element))
+            insert_(key, element);
+    }
+
+    private void siftUp(int pos, double key, int element) {
+        while (pos > 1) {
+            int parent = pos >> 1;
+            if (keys[parent] <= key)
+                break;
+            set(pos, keys[parent], elem[parent]);
+            pos = parent;
+        }
+        set(pos, key, element);
+    }
+
+    private void siftDown(int pos, double key, int element) {
+        while (true) {
+            int child = pos << 1;
+            if (child > size)
+                break;
+            if (child < size && keys[child + 1] < keys[child])
+                child++;
+            if (keys[child] >= key)
+                break;
+            set(pos, keys[child], elem[child]);
+            pos = child;
+        }
+        set(pos, key, element);
+    }
+
+    private void set(int pos, double key, int element) {
+        keys[pos] = key;
+        elem[pos] = element;
+        position(element, pos);
+    }
+
+    private int position(int element) {
+        if (denseIndex != null)
+            return element < denseIndex.length ? denseIndex[element] : NOT_CONTAINED;
+        return sparseIndex.get(element);
+    }
+
+    private void position(int element, int pos) {
+        if (denseIndex != null) {
+            if (element >= denseIndex.length)
+                denseIndex = Arrays.copyOf(denseIndex, Math.max(element + 1, denseIndex.length * 3 / 2));
+            denseIndex[element] = pos;
+        } else if (pos == NOT_CONTAINED)
+            sparseIndex.remove(element);
+        else
+            sparseIndex.put(element, pos);
+    }
+
+    @Override
+    public void clear() {
+        if (denseIndex != null) {
+            for (int i = 1; i <= size; i++) {
+                denseIndex[elem[i]] = NOT_CONTAINED;
+            }
+        } else
+            sparseIndex.clear();
+        size = 0;
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity < size)
+            throw new IllegalStateException("Heap contains too many elements to fit in new capacity.");
+        keys = Arrays.copyOf(keys, capacity + 1);
+        elem = Arrays.copyOf(elem, capacity + 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= size; i++) {
+            if (i > 1)
+                sb.append(", ");
+            sb.append(keys[i]).append(":").append(elem[i]);
+        }
+        return sb.toString();
+    }
+}
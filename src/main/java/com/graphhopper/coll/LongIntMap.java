@@ -0,0 +1,42 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+/**
+ * A map from long keys to int values which returns a 'no number' value for
+ * missing keys.
+ *
+ * @author Peter Karich
+ */
+public interface LongIntMap {
+
+    /**
+     * @return the previous value or the no number value
+     */
+    int put(long key, int value);
+
+    int get(long key);
+
+    long size();
+
+    /**
+     * @return the number of entries which fit into the map without growing
+     */
+    long capacity();
+}
@@ -0,0 +1,111 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Arrays;
+
+/**
+ * A bitset where clear is O(1): every index stores the version in which it was
+ * added and clear only increments the current version. Useful for the visited
+ * nodes of an algorithm instance which is reused for many queries. It needs 32
+ * times more memory than a BitSet.
+ *
+ * @author Peter Karich
+ */
+public class MyVersionedBitSet implements MyBitSet {
+
+    private int[] versions;
+    private int version = 1;
+    private int cardinality;
+
+    public MyVersionedBitSet() {
+        this(10);
+    }
+
+    public MyVersionedBitSet(int size) {
+        versions = new int[Math.max(10, size)];
+    }
+
+    @Override
+    public boolean contains(int index) {
+        return index < versions.length && versions[index] == version;
+    }
+
+    @Override
+    public void add(int index) {
+        ensureCapacity(index + 1);
+        if (versions[index] != version) {
+            versions[index] = version;
+            cardinality++;
+        }
+    }
+
+    @Override
+    public int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    public void clear() {
+        cardinality = 0;
+        version++;
+        if (version == Integer.MAX_VALUE) {
+            Arrays.fill(versions, 0);
+            version = 1;
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int size) {
+        if (size <= versions.length)
+            return;
+        versions = Arrays.copyOf(versions, Math.max(size, versions.length * 3 / 2));
+    }
+
+    @Override
+    public int next(int index) {
+        for (int i = index; i < versions.length; i++) {
+            if (versions[i] == version)
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public MyBitSet copyTo(MyBitSet bs) {
+        bs.clear();
+        bs.ensureCapacity(versions.length);
+        for (int i = 0; i < versions.length; i++) {
+            if (versions[i] == version)
+                bs.add(i);
+        }
+        return bs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = next(0); i >= 0; i = next(i + 1)) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(i);
+        }
+        return "{" + sb + "}";
+    }
+}
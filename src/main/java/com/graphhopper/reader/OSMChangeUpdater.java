@@ -0,0 +1,403 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.coll.MyBitSet;
+import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.routing.util.AcceptStreet;
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.routing.util.WayProperties;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.Location2IDQuadtree;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.Helper7;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.RawEdgeIterator;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongDoubleHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Applies an OSM change file (osc) to an existing graph which was imported
+ * with OSMReader.storeOSMIds enabled. Old edges of deleted and modified ways
+ * are made inaccessible, created and modified ways are added as new edges and
+ * moved tower nodes update the distances of their edges. If a modified way
+ * references nodes which are neither tower nodes nor contained in the change
+ * file only the flags of its existing edges are updated, as this is the usual
+ * case of a tag change. Afterwards the location index needs to be rebuild via
+ * rebuildIndex.
+ *
+ * Limitations: a moved pillar node of an unchanged way is not reflected in the
+ * geometry and new ways can only be connected to existing tower nodes or to
+ * nodes contained in the change file. Graphs with shortcuts (contraction
+ * hierarchies) need a new preparation and are not supported.
+ *
+ * @author Peter Karich
+ */
+public class OSMChangeUpdater extends OSMReaderHelper {
+
+    private static final int CREATE = 0;
+    private static final int MODIFY = 1;
+    private static final int DELETE = 2;
+    private final GraphStorage graphStorage;
+    private final OSMIDMapping mapping;
+    private AcceptStreet acceptStreets = new AcceptStreet(true, false, false, false);
+    private DistanceCalc calc = new DistanceCalc();
+    // the node coordinates contained in the change file
+    private TLongDoubleHashMap changedLats;
+    private TLongDoubleHashMap changedLons;
+    private TLongIntHashMap osmIdToNode;
+    private TLongObjectHashMap<TIntArrayList> wayToEdges;
+    // how many changed ways use a node which is not yet in the graph
+    private TLongIntHashMap nodeUsage;
+    private int removedEdges;
+    private int updatedEdges;
+    private int createdEdges;
+    private int createdNodes;
+    private int movedNodes;
+    private int skippedNodes;
+
+    public OSMChangeUpdater(GraphStorage g, OSMIDMapping mapping) {
+        super(g, 0);
+        if (g instanceof LevelGraph)
+            throw new IllegalStateException("Graphs with shortcuts cannot be updated. Import it again.");
+        if (mapping == null)
+            throw new IllegalStateException("No OSM id mapping found. Import the graph with storeOSMIds enabled.");
+        this.graphStorage = g;
+        this.mapping = mapping;
+        osmIds(mapping);
+    }
+
+    public OSMChangeUpdater acceptStreet(AcceptStreet acceptStr) {
+        this.acceptStreets = acceptStr;
+        return this;
+    }
+
+    /**
+     * Reads the specified OSM change file and applies it to the graph.
+     */
+    public void apply(InputStream osc) {
+        if (osc == null)
+            throw new IllegalStateException("Stream cannot be empty");
+
+        changedLats = new TLongDoubleHashMap(100, 0.5f, -1, Double.NaN);
+        changedLons = new TLongDoubleHashMap(100, 0.5f, -1, Double.NaN);
+        nodeUsage = new TLongIntHashMap(100, 0.5f, -1, 0);
+        initLookups();
+        List<WayChange> ways = parse(osc);
+
+        // 1. remove edges of deleted ways and of modified ways which can be
+        // created again. For all other modified ways only the flags are updated
+        MyBitSet toRemove = new MyBitSetImpl(Math.max(mapping.edges(), 1));
+        TIntObjectHashMap<WayChange> toUpdate = new TIntObjectHashMap<WayChange>();
+        for (WayChange way : ways) {
+            if (way.action == CREATE)
+                continue;
+            TIntArrayList edges = wayToEdges.remove(way.osmId);
+            if (edges == null)
+                continue;
+            if (way.action == MODIFY && way.highway && !isResolvable(way)) {
+                // probably only the tags changed as not all nodes are included
+                way.keepEdges = true;
+                for (int i = 0; i < edges.size(); i++) {
+                    toUpdate.put(edges.get(i), way);
+                }
+                continue;
+            }
+            for (int i = 0; i < edges.size(); i++) {
+                toRemove.add(edges.get(i));
+                mapping.setWayId(edges.get(i), OSMIDMapping.EMPTY);
+            }
+        }
+        updateEdges(toRemove, toUpdate);
+
+        // 2. move existing tower nodes
+        for (long osmId : changedLats.keys()) {
+            int node = osmIdToNode.get(osmId);
+            if (node < 0)
+                continue;
+            double lat = changedLats.get(osmId);
+            double lon = changedLons.get(osmId);
+            if (Math.abs(lat - g.getLatitude(node)) < 1e-6 && Math.abs(lon - g.getLongitude(node)) < 1e-6)
+                continue;
+            g.setNode(node, lat, lon);
+            updateDistances(node);
+            movedNodes++;
+        }
+
+        // 3. add created or modified ways
+        for (WayChange way : ways) {
+            if (way.action == DELETE || !way.highway)
+                continue;
+            for (int i = 0; i < way.nodes.size(); i++) {
+                nodeUsage.adjustOrPutValue(way.nodes.get(i), 1, 1);
+            }
+        }
+        for (WayChange way : ways) {
+            if (way.action == DELETE || !way.highway || way.keepEdges || way.nodes.size() < 2)
+                continue;
+            addEdge(way.osmId, way.nodes, way.flags);
+        }
+    }
+
+    private void initLookups() {
+        osmIdToNode = new TLongIntHashMap(Math.max(mapping.nodes(), 10), 0.5f, -1, -1);
+        for (int node = 0; node < mapping.nodes(); node++) {
+            long osmId = mapping.getNodeId(node);
+            if (osmId != OSMIDMapping.EMPTY)
+                osmIdToNode.put(osmId, node);
+        }
+        wayToEdges = new TLongObjectHashMap<TIntArrayList>(Math.max(mapping.edges() / 2, 10));
+        for (int edge = 0; edge < mapping.edges(); edge++) {
+            long osmId = mapping.getWayId(edge);
+            if (osmId == OSMIDMapping.EMPTY)
+                continue;
+            TIntArrayList edges = wayToEdges.get(osmId);
+            if (edges == null) {
+                edges = new TIntArrayList(2);
+                wayToEdges.put(osmId, edges);
+            }
+            edges.add(edge);
+        }
+    }
+
+    private List<WayChange> parse(InputStream osc) {
+        List<WayChange> ways = new ArrayList<WayChange>();
+        WayProperties properties = new WayProperties();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        XMLStreamReader sReader = null;
+        try {
+            sReader = factory.createXMLStreamReader(osc, "UTF-8");
+            int action = CREATE;
+            for (int event = sReader.next(); event != XMLStreamConstants.END_DOCUMENT;
+                    event = sReader.next()) {
+                if (event != XMLStreamConstants.START_ELEMENT)
+                    continue;
+
+                String name = sReader.getLocalName();
+                if ("create".equals(name))
+                    action = CREATE;
+                else if ("modify".equals(name))
+                    action = MODIFY;
+                else if ("delete".equals(name))
+                    action = DELETE;
+                else if ("node".equals(name)) {
+                    // deleted nodes are not used from remaining ways, so nothing to do
+                    if (action != DELETE) {
+                        long osmId = OSMReader.parseId(sReader);
+                        addNode(osmId, Double.parseDouble(sReader.getAttributeValue(null, "lat")),
+                                Double.parseDouble(sReader.getAttributeValue(null, "lon")));
+                    }
+                } else if ("way".equals(name)) {
+                    WayChange way = new WayChange(action, OSMReader.parseId(sReader));
+                    way.highway = OSMReader.parseWay(acceptStreets, way.nodes, properties, sReader);
+                    if (way.highway)
+                        way.flags = acceptStreets.toFlags(properties);
+                    ways.add(way);
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new RuntimeException("Problem while parsing change file", ex);
+        } finally {
+            Helper7.close(sReader);
+        }
+        return ways;
+    }
+
+    private boolean isResolvable(WayChange way) {
+        for (int i = 0; i < way.nodes.size(); i++) {
+            long osmId = way.nodes.get(i);
+            if (!osmIdToNode.containsKey(osmId) && !changedLats.containsKey(osmId))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Makes the edges to remove inaccessible by removing both directions and
+     * overwrites the flags of the edges to update. There is no edge
+     * compaction, all edges stay in the graph.
+     */
+    private void updateEdges(MyBitSet toRemove, TIntObjectHashMap<WayChange> toUpdate) {
+        if (toRemove.cardinality() == 0 && toUpdate.isEmpty())
+            return;
+        RawEdgeIterator iter = graphStorage.allEdges();
+        while (iter.next()) {
+            int edge = iter.edge();
+            if (toRemove.contains(edge)) {
+                iter.flags(iter.flags() & ~3);
+                removedEdges++;
+                continue;
+            }
+            WayChange way = toUpdate.get(edge);
+            if (way == null)
+                continue;
+            // the flags are stored in direction of nodeA -> nodeB
+            int indexA = way.nodes.indexOf(mapping.getNodeId(iter.nodeA()));
+            int indexB = way.nodes.indexOf(mapping.getNodeId(iter.nodeB()));
+            if (indexA >= 0 && indexB >= 0 && indexA > indexB)
+                iter.flags(CarStreetType.swapDirection(way.flags));
+            else
+                iter.flags(way.flags);
+            updatedEdges++;
+        }
+    }
+
+    private void updateDistances(int node) {
+        EdgeIterator iter = g.getEdges(node);
+        while (iter.next()) {
+            PointList pillars = iter.wayGeometry();
+            double prevLat = g.getLatitude(node);
+            double prevLon = g.getLongitude(node);
+            double dist = 0;
+            for (int i = 0; i < pillars.size(); i++) {
+                dist += calc.calcDist(prevLat, prevLon, pillars.latitude(i), pillars.longitude(i));
+                prevLat = pillars.latitude(i);
+                prevLon = pillars.longitude(i);
+            }
+            dist += calc.calcDist(prevLat, prevLon, g.getLatitude(iter.node()), g.getLongitude(iter.node()));
+            if (dist == 0)
+                dist = 0.0001;
+            iter.distance(dist);
+        }
+    }
+
+    /**
+     * Stores the coordinates of a created or modified node.
+     */
+    @Override
+    public boolean addNode(long osmId, double lat, double lon) {
+        changedLats.put(osmId, lat);
+        changedLons.put(osmId, lon);
+        return true;
+    }
+
+    /**
+     * Adds the edges of a created or modified way. Nodes which are neither
+     * tower nodes of the graph nor contained in the change file split the way.
+     */
+    @Override
+    public int addEdge(long osmWayId, TLongList nodes, int flags) {
+        PointList pointList = new PointList(nodes.size());
+        int successfullyAdded = 0;
+        int firstNode = -1;
+        int lastIndex = nodes.size() - 1;
+        for (int i = 0; i <= lastIndex; i++) {
+            long osmId = nodes.get(i);
+            int node = osmIdToNode.get(osmId);
+            if (node < 0) {
+                if (!changedLats.containsKey(osmId)) {
+                    skippedNodes++;
+                    firstNode = -1;
+                    pointList.clear();
+                    continue;
+                }
+                double lat = changedLats.get(osmId);
+                double lon = changedLons.get(osmId);
+                if (firstNode >= 0 && i < lastIndex && nodeUsage.get(osmId) <= 1) {
+                    pointList.add(lat, lon);
+                    continue;
+                }
+                node = addTowerNode(osmId, lat, lon);
+            }
+
+            if (firstNode < 0)
+                pointList.clear();
+            pointList.add(g.getLatitude(node), g.getLongitude(node));
+            if (firstNode >= 0) {
+                successfullyAdded += addEdge(osmWayId, firstNode, node, pointList, flags);
+                createdEdges++;
+                pointList.clear();
+                pointList.add(g.getLatitude(node), g.getLongitude(node));
+            }
+            firstNode = node;
+        }
+        return successfullyAdded;
+    }
+
+    private int addTowerNode(long osmId, double lat, double lon) {
+        int node = g.nodes();
+        g.setNode(node, lat, lon);
+        mapping.setNodeId(node, osmId);
+        osmIdToNode.put(osmId, node);
+        createdNodes++;
+        return node;
+    }
+
+    /**
+     * Writes the graph and the OSM id mapping to disc.
+     */
+    public void flush() {
+        graphStorage.flush();
+        mapping.flush();
+    }
+
+    /**
+     * Creates a new location index for the changed graph and flushes it.
+     */
+    public Location2IDQuadtree rebuildIndex(int capacity) {
+        Directory dir = graphStorage.directory();
+        // remove the old index data, see Location2IDQuadtree
+        DataAccess oldIndex = dir.findCreate("loc2idIndex");
+        oldIndex.close();
+        dir.remove(oldIndex);
+        Location2IDQuadtree index = new Location2IDQuadtree(graphStorage, dir);
+        index.prepareIndex(capacity);
+        index.flush();
+        return index;
+    }
+
+    @Override
+    String getInfo() {
+        return "removed edges:" + removedEdges + ", updated edges:" + updatedEdges
+                + ", created edges:" + createdEdges
+                + ", created nodes:" + createdNodes + ", moved nodes:" + movedNodes
+                + ", skipped nodes:" + skippedNodes;
+    }
+
+    private static class WayChange {
+
+        final int action;
+        final long osmId;
+        final TLongArrayList nodes = new TLongArrayList(10);
+        boolean highway;
+        boolean keepEdges;
+        int flags;
+
+        public WayChange(int action, long osmId) {
+            this.action = action;
+            this.osmId = osmId;
+        }
+    }
+}
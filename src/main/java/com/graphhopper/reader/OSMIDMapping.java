@@ -0,0 +1,180 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.coll.MyBitSet;
+import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * Stores the OSM way id of every edge and the OSM node id of every tower node
+ * as side files of a graph. This makes it possible to apply OSM change files
+ * to an existing graph without a full import, see OSMChangeUpdater.
+ *
+ * Edge ids stay stable while optimizing a graph but node ids do not. So while
+ * importing this mapping listens to the node moves of GraphStorage.optimize
+ * and forgets the nodes and edges removed by the optimization in
+ * finishImport.
+ *
+ * @author Peter Karich
+ */
+public class OSMIDMapping implements Storable, GraphStorage.NodeMoveListener {
+
+    public static final long EMPTY = -1;
+    private final DataAccess wayIds;
+    private final DataAccess nodeIds;
+    private int edgeCount;
+    private int nodeCount;
+
+    public OSMIDMapping(Directory dir) {
+        wayIds = dir.findCreate("osmWayIds");
+        nodeIds = dir.findCreate("osmNodeIds");
+    }
+
+    public OSMIDMapping createNew(long expectedNodes) {
+        long bytes = Math.max(expectedNodes * 8, 100);
+        wayIds.createNew(bytes);
+        nodeIds.createNew(bytes);
+        return this;
+    }
+
+    /**
+     * Keeps the OSM id of a tower node which optimize moved into the place of
+     * a removed node.
+     */
+    @Override
+    public void moved(int oldNode, int newNode) {
+        setNodeId(newNode, getNodeId(oldNode));
+    }
+
+    /**
+     * Forgets the OSM ids of the nodes removed from the end of the optimized
+     * graph and the way ids of edges which were disconnected while optimizing.
+     */
+    void finishImport(Graph g) {
+        int nodes = g.nodes();
+        if (nodeCount > nodes)
+            nodeCount = nodes;
+        MyBitSet connectedEdges = new MyBitSetImpl(Math.max(edgeCount, 1));
+        for (int node = 0; node < nodes; node++) {
+            EdgeIterator iter = g.getEdges(node);
+            while (iter.next()) {
+                if (iter.edge() < edgeCount)
+                    connectedEdges.add(iter.edge());
+            }
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (!connectedEdges.contains(edge))
+                setWayId(edge, EMPTY);
+        }
+    }
+
+    public void setWayId(int edge, long osmWayId) {
+        wayIds.ensureCapacity((long) (edge + 1) * 8);
+        setLong(wayIds, edge, osmWayId);
+        if (edge >= edgeCount)
+            edgeCount = edge + 1;
+    }
+
+    /**
+     * @return the OSM id of the way the specified edge was created from or
+     * EMPTY
+     */
+    public long getWayId(int edge) {
+        if (edge >= edgeCount)
+            return EMPTY;
+        return getLong(wayIds, edge);
+    }
+
+    public void setNodeId(int node, long osmNodeId) {
+        nodeIds.ensureCapacity((long) (node + 1) * 8);
+        setLong(nodeIds, node, osmNodeId);
+        if (node >= nodeCount)
+            nodeCount = node + 1;
+    }
+
+    /**
+     * @return the OSM id of the specified tower node or EMPTY
+     */
+    public long getNodeId(int node) {
+        if (node >= nodeCount)
+            return EMPTY;
+        return getLong(nodeIds, node);
+    }
+
+    public int edges() {
+        return edgeCount;
+    }
+
+    public int nodes() {
+        return nodeCount;
+    }
+
+    // OSM ids are positive so a fresh (zero) entry means no mapping
+    private static void setLong(DataAccess da, int index, long value) {
+        if (value <= 0)
+            value = 0;
+        long pointer = (long) index * 2;
+        da.setInt(pointer, (int) (value >>> 32));
+        da.setInt(pointer + 1, (int) value);
+    }
+
+    private static long getLong(DataAccess da, int index) {
+        long pointer = (long) index * 2;
+        long value = ((long) da.getInt(pointer) << 32) | (da.getInt(pointer + 1) & 0xFFFFFFFFL);
+        if (value == 0)
+            return EMPTY;
+        return value;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!wayIds.loadExisting())
+            return false;
+        if (!nodeIds.loadExisting())
+            throw new IllegalStateException("cannot load osm node ids. corrupt file or directory?");
+        edgeCount = wayIds.getHeader(0);
+        nodeCount = nodeIds.getHeader(0);
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        wayIds.setHeader(0, edgeCount);
+        nodeIds.setHeader(0, nodeCount);
+        wayIds.flush();
+        nodeIds.flush();
+    }
+
+    @Override
+    public void close() {
+        wayIds.close();
+        nodeIds.close();
+    }
+
+    @Override
+    public long capacity() {
+        return wayIds.capacity() + nodeIds.capacity();
+    }
+}
@@ -23,23 +23,32 @@ import com.graphhopper.routing.util.AcceptStreet;
 import com.graphhopper.routing.util.AlgorithmPreparation;
 import com.graphhopper.routing.util.FastestCarCalc;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.PrepareDegreeTwoNodes;
 import com.graphhopper.routing.util.PrepareRoutingSubnetworks;
 import com.graphhopper.routing.util.RoutingAlgorithmSpecialAreaTests;
+import com.graphhopper.routing.util.WayProperties;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.MMapDirectory;
+import com.graphhopper.storage.LevelGraphOverlay;
 import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.Location2IDIndex;
 import com.graphhopper.storage.Location2IDQuadtree;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.SpillDirectory;
+import com.graphhopper.storage.TurnCostStorage;
 import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
 import static com.graphhopper.util.Helper.*;
 import com.graphhopper.util.Helper7;
 import com.graphhopper.util.StopWatch;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
 import java.io.*;
 import java.util.*;
 import java.util.zip.GZIPInputStream;
@@ -74,6 +83,8 @@ public class OSMReader {
             tests.runShortestPathPerf(iters / 10, algo);
             tests.runShortestPathPerf(iters, algo);
         }
+        if (args.getBool("osmreader.stallOnDemandTest", false))
+            tests.runStallOnDemandPerf(args.getInt("osmreader.algoIterations", 50));
     }
     private static Logger logger = LoggerFactory.getLogger(OSMReader.class);
     private long locations;
@@ -83,12 +94,38 @@ public class OSMReader {
     private OSMReaderHelper helper;
     private long expectedNodes;
     private TLongArrayList tmpLocs = new TLongArrayList(10);
-    private Map<String, Object> properties = new HashMap<String, Object>();
+    private WayProperties properties = new WayProperties();
+    private static final int TAG_UNKNOWN = -1;
+    private static final int TAG_HIGHWAY = 0;
+    private static final int TAG_ONEWAY = 1;
+    private static final int TAG_JUNCTION = 2;
+    private static final TObjectIntHashMap<String> TAG_KEYS = new TObjectIntHashMap<String>(10, 0.5f, TAG_UNKNOWN);
+
+    static {
+        TAG_KEYS.put("highway", TAG_HIGHWAY);
+        TAG_KEYS.put("oneway", TAG_ONEWAY);
+        TAG_KEYS.put("junction", TAG_JUNCTION);
+    }
     private AcceptStreet acceptStreets = new AcceptStreet(true, false, false, false);
     private AlgorithmPreparation prepare;
     private Location2IDQuadtree index;
     private int indexCapacity = -1;
     private boolean sortGraph = false;
+    private boolean storeOSMIds = false;
+    private boolean mergeDegreeTwoNodes = false;
+    private long importMemory = -1;
+    private OSMIDMapping osmIds;
+    private boolean turnRestrictions = false;
+    private int chThreads = 1;
+    private boolean chKeepBaseGraph = false;
+    // several weightings are prepared as overlays of the same graph
+    private String[] chWeightings;
+    private final Map<String, PrepareContractionHierarchies> chPreparations =
+            new LinkedHashMap<String, PrepareContractionHierarchies>();
+    private final Map<String, LevelGraphOverlay> overlays = new HashMap<String, LevelGraphOverlay>();
+    // from way, via node, to way and 1 for 'only' restrictions, 0 otherwise
+    private TLongArrayList restrictions;
+    private TurnCostStorage turnCosts;
 
     /**
      * Opens or creates a graph. The specified args need a property 'graph' (a
@@ -135,7 +172,7 @@ public class OSMReader {
         boolean levelGraph = "true".equals(chShortcuts)
                 || "fastest".equals(chShortcuts) || "shortest".equals(chShortcuts);
         if (levelGraph)
-            // necessary for simple or CH shortcuts
+            // necessary for simple or CH shortcuts, several weightings use overlays instead
             storage = new LevelGraphStorage(dir);
         else
             storage = new GraphStorage(dir);
@@ -154,8 +191,23 @@ public class OSMReader {
         final String algoStr = args.get("osmreader.algo", "astar");
         osmReader.defaultAlgoPrepare(Helper.createAlgoPrepare(algoStr));
         osmReader.sort(args.getBool("osmreader.sortGraph", false));
+        osmReader.storeOSMIds(args.getBool("osmreader.osmIds", false));
+        osmReader.mergeDegreeTwoNodes(args.getBool("osmreader.mergeDegreeTwoNodes", false));
+        osmReader.turnRestrictions(args.getBool("osmreader.turnRestrictions", false));
+        osmReader.importMemory(args.getLong("osmreader.importMemoryMB", -1) * Helper.MB);
+        osmReader.chThreads(args.getInt("osmreader.chThreads", 1));
+        osmReader.chKeepBaseGraph(args.getBool("osmreader.chKeepBaseGraph", false));
         osmReader.setCHShortcuts(args.get("osmreader.chShortcuts", "no"));
-        if (!osmReader.loadExisting()) {
+        if (osmReader.loadExisting()) {
+            String strOsc = args.get("osmreader.osc", "");
+            if (!Helper.isEmpty(strOsc)) {
+                File oscFile = new File(strOsc);
+                if (!oscFile.exists())
+                    throw new IllegalStateException("Your specified OSM change file does not exist:" + strOsc);
+                logger.info("start applying changes from " + oscFile);
+                osmReader.applyChanges(oscFile);
+            }
+        } else {
             String strOsm = args.get("osmreader.osm", "");
             if (Helper.isEmpty(strOsm))
                 throw new IllegalArgumentException("Graph not found and no OSM xml provided.");
@@ -185,14 +237,54 @@ public class OSMReader {
         if (!graphStorage.loadExisting())
             return false;
 
+        if (chWeightings != null) {
+            for (String weighting : chWeightings) {
+                LevelGraphOverlay overlay = new LevelGraphOverlay(graphStorage, weighting);
+                if (overlay.loadExisting()) {
+                    overlays.put(weighting, overlay);
+                    chPreparations.put(weighting, createCHPreparation(weighting).graph(overlay));
+                } else {
+                    // a weighting which was added later
+                    prepareCH(weighting);
+                    overlays.get(weighting).flush();
+                }
+            }
+            prepare = chPreparations.values().iterator().next();
+        }
+
         // init
         location2IDIndex();
         // load index afterwards
         if (!index.loadExisting())
             throw new IllegalStateException("couldn't load location index");
+        if (storeOSMIds) {
+            osmIds = new OSMIDMapping(graphStorage.directory());
+            if (!osmIds.loadExisting())
+                osmIds = null;
+        }
+        if (turnRestrictions) {
+            turnCosts = new TurnCostStorage(graphStorage.directory());
+            if (!turnCosts.loadExisting())
+                turnCosts = null;
+        }
         return true;
     }
 
+    /**
+     * Applies the specified OSM change file (osc) to the already loaded graph
+     * and rebuilds the location index. The graph needs to be imported with
+     * storeOSMIds enabled.
+     */
+    void applyChanges(File oscFile) throws IOException {
+        OSMChangeUpdater updater = new OSMChangeUpdater(graphStorage, osmIds).acceptStreet(acceptStreets);
+        updater.apply(createInputStream(oscFile));
+        logger.info(updater.getInfo());
+        updater.flush();
+        if (indexCapacity < 0)
+            indexCapacity = Helper.calcIndexSize(graphStorage.bounds());
+        index = updater.rebuildIndex(indexCapacity);
+    }
+
     private InputStream createInputStream(File file) throws IOException {
         FileInputStream fi = new FileInputStream(file);
         if (file.getAbsolutePath().endsWith(".gz"))
@@ -204,9 +296,21 @@ public class OSMReader {
     }
 
     void osm2Graph(File osmXmlFile) throws IOException {
-        helper.preProcess(createInputStream(osmXmlFile));
-        writeOsm2Graph(createInputStream(osmXmlFile));
-        cleanUp();
+        File tmpFolder = null;
+        if (importMemory >= 0 && helper instanceof OSMReaderHelperDoubleParse) {
+            tmpFolder = new File(graphStorage.directory().location() + "import-tmp");
+            logger.info("using " + importMemory / Helper.MB + "MB of import memory, spilling to " + tmpFolder);
+            ((OSMReaderHelperDoubleParse) helper).tmpDirectory(
+                    new SpillDirectory(tmpFolder.getAbsolutePath(), importMemory));
+        }
+        try {
+            helper.preProcess(createInputStream(osmXmlFile));
+            writeOsm2Graph(createInputStream(osmXmlFile));
+            cleanUp();
+        } finally {
+            if (tmpFolder != null)
+                Helper.removeDir(tmpFolder);
+        }
         optimize();
         flush();
     }
@@ -215,15 +319,34 @@ public class OSMReader {
         logger.info("optimizing ... (" + Helper.getMemInfo() + ")");
         graphStorage.optimize();
         logger.info("finished optimize (" + Helper.getMemInfo() + ")");
+        if (osmIds != null) {
+            osmIds.finishImport(graphStorage);
+            graphStorage.nodeMoveListener(null);
+        }
+        // resolve before the preparation which adds shortcuts and can
+        // remove edges from the via nodes
+        if (restrictions != null)
+            resolveTurnRestrictions();
 
         // move this into the GraphStorage.optimize method?
         if (sortGraph) {
+            if (osmIds != null)
+                throw new IllegalStateException("Storing OSM ids is not supported for sorted graphs");
+
             logger.info("sorting ... (" + Helper.getMemInfo() + ")");
             GraphStorage newGraph = GraphUtility.newStorage(graphStorage);
             GraphUtility.sortDFS(graphStorage, newGraph);
             graphStorage = newGraph;
         }
 
+        if (chWeightings != null) {
+            for (String weighting : chWeightings) {
+                prepareCH(weighting);
+            }
+            prepare = chPreparations.values().iterator().next();
+            return;
+        }
+
         logger.info("calling prepare.doWork ... (" + Helper.getMemInfo() + ")");
         if (prepare == null)
             defaultAlgoPrepare(Helper.createAlgoPrepare("astar"));
@@ -231,6 +354,20 @@ public class OSMReader {
             prepare.doWork();
     }
 
+    private PrepareContractionHierarchies createCHPreparation(String weighting) {
+        return new PrepareContractionHierarchies().type(Helper.createWeightCalculation(weighting)).
+                threads(chThreads).removeHigher2LowerEdges(false);
+    }
+
+    private void prepareCH(String weighting) {
+        logger.info("preparing contraction hierarchies for " + weighting + " ... (" + Helper.getMemInfo() + ")");
+        LevelGraphOverlay overlay = new LevelGraphOverlay(graphStorage, weighting).createNew();
+        PrepareContractionHierarchies tmpPrepare = createCHPreparation(weighting).graph(overlay);
+        tmpPrepare.doWork();
+        overlays.put(weighting, overlay);
+        chPreparations.put(weighting, tmpPrepare);
+    }
+
     private void cleanUp() {
         helper.cleanup();
         int prev = graphStorage.nodes();
@@ -241,11 +378,38 @@ public class OSMReader {
         logger.info("nodes " + n + ", there were " + preparation.subNetworks()
                 + " sub-networks. removed them => " + (prev - n)
                 + " less nodes. Remaining subnetworks:" + preparation.findSubnetworks().size());
+
+        if (mergeDegreeTwoNodes)
+            removeDegreeTwoNodes();
+    }
+
+    void removeDegreeTwoNodes() {
+        PrepareDegreeTwoNodes preparation = new PrepareDegreeTwoNodes(graphStorage) {
+            // the edges of one OSM way can be replaced later via OSMChangeUpdater
+            // so do not merge edges of different ways
+            @Override protected boolean canMerge(EdgeIterator first, EdgeIterator second) {
+                return osmIds == null || osmIds.getWayId(first.edge()) == osmIds.getWayId(second.edge());
+            }
+
+            @Override protected void onMerge(int firstEdge, int secondEdge, int mergedEdge) {
+                if (osmIds != null)
+                    osmIds.setWayId(mergedEdge, osmIds.getWayId(firstEdge));
+            }
+        };
+        logger.info("start removing degree two nodes, " + Helper.getMemInfo());
+        preparation.doWork();
+        logger.info("nodes " + graphStorage.nodes() + ", merged edges of "
+                + preparation.removedNodes() + " degree two nodes");
     }
 
     void flush() {
         logger.info("flushing graph with " + graphStorage.nodes() + " nodes ... (" + Helper.getMemInfo() + ")");
         graphStorage.flush();
+        for (LevelGraphOverlay overlay : overlays.values()) {
+            overlay.flush();
+        }
+        if (osmIds != null && storeOSMIds)
+            osmIds.flush();
 
         if (indexCapacity < 0)
             indexCapacity = Helper.calcIndexSize(graphStorage.bounds());
@@ -269,6 +433,15 @@ public class OSMReader {
 
         logger.info("creating graph with expected nodes:" + nf(helper.expectedNodes()));
         graphStorage.createNew(tmp);
+        // turn restrictions refer to OSM ids
+        if (storeOSMIds || turnRestrictions) {
+            osmIds = new OSMIDMapping(graphStorage.directory()).createNew(tmp);
+            // the node ids change while optimizing
+            graphStorage.nodeMoveListener(osmIds);
+            helper.osmIds(osmIds);
+        }
+        if (turnRestrictions)
+            restrictions = new TLongArrayList();
         XMLInputFactory factory = XMLInputFactory.newInstance();
         XMLStreamReader sReader = null;
         long wayStart = -1;
@@ -306,6 +479,8 @@ public class OSMReader {
                                         + " (" + skippedLocations + "), edges:" + nf(edgeCount)
                                         + " " + Helper.getMemInfo());
                             }
+                        } else if (restrictions != null && "relation".equals(sReader.getLocalName())) {
+                            processRelation(sReader);
                         }
 
                         break;
@@ -344,12 +519,27 @@ public class OSMReader {
         }
     }
 
+    static long parseId(XMLStreamReader sReader) {
+        String str = sReader.getAttributeValue(null, "id");
+        try {
+            return Long.parseLong(str);
+        } catch (Exception ex) {
+            logger.error("cannot get id from xml element:" + str, ex);
+            return OSMIDMapping.EMPTY;
+        }
+    }
+
     boolean isInBounds(double lat, double lon) {
         return true;
     }
 
-    boolean parseWay(TLongArrayList tmpLocs, Map<String, Object> properties, XMLStreamReader sReader)
+    boolean parseWay(TLongArrayList tmpLocs, WayProperties properties, XMLStreamReader sReader)
             throws XMLStreamException {
+        return parseWay(acceptStreets, tmpLocs, properties, sReader);
+    }
+
+    static boolean parseWay(AcceptStreet acceptStreets, TLongArrayList tmpLocs,
+            WayProperties properties, XMLStreamReader sReader) throws XMLStreamException {
 
         boolean handled = false;
         tmpLocs.clear();
@@ -365,27 +555,22 @@ public class OSMReader {
                         logger.error("cannot get ref from way. ref:" + ref, ex);
                     }
                 } else if ("tag".equals(sReader.getLocalName())) {
+                    // only the values of known keys are read
                     String key = sReader.getAttributeValue(null, "k");
-                    if (key != null && !key.isEmpty()) {
-                        String val = sReader.getAttributeValue(null, "v");
-                        if ("highway".equals(key)) {
-                            handled = acceptStreets.handleWay(properties, val);
-//                            if ("proposed".equals(val) || "preproposed".equals(val)
-//                                    || "platform".equals(val) || "raceway".equals(val)
-//                                    || "bus_stop".equals(val) || "bridleway".equals(val)
-//                                    || "construction".equals(val) || "no".equals(val) || "centre_line".equals(val))
-//                                // ignore
-//                                val = val;
-//                            else
-//                                logger.warn("unknown highway type:" + val);
-                        } else if ("oneway".equals(key)) {
+                    switch (key == null ? TAG_UNKNOWN : TAG_KEYS.get(key)) {
+                        case TAG_HIGHWAY:
+                            handled = acceptStreets.handleWay(properties, sReader.getAttributeValue(null, "v"));
+                            break;
+                        case TAG_ONEWAY:
+                            String val = sReader.getAttributeValue(null, "v");
                             if ("yes".equals(val) || "true".equals(val) || "1".equals(val))
-                                properties.put("oneway", "yes");
-                        } else if ("junction".equals(key)) {
+                                properties.oneway(true);
+                            break;
+                        case TAG_JUNCTION:
                             // abzweigung
-                            if ("roundabout".equals(val))
-                                properties.put("oneway", "yes");
-                        }
+                            if ("roundabout".equals(sReader.getAttributeValue(null, "v")))
+                                properties.oneway(true);
+                            break;
                     }
                 }
 
@@ -400,13 +585,135 @@ public class OSMReader {
     }
 
     private void processHighway(XMLStreamReader sReader) throws XMLStreamException {
+        long osmId = parseId(sReader);
         if (isHighway(sReader) && tmpLocs.size() > 1) {
             int flags = acceptStreets.toFlags(properties);
-            int successfullAdded = helper.addEdge(tmpLocs, flags);
+            int successfullAdded = helper.addEdge(osmId, tmpLocs, flags);
             edgeCount += successfullAdded;
         }
     }
 
+    /**
+     * Remembers the specified relation if it is a turn restriction with a via
+     * node. Restrictions with via ways are skipped.
+     */
+    private void processRelation(XMLStreamReader sReader) throws XMLStreamException {
+        long fromWay = OSMIDMapping.EMPTY;
+        long viaNode = OSMIDMapping.EMPTY;
+        long toWay = OSMIDMapping.EMPTY;
+        boolean isRestriction = false;
+        String restriction = null;
+        for (int tmpE = sReader.nextTag(); tmpE != XMLStreamConstants.END_ELEMENT;
+                tmpE = sReader.nextTag()) {
+            if (tmpE == XMLStreamConstants.START_ELEMENT) {
+                if ("member".equals(sReader.getLocalName())) {
+                    String role = sReader.getAttributeValue(null, "role");
+                    String type = sReader.getAttributeValue(null, "type");
+                    String ref = sReader.getAttributeValue(null, "ref");
+                    long id;
+                    try {
+                        id = Long.parseLong(ref);
+                    } catch (Exception ex) {
+                        logger.error("cannot get ref from relation. ref:" + ref, ex);
+                        id = OSMIDMapping.EMPTY;
+                    }
+                    if ("from".equals(role) && "way".equals(type))
+                        fromWay = id;
+                    else if ("to".equals(role) && "way".equals(type))
+                        toWay = id;
+                    else if ("via".equals(role) && "node".equals(type))
+                        viaNode = id;
+                } else if ("tag".equals(sReader.getLocalName())) {
+                    String key = sReader.getAttributeValue(null, "k");
+                    if ("type".equals(key))
+                        isRestriction = "restriction".equals(sReader.getAttributeValue(null, "v"));
+                    else if ("restriction".equals(key))
+                        restriction = sReader.getAttributeValue(null, "v");
+                }
+
+                sReader.next();
+            }
+        }
+
+        if (!isRestriction || restriction == null || fromWay < 0 || viaNode < 0 || toWay < 0)
+            return;
+        long only;
+        if (restriction.startsWith("no_"))
+            only = 0;
+        else if (restriction.startsWith("only_"))
+            only = 1;
+        else
+            return;
+        restrictions.add(fromWay);
+        restrictions.add(viaNode);
+        restrictions.add(toWay);
+        restrictions.add(only);
+    }
+
+    /**
+     * Converts the parsed turn restrictions into forbidden turns between the
+     * edges at the via node. Must be called after the node ids were assigned
+     * in OSMIDMapping.finishImport and before the preparation.
+     */
+    void resolveTurnRestrictions() {
+        int size = restrictions.size() / 4;
+        TLongIntHashMap viaNodes = new TLongIntHashMap(Math.max(10, size), 0.5f, OSMIDMapping.EMPTY, -1);
+        for (int i = 0; i < size; i++) {
+            viaNodes.put(restrictions.get(i * 4 + 1), -1);
+        }
+        int nodes = graphStorage.nodes();
+        for (int node = 0; node < nodes; node++) {
+            long osmId = osmIds.getNodeId(node);
+            if (osmId != OSMIDMapping.EMPTY && viaNodes.containsKey(osmId))
+                viaNodes.put(osmId, node);
+        }
+
+        turnCosts = new TurnCostStorage(graphStorage.directory()).createNew();
+        TIntArrayList fromEdges = new TIntArrayList();
+        TIntArrayList toEdges = new TIntArrayList();
+        int skipped = 0;
+        for (int i = 0; i < size; i++) {
+            long fromWay = restrictions.get(i * 4);
+            int node = viaNodes.get(restrictions.get(i * 4 + 1));
+            long toWay = restrictions.get(i * 4 + 2);
+            boolean only = restrictions.get(i * 4 + 3) == 1;
+            if (node < 0) {
+                skipped++;
+                continue;
+            }
+
+            fromEdges.clear();
+            toEdges.clear();
+            int toWayEdges = 0;
+            EdgeIterator iter = graphStorage.getEdges(node);
+            while (iter.next()) {
+                long wayId = osmIds.getWayId(iter.edge());
+                if (wayId == fromWay)
+                    fromEdges.add(iter.edge());
+                if (wayId == toWay)
+                    toWayEdges++;
+                // for 'only' restrictions all turns into other ways are forbidden
+                if (only ? wayId != toWay : wayId == toWay)
+                    toEdges.add(iter.edge());
+            }
+            // the from and the to way have to end at the via node, if one passes
+            // through the node we cannot know which of its edges is restricted
+            if (fromEdges.size() != 1 || toWayEdges != 1) {
+                skipped++;
+                continue;
+            }
+            int fromEdge = fromEdges.get(0);
+            for (int t = 0; t < toEdges.size(); t++) {
+                if (fromEdge != toEdges.get(t))
+                    turnCosts.forbidTurn(node, fromEdge, toEdges.get(t));
+            }
+        }
+        turnCosts.flush();
+        restrictions = null;
+        logger.info("turn restrictions: " + size + ", skipped: " + skipped
+                + ", via nodes: " + turnCosts.viaNodes() + ", forbidden turns: " + turnCosts.entries());
+    }
+
     /**
      * @return the initialized graph. Invalid if called before osm2Graph.
      */
@@ -426,19 +733,42 @@ public class OSMReader {
         return prepare;
     }
 
+    /**
+     * @return the contraction hierarchies preparations per weighting if
+     * several weightings were specified via setCHShortcuts
+     */
+    public Map<String, PrepareContractionHierarchies> chPreparations() {
+        return chPreparations;
+    }
+
     /**
      * Specifies if shortcuts should be introduced (contraction hierarchies) to
      * improve query speed.
      *
-     * @param chShortcuts fastest, shortest or false
+     * @param chShortcuts fastest, shortest or false. Several weightings like
+     * fastest,shortest are prepared side by side as LevelGraphOverlay of the
+     * same graph, which then needs to be a GraphStorage without levels.
      */
     public OSMReader setCHShortcuts(String chShortcuts) {
         if (chShortcuts.isEmpty() || "no".equals(chShortcuts) || "false".equals(chShortcuts))
             return this;
+        if (chShortcuts.contains(",")) {
+            if (graphStorage instanceof LevelGraphStorage)
+                throw new IllegalStateException("Several weightings need a GraphStorage without levels");
+            chWeightings = chShortcuts.split(",");
+            for (int i = 0; i < chWeightings.length; i++) {
+                chWeightings[i] = chWeightings[i].trim().toLowerCase();
+                // fail early for unknown weightings
+                Helper.createWeightCalculation(chWeightings[i]);
+            }
+            return this;
+        }
         if ("true".equals(chShortcuts) || "fastest".equals(chShortcuts)) {
-            prepare = new PrepareContractionHierarchies().type(FastestCarCalc.DEFAULT);
+            prepare = new PrepareContractionHierarchies().type(FastestCarCalc.DEFAULT).threads(chThreads).
+                    removeHigher2LowerEdges(!chKeepBaseGraph);
         } else if ("shortest".equals(chShortcuts)) {
-            prepare = new PrepareContractionHierarchies();
+            prepare = new PrepareContractionHierarchies().threads(chThreads).
+                    removeHigher2LowerEdges(!chKeepBaseGraph);
         } else
             throw new IllegalArgumentException("Value " + chShortcuts + " not valid for configuring "
                     + "contraction hierarchies algorithm preparation");
@@ -446,6 +776,27 @@ public class OSMReader {
         return this;
     }
 
+    /**
+     * The number of threads which contract the nodes of the contraction
+     * hierarchies preparation. Call this before setCHShortcuts.
+     */
+    public OSMReader chThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is necessary but was " + threads);
+        chThreads = threads;
+        return this;
+    }
+
+    /**
+     * Keeps all edges of the graph while preparing contraction hierarchies so
+     * that algorithms without shortcuts can still use the prepared graph. Call
+     * this before setCHShortcuts.
+     */
+    public OSMReader chKeepBaseGraph(boolean keepBaseGraph) {
+        chKeepBaseGraph = keepBaseGraph;
+        return this;
+    }
+
     private OSMReader defaultAlgoPrepare(AlgorithmPreparation defaultPrepare) {
         prepare = defaultPrepare;
         prepare.graph(graphStorage);
@@ -455,13 +806,28 @@ public class OSMReader {
     OSMReaderHelper createDoubleParseHelper() {
         return new OSMReaderHelperDoubleParse(graphStorage, expectedNodes) {
             @Override
-            boolean parseWay(TLongArrayList tmpLocs, Map<String, Object> properties,
+            boolean parseWay(TLongArrayList tmpLocs, WayProperties properties,
                     XMLStreamReader sReader) throws XMLStreamException {
                 return OSMReader.this.parseWay(tmpLocs, properties, sReader);
             }
         };
     }
 
+    /**
+     * @return the OSM ids of the imported graph or null if not stored
+     */
+    public OSMIDMapping osmIds() {
+        return osmIds;
+    }
+
+    /**
+     * @return the turn costs created from the turn restrictions or null if
+     * not imported
+     */
+    public TurnCostStorage turnCosts() {
+        return turnCosts;
+    }
+
     OSMReaderHelper helper() {
         return helper;
     }
@@ -481,6 +847,48 @@ public class OSMReader {
         return this;
     }
 
+    /**
+     * Specifies if the OSM ids of the ways and tower nodes should be stored
+     * next to the graph. This is necessary to apply OSM change files later.
+     */
+    public OSMReader storeOSMIds(boolean bool) {
+        storeOSMIds = bool;
+        return this;
+    }
+
+    /**
+     * Specifies if the turn restrictions (relations with via node) should be
+     * imported. Use them with an edge based algorithm like
+     * DijkstraBidirectionEdgeBased. They are not updated when applying OSM
+     * change files.
+     */
+    public OSMReader turnRestrictions(boolean bool) {
+        turnRestrictions = bool;
+        return this;
+    }
+
+    /**
+     * Limits the heap memory of the temporary import data: the map from OSM
+     * ids to node indices and the pillar node coordinates. If the specified
+     * bytes are exceeded the data is moved into memory mapped files. Negative
+     * values mean no limit.
+     */
+    public OSMReader importMemory(long bytes) {
+        importMemory = bytes;
+        return this;
+    }
+
+    /**
+     * Specifies if edges with identical flags should be merged at tower nodes
+     * with only two neighbors. Reduces the number of nodes without changing
+     * the routes between the remaining nodes. As the location index only
+     * returns tower nodes a query point can snap to a different node then.
+     */
+    public OSMReader mergeDegreeTwoNodes(boolean bool) {
+        mergeDegreeTwoNodes = bool;
+        return this;
+    }
+
     /**
      * Sets if the graph should be sorted to improve query speed. Often not
      * appropriated if graph is huge as sorting is done via copying into a new
@@ -38,6 +38,7 @@ public abstract class OSMReaderHelper {
     protected final Graph g;
     protected final long expectedNodes;
     private DistanceCalc callback = new DistanceCalc();
+    protected OSMIDMapping osmIds;
 
     public OSMReaderHelper(Graph g, long expectedNodes) {
         this.g = g;
@@ -48,6 +49,14 @@ public abstract class OSMReaderHelper {
         this.callback = callback;
     }
 
+    /**
+     * Specifies where the OSM ids of the created edges and tower nodes should
+     * be stored. Null if no mapping should be kept.
+     */
+    public void osmIds(OSMIDMapping osmIds) {
+        this.osmIds = osmIds;
+    }
+
     public long expectedNodes() {
         return expectedNodes;
     }
@@ -57,9 +66,9 @@ public abstract class OSMReaderHelper {
 
     public abstract boolean addNode(long osmId, double lat, double lon);
 
-    public abstract int addEdge(TLongList nodes, int flags);
+    public abstract int addEdge(long osmWayId, TLongList nodes, int flags);
 
-    int addEdge(int fromIndex, int toIndex, PointList pointList, int flags) {
+    int addEdge(long osmWayId, int fromIndex, int toIndex, PointList pointList, int flags) {
         if (fromIndex < 0 || toIndex < 0)
             throw new AssertionError("to or from index is invalid for this edge "
                     + fromIndex + "->" + toIndex + ", points:" + pointList);
@@ -91,6 +100,8 @@ public abstract class OSMReaderHelper {
         EdgeIterator iter = g.edge(fromIndex, toIndex, towerNodeDistance, flags);
         if (nodes > 2)
             iter.wayGeometry(pillarNodes);
+        if (osmIds != null)
+            osmIds.setWayId(iter.edge(), osmWayId);
         return nodes;
     }
 
@@ -19,6 +19,9 @@
 package com.graphhopper.reader;
 
 import com.graphhopper.coll.BigLongIntMap;
+import com.graphhopper.coll.DataAccessLongIntMap;
+import com.graphhopper.coll.LongIntMap;
+import com.graphhopper.routing.util.WayProperties;
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.GraphStorage;
@@ -30,8 +33,6 @@ import gnu.trove.list.TLongList;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.hash.TLongIntHashMap;
 import java.io.InputStream;
-import java.util.HashMap;
-import java.util.Map;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -54,7 +55,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
     private static final int PILLAR_NODE = 1;
     private static final int TOWER_NODE = -2;
     private final Logger logger = LoggerFactory.getLogger(getClass());
-    private BigLongIntMap osmIdToIndexMap;
+    private LongIntMap osmIdToIndexMap;
     // very slow: private SparseLongLongArray osmIdToIndexMap;
     // not applicable as ways introduces the nodes in 'wrong' order: private OSMIDSegmentedMap
     private int towerId = 0;
@@ -62,14 +63,26 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
     private final TLongArrayList tmpLocs = new TLongArrayList(10);
     // remember how many times a node was used to identify tower nodes
     private DataAccess pillarLats, pillarLons;
-    private final Directory dir;
+    private Directory dir;
+    private boolean tmpDirectory;
 
     public OSMReaderHelperDoubleParse(GraphStorage storage, long expectedNodes) {
         super(storage, expectedNodes);
         dir = storage.directory();
-        pillarLats = dir.findCreate("tmpLatitudes");
-        pillarLons = dir.findCreate("tmpLongitudes");
-        osmIdToIndexMap = new BigLongIntMap(expectedNodes, EMPTY);
+    }
+
+    /**
+     * Specifies where the temporary data, i.e. the map from OSM ids to the
+     * node indices and the coordinates of the pillar nodes, should be stored.
+     * Use a SpillDirectory to limit the memory usage. Call this before
+     * preProcess.
+     */
+    public OSMReaderHelperDoubleParse tmpDirectory(Directory dir) {
+        if (pillarLats != null)
+            throw new IllegalStateException("Temporary directory cannot be changed after preProcess");
+        this.dir = dir;
+        tmpDirectory = true;
+        return this;
     }
 
     @Override
@@ -94,6 +107,8 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
 
     private int addTowerNode(long osmId, double lat, double lon) {
         g.setNode(towerId, lat, lon);
+        if (osmIds != null)
+            osmIds.setNodeId(towerId, osmId);
         int id = -(towerId + 3);
         osmIdToIndexMap.put(osmId, id);
         towerId++;
@@ -102,11 +117,12 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
 
     @Override
     public long expectedNodes() {
-        return osmIdToIndexMap.size();
+        // the map is created in preProcess
+        return osmIdToIndexMap == null ? 0 : osmIdToIndexMap.size();
     }
 
     @Override
-    public int addEdge(TLongList nodes, int flags) {
+    public int addEdge(long osmWayId, TLongList nodes, int flags) {
         PointList pointList = new PointList(nodes.size());
         int successfullyAdded = 0;
         int firstNode = -1;
@@ -130,7 +146,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
                     tmpNode = -tmpNode - 3;
                     if (pointList.size() > 1 && firstNode >= 0) {
                         // TOWER node                        
-                        successfullyAdded += addEdge(firstNode, tmpNode, pointList, flags);
+                        successfullyAdded += addEdge(osmWayId, firstNode, tmpNode, pointList, flags);
                         pointList.clear();
                         pointList.add(g.getLatitude(tmpNode), g.getLongitude(tmpNode));
                     }
@@ -154,7 +170,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
                 tmpNode = -tmpNode - 3;
                 pointList.add(g.getLatitude(tmpNode), g.getLongitude(tmpNode));
                 if (firstNode >= 0) {
-                    successfullyAdded += addEdge(firstNode, tmpNode, pointList, flags);
+                    successfullyAdded += addEdge(osmWayId, firstNode, tmpNode, pointList, flags);
                     pointList.clear();
                     pointList.add(g.getLatitude(tmpNode), g.getLongitude(tmpNode));
                 }
@@ -197,10 +213,14 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
 
     @Override
     void cleanup() {
-        dir.remove(pillarLats);
-        dir.remove(pillarLons);
+        if (pillarLats != null) {
+            dir.remove(pillarLats);
+            dir.remove(pillarLons);
+        }
         pillarLons = null;
         pillarLats = null;
+        if (osmIdToIndexMap instanceof DataAccessLongIntMap)
+            ((DataAccessLongIntMap) osmIdToIndexMap).close();
         osmIdToIndexMap = null;
     }
 
@@ -228,12 +248,18 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
      */
     @Override
     public void preProcess(InputStream osmXml) {
+        if (tmpDirectory)
+            osmIdToIndexMap = new DataAccessLongIntMap(dir, "tmpOsmIdMap", expectedNodes, EMPTY);
+        else
+            osmIdToIndexMap = new BigLongIntMap(expectedNodes, EMPTY);
+        pillarLats = dir.findCreate("tmpLatitudes");
+        pillarLons = dir.findCreate("tmpLongitudes");
         pillarLats.createNew(Math.max(expectedNodes / 50, 100));
         pillarLons.createNew(Math.max(expectedNodes / 50, 100));
         if (osmXml == null)
             throw new AssertionError("Stream cannot be empty");
 
-        Map<String, Object> empty = new HashMap<String, Object>();
+        WayProperties empty = new WayProperties();
         XMLInputFactory factory = XMLInputFactory.newInstance();
         XMLStreamReader sReader = null;
         try {
@@ -267,7 +293,7 @@ public class OSMReaderHelperDoubleParse extends OSMReaderHelper {
         }
     }
 
-    boolean parseWay(TLongArrayList tmpLocs, Map<String, Object> properties, XMLStreamReader sReader)
+    boolean parseWay(TLongArrayList tmpLocs, WayProperties properties, XMLStreamReader sReader)
             throws XMLStreamException {
         return true;
     }
@@ -18,22 +18,19 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
 import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.DistancePlaneProjection;
 import com.graphhopper.util.EdgeIterator;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * This class implements the A* algorithm according to
  * http://en.wikipedia.org/wiki/A*_search_algorithm
  *
- * Different distance calculations can be used via setApproximation.
+ * Different distance calculations can be used via setApproximation. The
+ * shortest-path-tree is kept in a SearchState, so call clear and reuse an
+ * instance for several queries.
  *
  * @author Peter Karich
  */
@@ -41,11 +38,12 @@ public class AStar extends AbstractRoutingAlgorithm {
 
     private DistanceCalc dist = new DistancePlaneProjection();
     private boolean alreadyRun;
-    private MyBitSet closedSet;
-    private int from;
+    private double toLat, toLon;
+    private final SearchState state;
 
     public AStar(Graph g) {
         super(g);
+        state = new SearchState(g.nodes());
     }
 
     /**
@@ -63,7 +61,7 @@ public class AStar extends AbstractRoutingAlgorithm {
     @Override
     public RoutingAlgorithm clear() {
         alreadyRun = false;
-        from = -1;
+        state.reset();
         return this;
     }
 
@@ -71,74 +69,62 @@ public class AStar extends AbstractRoutingAlgorithm {
         if (alreadyRun)
             throw new IllegalStateException("Call clear before! But this class is not thread safe!");
         alreadyRun = true;
-        closedSet = new MyBitSetImpl(graph.nodes());
-        TIntObjectMap<AStarEdge> map = new TIntObjectHashMap<AStarEdge>();
-        PriorityQueue<AStarEdge> prioQueueOpenSet = new PriorityQueue<AStarEdge>(1000);
-        double toLat = graph.getLatitude(to);
-        double toLon = graph.getLongitude(to);
-        double currWeightToGoal, distEstimation, tmpLat, tmpLon;
-        AStarEdge fromEntry = new AStarEdge(EdgeIterator.NO_EDGE, this.from = from, 0, 0);
-        AStarEdge currEdge = fromEntry;
+        toLat = graph.getLatitude(to);
+        toLon = graph.getLongitude(to);
+        state.start(from);
+        int currVertex = from;
         while (true) {
-            int currVertex = currEdge.endNode;
+            if (finished(currVertex, to))
+                break;
+
+            double currWeight = state.weight(currVertex);
             EdgeIterator iter = getNeighbors(currVertex);
             while (iter.next()) {
                 int neighborNode = iter.node();
-                if (closedSet.contains(neighborNode))
+                if (state.isSettled(neighborNode))
                     continue;
 
-                double alreadyVisitedWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + currEdge.weightToCompare;
-                AStarEdge nEdge = map.get(neighborNode);
-                if (nEdge == null || nEdge.weightToCompare > alreadyVisitedWeight) {
-                    tmpLat = graph.getLatitude(neighborNode);
-                    tmpLon = graph.getLongitude(neighborNode);
-                    currWeightToGoal = dist.calcDist(toLat, toLon, tmpLat, tmpLon);
-                    currWeightToGoal = weightCalc.getMinWeight(currWeightToGoal);
-                    distEstimation = alreadyVisitedWeight + currWeightToGoal;
-                    if (nEdge == null) {
-                        nEdge = new AStarEdge(iter.edge(), neighborNode, distEstimation, alreadyVisitedWeight);
-                        map.put(neighborNode, nEdge);
-                    } else {
-                        prioQueueOpenSet.remove(nEdge);
-                        nEdge.edge = iter.edge();
-                        nEdge.weight = distEstimation;
-                        nEdge.weightToCompare = alreadyVisitedWeight;
-                    }
-                    nEdge.parent = currEdge;
-                    prioQueueOpenSet.add(nEdge);
-                    updateShortest(nEdge, neighborNode);
+                double alreadyVisitedWeight = calcWeight(iter) + currWeight;
+                if (state.weight(neighborNode) > alreadyVisitedWeight) {
+                    double distEstimation = alreadyVisitedWeight + calcWeightToGoal(neighborNode, to);
+                    state.update(neighborNode, alreadyVisitedWeight, iter.edge(), currVertex, distEstimation);
+                    updateShortest(neighborNode, alreadyVisitedWeight);
                 }
             }
 
-            closedSet.add(currVertex);
-            if (finished(currEdge, to))
-                break;
-            if (prioQueueOpenSet.isEmpty())
+            if (state.isEmpty())
                 return new Path();
-
-            currEdge = prioQueueOpenSet.poll();
-            if (currEdge == null)
-                throw new AssertionError("cannot happen?");
+            currVertex = state.pollMin();
         }
 
-        return extractPath(currEdge);
+        return extractPath(currVertex);
+    }
+
+    /**
+     * @return an estimation of the weight from the specified node to the goal
+     * which must not be greater than the real weight
+     */
+    protected double calcWeightToGoal(int node, int to) {
+        double tmpLat = graph.getLatitude(node);
+        double tmpLon = graph.getLongitude(node);
+        return weightCalc.getMinWeight(dist.calcDist(toLat, toLon, tmpLat, tmpLon));
     }
 
-    boolean finished(EdgeEntry currEdge, int to) {
-        return currEdge.endNode == to;
+    boolean finished(int currVertex, int to) {
+        return currVertex == to;
     }
 
     @Override
     public int calcVisitedNodes() {
-        return closedSet.cardinality();
+        return state.settledNodes();
     }
 
     protected EdgeIterator getNeighbors(int currVertex) {
         return graph.getOutgoing(currVertex);
     }
 
-    Path extractPath(EdgeEntry currEdge) {
-        return new Path(graph, weightCalc).edgeEntry(currEdge).extract();
+    Path extractPath(int goalNode) {
+        return new Path(graph, weightCalc).extract(state, goalNode);
     }
 
     public static class AStarEdge extends EdgeEntry {
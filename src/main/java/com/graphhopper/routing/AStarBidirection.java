@@ -18,8 +18,9 @@
  */
 package com.graphhopper.routing;
 
+import com.graphhopper.coll.IntDoubleIndexedHeap;
 import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.coll.MyVersionedBitSet;
 import com.graphhopper.routing.AStar.AStarEdge;
 import com.graphhopper.routing.util.EdgeLevelFilter;
 import com.graphhopper.storage.Graph;
@@ -30,7 +31,6 @@ import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.shapes.CoordTrig;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * This class implements a bidirectional A* algorithm. It is interesting to note
@@ -65,10 +65,10 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     private DistanceCalc dist;
     private int from, to;
     private MyBitSet visitedFrom;
-    private PriorityQueue<AStarEdge> prioQueueOpenSetFrom;
+    private IntDoubleIndexedHeap prioQueueOpenSetFrom;
     private TIntObjectMap<AStarEdge> shortestWeightMapFrom;
     private MyBitSet visitedTo;
-    private PriorityQueue<AStarEdge> prioQueueOpenSetTo;
+    private IntDoubleIndexedHeap prioQueueOpenSetTo;
     private TIntObjectMap<AStarEdge> shortestWeightMapTo;
     private boolean alreadyRun;
     protected AStarEdge currFrom;
@@ -79,6 +79,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     private CoordTrig fromCoord;
     private CoordTrig toCoord;
     protected double approximationFactor;
+    private boolean pruning;
 
     public AStarBidirection(Graph graph) {
         super(graph);
@@ -90,12 +91,12 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int size) {
-        visitedFrom = new MyBitSetImpl(size);
-        prioQueueOpenSetFrom = new PriorityQueue<AStarEdge>(size / 10);
+        visitedFrom = new MyVersionedBitSet(size);
+        prioQueueOpenSetFrom = new IntDoubleIndexedHeap(size / 10, size);
         shortestWeightMapFrom = new TIntObjectHashMap<AStarEdge>(size / 10);
 
-        visitedTo = new MyBitSetImpl(size);
-        prioQueueOpenSetTo = new PriorityQueue<AStarEdge>(size / 10);
+        visitedTo = new MyVersionedBitSet(size);
+        prioQueueOpenSetTo = new IntDoubleIndexedHeap(size / 10, size);
         shortestWeightMapTo = new TIntObjectHashMap<AStarEdge>(size / 10);
     }
 
@@ -132,6 +133,15 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
         return edgeFilter;
     }
 
+    /**
+     * @param pruning if true nodes are not added to the queue if their weight
+     * is not smaller than the weight of the best path found so far
+     */
+    public AStarBidirection setPruning(boolean pruning) {
+        this.pruning = pruning;
+        return this;
+    }
+
     @Override
     public RoutingAlgorithm clear() {
         alreadyRun = false;
@@ -225,7 +235,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
                 return false;
             }
 
-            currFrom = prioQueueOpenSetFrom.poll();
+            currFrom = shortestWeightMapFrom.get(prioQueueOpenSetFrom.poll_element());
             if (checkFinishCondition())
                 return false;
             visitedFrom.add(currFrom.endNode);
@@ -244,7 +254,7 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
                 return false;
             }
 
-            currTo = prioQueueOpenSetTo.poll();
+            currTo = shortestWeightMapTo.get(prioQueueOpenSetTo.poll_element());
             if (checkFinishCondition())
                 return false;
             visitedTo.add(currTo.endNode);
@@ -254,10 +264,13 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
         return true;
     }
 
-    private void fillEdges(AStarEdge curr, CoordTrig goal, MyBitSet closedSet, PriorityQueue<AStarEdge> prioQueueOpenSet,
+    private void fillEdges(AStarEdge curr, CoordTrig goal, MyBitSet closedSet, IntDoubleIndexedHeap prioQueueOpenSet,
             TIntObjectMap<AStarEdge> shortestWeightMap, boolean out) {
 
         int currNodeFrom = curr.endNode;
+        if (isStalled(currNodeFrom, curr.weightToCompare, out))
+            return;
+
         EdgeIterator iter = GraphUtility.getEdges(graph, currNodeFrom, out);
         if (edgeFilter != null)
             iter = edgeFilter.doFilter(iter);
@@ -269,7 +282,10 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
 
             // TODO performance: check if the node is already existent in the opposite direction
             // then we could avoid the approximation as we already know the exact complete path!
-            double alreadyVisitedWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + curr.weightToCompare;
+            double alreadyVisitedWeight = calcWeight(iter) + curr.weightToCompare;
+            if (pruning && alreadyVisitedWeight >= shortest.weight)
+                continue;
+
             AStarEdge de = shortestWeightMap.get(neighborNode);
             if (de == null || de.weightToCompare > alreadyVisitedWeight) {
                 double tmpLat = graph.getLatitude(neighborNode);
@@ -281,19 +297,39 @@ public class AStarBidirection extends AbstractRoutingAlgorithm {
                     de = new AStarEdge(iter.edge(), neighborNode, estimationFullDist, alreadyVisitedWeight);
                     shortestWeightMap.put(neighborNode, de);
                 } else {
-                    prioQueueOpenSet.remove(de);
                     de.edge = iter.edge();
                     de.weight = estimationFullDist;
                     de.weightToCompare = alreadyVisitedWeight;
                 }
 
                 de.parent = curr;
-                prioQueueOpenSet.add(de);
+                prioQueueOpenSet.insertOrUpdate(estimationFullDist, neighborNode);
                 updateShortest(de, neighborNode);
             }
         }
     }
 
+    /**
+     * Called before the edges of a node are relaxed. Used for the
+     * stall-on-demand of contraction hierarchies.
+     *
+     * @param out true for the forward search
+     * @return true if the edges of the specified node should be skipped
+     * because its weight cannot be optimal
+     */
+    protected boolean isStalled(int node, double weight, boolean out) {
+        return false;
+    }
+
+    /**
+     * @return the current weight from the start of the specified node in the
+     * forward (out) or backward search or Double.MAX_VALUE if not reached
+     */
+    public double reachedWeight(int node, boolean out) {
+        AStarEdge entry = out ? shortestWeightMapFrom.get(node) : shortestWeightMapTo.get(node);
+        return entry == null ? Double.MAX_VALUE : entry.weightToCompare;
+    }
+
 //    @Override -> TODO use only weight => then a simple EdgeEntry is possible
     public void updateShortest(AStarEdge shortestDE, int currLoc) {
         AStarEdge entryOther = shortestWeightMapOther.get(currLoc);
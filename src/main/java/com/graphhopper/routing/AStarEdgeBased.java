@@ -0,0 +1,171 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+import java.util.Arrays;
+
+/**
+ * An edge based version of AStar: the shortest-path-tree stores directed
+ * edges instead of nodes which makes it possible to consider turn costs and
+ * turn restrictions. Immediate u-turns on the same edge are not allowed.
+ *
+ * The weight of the returned path includes the turn costs but its distance
+ * and time do not.
+ *
+ * The tree is kept in a SearchState indexed by the edge keys, the parent of a
+ * key is the key of the previous edge. So call clear and reuse an instance
+ * for several queries. Dominated arrivals are not expanded, see
+ * BestArrivals.
+ *
+ * @author Peter Karich
+ */
+public class AStarEdgeBased extends AbstractRoutingAlgorithm {
+
+    private DistanceCalc dist = new DistancePlaneProjection();
+    private TurnCostStorage turnCosts;
+    private boolean alreadyRun;
+    private final SearchState state;
+    private final BestArrivals arrivals;
+    // the end node of every reached edge key
+    private int[] adjNodes;
+    private double toLat, toLon;
+
+    public AStarEdgeBased(Graph g) {
+        super(g);
+        // road networks have roughly 1.5 edges per node and two directions per edge
+        int keys = Math.max(10, g.nodes()) * 3;
+        state = new SearchState(keys);
+        arrivals = new BestArrivals(g.nodes());
+        adjNodes = new int[keys];
+    }
+
+    /**
+     * @param turnCosts the turn costs and restrictions to consider or null
+     */
+    public AStarEdgeBased turnCosts(TurnCostStorage turnCosts) {
+        this.turnCosts = turnCosts;
+        return this;
+    }
+
+    /**
+     * @param approx if true it enables an approximative distance calculation
+     * from lat,lon values
+     */
+    public AStarEdgeBased approximation(boolean approx) {
+        if (approx)
+            dist = new DistancePlaneProjection();
+        else
+            dist = new DistanceCalc();
+        return this;
+    }
+
+    @Override
+    public RoutingAlgorithm clear() {
+        alreadyRun = false;
+        state.reset();
+        arrivals.reset();
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        if (alreadyRun)
+            throw new IllegalStateException("Call clear before! But this class is not thread safe!");
+        alreadyRun = true;
+        if (from == to)
+            return new Path(graph, weightCalc);
+
+        toLat = graph.getLatitude(to);
+        toLon = graph.getLongitude(to);
+        // the start node has no edge key
+        int currKey = -1;
+        int currNode = from;
+        while (true) {
+            fillEdges(currKey, currNode);
+            do {
+                if (state.isEmpty())
+                    return new Path();
+
+                currKey = state.pollMin();
+                currNode = adjNodes[currKey];
+            } while (arrivals.isDominated(currNode, state.parentEdge(currKey), state.weight(currKey), turnCosts));
+            if (currNode == to)
+                break;
+        }
+
+        Path path = new Path(graph, weightCalc).extractEdgeBased(state, currKey, null, -1, to);
+        // extract sums up the edge weights only
+        path.weight(state.weight(currKey));
+        return path;
+    }
+
+    private void fillEdges(int currKey, int currNode) {
+        int currEdge = currKey < 0 ? EdgeIterator.NO_EDGE : state.parentEdge(currKey);
+        double currWeight = currKey < 0 ? 0 : state.weight(currKey);
+        int onlyEdge = currKey < 0 ? EdgeIterator.NO_EDGE : arrivals.onlyEdge(currNode, currEdge, turnCosts);
+        EdgeIterator iter = graph.getOutgoing(currNode);
+        while (iter.next()) {
+            // no u-turn
+            if (iter.edge() == currEdge || onlyEdge != EdgeIterator.NO_EDGE && iter.edge() != onlyEdge)
+                continue;
+
+            int neighborNode = iter.node();
+            int key = GraphUtility.createEdgeKey(iter.edge(), currNode, neighborNode);
+            if (state.isSettled(key))
+                continue;
+
+            double turnCost = calcTurnCost(currNode, currEdge, iter.edge());
+            if (turnCost == TurnCostStorage.FORBIDDEN)
+                continue;
+
+            double alreadyVisitedWeight = calcWeight(iter) + turnCost + currWeight;
+            if (state.weight(key) <= alreadyVisitedWeight
+                    || arrivals.isDominated(neighborNode, iter.edge(), alreadyVisitedWeight, turnCosts))
+                continue;
+
+            double currWeightToGoal = weightCalc.getMinWeight(dist.calcDist(toLat, toLon,
+                    graph.getLatitude(neighborNode), graph.getLongitude(neighborNode)));
+            state.update(key, alreadyVisitedWeight, iter.edge(), currKey, alreadyVisitedWeight + currWeightToGoal);
+            if (key >= adjNodes.length)
+                adjNodes = Arrays.copyOf(adjNodes, Math.max(key + 1, adjNodes.length * 3 / 2));
+            adjNodes[key] = neighborNode;
+            arrivals.update(neighborNode, iter.edge(), alreadyVisitedWeight);
+        }
+    }
+
+    double calcTurnCost(int viaNode, int fromEdge, int toEdge) {
+        if (turnCosts == null || !EdgeIterator.Edge.isValid(fromEdge))
+            return 0;
+        return turnCosts.turnCost(viaNode, fromEdge, toEdge);
+    }
+
+    @Override
+    public int calcVisitedNodes() {
+        return state.settledNodes();
+    }
+
+    @Override public String name() {
+        return "astaredge";
+    }
+}
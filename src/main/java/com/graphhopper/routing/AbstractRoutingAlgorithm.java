@@ -18,10 +18,12 @@
  */
 package com.graphhopper.routing;
 
+import com.graphhopper.routing.util.PrecomputedWeights;
 import com.graphhopper.routing.util.ShortestCarCalc;
 import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
 
 /**
  * @author Peter Karich
@@ -30,6 +32,7 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm {
 
     protected Graph graph;
     protected WeightCalculation weightCalc = ShortestCarCalc.DEFAULT;
+    protected PrecomputedWeights weights;
 
     public AbstractRoutingAlgorithm(Graph graph) {
         this.graph = graph;
@@ -37,12 +40,42 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm {
 
     @Override public RoutingAlgorithm type(WeightCalculation wc) {
         this.weightCalc = wc;
+        if (weights != null && weights.weightCalculation() != wc)
+            weights = null;
         return this;
     }
 
+    /**
+     * Reads the edge weights from the specified precomputed weights instead of
+     * calculating them on every relaxation. This also sets their weight
+     * calculation.
+     */
+    public AbstractRoutingAlgorithm weights(PrecomputedWeights weights) {
+        this.weights = weights;
+        if (weights != null)
+            this.weightCalc = weights.weightCalculation();
+        return this;
+    }
+
+    /**
+     * @return the weight of the current edge of the specified iterator
+     */
+    protected final double calcWeight(EdgeIterator iter) {
+        if (weights != null)
+            return weights.weight(iter.edge());
+        return weightCalc.getWeight(iter.distance(), iter.flags());
+    }
+
     protected void updateShortest(EdgeEntry shortestDE, int currLoc) {
     }
 
+    /**
+     * Called from algorithms using a SearchState if the weight of the
+     * specified node was improved.
+     */
+    protected void updateShortest(int node, double weight) {
+    }
+
     @Override public RoutingAlgorithm clear() {
         return this;
     }
@@ -0,0 +1,118 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.EdgeIterator;
+import java.util.Arrays;
+
+/**
+ * Prunes edge based searches: it keeps the two smallest weights of the
+ * arrivals via different edges per node. At a node without turn costs an
+ * arrival via a third edge which is not smaller than both is dominated. Only
+ * the u-turn over its own edge is forbidden, so one of the two other
+ * arrivals can continue into every edge with a smaller or equal weight.
+ *
+ * A stamp per node marks the entries of the current search, so reset is
+ * O(1).
+ *
+ * @author Peter Karich
+ */
+class BestArrivals {
+
+    private int stamp = 1;
+    private int[] stamps;
+    private int[] edges1;
+    private int[] edges2;
+    private double[] weights1;
+    private double[] weights2;
+
+    BestArrivals(int nodes) {
+        nodes = Math.max(10, nodes);
+        stamps = new int[nodes];
+        edges1 = new int[nodes];
+        edges2 = new int[nodes];
+        weights1 = new double[nodes];
+        weights2 = new double[nodes];
+    }
+
+    void reset() {
+        stamp++;
+        if (stamp < 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * @return true if the arrival at the node via the edge with the specified
+     * weight needs no expansion
+     */
+    boolean isDominated(int node, int edge, double weight, TurnCostStorage turnCosts) {
+        if (node >= stamps.length || stamps[node] != stamp || edge == edges1[node] || edge == edges2[node])
+            return false;
+        return weights2[node] <= weight && (turnCosts == null || !turnCosts.isViaNode(node));
+    }
+
+    /**
+     * @return the only edge which the expansion of the arrival via the
+     * specified edge needs to relax or NO_EDGE for all edges. The best arrival
+     * continues into all edges except its own with a smaller weight, so the
+     * second best only needs to turn into the edge of the best.
+     */
+    int onlyEdge(int node, int edge, TurnCostStorage turnCosts) {
+        if (node >= stamps.length || stamps[node] != stamp || edge == edges1[node]
+                || turnCosts != null && turnCosts.isViaNode(node))
+            return EdgeIterator.NO_EDGE;
+        return edges1[node];
+    }
+
+    /**
+     * Records the new or decreased weight of the arrival at the node via the
+     * edge.
+     */
+    void update(int node, int edge, double weight) {
+        if (node >= stamps.length) {
+            int len = Math.max(node + 1, stamps.length * 3 / 2);
+            stamps = Arrays.copyOf(stamps, len);
+            edges1 = Arrays.copyOf(edges1, len);
+            edges2 = Arrays.copyOf(edges2, len);
+            weights1 = Arrays.copyOf(weights1, len);
+            weights2 = Arrays.copyOf(weights2, len);
+        }
+        if (stamps[node] != stamp) {
+            stamps[node] = stamp;
+            edges1[node] = edge;
+            weights1[node] = weight;
+            edges2[node] = EdgeIterator.NO_EDGE;
+            weights2[node] = Double.MAX_VALUE;
+        } else if (edge == edges1[node]) {
+            weights1[node] = weight;
+        } else if (weight < weights1[node]) {
+            // the previous best moves to the second slot, also if it replaces the edge of this slot
+            edges2[node] = edges1[node];
+            weights2[node] = weights1[node];
+            edges1[node] = edge;
+            weights1[node] = weight;
+        } else if (edge == edges2[node] || weight < weights2[node]) {
+            edges2[node] = edge;
+            weights2[node] = weight;
+        }
+    }
+}
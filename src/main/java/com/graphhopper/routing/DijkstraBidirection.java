@@ -18,9 +18,9 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.coll.IntDoubleIndexedHeap;
 import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
+import com.graphhopper.coll.MyVersionedBitSet;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeWrapper;
@@ -53,22 +53,22 @@ public class DijkstraBidirection extends AbstractRoutingAlgorithm {
     protected PathBidir shortest;
     protected EdgeWrapper wrapperOther;
     private MyBitSet visitedFrom;
-    private IntDoubleBinHeap openSetFrom;
+    private IntDoubleIndexedHeap openSetFrom;
     private EdgeWrapper wrapperFrom;
     private MyBitSet visitedTo;
-    private IntDoubleBinHeap openSetTo;
+    private IntDoubleIndexedHeap openSetTo;
     private EdgeWrapper wrapperTo;
     private boolean alreadyRun;
 
     public DijkstraBidirection(Graph graph) {
         super(graph);
         int locs = Math.max(20, graph.nodes());
-        visitedFrom = new MyBitSetImpl(locs);
-        openSetFrom = new IntDoubleBinHeap(locs / 10);
+        visitedFrom = new MyVersionedBitSet(locs);
+        openSetFrom = new IntDoubleIndexedHeap(locs / 10, locs / 10);
         wrapperFrom = new EdgeWrapper(locs / 10);
 
-        visitedTo = new MyBitSetImpl(locs);
-        openSetTo = new IntDoubleBinHeap(locs / 10);
+        visitedTo = new MyVersionedBitSet(locs);
+        openSetTo = new IntDoubleIndexedHeap(locs / 10, locs / 10);
         wrapperTo = new EdgeWrapper(locs / 10);
     }
 
@@ -146,7 +146,7 @@ public class DijkstraBidirection extends AbstractRoutingAlgorithm {
     }
 
     void fillEdges(int currNode, double currWeight, int currRef, MyBitSet visitedMain,
-            IntDoubleBinHeap prioQueue, EdgeWrapper wrapper, boolean out) {
+            IntDoubleIndexedHeap prioQueue, EdgeWrapper wrapper, boolean out) {
 
         EdgeIterator iter = GraphUtility.getEdges(graph, currNode, out);
         while (iter.next()) {
@@ -154,7 +154,7 @@ public class DijkstraBidirection extends AbstractRoutingAlgorithm {
             if (visitedMain.contains(neighborNode))
                 continue;
 
-            double tmpWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + currWeight;
+            double tmpWeight = calcWeight(iter) + currWeight;
             int newRef = wrapper.getRef(neighborNode);
             if (newRef < 0) {
                 newRef = wrapper.add(neighborNode, tmpWeight, iter.edge());
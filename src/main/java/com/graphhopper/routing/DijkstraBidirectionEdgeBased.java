@@ -0,0 +1,270 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+import java.util.Arrays;
+
+/**
+ * An edge based version of DijkstraBidirectionRef which considers turn costs
+ * and turn restrictions. Both shortest-path-trees store directed edges (in
+ * travel direction) instead of nodes. The two searches meet at a node: when
+ * an entry arriving at node v is updated in the forward search every entry of
+ * the backward search leaving v is a candidate for the shortest path, and
+ * vice versa. Immediate u-turns on the same edge are not allowed.
+ *
+ * The weight of the returned path includes the turn costs but its distance
+ * and time do not.
+ *
+ * Both trees are kept in SearchStates indexed by the edge keys, the parent of
+ * a key is the key of the previous edge in search direction. So call clear and
+ * reuse an instance for several queries. Dominated arrivals are not expanded,
+ * see BestArrivals.
+ *
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionEdgeBased extends AbstractRoutingAlgorithm {
+
+    private int from, to;
+    private final SearchState stateFrom;
+    private final SearchState stateTo;
+    private final BestArrivals arrivalsFrom;
+    private final BestArrivals arrivalsTo;
+    // the end node in search direction of every reached edge key
+    private int[] adjNodesFrom;
+    private int[] adjNodesTo;
+    // marks the nodes reached by a search to skip the meeting check for most nodes
+    private final int[] reachedFrom;
+    private final int[] reachedTo;
+    private int stamp;
+    private double shortestWeight;
+    private int shortestKeyFrom;
+    private int shortestKeyTo;
+    private int meetingNode;
+    private TurnCostStorage turnCosts;
+    private boolean alreadyRun;
+
+    public DijkstraBidirectionEdgeBased(Graph graph) {
+        super(graph);
+        int nodes = Math.max(10, graph.nodes());
+        // road networks have roughly 1.5 edges per node and two directions per edge
+        stateFrom = new SearchState(nodes * 3);
+        stateTo = new SearchState(nodes * 3);
+        arrivalsFrom = new BestArrivals(nodes);
+        arrivalsTo = new BestArrivals(nodes);
+        adjNodesFrom = new int[nodes * 3];
+        adjNodesTo = new int[nodes * 3];
+        reachedFrom = new int[nodes];
+        reachedTo = new int[nodes];
+    }
+
+    /**
+     * @param turnCosts the turn costs and restrictions to consider or null
+     */
+    public DijkstraBidirectionEdgeBased turnCosts(TurnCostStorage turnCosts) {
+        this.turnCosts = turnCosts;
+        return this;
+    }
+
+    @Override
+    public RoutingAlgorithm clear() {
+        alreadyRun = false;
+        stateFrom.reset();
+        stateTo.reset();
+        arrivalsFrom.reset();
+        arrivalsTo.reset();
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        if (alreadyRun)
+            throw new IllegalStateException("Call clear before! But this class is not thread safe!");
+        alreadyRun = true;
+        if (from == to)
+            return new Path(graph, weightCalc);
+
+        this.from = from;
+        this.to = to;
+        stamp++;
+        if (stamp < 0) {
+            Arrays.fill(reachedFrom, 0);
+            Arrays.fill(reachedTo, 0);
+            stamp = 1;
+        }
+        shortestWeight = Double.MAX_VALUE;
+        meetingNode = -1;
+        reach(reachedFrom, from);
+        reach(reachedTo, to);
+        // the start nodes have no edge key
+        fillEdges(-1, from, true);
+        fillEdges(-1, to, false);
+        while (true) {
+            boolean emptyFrom = stateFrom.isEmpty();
+            boolean emptyTo = stateTo.isEmpty();
+            if (emptyFrom && emptyTo)
+                break;
+            // the exhausted search cannot improve the shortest path anymore
+            double minFrom = emptyFrom ? 0 : stateFrom.peekKey();
+            double minTo = emptyTo ? 0 : stateTo.peekKey();
+            if (minFrom + minTo >= shortestWeight)
+                break;
+
+            if (!emptyFrom && (emptyTo || minFrom <= minTo)) {
+                int key = stateFrom.pollMin();
+                if (!arrivalsFrom.isDominated(adjNodesFrom[key], key >> 1, stateFrom.weight(key), turnCosts))
+                    fillEdges(key, adjNodesFrom[key], true);
+            } else {
+                int key = stateTo.pollMin();
+                if (!arrivalsTo.isDominated(adjNodesTo[key], key >> 1, stateTo.weight(key), turnCosts))
+                    fillEdges(key, adjNodesTo[key], false);
+            }
+        }
+
+        if (meetingNode < 0)
+            return new Path(graph, weightCalc);
+        Path path = new Path(graph, weightCalc).extractEdgeBased(stateFrom, shortestKeyFrom,
+                stateTo, shortestKeyTo, meetingNode);
+        // extract sums up the edge weights only
+        path.weight(shortestWeight);
+        return path;
+    }
+
+    void fillEdges(int currKey, int currNode, boolean out) {
+        SearchState state = out ? stateFrom : stateTo;
+        int currEdge = currKey < 0 ? EdgeIterator.NO_EDGE : state.parentEdge(currKey);
+        double currWeight = currKey < 0 ? 0 : state.weight(currKey);
+        BestArrivals arrivals = out ? arrivalsFrom : arrivalsTo;
+        int onlyEdge = currKey < 0 ? EdgeIterator.NO_EDGE : arrivals.onlyEdge(currNode, currEdge, turnCosts);
+        EdgeIterator iter = GraphUtility.getEdges(graph, currNode, out);
+        while (iter.next()) {
+            // no u-turn
+            if (iter.edge() == currEdge || onlyEdge != EdgeIterator.NO_EDGE && iter.edge() != onlyEdge)
+                continue;
+
+            int neighborNode = iter.node();
+            int key;
+            double turnCost;
+            if (out) {
+                key = GraphUtility.createEdgeKey(iter.edge(), currNode, neighborNode);
+                turnCost = calcTurnCost(currNode, currEdge, iter.edge());
+            } else {
+                key = GraphUtility.createEdgeKey(iter.edge(), neighborNode, currNode);
+                turnCost = calcTurnCost(currNode, iter.edge(), currEdge);
+            }
+            if (turnCost == TurnCostStorage.FORBIDDEN)
+                continue;
+
+            double tmpWeight = calcWeight(iter) + turnCost + currWeight;
+            if (arrivals.isDominated(neighborNode, iter.edge(), tmpWeight, turnCosts)
+                    || !state.update(key, tmpWeight, iter.edge(), currKey, tmpWeight))
+                continue;
+
+            arrivals.update(neighborNode, iter.edge(), tmpWeight);
+            if (out) {
+                adjNodesFrom = set(adjNodesFrom, key, neighborNode);
+                reach(reachedFrom, neighborNode);
+            } else {
+                adjNodesTo = set(adjNodesTo, key, neighborNode);
+                reach(reachedTo, neighborNode);
+            }
+            updateShortest(key, neighborNode, tmpWeight, out);
+        }
+    }
+
+    /**
+     * Combines the specified entry with all entries of the other search which
+     * continue at its end node.
+     */
+    void updateShortest(int key, int node, double weight, boolean out) {
+        int edge = key >> 1;
+        if (out) {
+            if (!isReached(reachedTo, node))
+                return;
+            if (node == to)
+                updateShortest(key, -1, node, weight);
+            EdgeIterator iter = graph.getOutgoing(node);
+            while (iter.next()) {
+                if (iter.edge() == edge)
+                    continue;
+                int keyOther = GraphUtility.createEdgeKey(iter.edge(), node, iter.node());
+                if (stateTo.isReached(keyOther))
+                    updateShortest(key, keyOther, node,
+                            weight + calcTurnCost(node, edge, iter.edge()) + stateTo.weight(keyOther));
+            }
+        } else {
+            if (!isReached(reachedFrom, node))
+                return;
+            if (node == from)
+                updateShortest(-1, key, node, weight);
+            EdgeIterator iter = graph.getIncoming(node);
+            while (iter.next()) {
+                if (iter.edge() == edge)
+                    continue;
+                int keyOther = GraphUtility.createEdgeKey(iter.edge(), iter.node(), node);
+                if (stateFrom.isReached(keyOther))
+                    updateShortest(keyOther, key, node,
+                            stateFrom.weight(keyOther) + calcTurnCost(node, iter.edge(), edge) + weight);
+            }
+        }
+    }
+
+    private void updateShortest(int keyFrom, int keyTo, int node, double newShortest) {
+        // update μ
+        if (newShortest < shortestWeight) {
+            shortestWeight = newShortest;
+            shortestKeyFrom = keyFrom;
+            shortestKeyTo = keyTo;
+            meetingNode = node;
+        }
+    }
+
+    private void reach(int[] reached, int node) {
+        if (node < reached.length)
+            reached[node] = stamp;
+    }
+
+    private boolean isReached(int[] reached, int node) {
+        return node < reached.length && reached[node] == stamp;
+    }
+
+    private static int[] set(int[] array, int index, int value) {
+        if (index >= array.length)
+            array = Arrays.copyOf(array, Math.max(index + 1, array.length * 3 / 2));
+        array[index] = value;
+        return array;
+    }
+
+    double calcTurnCost(int viaNode, int fromEdge, int toEdge) {
+        if (turnCosts == null || !EdgeIterator.Edge.isValid(fromEdge) || !EdgeIterator.Edge.isValid(toEdge))
+            return 0;
+        return turnCosts.turnCost(viaNode, fromEdge, toEdge);
+    }
+
+    @Override
+    public int calcVisitedNodes() {
+        return stateFrom.settledNodes() + stateTo.settledNodes();
+    }
+
+    @Override public String name() {
+        return "dijkstrabiedge";
+    }
+}
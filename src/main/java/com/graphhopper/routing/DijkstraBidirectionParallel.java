@@ -0,0 +1,285 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleIndexedHeap;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bidirectional Dijkstra where the forward search runs on the calling thread
+ * and the backward search concurrently on a second thread. This roughly halves
+ * the latency of long queries if a spare core is available.
+ *
+ * The directions share only the best meeting point, which is replaced via
+ * compare-and-set, and the key of their last processed node. A direction
+ * stops if its smallest key plus the key of the other direction reaches the
+ * best weight. After every node a direction publishes its key and then
+ * checks the node and its neighbors against the weights of the other
+ * direction. The volatile key makes the weights written before visible, so
+ * for every edge of the shortest path at least one of both directions sees
+ * the other one. The weights of a search only decrease and are reset to
+ * infinity afterwards, so a concurrent read returns the weight of an existing
+ * path or infinity.
+ *
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionParallel extends AbstractRoutingAlgorithm {
+
+    private static ExecutorService defaultExecutor;
+    private ExecutorService executor;
+    private final Direction dirFrom;
+    private final Direction dirTo;
+    private final AtomicReference<Meeting> best = new AtomicReference<Meeting>();
+    private boolean alreadyRun;
+
+    public DijkstraBidirectionParallel(Graph graph) {
+        super(graph);
+        int nodes = Math.max(10, graph.nodes());
+        dirFrom = new Direction(nodes, true);
+        dirTo = new Direction(nodes, false);
+    }
+
+    /**
+     * The executor for the backward search. Default is a shared pool of
+     * daemon threads.
+     */
+    public DijkstraBidirectionParallel executor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    private static synchronized ExecutorService defaultExecutor() {
+        if (defaultExecutor == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            defaultExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "graphhopper-bidir-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+
+    @Override
+    public RoutingAlgorithm clear() {
+        alreadyRun = false;
+        dirFrom.reset();
+        dirTo.reset();
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        if (alreadyRun)
+            throw new IllegalStateException("Call clear before! But this class is not thread safe!");
+        alreadyRun = true;
+        Path path = new Path(graph, weightCalc);
+        if (from == to)
+            return path.fromNode(from).found(true);
+
+        best.set(new Meeting(Double.MAX_VALUE, -1));
+        dirFrom.start(from);
+        dirTo.start(to);
+        ExecutorService tmpExecutor = executor == null ? defaultExecutor() : executor;
+        Future<?> future = tmpExecutor.submit(dirTo);
+        try {
+            dirFrom.run();
+        } finally {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+
+        int meetingNode = best.get().node;
+        if (meetingNode < 0)
+            return path;
+        return extract(path, meetingNode);
+    }
+
+    private Path extract(Path path, int meetingNode) {
+        int node = meetingNode;
+        int edge = dirFrom.parentEdges[node];
+        while (EdgeIterator.Edge.isValid(edge)) {
+            path.processWeight(edge, node);
+            node = dirFrom.parentNodes[node];
+            edge = dirFrom.parentEdges[node];
+        }
+        path.fromNode(node);
+        path.reverseOrder();
+
+        node = meetingNode;
+        edge = dirTo.parentEdges[node];
+        while (EdgeIterator.Edge.isValid(edge)) {
+            node = dirTo.parentNodes[node];
+            path.processWeight(edge, node);
+            edge = dirTo.parentEdges[node];
+        }
+        return path.found(true);
+    }
+
+    private void updateBest(double weight, int node) {
+        while (true) {
+            Meeting curr = best.get();
+            if (weight >= curr.weight || best.compareAndSet(curr, new Meeting(weight, node)))
+                return;
+        }
+    }
+
+    @Override public String name() {
+        return "dijkstrabiParallel";
+    }
+
+    @Override
+    public int calcVisitedNodes() {
+        return dirFrom.settledNodes + dirTo.settledNodes;
+    }
+
+    private static class Meeting {
+
+        final double weight;
+        final int node;
+
+        Meeting(double weight, int node) {
+            this.weight = weight;
+            this.node = node;
+        }
+    }
+
+    /**
+     * The state of one search direction. Only weights and key are read by the
+     * other direction.
+     */
+    private class Direction implements Runnable {
+
+        private final boolean out;
+        private final IntDoubleIndexedHeap heap;
+        private final double[] weights;
+        private final int[] parentEdges;
+        private final int[] parentNodes;
+        private final boolean[] settled;
+        private final TIntArrayList reachedNodes = new TIntArrayList();
+        private final TIntArrayList neighbors = new TIntArrayList();
+        private volatile double key;
+        private int settledNodes;
+
+        Direction(int nodes, boolean out) {
+            this.out = out;
+            heap = new IntDoubleIndexedHeap(Math.max(10, nodes / 100), nodes);
+            weights = new double[nodes];
+            Arrays.fill(weights, Double.POSITIVE_INFINITY);
+            parentEdges = new int[nodes];
+            parentNodes = new int[nodes];
+            settled = new boolean[nodes];
+        }
+
+        void reset() {
+            for (int i = 0; i < reachedNodes.size(); i++) {
+                int node = reachedNodes.get(i);
+                weights[node] = Double.POSITIVE_INFINITY;
+                settled[node] = false;
+            }
+            reachedNodes.resetQuick();
+            heap.clear();
+            settledNodes = 0;
+            key = 0;
+        }
+
+        void start(int node) {
+            reset();
+            weights[node] = 0;
+            parentEdges[node] = EdgeIterator.NO_EDGE;
+            parentNodes[node] = -1;
+            reachedNodes.add(node);
+            heap.insertOrUpdate(0, node);
+        }
+
+        @Override public void run() {
+            Direction other = out ? dirTo : dirFrom;
+            int node = -1;
+            while (true) {
+                // reading the key of the other direction makes its weights visible
+                double otherKey = other.key;
+                if (node >= 0) {
+                    check(node, other);
+                    for (int i = 0; i < neighbors.size(); i++) {
+                        check(neighbors.get(i), other);
+                    }
+                }
+
+                if (heap.isEmpty()) {
+                    key = Double.POSITIVE_INFINITY;
+                    return;
+                }
+                double minKey = heap.peek_key();
+                if (minKey + otherKey >= best.get().weight) {
+                    // all nodes below minKey are processed
+                    key = minKey;
+                    return;
+                }
+
+                node = heap.poll_element();
+                settled[node] = true;
+                settledNodes++;
+                double currWeight = weights[node];
+                neighbors.resetQuick();
+                EdgeIterator iter = GraphUtility.getEdges(graph, node, out);
+                while (iter.next()) {
+                    int tmpNode = iter.node();
+                    if (settled[tmpNode])
+                        continue;
+                    double tmpWeight = calcWeight(iter) + currWeight;
+                    if (tmpWeight >= weights[tmpNode])
+                        continue;
+                    if (weights[tmpNode] == Double.POSITIVE_INFINITY)
+                        reachedNodes.add(tmpNode);
+                    weights[tmpNode] = tmpWeight;
+                    parentEdges[tmpNode] = iter.edge();
+                    parentNodes[tmpNode] = node;
+                    heap.insertOrUpdate(tmpWeight, tmpNode);
+                    neighbors.add(tmpNode);
+                }
+                // publish the new weights before the next read of the other key
+                key = currWeight;
+            }
+        }
+
+        private void check(int node, Direction other) {
+            double otherWeight = other.weights[node];
+            if (otherWeight != Double.POSITIVE_INFINITY)
+                updateBest(weights[node] + otherWeight, node);
+        }
+    }
+}
@@ -18,22 +18,17 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyBitSetImpl;
 import com.graphhopper.routing.util.EdgeLevelFilter;
-import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GraphUtility;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * Calculates extractPath path in bidirectional way.
  *
- * 'Ref' stands for reference implementation and is using the normal
- * Java-'reference'-way.
+ * 'Ref' stands for reference implementation. The shortest-path-trees of both
+ * directions are kept in a SearchState so reuse an instance for several
+ * queries.
  *
  * @see DijkstraBidirection for an optimized but more complicated version
  * @author Peter Karich,
@@ -41,18 +36,17 @@ import java.util.PriorityQueue;
 public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
 
     private int from, to;
-    private MyBitSet visitedFrom;
-    private PriorityQueue<EdgeEntry> openSetFrom;
-    private TIntObjectMap<EdgeEntry> shortestWeightMapFrom;
-    private MyBitSet visitedTo;
-    private PriorityQueue<EdgeEntry> openSetTo;
-    private TIntObjectMap<EdgeEntry> shortestWeightMapTo;
+    protected SearchState stateFrom;
+    protected SearchState stateTo;
     private boolean alreadyRun;
-    protected EdgeEntry currFrom;
-    protected EdgeEntry currTo;
-    protected TIntObjectMap<EdgeEntry> shortestWeightMapOther;
+    // the current node of the forward and backward search or -1 if the search is finished
+    protected int currFrom;
+    protected int currTo;
+    protected SearchState stateOther;
     public PathBidirRef shortest;
+    private int meetingNode;
     private EdgeLevelFilter edgeFilter;
+    private boolean pruning;
 
     public DijkstraBidirectionRef(Graph graph) {
         super(graph);
@@ -61,13 +55,8 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
     }
 
     protected void initCollections(int nodes) {
-        visitedFrom = new MyBitSetImpl(nodes);
-        openSetFrom = new PriorityQueue<EdgeEntry>(nodes / 10);
-        shortestWeightMapFrom = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
-
-        visitedTo = new MyBitSetImpl(nodes);
-        openSetTo = new PriorityQueue<EdgeEntry>(nodes / 10);
-        shortestWeightMapTo = new TIntObjectHashMap<EdgeEntry>(nodes / 10);
+        stateFrom = new SearchState(nodes);
+        stateTo = new SearchState(nodes);
     }
 
     public RoutingAlgorithm edgeFilter(EdgeLevelFilter edgeFilter) {
@@ -79,37 +68,40 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
         return edgeFilter;
     }
 
+    /**
+     * @param pruning if true nodes are not added to the queue if their weight
+     * is not smaller than the weight of the best path found so far. The found
+     * path is the same.
+     */
+    public DijkstraBidirectionRef pruning(boolean pruning) {
+        this.pruning = pruning;
+        return this;
+    }
+
     @Override
     public RoutingAlgorithm clear() {
         alreadyRun = false;
-        visitedFrom.clear();
-        openSetFrom.clear();
-        shortestWeightMapFrom.clear();
-
-        visitedTo.clear();
-        openSetTo.clear();
-        shortestWeightMapTo.clear();
+        stateFrom.reset();
+        stateTo.reset();
         return this;
     }
 
     void addSkipNode(int node) {
-        visitedFrom.add(node);
-        visitedTo.add(node);
+        stateFrom.skip(node);
+        stateTo.skip(node);
     }
 
     public DijkstraBidirectionRef initFrom(int from) {
         this.from = from;
-        currFrom = new EdgeEntry(EdgeIterator.NO_EDGE, from, 0);
-        shortestWeightMapFrom.put(from, currFrom);
-        visitedFrom.add(from);
+        currFrom = from;
+        stateFrom.start(from);
         return this;
     }
 
     public DijkstraBidirectionRef initTo(int to) {
         this.to = to;
-        currTo = new EdgeEntry(EdgeIterator.NO_EDGE, to, 0);
-        shortestWeightMapTo.put(to, currTo);
-        visitedTo.add(to);
+        currTo = to;
+        stateTo.start(to);
         return this;
     }
 
@@ -140,7 +132,23 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
     }
 
     public Path extractPath() {
-        return shortest.extract();
+        if (meetingNode < 0)
+            return shortest.extract();
+        return shortest.extract(stateFrom, stateTo, meetingNode);
+    }
+
+    /**
+     * @return the weight of the current node of the forward search
+     */
+    protected double currFromWeight() {
+        return stateFrom.weight(currFrom);
+    }
+
+    /**
+     * @return the weight of the current node of the backward search
+     */
+    protected double currToWeight() {
+        return stateTo.weight(currTo);
     }
 
     // http://www.cs.princeton.edu/courses/archive/spr06/cos423/Handouts/EPP%20shortest%20path%20algorithms.pdf
@@ -148,93 +156,83 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
     // => when scanning an arc (v, w) in the forward search and w is scanned in the reverseOrder 
     //    search, update extractPath = μ if df (v) + (v, w) + dr (w) < μ            
     public boolean checkFinishCondition() {
-        if (currFrom == null)
-            return currTo.weight >= shortest.weight;
-        else if (currTo == null)
-            return currFrom.weight >= shortest.weight;
-        return currFrom.weight + currTo.weight >= shortest.weight;
+        if (currFrom < 0)
+            return currToWeight() >= shortest.weight;
+        else if (currTo < 0)
+            return currFromWeight() >= shortest.weight;
+        return currFromWeight() + currToWeight() >= shortest.weight;
     }
 
-    void fillEdges(EdgeEntry curr, MyBitSet visitedMain, PriorityQueue<EdgeEntry> prioQueue,
-            TIntObjectMap<EdgeEntry> shortestWeightMap, boolean out) {
+    void fillEdges(int currNode, SearchState state, boolean out) {
+        double currWeight = state.weight(currNode);
+        if (isStalled(currNode, currWeight, out))
+            return;
 
-        int currNodeFrom = curr.endNode;
-        EdgeIterator iter = GraphUtility.getEdges(graph, currNodeFrom, out);
+        EdgeIterator iter = GraphUtility.getEdges(graph, currNode, out);
         if (edgeFilter != null)
             iter = edgeFilter.doFilter(iter);
 
         while (iter.next()) {
             int neighborNode = iter.node();
-            if (visitedMain.contains(neighborNode))
+            double tmpWeight = calcWeight(iter) + currWeight;
+            if (pruning && tmpWeight >= shortest.weight)
                 continue;
 
-            double tmpWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + curr.weight;
-            EdgeEntry de = shortestWeightMap.get(neighborNode);
-            if (de == null) {
-                de = new EdgeEntry(iter.edge(), neighborNode, tmpWeight);
-                de.parent = curr;
-                shortestWeightMap.put(neighborNode, de);
-                prioQueue.add(de);
-            } else if (de.weight > tmpWeight) {
-                prioQueue.remove(de);
-                de.edge = iter.edge();
-                de.weight = tmpWeight;
-                de.parent = curr;
-                prioQueue.add(de);
-            }
-
-            updateShortest(de, neighborNode);
+            // settled nodes and nodes with a smaller weight are not updated
+            if (state.update(neighborNode, tmpWeight, iter.edge(), currNode, tmpWeight))
+                updateShortest(neighborNode, tmpWeight);
         }
     }
 
     @Override
-    protected void updateShortest(EdgeEntry shortestDE, int currLoc) {
-        EdgeEntry entryOther = shortestWeightMapOther.get(currLoc);
-        if (entryOther == null)
+    protected void updateShortest(int node, double weight) {
+        if (!stateOther.isReached(node))
             return;
 
         // update μ
-        double newShortest = shortestDE.weight + entryOther.weight;
-        if (newShortest < shortest.weight) {
-            shortest.switchToFrom(shortestWeightMapFrom == shortestWeightMapOther);
-            shortest.edgeEntry = shortestDE;
-            shortest.edgeTo = entryOther;
-            shortest.weight = newShortest;
-        }
+        double newShortest = weight + stateOther.weight(node);
+        if (newShortest < shortest.weight)
+            meetingNode(node, newShortest);
+    }
+
+    /**
+     * Stores the best path found so far which meets at the specified node.
+     */
+    protected void meetingNode(int node, double weight) {
+        meetingNode = node;
+        shortest.weight = weight;
     }
 
     public boolean fillEdgesFrom() {
-        if (currFrom != null) {
-            shortestWeightMapOther = shortestWeightMapTo;
-            fillEdges(currFrom, visitedFrom, openSetFrom, shortestWeightMapFrom, true);
-            if (openSetFrom.isEmpty()) {
-                currFrom = null;
+        if (currFrom >= 0) {
+            stateOther = stateTo;
+            fillEdges(currFrom, stateFrom, true);
+            if (stateFrom.isEmpty()) {
+                currFrom = -1;
                 return false;
             }
 
-            currFrom = openSetFrom.poll();
+            currFrom = stateFrom.pollMin();
             if (checkFinishCondition())
                 return false;
-            visitedFrom.add(currFrom.endNode);
-        } else if (currTo == null)
+        } else if (currTo < 0)
             return false;
         return true;
     }
 
     public boolean fillEdgesTo() {
-        if (currTo != null) {
-            shortestWeightMapOther = shortestWeightMapFrom;
-            fillEdges(currTo, visitedTo, openSetTo, shortestWeightMapTo, false);
-            if (openSetTo.isEmpty()) {
-                currTo = null;
+        if (currTo >= 0) {
+            stateOther = stateFrom;
+            fillEdges(currTo, stateTo, false);
+            if (stateTo.isEmpty()) {
+                currTo = -1;
                 return false;
             }
 
-            currTo = openSetTo.poll();
+            currTo = stateTo.pollMin();
             if (checkFinishCondition())
                 return false;
-            visitedTo.add(currTo.endNode);
-        } else if (currFrom == null)
+        } else if (currFrom < 0)
             return false;
         return true;
     }
@@ -245,12 +243,24 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
         return null;
     }
 
-    public EdgeEntry shortestWeightFrom(int nodeId) {
-        return shortestWeightMapFrom.get(nodeId);
+    /**
+     * Called before the edges of a node are relaxed. Used for the
+     * stall-on-demand of contraction hierarchies.
+     *
+     * @param out true for the forward search
+     * @return true if the edges of the specified node should be skipped
+     * because its weight cannot be optimal
+     */
+    protected boolean isStalled(int node, double weight, boolean out) {
+        return false;
     }
 
-    public EdgeEntry shortestWeightTo(int nodeId) {
-        return shortestWeightMapTo.get(nodeId);
+    /**
+     * @return the current weight of the specified node in the forward (out)
+     * or backward search or Double.MAX_VALUE if not reached
+     */
+    public double reachedWeight(int node, boolean out) {
+        return out ? stateFrom.weight(node) : stateTo.weight(node);
     }
 
     protected PathBidirRef createPath() {
@@ -259,6 +269,7 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
 
     public DijkstraBidirectionRef initPath() {
         shortest = createPath();
+        meetingNode = -1;
         return this;
     }
 
@@ -267,7 +278,7 @@ public class DijkstraBidirectionRef extends AbstractRoutingAlgorithm {
      */
     @Override
     public int calcVisitedNodes() {
-        return visitedFrom.cardinality() + visitedTo.cardinality();
+        return stateFrom.settledNodes() + stateTo.settledNodes();
     }
 
     @Override public String name() {
@@ -0,0 +1,128 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+
+/**
+ * Finds all nodes which are reachable from a start node within a limit of
+ * weight, distance or time, e.g. for service areas or isochrones. The search
+ * has no target and stops as soon as the smallest weight in the queue exceeds
+ * the weight limit. A node exceeding the distance or time limit is settled but
+ * not expanded, so the search ends once the queue runs empty.
+ *
+ * The distance and time limits are checked against the path with the lowest
+ * weight, e.g. use FastestCarCalc for time limits.
+ *
+ * @see Isochrone
+ * @author Peter Karich
+ */
+public class DijkstraOneToAll extends DijkstraSimple {
+
+    private double weightLimit = Double.MAX_VALUE;
+    private double distanceLimit = Double.MAX_VALUE;
+    private long timeLimit = Long.MAX_VALUE;
+    // the distance and time of the settled nodes of the current search
+    private double[] distances;
+    private long[] times;
+    private ReachableNodes reachable;
+
+    public DijkstraOneToAll(Graph graph) {
+        super(graph);
+        distances = new double[graph.nodes()];
+        times = new long[graph.nodes()];
+    }
+
+    /**
+     * @param weight the maximum weight in the unit of the weight calculation
+     */
+    public DijkstraOneToAll weightLimit(double weight) {
+        weightLimit = weight;
+        return this;
+    }
+
+    /**
+     * @param distance the maximum distance in meter
+     */
+    public DijkstraOneToAll distanceLimit(double distance) {
+        distanceLimit = distance;
+        return this;
+    }
+
+    /**
+     * @param seconds the maximum time in seconds
+     */
+    public DijkstraOneToAll timeLimit(long seconds) {
+        timeLimit = seconds;
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        throw new IllegalArgumentException("call calcReachable instead");
+    }
+
+    /**
+     * @return all nodes within the limits ordered by their weight
+     */
+    public ReachableNodes calcReachable(int from) {
+        reachable = new ReachableNodes(from, 100);
+        super.calcPath(from, -1);
+        ReachableNodes tmp = reachable;
+        reachable = null;
+        return tmp;
+    }
+
+    @Override
+    protected EdgeIterator neighbors(int node) {
+        // the node is settled, so the distance and time of its parent are final
+        int parentEdge = state.parentEdge(node);
+        if (EdgeIterator.Edge.isValid(parentEdge)) {
+            int parentNode = state.parentNode(node);
+            EdgeIterator iter = graph.getEdgeProps(parentEdge, node);
+            distances[node] = distances[parentNode] + iter.distance();
+            times[node] = times[parentNode] + weightCalc.getTime(iter.distance(), iter.flags());
+        } else {
+            distances[node] = 0;
+            times[node] = 0;
+        }
+
+        if (!isWithinLimits(node))
+            return GraphUtility.EMPTY;
+        return super.neighbors(node);
+    }
+
+    private boolean isWithinLimits(int node) {
+        return state.weight(node) <= weightLimit && distances[node] <= distanceLimit && times[node] <= timeLimit;
+    }
+
+    @Override
+    protected boolean finished(int currNode, int _ignoreTo) {
+        if (state.weight(currNode) > weightLimit)
+            return true;
+        if (isWithinLimits(currNode))
+            reachable.add(currNode, state.weight(currNode), distances[currNode], times[currNode]);
+        return false;
+    }
+
+    @Override public String name() {
+        return "dijkstraOneToAll";
+    }
+}
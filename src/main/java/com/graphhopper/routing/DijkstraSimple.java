@@ -18,93 +18,68 @@
  */
 package com.graphhopper.routing;
 
-import com.graphhopper.coll.MyBitSet;
-import com.graphhopper.coll.MyTBitSet;
-import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.EdgeIterator;
-import gnu.trove.map.TIntObjectMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * Implements a single source shortest path algorithm
  * http://en.wikipedia.org/wiki/Dijkstra's_algorithm
  *
+ * The shortest-path-tree is kept in a SearchState so reuse an instance for
+ * several queries.
+ *
  * @author Peter Karich,
  */
 public class DijkstraSimple extends AbstractRoutingAlgorithm {
 
-    protected MyBitSet visited = new MyTBitSet();
-    private TIntObjectMap<EdgeEntry> map = new TIntObjectHashMap<EdgeEntry>();
-    private PriorityQueue<EdgeEntry> heap = new PriorityQueue<EdgeEntry>();
+    protected final SearchState state;
 
     public DijkstraSimple(Graph graph) {
         super(graph);
+        state = new SearchState(graph.nodes());
     }
 
     @Override
     public DijkstraSimple clear() {
-        visited.clear();
-        map.clear();
-        heap.clear();
+        state.reset();
         return this;
     }
 
     @Override
     public Path calcPath(int from, int to) {
-        EdgeEntry fromEntry = new EdgeEntry(EdgeIterator.NO_EDGE, from, 0d);
-        visited.add(from);
-        EdgeEntry currEdge = fromEntry;
+        state.reset();
+        state.start(from);
+        int currNode = from;
         while (true) {
-            int neighborNode = currEdge.endNode;
-            EdgeIterator iter = neighbors(neighborNode);
+            double currWeight = state.weight(currNode);
+            EdgeIterator iter = neighbors(currNode);
             while (iter.next()) {
                 int tmpNode = iter.node();
-                if (visited.contains(tmpNode))
-                    continue;
-
-                double tmpWeight = weightCalc.getWeight(iter.distance(), iter.flags()) + currEdge.weight;
-                EdgeEntry nEdge = map.get(tmpNode);
-                if (nEdge == null) {
-                    nEdge = new EdgeEntry(iter.edge(), tmpNode, tmpWeight);
-                    nEdge.parent = currEdge;
-                    map.put(tmpNode, nEdge);
-                    heap.add(nEdge);
-                } else if (nEdge.weight > tmpWeight) {
-                    heap.remove(nEdge);
-                    nEdge.edge = iter.edge();
-                    nEdge.weight = tmpWeight;
-                    nEdge.parent = currEdge;
-                    heap.add(nEdge);
-                }
-
-                updateShortest(nEdge, neighborNode);
+                double tmpWeight = calcWeight(iter) + currWeight;
+                if (state.update(tmpNode, tmpWeight, iter.edge(), currNode, tmpWeight))
+                    updateShortest(tmpNode, tmpWeight);
             }
 
-            visited.add(neighborNode);
-            if (finished(currEdge, to))
+            if (finished(currNode, to))
                 break;
 
-            if (heap.isEmpty())
+            if (state.isEmpty())
                 return new Path();
-            currEdge = heap.poll();
-            if (currEdge == null)
-                throw new AssertionError("cannot happen?");
+            currNode = state.pollMin();
         }
 
-        if (currEdge.endNode != to)
+        if (currNode != to)
             return new Path();
 
-        return extractPath(currEdge);
+        return extractPath(currNode);
     }
 
-    protected boolean finished(EdgeEntry currEdge, int to) {
-        return currEdge.endNode == to;
+    protected boolean finished(int currNode, int to) {
+        return currNode == to;
     }
 
-    public Path extractPath(EdgeEntry goalEdge) {
-        return new Path(graph, weightCalc).edgeEntry(goalEdge).extract();
+    public Path extractPath(int goalNode) {
+        return new Path(graph, weightCalc).extract(state, goalNode);
     }
 
     protected EdgeIterator neighbors(int neighborNode) {
@@ -117,6 +92,6 @@ public class DijkstraSimple extends AbstractRoutingAlgorithm {
 
     @Override
     public int calcVisitedNodes() {
-        return visited.cardinality();
+        return state.settledNodes();
     }
 }
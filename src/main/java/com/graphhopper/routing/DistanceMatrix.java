@@ -0,0 +1,141 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Arrays;
+
+/**
+ * The weights, distances and times between every source and every target of
+ * a many-to-many query. The values are stored row by row (one row per source)
+ * in primitive arrays. Paths are only available if they were requested from
+ * the algorithm.
+ *
+ * @see ManyToManyAlgorithm
+ * @author Peter Karich
+ */
+public class DistanceMatrix {
+
+    private final int sources;
+    private final int targets;
+    private final double[] weights;
+    private final double[] distances;
+    private final long[] times;
+    private Path[] paths;
+
+    public DistanceMatrix(int sources, int targets) {
+        this(sources, targets, false);
+    }
+
+    /**
+     * @param calcPaths if true the matrix stores one path per pair
+     */
+    public DistanceMatrix(int sources, int targets, boolean calcPaths) {
+        this.sources = sources;
+        this.targets = targets;
+        weights = new double[sources * targets];
+        distances = new double[sources * targets];
+        times = new long[sources * targets];
+        Arrays.fill(weights, Double.MAX_VALUE);
+        Arrays.fill(distances, Double.MAX_VALUE);
+        Arrays.fill(times, Long.MAX_VALUE);
+        if (calcPaths)
+            paths = new Path[sources * targets];
+    }
+
+    public int sources() {
+        return sources;
+    }
+
+    public int targets() {
+        return targets;
+    }
+
+    public void set(int source, int target, double weight, double distance, long time) {
+        int index = source * targets + target;
+        weights[index] = weight;
+        distances[index] = distance;
+        times[index] = time;
+    }
+
+    /**
+     * @return true if the specified target is reachable from the source
+     */
+    public boolean found(int source, int target) {
+        return weights[source * targets + target] != Double.MAX_VALUE;
+    }
+
+    /**
+     * @return the weight or Double.MAX_VALUE if not found
+     */
+    public double weight(int source, int target) {
+        return weights[source * targets + target];
+    }
+
+    /**
+     * @return the distance in meter or Double.MAX_VALUE if not found
+     */
+    public double distance(int source, int target) {
+        return distances[source * targets + target];
+    }
+
+    /**
+     * @return the time in seconds or Long.MAX_VALUE if not found
+     */
+    public long time(int source, int target) {
+        return times[source * targets + target];
+    }
+
+    /**
+     * @return the distances of all pairs, row by row
+     */
+    public double[] distances() {
+        return distances;
+    }
+
+    /**
+     * @return the times of all pairs, row by row
+     */
+    public long[] times() {
+        return times;
+    }
+
+    public void path(int source, int target, Path path) {
+        if (paths == null)
+            throw new IllegalStateException("Create the matrix with calcPaths to store paths");
+        paths[source * targets + target] = path;
+    }
+
+    /**
+     * @return the path between source and target, only available if the paths
+     * were requested. The path of an unreachable pair is not found and empty.
+     */
+    public Path path(int source, int target) {
+        if (paths == null)
+            throw new IllegalStateException("No paths were calculated. Enable them via calcPaths(true) before");
+        return paths[source * targets + target];
+    }
+
+    public boolean hasPaths() {
+        return paths != null;
+    }
+
+    @Override public String toString() {
+        return sources + "x" + targets + ", paths:" + hasPaths();
+    }
+}
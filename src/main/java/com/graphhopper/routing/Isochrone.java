@@ -0,0 +1,94 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.PointList;
+
+/**
+ * Creates the outline of reachable nodes: the plane around the start node is
+ * divided into sectors of equal angle and the farthest reachable node of every
+ * sector becomes a corner of the polygon. The result is a concave (star
+ * shaped) polygon which is cheap to calculate and good enough to visualize a
+ * service area.
+ *
+ * @see DijkstraOneToAll
+ * @author Peter Karich
+ */
+public class Isochrone {
+
+    private final Graph graph;
+    private int sectors = 36;
+
+    public Isochrone(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * More sectors give a finer outline. Default is 36.
+     */
+    public Isochrone sectors(int sectors) {
+        if (sectors < 3)
+            throw new IllegalArgumentException("At least 3 sectors are necessary but was " + sectors);
+        this.sectors = sectors;
+        return this;
+    }
+
+    /**
+     * @return the closed polygon (the first point is repeated at the end) or
+     * less than 3 points if the nodes do not span an area
+     */
+    public PointList calcPolygon(ReachableNodes nodes) {
+        int start = nodes.startNode();
+        double startLat = graph.getLatitude(start);
+        double startLon = graph.getLongitude(start);
+        double lonFactor = Math.cos(Math.toRadians(startLat));
+        int[] farthestNodes = new int[sectors];
+        double[] maxDists = new double[sectors];
+        for (int i = 0; i < sectors; i++) {
+            farthestNodes[i] = -1;
+        }
+
+        for (int i = 0; i < nodes.size(); i++) {
+            int node = nodes.node(i);
+            double y = graph.getLatitude(node) - startLat;
+            double x = (graph.getLongitude(node) - startLon) * lonFactor;
+            double dist = x * x + y * y;
+            if (dist == 0)
+                continue;
+            // the sectors are centered around their angle
+            double angle = Math.atan2(y, x) + Math.PI;
+            int sector = (int) Math.round(angle / (2 * Math.PI) * sectors) % sectors;
+            if (dist > maxDists[sector]) {
+                maxDists[sector] = dist;
+                farthestNodes[sector] = node;
+            }
+        }
+
+        PointList polygon = new PointList(sectors + 1);
+        for (int i = 0; i < sectors; i++) {
+            int node = farthestNodes[i];
+            if (node >= 0)
+                polygon.add(graph.getLatitude(node), graph.getLongitude(node));
+        }
+        if (polygon.size() >= 3)
+            polygon.add(polygon.latitude(0), polygon.longitude(0));
+        return polygon;
+    }
+}
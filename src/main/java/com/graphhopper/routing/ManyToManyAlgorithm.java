@@ -0,0 +1,47 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.WeightCalculation;
+
+/**
+ * Calculates the shortest paths between all sources and all targets at once.
+ * Much faster than one calcPath call per pair as the search of one source is
+ * shared by all targets. An instance is not thread safe.
+ *
+ * @author Peter Karich
+ */
+public interface ManyToManyAlgorithm {
+
+    /**
+     * @return the weights, distances and times from all sources (rows) to all
+     * targets (columns)
+     */
+    DistanceMatrix calcMatrix(int[] sources, int[] targets);
+
+    /**
+     * Paths need a lot more time and memory, so they are only extracted if
+     * this is enabled. Default is false.
+     */
+    ManyToManyAlgorithm calcPaths(boolean paths);
+
+    ManyToManyAlgorithm type(WeightCalculation calc);
+
+    String name();
+}
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Many-to-many for graphs without a preparation: one Dijkstra per source
+ * which stops as soon as all targets are settled.
+ *
+ * @author Peter Karich
+ */
+public class ManyToManyDijkstra implements ManyToManyAlgorithm {
+
+    private final Graph graph;
+    private WeightCalculation weightCalc = ShortestCarCalc.DEFAULT;
+    private final SearchState state;
+    // the real distance and time of the reached nodes of the current search
+    private double[] distances;
+    private long[] times;
+    private boolean calcPaths;
+
+    public ManyToManyDijkstra(Graph graph) {
+        this.graph = graph;
+        state = new SearchState(graph.nodes());
+        distances = new double[graph.nodes()];
+        times = new long[graph.nodes()];
+    }
+
+    @Override
+    public ManyToManyDijkstra type(WeightCalculation calc) {
+        weightCalc = calc;
+        return this;
+    }
+
+    @Override
+    public ManyToManyDijkstra calcPaths(boolean paths) {
+        calcPaths = paths;
+        return this;
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix(int[] sources, int[] targets) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length, calcPaths);
+        TIntHashSet targetSet = new TIntHashSet(targets);
+        for (int i = 0; i < sources.length; i++) {
+            search(sources[i], targetSet);
+            for (int j = 0; j < targets.length; j++) {
+                int target = targets[j];
+                if (!state.isSettled(target)) {
+                    if (calcPaths)
+                        matrix.path(i, j, new Path(graph, weightCalc));
+                    continue;
+                }
+                matrix.set(i, j, state.weight(target), distances[target], times[target]);
+                if (calcPaths)
+                    matrix.path(i, j, new Path(graph, weightCalc).extract(state, target));
+            }
+        }
+        return matrix;
+    }
+
+    private void search(int from, TIntHashSet targets) {
+        state.reset();
+        state.start(from);
+        distances[from] = 0;
+        times[from] = 0;
+        int remaining = targets.size();
+        int currNode = from;
+        while (true) {
+            if (targets.contains(currNode) && --remaining == 0)
+                return;
+
+            double currWeight = state.weight(currNode);
+            EdgeIterator iter = graph.getOutgoing(currNode);
+            while (iter.next()) {
+                int tmpNode = iter.node();
+                double dist = iter.distance();
+                int flags = iter.flags();
+                double tmpWeight = weightCalc.getWeight(dist, flags) + currWeight;
+                if (state.update(tmpNode, tmpWeight, iter.edge(), currNode, tmpWeight)) {
+                    distances[tmpNode] = distances[currNode] + dist;
+                    times[tmpNode] = times[currNode] + weightCalc.getTime(dist, flags);
+                }
+            }
+
+            if (state.isEmpty())
+                return;
+            currNode = state.pollMin();
+        }
+    }
+
+    @Override public String name() {
+        return "dijkstraManyToMany";
+    }
+}
@@ -161,6 +161,95 @@ public class Path {
         return found(true);
     }
 
+    /**
+     * Extracts the Path from the shortest-path-tree stored in the specified
+     * search state, starting at goalNode.
+     */
+    public Path extract(SearchState state, int goalNode) {
+        sw.start();
+        int node = goalNode;
+        int edge = state.parentEdge(node);
+        while (EdgeIterator.Edge.isValid(edge)) {
+            processWeight(edge, node);
+            node = state.parentNode(node);
+            edge = state.parentEdge(node);
+        }
+
+        fromNode(node);
+        reverseOrder();
+        sw.stop();
+        return found(true);
+    }
+
+    /**
+     * Extracts the Path from two shortest-path-trees which meet at the
+     * specified node: the tree of the forward search from the start node and
+     * the tree of the backward search from the goal node.
+     */
+    public Path extract(SearchState stateFrom, SearchState stateTo, int meetingNode) {
+        sw.start();
+        int node = meetingNode;
+        int edge = stateFrom.parentEdge(node);
+        while (EdgeIterator.Edge.isValid(edge)) {
+            processWeight(edge, node);
+            node = stateFrom.parentNode(node);
+            edge = stateFrom.parentEdge(node);
+        }
+        fromNode(node);
+        reverseOrder();
+
+        node = meetingNode;
+        edge = stateTo.parentEdge(node);
+        while (EdgeIterator.Edge.isValid(edge)) {
+            node = stateTo.parentNode(node);
+            processWeight(edge, node);
+            edge = stateTo.parentEdge(node);
+        }
+        sw.stop();
+        return found(true);
+    }
+
+    /**
+     * Extracts the Path of an edge based search which meets at the specified
+     * node. The search states are indexed by edge keys and the parent of a
+     * key is the key of the previous edge in search direction, -1 for the
+     * start node.
+     *
+     * @param keyFrom the key of the forward search arriving at the meeting
+     * node or -1 if the meeting node is the start node
+     * @param keyTo the key of the backward search leaving the meeting node or
+     * -1 if the meeting node is the goal node
+     */
+    public Path extractEdgeBased(SearchState stateFrom, int keyFrom, SearchState stateTo, int keyTo,
+            int meetingNode) {
+        sw.start();
+        int node = meetingNode;
+        int key = keyFrom;
+        while (key >= 0) {
+            int edge = stateFrom.parentEdge(key);
+            EdgeIterator iter = graph.getEdgeProps(edge, node);
+            calcWeight(iter);
+            addEdge(edge);
+            node = iter.baseNode();
+            key = stateFrom.parentNode(key);
+        }
+        fromNode(node);
+        reverseOrder();
+
+        node = meetingNode;
+        key = keyTo;
+        while (key >= 0) {
+            int edge = stateTo.parentEdge(key);
+            EdgeIterator iter = graph.getEdgeProps(edge, node);
+            calcWeight(iter);
+            addEdge(edge);
+            node = iter.baseNode();
+            key = stateTo.parentNode(key);
+        }
+        sw.stop();
+        return found(true);
+    }
+
     public String debugInfo() {
         return sw.toString();
     }
@@ -25,8 +25,9 @@ import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GraphUtility;
 
 /**
- * This class creates a DijkstraPath from two Edge's resulting from a
- * BidirectionalDijkstra
+ * This class creates a DijkstraPath from the two SearchStates of a
+ * bidirectional Dijkstra like DijkstraBidirectionRef or from two Edge's
+ * resulting from the other bidirectional algorithms.
  *
  * @author Peter Karich,
  */
@@ -94,4 +95,10 @@ public class PathBidirRef extends Path {
         sw.stop();
         return found(true);
     }
+
+    @Override
+    public Path extract(SearchState stateFrom, SearchState stateTo, int meetingNode) {
+        weight = 0;
+        return super.extract(stateFrom, stateTo, meetingNode);
+    }
 }
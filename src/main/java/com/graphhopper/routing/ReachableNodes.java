@@ -0,0 +1,96 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+/**
+ * The nodes which are reachable from a start node within the limits of a
+ * DijkstraOneToAll search, in the order they were settled (ascending weight).
+ *
+ * @see DijkstraOneToAll
+ * @author Peter Karich
+ */
+public class ReachableNodes {
+
+    private final int startNode;
+    private final TIntArrayList nodes;
+    private final TDoubleArrayList weights;
+    private final TDoubleArrayList distances;
+    private final TLongArrayList times;
+
+    public ReachableNodes(int startNode, int capacity) {
+        this.startNode = startNode;
+        nodes = new TIntArrayList(capacity);
+        weights = new TDoubleArrayList(capacity);
+        distances = new TDoubleArrayList(capacity);
+        times = new TLongArrayList(capacity);
+    }
+
+    public void add(int node, double weight, double distance, long time) {
+        nodes.add(node);
+        weights.add(weight);
+        distances.add(distance);
+        times.add(time);
+    }
+
+    public int startNode() {
+        return startNode;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public int node(int index) {
+        return nodes.get(index);
+    }
+
+    public double weight(int index) {
+        return weights.get(index);
+    }
+
+    /**
+     * @return the distance in meter of the shortest path to the node
+     */
+    public double distance(int index) {
+        return distances.get(index);
+    }
+
+    /**
+     * @return the time in seconds of the shortest path to the node
+     */
+    public long time(int index) {
+        return times.get(index);
+    }
+
+    public int[] nodes() {
+        return nodes.toArray();
+    }
+
+    public double[] weights() {
+        return weights.toArray();
+    }
+
+    @Override public String toString() {
+        return "start:" + startNode + ", nodes:" + size();
+    }
+}
@@ -23,7 +23,9 @@ import com.graphhopper.util.NotThreadSafe;
 
 /**
  * Calculates the shortest path from the specified node ids. The implementation
- * does not need to be thread safe.
+ * does not need to be thread safe: use one instance per thread and call clear
+ * before the next query with the same instance. Several instances can share
+ * one graph if it is not modified, see GraphStorage.freeze.
  *
  * @author Peter Karich,
  */
@@ -44,8 +46,8 @@ public interface RoutingAlgorithm {
     RoutingAlgorithm type(WeightCalculation calc);
 
     /**
-     * Resets the current algorithm instance. TODO should we remove it in order
-     * to avoid that it is called on different threads!!
+     * Resets the current algorithm instance so that it can be reused for the
+     * next query of the same thread.
      */
     RoutingAlgorithm clear();
 
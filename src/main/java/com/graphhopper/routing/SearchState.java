@@ -0,0 +1,186 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleIndexedHeap;
+import com.graphhopper.util.EdgeIterator;
+import java.util.Arrays;
+
+/**
+ * The shortest-path-tree of a node based search without objects: weight,
+ * parent edge and parent node are stored in primitive arrays indexed by node
+ * and the heap uses a dense position index over the nodes. Instead of
+ * clearing the arrays before every search a stamp per node marks the entries
+ * which belong to the current search, so reset is O(1).
+ *
+ * The arrays need ~24 bytes per node, so reuse an instance (and its
+ * algorithm) for several queries.
+ *
+ * @author Peter Karich
+ */
+public class SearchState {
+
+    // the stamp of the current search for reached nodes, stamp + 1 means settled
+    private int stamp = 2;
+    private int[] stamps;
+    private double[] weights;
+    private int[] parentEdges;
+    private int[] parentNodes;
+    private final IntDoubleIndexedHeap heap;
+    private int settledNodes;
+
+    public SearchState(int nodes) {
+        nodes = Math.max(10, nodes);
+        stamps = new int[nodes];
+        weights = new double[nodes];
+        parentEdges = new int[nodes];
+        parentNodes = new int[nodes];
+        heap = new IntDoubleIndexedHeap(Math.max(10, nodes / 100), nodes);
+    }
+
+    /**
+     * Forgets all entries of the previous search.
+     */
+    public SearchState reset() {
+        heap.clear();
+        settledNodes = 0;
+        stamp += 2;
+        if (stamp < 0) {
+            // overflow after ~1 billion searches
+            Arrays.fill(stamps, 0);
+            stamp = 2;
+        }
+        return this;
+    }
+
+    private void ensureNode(int node) {
+        if (node < stamps.length)
+            return;
+        int len = Math.max(node + 1, stamps.length * 3 / 2);
+        stamps = Arrays.copyOf(stamps, len);
+        weights = Arrays.copyOf(weights, len);
+        parentEdges = Arrays.copyOf(parentEdges, len);
+        parentNodes = Arrays.copyOf(parentNodes, len);
+    }
+
+    /**
+     * Marks the specified node as root of the shortest-path-tree with weight 0.
+     * It is settled and not added to the heap.
+     */
+    public void start(int node) {
+        ensureNode(node);
+        weights[node] = 0;
+        parentEdges[node] = EdgeIterator.NO_EDGE;
+        parentNodes[node] = -1;
+        stamps[node] = stamp + 1;
+        settledNodes++;
+    }
+
+    /**
+     * Marks the specified node as settled without a weight, so the search
+     * never reaches it.
+     */
+    public void skip(int node) {
+        ensureNode(node);
+        weights[node] = Double.MAX_VALUE;
+        parentEdges[node] = EdgeIterator.NO_EDGE;
+        parentNodes[node] = -1;
+        stamps[node] = stamp + 1;
+    }
+
+    /**
+     * Sets the new weight and parent of the specified node if the node is not
+     * settled and the weight is smaller than the current one.
+     *
+     * @param heapKey the key to order the heap, e.g. the weight plus an
+     * estimation to the goal
+     * @return true if the node was updated
+     */
+    public boolean update(int node, double weight, int parentEdge, int parentNode, double heapKey) {
+        ensureNode(node);
+        int s = stamps[node];
+        if (s == stamp + 1 || s == stamp && weights[node] <= weight)
+            return false;
+
+        weights[node] = weight;
+        parentEdges[node] = parentEdge;
+        parentNodes[node] = parentNode;
+        stamps[node] = stamp;
+        heap.insertOrUpdate(heapKey, node);
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * @return the smallest heap key
+     */
+    public double peekKey() {
+        return heap.peek_key();
+    }
+
+    /**
+     * Removes the node with the smallest heap key and marks it as settled.
+     */
+    public int pollMin() {
+        int node = heap.poll_element();
+        stamps[node] = stamp + 1;
+        settledNodes++;
+        return node;
+    }
+
+    public boolean isReached(int node) {
+        return node < stamps.length && stamps[node] >= stamp;
+    }
+
+    public boolean isSettled(int node) {
+        return node < stamps.length && stamps[node] == stamp + 1;
+    }
+
+    /**
+     * @return the weight from the start node or Double.MAX_VALUE if not
+     * reached
+     */
+    public double weight(int node) {
+        if (!isReached(node))
+            return Double.MAX_VALUE;
+        return weights[node];
+    }
+
+    /**
+     * @return the edge to the parent node or NO_EDGE for the start node
+     */
+    public int parentEdge(int node) {
+        if (!isReached(node))
+            return EdgeIterator.NO_EDGE;
+        return parentEdges[node];
+    }
+
+    public int parentNode(int node) {
+        if (!isReached(node))
+            return -1;
+        return parentNodes[node];
+    }
+
+    public int settledNodes() {
+        return settledNodes;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.alt;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+
+/**
+ * Bidirectional A* with landmarks. Both searches use the average potential
+ * p(v) = (lowerBound(v,to) - lowerBound(from,v)) / 2, the forward search with
+ * +p and the backward search with -p. Then both searches work on the same
+ * reduced edge weights and the search can stop with the exact shortest path
+ * as soon as the sum of both smallest keys reaches the best weight found so
+ * far. Create it via PrepareLandmarks.createAStarBidirection.
+ *
+ * @author Peter Karich
+ */
+public class AStarBidirectionLandmarks extends AbstractRoutingAlgorithm {
+
+    private final LandmarkStorage landmarks;
+    private final SearchState stateFrom;
+    private final SearchState stateTo;
+    private boolean alreadyRun;
+    private int from;
+    private int to;
+    private double shortestWeight;
+    private int meetingNode;
+
+    public AStarBidirectionLandmarks(Graph graph, LandmarkStorage landmarks) {
+        super(graph);
+        this.landmarks = landmarks;
+        super.type(landmarks.weightCalculation());
+        stateFrom = new SearchState(graph.nodes());
+        stateTo = new SearchState(graph.nodes());
+    }
+
+    @Override public RoutingAlgorithm type(WeightCalculation wc) {
+        if (wc != landmarks.weightCalculation())
+            throw new IllegalStateException("The landmarks were prepared for " + landmarks.weightCalculation()
+                    + ". Prepare them again to use " + wc);
+        return this;
+    }
+
+    @Override
+    public RoutingAlgorithm clear() {
+        alreadyRun = false;
+        stateFrom.reset();
+        stateTo.reset();
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        if (alreadyRun)
+            throw new IllegalStateException("Call clear before! But this class is not thread safe!");
+        alreadyRun = true;
+        this.from = from;
+        this.to = to;
+        shortestWeight = Double.MAX_VALUE;
+        meetingNode = -1;
+        stateFrom.start(from);
+        stateTo.start(to);
+        if (from == to)
+            return new Path(graph, weightCalc).extract(stateFrom, stateTo, from);
+
+        fillEdges(from, true);
+        fillEdges(to, false);
+        while (true) {
+            double minFrom = stateFrom.isEmpty() ? Double.MAX_VALUE : stateFrom.peekKey();
+            double minTo = stateTo.isEmpty() ? Double.MAX_VALUE : stateTo.peekKey();
+            if (minFrom == Double.MAX_VALUE && minTo == Double.MAX_VALUE
+                    || minFrom + minTo >= shortestWeight)
+                break;
+
+            if (minFrom <= minTo)
+                fillEdges(stateFrom.pollMin(), true);
+            else
+                fillEdges(stateTo.pollMin(), false);
+        }
+
+        if (meetingNode < 0)
+            return new Path(graph, weightCalc);
+        return new Path(graph, weightCalc).extract(stateFrom, stateTo, meetingNode);
+    }
+
+    /**
+     * @return the potential of the forward search, the backward search uses
+     * the negated value
+     */
+    double potential(int node) {
+        return (landmarks.lowerBound(node, to) - landmarks.lowerBound(from, node)) / 2;
+    }
+
+    private void fillEdges(int node, boolean out) {
+        SearchState state = out ? stateFrom : stateTo;
+        SearchState stateOther = out ? stateTo : stateFrom;
+        double currWeight = state.weight(node);
+        EdgeIterator iter = GraphUtility.getEdges(graph, node, out);
+        while (iter.next()) {
+            int neighborNode = iter.node();
+            if (state.isSettled(neighborNode))
+                continue;
+
+            double tmpWeight = calcWeight(iter) + currWeight;
+            if (state.weight(neighborNode) <= tmpWeight)
+                continue;
+
+            double p = potential(neighborNode);
+            state.update(neighborNode, tmpWeight, iter.edge(), node, tmpWeight + (out ? p : -p));
+            if (stateOther.isReached(neighborNode)) {
+                double newShortest = tmpWeight + stateOther.weight(neighborNode);
+                if (newShortest < shortestWeight) {
+                    shortestWeight = newShortest;
+                    meetingNode = neighborNode;
+                }
+            }
+        }
+    }
+
+    @Override public String name() {
+        return "altbi";
+    }
+
+    @Override
+    public int calcVisitedNodes() {
+        return stateFrom.settledNodes() + stateTo.settledNodes();
+    }
+}
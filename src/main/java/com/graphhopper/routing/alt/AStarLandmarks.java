@@ -0,0 +1,57 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.alt;
+
+import com.graphhopper.routing.AStar;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+
+/**
+ * A* where the estimation to the goal is the maximum of the geometric
+ * estimation and the lower bound from the landmarks. Create it via
+ * PrepareLandmarks.createAlgo.
+ *
+ * @author Peter Karich
+ */
+public class AStarLandmarks extends AStar {
+
+    private final LandmarkStorage landmarks;
+
+    public AStarLandmarks(Graph g, LandmarkStorage landmarks) {
+        super(g);
+        this.landmarks = landmarks;
+        super.type(landmarks.weightCalculation());
+    }
+
+    @Override public RoutingAlgorithm type(WeightCalculation wc) {
+        if (wc != landmarks.weightCalculation())
+            throw new IllegalStateException("The landmarks were prepared for " + landmarks.weightCalculation()
+                    + ". Prepare them again to use " + wc);
+        return this;
+    }
+
+    @Override protected double calcWeightToGoal(int node, int to) {
+        return Math.max(super.calcWeightToGoal(node, to), landmarks.lowerBound(node, to));
+    }
+
+    @Override public String name() {
+        return "alt";
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.alt;
+
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Storable;
+
+/**
+ * Stores for every node the weight from and to every landmark. Via the
+ * triangle inequality these weights give a lower bound of the weight between
+ * two arbitrary nodes: d(v,t) >= d(L,t) - d(L,v) and d(v,t) >= d(v,L) -
+ * d(t,L).
+ *
+ * The bounds stay valid if edges get slower after the preparation, so live
+ * speed changes only make them less tight. Faster edges require a new
+ * preparation.
+ *
+ * Memory layout: the landmark node ids followed by one row per node with the
+ * weights from and to every landmark as float.
+ *
+ * @author Peter Karich
+ */
+public class LandmarkStorage implements Storable {
+
+    private final WeightCalculation weightCalc;
+    private final DataAccess weights;
+    private int landmarks;
+    private int nodes;
+
+    public LandmarkStorage(Directory dir, WeightCalculation weightCalc) {
+        this.weightCalc = weightCalc;
+        weights = dir.findCreate("landmarks_" + weightCalc.toString().toLowerCase());
+    }
+
+    public WeightCalculation weightCalculation() {
+        return weightCalc;
+    }
+
+    public LandmarkStorage createNew(int landmarks, int nodes) {
+        this.landmarks = landmarks;
+        this.nodes = nodes;
+        weights.createNew(rowPointer(nodes) * 4);
+        return this;
+    }
+
+    void setLandmarkNode(int landmark, int node) {
+        weights.setInt(landmark, node);
+    }
+
+    private long rowPointer(int node) {
+        return landmarks + (long) node * landmarks * 2;
+    }
+
+    void setWeights(int landmark, int node, double fromLandmark, double toLandmark) {
+        long pointer = rowPointer(node) + landmark * 2;
+        weights.setInt(pointer, Float.floatToIntBits((float) fromLandmark));
+        weights.setInt(pointer + 1, Float.floatToIntBits((float) toLandmark));
+    }
+
+    /**
+     * @return the number of landmarks
+     */
+    public int landmarks() {
+        return landmarks;
+    }
+
+    public int landmarkNode(int landmark) {
+        return weights.getInt(landmark);
+    }
+
+    /**
+     * @return the weight from the landmark to the node or infinity if
+     * unreachable
+     */
+    public double fromLandmark(int landmark, int node) {
+        return Float.intBitsToFloat(weights.getInt(rowPointer(node) + landmark * 2));
+    }
+
+    /**
+     * @return the weight from the node to the landmark or infinity if
+     * unreachable
+     */
+    public double toLandmark(int landmark, int node) {
+        return Float.intBitsToFloat(weights.getInt(rowPointer(node) + landmark * 2 + 1));
+    }
+
+    /**
+     * @return a lower bound of the weight from the specified node to the goal
+     * or 0 if no landmark gives a finite bound
+     */
+    public double lowerBound(int node, int goal) {
+        if (node >= nodes || goal >= nodes)
+            return 0;
+
+        long nodePointer = rowPointer(node);
+        long goalPointer = rowPointer(goal);
+        double bound = 0;
+        for (int i = 0; i < landmarks; i++) {
+            long offset = i * 2;
+            // d(L,goal) - d(L,node)
+            double tmp = (double) Float.intBitsToFloat(weights.getInt(goalPointer + offset))
+                    - Float.intBitsToFloat(weights.getInt(nodePointer + offset));
+            // unreachable landmarks give infinite or NaN values, ignore them
+            if (tmp > bound && tmp != Double.POSITIVE_INFINITY)
+                bound = tmp;
+            // d(node,L) - d(goal,L)
+            tmp = (double) Float.intBitsToFloat(weights.getInt(nodePointer + offset + 1))
+                    - Float.intBitsToFloat(weights.getInt(goalPointer + offset + 1));
+            if (tmp > bound && tmp != Double.POSITIVE_INFINITY)
+                bound = tmp;
+        }
+        return bound;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!weights.loadExisting())
+            return false;
+        landmarks = weights.getHeader(0);
+        nodes = weights.getHeader(1);
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        weights.setHeader(0, landmarks);
+        weights.setHeader(1, nodes);
+        weights.flush();
+    }
+
+    @Override
+    public void close() {
+        weights.close();
+    }
+
+    @Override
+    public long capacity() {
+        return weights.capacity();
+    }
+}
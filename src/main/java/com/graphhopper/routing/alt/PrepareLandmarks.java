@@ -0,0 +1,208 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.alt;
+
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.util.AbstractAlgoPreparation;
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.StopWatch;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares the graph for the ALT algorithms (A*, landmarks and triangle
+ * inequality) returned by createAlgo and createAStarBidirection.
+ *
+ * The landmarks are selected with the farthest heuristic: every new landmark
+ * is the node with the biggest weight to its nearest landmark. The first
+ * landmark is the farthest node from node 0 and all landmarks are in its
+ * subnetwork, so remove small subnetworks before.
+ *
+ * Computing the Shortest Path: A∗ Search Meets Graph Theory ->
+ * http://research.microsoft.com/apps/pubs/default.aspx?id=64511
+ *
+ * @author Peter Karich
+ */
+public class PrepareLandmarks extends AbstractAlgoPreparation<PrepareLandmarks> {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private WeightCalculation weightCalc = ShortestCarCalc.DEFAULT;
+    private int landmarkCount = 8;
+    private Directory dir = new RAMDirectory();
+    private LandmarkStorage landmarks;
+
+    @Override
+    public PrepareLandmarks graph(Graph g) {
+        super.graph(g);
+        return this;
+    }
+
+    public PrepareLandmarks type(WeightCalculation weightCalc) {
+        this.weightCalc = weightCalc;
+        return this;
+    }
+
+    /**
+     * More landmarks give better bounds but need more memory: 8 bytes per node
+     * and landmark. Default is 8.
+     */
+    public PrepareLandmarks landmarks(int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("At least one landmark is necessary but was " + count);
+        landmarkCount = count;
+        return this;
+    }
+
+    /**
+     * The directory where the landmark weights are stored. Default is in
+     * memory.
+     */
+    public PrepareLandmarks directory(Directory dir) {
+        this.dir = dir;
+        return this;
+    }
+
+    public LandmarkStorage landmarkStorage() {
+        return landmarks;
+    }
+
+    /**
+     * Loads the landmarks of an earlier preparation instead of calling doWork.
+     */
+    public boolean loadExisting() {
+        LandmarkStorage tmp = new LandmarkStorage(dir, weightCalc);
+        if (!tmp.loadExisting())
+            return false;
+        landmarks = tmp;
+        return true;
+    }
+
+    @Override
+    public PrepareLandmarks doWork() {
+        super.doWork();
+        StopWatch sw = new StopWatch().start();
+        int nodes = _graph.nodes();
+        int count = Math.min(landmarkCount, nodes);
+        landmarks = new LandmarkStorage(dir, weightCalc).createNew(count, nodes);
+        if (count == 0)
+            return this;
+
+        LandmarkExplorer forward = new LandmarkExplorer(_graph, weightCalc, false);
+        LandmarkExplorer backward = new LandmarkExplorer(_graph, weightCalc, true);
+
+        double[] nearestLandmark = new double[nodes];
+        Arrays.fill(nearestLandmark, Double.POSITIVE_INFINITY);
+        forward.explore(0);
+        int next = forward.farthestNode(nodes);
+        for (int i = 0; i < count; i++) {
+            landmarks.setLandmarkNode(i, next);
+            forward.explore(next);
+            backward.explore(next);
+            double max = -1;
+            for (int node = 0; node < nodes; node++) {
+                double w = forward.weight(node);
+                landmarks.setWeights(i, node, w, backward.weight(node));
+                if (w < nearestLandmark[node])
+                    nearestLandmark[node] = w;
+                if (nearestLandmark[node] != Double.POSITIVE_INFINITY && nearestLandmark[node] > max) {
+                    max = nearestLandmark[node];
+                    next = node;
+                }
+            }
+        }
+        logger.info("landmarks:" + count + ", nodes:" + nodes + ", time:" + sw.stop().getSeconds() + "s");
+        return this;
+    }
+
+    private LandmarkStorage checkPrepared() {
+        if (landmarks == null)
+            throw new IllegalStateException("Call doWork or loadExisting before creating an algorithm");
+        return landmarks;
+    }
+
+    /**
+     * @return the unidirectional ALT algorithm
+     */
+    @Override
+    public AStarLandmarks createAlgo() {
+        return new AStarLandmarks(_graph, checkPrepared());
+    }
+
+    public AStarBidirectionLandmarks createAStarBidirection() {
+        return new AStarBidirectionLandmarks(_graph, checkPrepared());
+    }
+
+    /**
+     * Explores all reachable nodes from or to a landmark.
+     */
+    static class LandmarkExplorer extends DijkstraSimple {
+
+        private final boolean reverse;
+
+        public LandmarkExplorer(Graph graph, WeightCalculation weightCalc, boolean reverse) {
+            super(graph);
+            type(weightCalc);
+            this.reverse = reverse;
+        }
+
+        void explore(int landmark) {
+            // no goal => the search stops if all reachable nodes are settled
+            calcPath(landmark, -1);
+        }
+
+        @Override
+        protected EdgeIterator neighbors(int node) {
+            if (reverse)
+                return graph.getIncoming(node);
+            return super.neighbors(node);
+        }
+
+        int farthestNode(int nodes) {
+            int farthest = 0;
+            double max = -1;
+            for (int node = 0; node < nodes; node++) {
+                double w = state.weight(node);
+                if (w != Double.MAX_VALUE && w > max) {
+                    max = w;
+                    farthest = node;
+                }
+            }
+            return farthest;
+        }
+
+        /**
+         * @return the weight of the last exploration or infinity if the node
+         * was not reached
+         */
+        double weight(int node) {
+            double w = state.weight(node);
+            return w == Double.MAX_VALUE ? Double.POSITIVE_INFINITY : w;
+        }
+
+        @Override public String name() {
+            return "landmarkExplorer";
+        }
+    }
+}
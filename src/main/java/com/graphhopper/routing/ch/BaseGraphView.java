@@ -0,0 +1,214 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.RawEdgeIterator;
+import com.graphhopper.util.shapes.BBox;
+
+/**
+ * A read only view of a prepared graph without the shortcuts. The edges of
+ * the original graph keep their distance while preparing, so algorithms
+ * without contraction hierarchies can use this view to get the same results
+ * as on the unprepared graph.
+ *
+ * @author Peter Karich
+ */
+class BaseGraphView implements Graph {
+
+    private final LevelGraph g;
+
+    BaseGraphView(LevelGraph g) {
+        this.g = g;
+    }
+
+    @Override public int nodes() {
+        return g.nodes();
+    }
+
+    @Override public void setNode(int node, double lat, double lon) {
+        throw new UnsupportedOperationException("The base graph view is read only");
+    }
+
+    @Override public double getLatitude(int node) {
+        return g.getLatitude(node);
+    }
+
+    @Override public double getLongitude(int node) {
+        return g.getLongitude(node);
+    }
+
+    @Override public BBox bounds() {
+        return g.bounds();
+    }
+
+    @Override public EdgeIterator edge(int a, int b, double distance, int flags) {
+        throw new UnsupportedOperationException("The base graph view is read only");
+    }
+
+    @Override public EdgeIterator edge(int a, int b, double distance, boolean bothDirections) {
+        throw new UnsupportedOperationException("The base graph view is read only");
+    }
+
+    @Override public EdgeIterator getEdgeProps(int edgeId, int endNode) {
+        return g.getEdgeProps(edgeId, endNode);
+    }
+
+    @Override public RawEdgeIterator allEdges() {
+        return new BaseRawEdgeIterator(g.allEdges());
+    }
+
+    @Override public EdgeIterator getEdges(int index) {
+        return new BaseEdgeIterator(g.getEdges(index));
+    }
+
+    @Override public EdgeIterator getIncoming(int index) {
+        return new BaseEdgeIterator(g.getIncoming(index));
+    }
+
+    @Override public EdgeIterator getOutgoing(int index) {
+        return new BaseEdgeIterator(g.getOutgoing(index));
+    }
+
+    @Override public Graph copyTo(Graph graph) {
+        throw new UnsupportedOperationException("The base graph view cannot be copied");
+    }
+
+    @Override public void markNodeRemoved(int index) {
+        throw new UnsupportedOperationException("The base graph view is read only");
+    }
+
+    @Override public boolean isNodeRemoved(int index) {
+        return g.isNodeRemoved(index);
+    }
+
+    @Override public void optimize() {
+        throw new UnsupportedOperationException("The base graph view is read only");
+    }
+
+    private static class BaseEdgeIterator implements EdgeIterator {
+
+        private final EdgeSkipIterator iter;
+
+        BaseEdgeIterator(EdgeSkipIterator iter) {
+            this.iter = iter;
+        }
+
+        @Override public boolean next() {
+            while (iter.next()) {
+                if (!iter.isShortcut())
+                    return true;
+            }
+            return false;
+        }
+
+        @Override public int edge() {
+            return iter.edge();
+        }
+
+        @Override public int baseNode() {
+            return iter.baseNode();
+        }
+
+        @Override public int node() {
+            return iter.node();
+        }
+
+        @Override public PointList wayGeometry() {
+            return iter.wayGeometry();
+        }
+
+        @Override public void wayGeometry(PointList list) {
+            throw new UnsupportedOperationException("The base graph view is read only");
+        }
+
+        @Override public double distance() {
+            return iter.distance();
+        }
+
+        @Override public void distance(double dist) {
+            throw new UnsupportedOperationException("The base graph view is read only");
+        }
+
+        @Override public int flags() {
+            return iter.flags();
+        }
+
+        @Override public void flags(int flags) {
+            throw new UnsupportedOperationException("The base graph view is read only");
+        }
+
+        @Override public boolean isEmpty() {
+            return iter.isEmpty();
+        }
+    }
+
+    private class BaseRawEdgeIterator implements RawEdgeIterator {
+
+        private final RawEdgeIterator iter;
+
+        BaseRawEdgeIterator(RawEdgeIterator iter) {
+            this.iter = iter;
+        }
+
+        @Override public boolean next() {
+            while (iter.next()) {
+                if (!g.getEdgeProps(iter.edge(), iter.nodeB()).isShortcut())
+                    return true;
+            }
+            return false;
+        }
+
+        @Override public int nodeA() {
+            return iter.nodeA();
+        }
+
+        @Override public int nodeB() {
+            return iter.nodeB();
+        }
+
+        @Override public double distance() {
+            return iter.distance();
+        }
+
+        @Override public void distance(double dist) {
+            throw new UnsupportedOperationException("The base graph view is read only");
+        }
+
+        @Override public int flags() {
+            return iter.flags();
+        }
+
+        @Override public void flags(int flags) {
+            throw new UnsupportedOperationException("The base graph view is read only");
+        }
+
+        @Override public int edge() {
+            return iter.edge();
+        }
+
+        @Override public boolean isEmpty() {
+            return iter.isEmpty();
+        }
+    }
+}
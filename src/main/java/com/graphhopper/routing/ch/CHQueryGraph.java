@@ -0,0 +1,204 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.util.PrecomputedWeights;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * A compact query-only copy of a prepared graph. For every node the upward
+ * edges of the forward search (outgoing edges to nodes with the same or a
+ * higher level) and of the backward search (incoming edges from such nodes)
+ * are stored contiguously in arrays. The rows are ordered by the level of
+ * their node, so the upper part of the hierarchy where every query ends
+ * shares a small part of the arrays.
+ *
+ * The hot array holds the adjacent node and the float bits of the weight of
+ * every edge side by side. The edge ids which are only necessary to unpack
+ * the shortcuts of the found path are kept in a separate cold array.
+ *
+ * @see PrepareContractionHierarchies#queryGraph()
+ * @author Peter Karich
+ */
+public class CHQueryGraph {
+
+    private final LevelGraph g;
+    private final PrecomputedWeights weights;
+    // the position of the row of a node
+    private final int[] rows;
+    // per row the first index into the edge arrays and at the end the number of edges
+    private final int[] fwdOffsets;
+    private final int[] bwdOffsets;
+    // pairs of adjacent node and weight bits
+    private final int[] fwdData;
+    private final int[] bwdData;
+    private final int[] fwdEdges;
+    private final int[] bwdEdges;
+
+    CHQueryGraph(LevelGraph g, PrecomputedWeights weights) {
+        this.g = g;
+        this.weights = weights;
+        int nodes = g.nodes();
+        int[] order = sortByLevel(g);
+        rows = new int[nodes];
+        for (int row = 0; row < nodes; row++) {
+            rows[order[row]] = row;
+        }
+
+        fwdOffsets = new int[nodes + 1];
+        bwdOffsets = new int[nodes + 1];
+        int fwdCount = 0;
+        int bwdCount = 0;
+        for (int row = 0; row < nodes; row++) {
+            fwdOffsets[row] = fwdCount;
+            bwdOffsets[row] = bwdCount;
+            fwdCount += countUpward(order[row], true);
+            bwdCount += countUpward(order[row], false);
+        }
+        fwdOffsets[nodes] = fwdCount;
+        bwdOffsets[nodes] = bwdCount;
+
+        fwdData = new int[2 * fwdCount];
+        bwdData = new int[2 * bwdCount];
+        fwdEdges = new int[fwdCount];
+        bwdEdges = new int[bwdCount];
+        for (int row = 0; row < nodes; row++) {
+            fill(order[row], fwdOffsets[row], fwdData, fwdEdges, true);
+            fill(order[row], bwdOffsets[row], bwdData, bwdEdges, false);
+        }
+    }
+
+    /**
+     * @return all nodes ordered by their level, the most important nodes
+     * come last
+     */
+    private static int[] sortByLevel(LevelGraph g) {
+        int nodes = g.nodes();
+        int maxLevel = 0;
+        for (int node = 0; node < nodes; node++) {
+            maxLevel = Math.max(maxLevel, g.getLevel(node));
+        }
+
+        // counting sort keeps the order of the nodes within one level
+        int[] starts = new int[maxLevel + 2];
+        for (int node = 0; node < nodes; node++) {
+            starts[g.getLevel(node) + 1]++;
+        }
+        for (int level = 1; level < starts.length; level++) {
+            starts[level] += starts[level - 1];
+        }
+        int[] order = new int[nodes];
+        for (int node = 0; node < nodes; node++) {
+            order[starts[g.getLevel(node)]++] = node;
+        }
+        return order;
+    }
+
+    private EdgeIterator upwardEdges(int node, boolean out) {
+        return out ? g.getOutgoing(node) : g.getIncoming(node);
+    }
+
+    private boolean isUpward(int node, int adjNode) {
+        // the same criterion as the EdgeLevelFilter, it also skips edges
+        // to lower nodes if they were not removed while preparing
+        return g.getLevel(node) <= g.getLevel(adjNode);
+    }
+
+    private int countUpward(int node, boolean out) {
+        int count = 0;
+        EdgeIterator iter = upwardEdges(node, out);
+        while (iter.next()) {
+            if (isUpward(node, iter.node()))
+                count++;
+        }
+        return count;
+    }
+
+    private void fill(int node, int index, int[] data, int[] edges, boolean out) {
+        EdgeIterator iter = upwardEdges(node, out);
+        while (iter.next()) {
+            int adjNode = iter.node();
+            if (!isUpward(node, adjNode))
+                continue;
+            data[2 * index] = adjNode;
+            data[2 * index + 1] = Float.floatToRawIntBits((float) weights.weight(iter.edge()));
+            edges[index] = iter.edge();
+            index++;
+        }
+    }
+
+    public int nodes() {
+        return rows.length;
+    }
+
+    /**
+     * @return the number of stored upward edges of the forward respectively
+     * backward search
+     */
+    public int edges(boolean out) {
+        return out ? fwdEdges.length : bwdEdges.length;
+    }
+
+    /**
+     * @return the index of the first upward edge of the specified node. Nodes
+     * which were added after the preparation have no edges.
+     */
+    public int firstEdge(int node, boolean out) {
+        if (node >= rows.length)
+            return 0;
+        return (out ? fwdOffsets : bwdOffsets)[rows[node]];
+    }
+
+    /**
+     * @return the index after the last upward edge of the specified node
+     */
+    public int lastEdge(int node, boolean out) {
+        if (node >= rows.length)
+            return 0;
+        return (out ? fwdOffsets : bwdOffsets)[rows[node] + 1];
+    }
+
+    public int adjNode(int index, boolean out) {
+        return (out ? fwdData : bwdData)[2 * index];
+    }
+
+    public double weight(int index, boolean out) {
+        return Float.intBitsToFloat((out ? fwdData : bwdData)[2 * index + 1]);
+    }
+
+    /**
+     * @return the id of the edge or shortcut in the prepared graph, only
+     * necessary to extract the path
+     */
+    public int edge(int index, boolean out) {
+        return (out ? fwdEdges : bwdEdges)[index];
+    }
+
+    /**
+     * @return the prepared graph which is necessary to unpack the shortcuts
+     */
+    public LevelGraph graph() {
+        return g;
+    }
+
+    public PrecomputedWeights weights() {
+        return weights;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.util.WeightCalculation;
+
+/**
+ * The bidirectional Dijkstra of contraction hierarchies on the compact
+ * CHQueryGraph. Both searches only relax the upward edges of the settled
+ * nodes which are read from contiguous arrays without an edge filter, and
+ * every search stops as soon as its smallest weight reaches the best weight
+ * found so far. Nodes which cannot improve the best weight are not added to
+ * the queue and with stall-on-demand a node is not expanded if a downward
+ * edge from a reached node proves that its weight is not optimal. The
+ * downward edges of the forward search are the upward edges of the backward
+ * search and vice versa. The shortcuts of the found path are unpacked on the
+ * prepared graph.
+ *
+ * @see PrepareContractionHierarchies#createQueryAlgo()
+ * @author Peter Karich
+ */
+public class DijkstraCHQuery extends AbstractRoutingAlgorithm {
+
+    private final CHQueryGraph queryGraph;
+    private final WeightCalculation prepareWeightCalc;
+    private final SearchState stateFrom;
+    private final SearchState stateTo;
+    private boolean alreadyRun;
+    private double shortestWeight;
+    private int meetingNode;
+    private boolean stallOnDemand = true;
+
+    public DijkstraCHQuery(CHQueryGraph queryGraph) {
+        super(queryGraph.graph());
+        this.queryGraph = queryGraph;
+        prepareWeightCalc = queryGraph.weights().weightCalculation();
+        super.type(prepareWeightCalc);
+        // algorithm with CH does not need that much memory pre allocated
+        int nodes = Math.min(10000, queryGraph.nodes());
+        stateFrom = new SearchState(nodes);
+        stateTo = new SearchState(nodes);
+    }
+
+    @Override public RoutingAlgorithm type(WeightCalculation wc) {
+        if (wc != prepareWeightCalc)
+            throw new IllegalStateException("You'll need to change weightCalculation of preparation instead of algorithm!");
+        return this;
+    }
+
+    public DijkstraCHQuery stallOnDemand(boolean stallOnDemand) {
+        this.stallOnDemand = stallOnDemand;
+        return this;
+    }
+
+    @Override
+    public RoutingAlgorithm clear() {
+        alreadyRun = false;
+        stateFrom.reset();
+        stateTo.reset();
+        return this;
+    }
+
+    @Override public Path calcPath(int from, int to) {
+        if (alreadyRun)
+            throw new IllegalStateException("Call clear before! But this class is not thread safe!");
+        alreadyRun = true;
+        if (from == to)
+            return new Path(graph, prepareWeightCalc);
+
+        shortestWeight = Double.MAX_VALUE;
+        meetingNode = -1;
+        stateFrom.start(from);
+        stateTo.start(to);
+        fillEdges(from, true);
+        fillEdges(to, false);
+        while (true) {
+            // changed finish condition for CH: every search stops on its own
+            double minFrom = stateFrom.isEmpty() ? Double.MAX_VALUE : stateFrom.peekKey();
+            double minTo = stateTo.isEmpty() ? Double.MAX_VALUE : stateTo.peekKey();
+            if (minFrom >= shortestWeight)
+                minFrom = Double.MAX_VALUE;
+            if (minTo >= shortestWeight)
+                minTo = Double.MAX_VALUE;
+            if (minFrom == Double.MAX_VALUE && minTo == Double.MAX_VALUE)
+                break;
+
+            if (minFrom <= minTo)
+                fillEdges(stateFrom.pollMin(), true);
+            else
+                fillEdges(stateTo.pollMin(), false);
+        }
+
+        if (meetingNode < 0)
+            return new Path4CH(graph, prepareWeightCalc);
+        return new Path4CH(graph, prepareWeightCalc).extract(stateFrom, stateTo, meetingNode);
+    }
+
+    private void fillEdges(int node, boolean out) {
+        SearchState state = out ? stateFrom : stateTo;
+        SearchState stateOther = out ? stateTo : stateFrom;
+        double currWeight = state.weight(node);
+        if (stallOnDemand && isStalled(node, currWeight, out))
+            return;
+
+        int last = queryGraph.lastEdge(node, out);
+        for (int index = queryGraph.firstEdge(node, out); index < last; index++) {
+            int neighborNode = queryGraph.adjNode(index, out);
+            double tmpWeight = queryGraph.weight(index, out) + currWeight;
+            if (tmpWeight >= shortestWeight || state.isSettled(neighborNode) || state.weight(neighborNode) <= tmpWeight)
+                continue;
+
+            // the cold edge id is only read if the node improves
+            state.update(neighborNode, tmpWeight, queryGraph.edge(index, out), node, tmpWeight);
+            if (stateOther.isReached(neighborNode)) {
+                double newShortest = tmpWeight + stateOther.weight(neighborNode);
+                if (newShortest < shortestWeight) {
+                    shortestWeight = newShortest;
+                    meetingNode = neighborNode;
+                }
+            }
+        }
+    }
+
+    private boolean isStalled(int node, double weight, boolean out) {
+        SearchState state = out ? stateFrom : stateTo;
+        int last = queryGraph.lastEdge(node, !out);
+        for (int index = queryGraph.firstEdge(node, !out); index < last; index++) {
+            if (state.weight(queryGraph.adjNode(index, !out)) + queryGraph.weight(index, !out) < weight)
+                return true;
+        }
+        return false;
+    }
+
+    @Override public String name() {
+        return "dijkstraCHQuery";
+    }
+
+    @Override
+    public int calcVisitedNodes() {
+        return stateFrom.settledNodes() + stateTo.settledNodes();
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.ManyToManyAlgorithm;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.util.EdgeLevelFilter;
+import com.graphhopper.routing.util.PrecomputedWeights;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.map.hash.TIntLongHashMap;
+import java.util.Arrays;
+
+/**
+ * The bucket based many-to-many algorithm for contraction hierarchies. An
+ * upward search backwards from every target stores (target, weight) into a
+ * bucket at every settled node. Then an upward search from every source scans
+ * the buckets of its settled nodes: source and target meet at the highest
+ * node of their shortest path, so the minimum over all buckets is the exact
+ * weight.
+ *
+ * The weights are read from the weights of the preparation. The time of a
+ * shortcut is calculated once from its skipped edges and cached.
+ *
+ * Computing Many-to-Many Shortest Paths Using Highway Hierarchies ->
+ * http://algo2.iti.kit.edu/schultes/hwy/manyToMany.pdf
+ *
+ * @see PrepareContractionHierarchies#createManyToMany()
+ * @author Peter Karich
+ */
+public class ManyToManyCH implements ManyToManyAlgorithm {
+
+    private final PrepareContractionHierarchies prepare;
+    private final LevelGraph g;
+    private final WeightCalculation prepareWeightCalc;
+    private final PrecomputedWeights weights;
+    private final EdgeLevelFilter levelFilter;
+    private final SearchState state;
+    private final TIntArrayList settledNodes = new TIntArrayList();
+    // the real distance and time of the reached nodes of the current search
+    private double[] distances;
+    private long[] times;
+    private boolean calcPaths;
+    // every bucket is a linked list of entries, bucketHeads points to the last added entry of a node
+    private int[] bucketHeads;
+    private final TIntArrayList bucketNodes = new TIntArrayList();
+    private final TIntArrayList bucketNext = new TIntArrayList();
+    private final TIntArrayList bucketTarget = new TIntArrayList();
+    private final TDoubleArrayList bucketWeight = new TDoubleArrayList();
+    private final TDoubleArrayList bucketDistance = new TDoubleArrayList();
+    private final TLongArrayList bucketTime = new TLongArrayList();
+    private final TIntDoubleHashMap edgeDistances = new TIntDoubleHashMap();
+    private final TIntLongHashMap edgeTimes = new TIntLongHashMap();
+
+    ManyToManyCH(PrepareContractionHierarchies prepare, LevelGraph g, PrecomputedWeights weights,
+            boolean filterLevels) {
+        this.prepare = prepare;
+        this.g = g;
+        this.weights = weights;
+        this.prepareWeightCalc = weights.weightCalculation();
+        levelFilter = filterLevels ? new EdgeLevelFilter(g) : null;
+        int nodes = g.nodes();
+        state = new SearchState(nodes);
+        distances = new double[nodes];
+        times = new long[nodes];
+        bucketHeads = new int[nodes];
+        Arrays.fill(bucketHeads, -1);
+    }
+
+    @Override
+    public ManyToManyCH type(WeightCalculation calc) {
+        if (calc != prepareWeightCalc)
+            throw new IllegalStateException("You'll need to change weightCalculation of preparation instead of algorithm!");
+        return this;
+    }
+
+    /**
+     * The paths are calculated with one bidirectional CH query per pair.
+     */
+    @Override
+    public ManyToManyCH calcPaths(boolean paths) {
+        calcPaths = paths;
+        return this;
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix(int[] sources, int[] targets) {
+        DistanceMatrix matrix = new DistanceMatrix(sources.length, targets.length, calcPaths);
+        try {
+            for (int j = 0; j < targets.length; j++) {
+                search(targets[j], false);
+                for (int k = 0; k < settledNodes.size(); k++) {
+                    addBucketEntry(settledNodes.get(k), j);
+                }
+            }
+
+            for (int i = 0; i < sources.length; i++) {
+                search(sources[i], true);
+                for (int k = 0; k < settledNodes.size(); k++) {
+                    scanBucket(settledNodes.get(k), i, matrix);
+                }
+            }
+        } finally {
+            clearBuckets();
+        }
+
+        if (calcPaths) {
+            RoutingAlgorithm algo = prepare.createAlgo();
+            for (int i = 0; i < sources.length; i++) {
+                for (int j = 0; j < targets.length; j++) {
+                    if (matrix.found(i, j))
+                        matrix.path(i, j, algo.clear().calcPath(sources[i], targets[j]));
+                    else
+                        matrix.path(i, j, new Path(g, prepareWeightCalc));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Settles the whole upward search space of the specified node.
+     */
+    private void search(int start, boolean out) {
+        state.reset();
+        settledNodes.resetQuick();
+        state.start(start);
+        distances[start] = 0;
+        times[start] = 0;
+        int currNode = start;
+        while (true) {
+            settledNodes.add(currNode);
+            double currWeight = state.weight(currNode);
+            EdgeIterator iter = out ? g.getOutgoing(currNode) : g.getIncoming(currNode);
+            if (levelFilter != null)
+                iter = levelFilter.doFilter(iter);
+            while (iter.next()) {
+                int tmpNode = iter.node();
+                int edge = iter.edge();
+                double tmpWeight = weights.weight(edge) + currWeight;
+                if (state.update(tmpNode, tmpWeight, edge, currNode, tmpWeight)) {
+                    if (!edgeDistances.containsKey(edge))
+                        cacheEdge(g.getEdgeProps(edge, tmpNode));
+                    distances[tmpNode] = distances[currNode] + edgeDistances.get(edge);
+                    times[tmpNode] = times[currNode] + edgeTimes.get(edge);
+                }
+            }
+
+            if (state.isEmpty())
+                return;
+            currNode = state.pollMin();
+        }
+    }
+
+    /**
+     * Calculates the real distance and time of the specified edge. For a
+     * shortcut these are the sums of its skipped edges.
+     */
+    private void cacheEdge(EdgeSkipIterator iter) {
+        int edge = iter.edge();
+        if (edgeDistances.containsKey(edge))
+            return;
+
+        double dist;
+        long time;
+        if (iter.isShortcut()) {
+            // skippedEdge1 is adjacent to the smaller node, see PrepareContractionHierarchies
+            int smaller = Math.min(iter.baseNode(), iter.node());
+            int bigger = Math.max(iter.baseNode(), iter.node());
+            int skipped1 = skippedEdge(edge, iter.skippedEdge1(), smaller);
+            int skipped2 = skippedEdge(edge, iter.skippedEdge2(), bigger);
+            dist = edgeDistances.get(skipped1) + edgeDistances.get(skipped2);
+            time = edgeTimes.get(skipped1) + edgeTimes.get(skipped2);
+        } else {
+            dist = iter.distance();
+            time = prepareWeightCalc.getTime(dist, iter.flags());
+        }
+        edgeDistances.put(edge, dist);
+        edgeTimes.put(edge, time);
+    }
+
+    /**
+     * The skipped edge connects the contracted node with the specified node
+     * of the shortcut.
+     */
+    private int skippedEdge(int shortcut, int skippedEdge, int node) {
+        EdgeSkipIterator iter = g.getEdgeProps(skippedEdge, node);
+        if (iter.isEmpty())
+            throw new IllegalStateException("Cannot find skipped edge " + skippedEdge + " of shortcut " + shortcut);
+        cacheEdge(iter);
+        return skippedEdge;
+    }
+
+    private void addBucketEntry(int node, int target) {
+        if (bucketHeads[node] < 0)
+            bucketNodes.add(node);
+        bucketNext.add(bucketHeads[node]);
+        bucketTarget.add(target);
+        bucketWeight.add(state.weight(node));
+        bucketDistance.add(distances[node]);
+        bucketTime.add(times[node]);
+        bucketHeads[node] = bucketNext.size() - 1;
+    }
+
+    private void scanBucket(int node, int source, DistanceMatrix matrix) {
+        double weight = state.weight(node);
+        for (int entry = bucketHeads[node]; entry >= 0; entry = bucketNext.get(entry)) {
+            int target = bucketTarget.get(entry);
+            double tmpWeight = weight + bucketWeight.get(entry);
+            if (tmpWeight < matrix.weight(source, target))
+                matrix.set(source, target, tmpWeight, distances[node] + bucketDistance.get(entry),
+                        times[node] + bucketTime.get(entry));
+        }
+    }
+
+    private void clearBuckets() {
+        for (int i = 0; i < bucketNodes.size(); i++) {
+            bucketHeads[bucketNodes.get(i)] = -1;
+        }
+        bucketNodes.resetQuick();
+        bucketNext.resetQuick();
+        bucketTarget.resetQuick();
+        bucketWeight.resetQuick();
+        bucketDistance.resetQuick();
+        bucketTime.resetQuick();
+    }
+
+    @Override public String name() {
+        return "dijkstraManyToManyCH";
+    }
+}
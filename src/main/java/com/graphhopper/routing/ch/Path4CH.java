@@ -21,103 +21,71 @@ package com.graphhopper.routing.ch;
 import com.graphhopper.routing.PathBidirRef;
 import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Recursivly unpack shortcuts.
+ * Unpacks the shortcuts of a path with an explicit stack instead of a
+ * recursion. The preparation stores the skipped edge which is adjacent to the
+ * node with the smaller id as first skipped edge, so every edge of the path is
+ * looked up exactly once and its iterator is reused for the unpacking.
  *
  * @see PrepareContractionHierarchies
  * @author Peter Karich,
  */
 public class Path4CH extends PathBidirRef {
 
+    // the edges which are not yet unpacked and their nodes in the direction of the path
+    private final List<EdgeSkipIterator> stack = new ArrayList<EdgeSkipIterator>();
+    private final TIntArrayList stackFrom = new TIntArrayList();
+    private final TIntArrayList stackTo = new TIntArrayList();
+
     public Path4CH(Graph g, WeightCalculation weightCalculation) {
         super(g, weightCalculation);
     }
 
     @Override
     protected void processWeight(int tmpEdge, int endNode) {
-        EdgeIterator mainIter = graph.getEdgeProps(tmpEdge, endNode);
-
-        // Shortcuts do only contain valid weight so first expand before adding
-        // to distance and time
-        expandEdge((EdgeSkipIterator) mainIter, false);
-    }
-
-    @Override
-    public void calcWeight(EdgeIterator mainIter) {
-        double dist = mainIter.distance();
-        int flags = mainIter.flags();
-        weight += weightCalculation.getWeight(dist, flags);
-        distance += weightCalculation.revertWeight(dist, flags);
-        time += weightCalculation.getTime(dist, flags);
-    }
-
-    private void expandEdge(EdgeSkipIterator mainIter, boolean revert) {
-        if (!mainIter.isShortcut()) {
-            calcWeight(mainIter);
-            addEdge(mainIter.edge());
-            return;
-        }
-
-        int skippedEdge1 = mainIter.skippedEdge1();
-        int skippedEdge2 = mainIter.skippedEdge2();
-        int from = mainIter.baseNode(), to = mainIter.node();
-        if (revert) {
-            int tmp = from;
-            from = to;
-            to = tmp;
-        }
-
-        // - getEdgeProps could possibly return an empty edge if the shortcut is available for both directions
-        if (reverseOrder) {
-            EdgeSkipIterator iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge1, to);
-            boolean empty = iter.isEmpty();
-            if (empty)
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge2, to);
-            expandEdge(iter, false);
+        EdgeSkipIterator mainIter = (EdgeSkipIterator) graph.getEdgeProps(tmpEdge, endNode);
+        push(mainIter, mainIter.baseNode(), endNode);
+        while (!stack.isEmpty()) {
+            int last = stack.size() - 1;
+            EdgeSkipIterator iter = stack.remove(last);
+            int from = stackFrom.removeAt(last);
+            int to = stackTo.removeAt(last);
+            // Shortcuts do not contain valid flags so first expand before adding
+            // to distance and time
+            if (!iter.isShortcut()) {
+                calcWeight(iter);
+                addEdge(iter.edge());
+                continue;
+            }
 
-            if (empty)
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge1, from);
-            else
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge2, from);
-            expandEdge(iter, true);
-        } else {
-            EdgeSkipIterator iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge1, from);
-            boolean empty = iter.isEmpty();
-            if (empty)
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge2, from);
-            expandEdge(iter, true);
+            int skippedFrom = from < to ? iter.skippedEdge1() : iter.skippedEdge2();
+            int skippedTo = from < to ? iter.skippedEdge2() : iter.skippedEdge1();
+            EdgeSkipIterator iterFrom = (EdgeSkipIterator) graph.getEdgeProps(skippedFrom, from);
+            EdgeSkipIterator iterTo = (EdgeSkipIterator) graph.getEdgeProps(skippedTo, to);
+            if (iterFrom.isEmpty() || iterTo.isEmpty())
+                throw new IllegalStateException("Cannot find skipped edges of shortcut " + iter.edge()
+                        + " between " + from + " and " + to);
 
-            if (empty)
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge1, to);
-            else
-                iter = (EdgeSkipIterator) graph.getEdgeProps(skippedEdge2, to);
-            expandEdge(iter, false);
+            // the edges are added backwards while reverseOrder is set
+            int middle = iterFrom.baseNode();
+            if (reverseOrder) {
+                push(iterFrom, from, middle);
+                push(iterTo, middle, to);
+            } else {
+                push(iterTo, middle, to);
+                push(iterFrom, from, middle);
+            }
         }
     }
 
-    // No need for this method as long as we store both edges instead of just one
-    //
-    // The edge 5-9 contains the right edge as skipped edge => find the left one!
-    // @params are from=5 and to=7, keep in mind that we can get edges only upwards (level-wise)
-    //     _ 9
-    // 5 -/  /
-    //  \   /
-    //   \ /
-    //    7
-    private void findSkippedEdge(int from, int to) {
-        EdgeSkipIterator iter = (EdgeSkipIterator) graph.getIncoming(to);
-        double lowest = Double.MAX_VALUE;
-        int edge = EdgeIterator.NO_EDGE;
-        while (iter.next()) {
-            if (iter.node() == from && iter.distance() < lowest) {
-                lowest = iter.distance();
-                edge = iter.edge();
-            }
-        }
-        if (EdgeIterator.Edge.isValid(edge))
-            expandEdge((EdgeSkipIterator) graph.getEdgeProps(edge, from), false);
+    private void push(EdgeSkipIterator iter, int from, int to) {
+        stack.add(iter);
+        stackFrom.add(from);
+        stackTo.add(to);
     }
 }
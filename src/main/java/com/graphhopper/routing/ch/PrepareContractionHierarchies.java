@@ -18,34 +18,43 @@
  */
 package com.graphhopper.routing.ch;
 
-import com.graphhopper.coll.MySortedCollection;
+import com.graphhopper.coll.IndexedSortedCollection;
 import com.graphhopper.routing.AStarBidirection;
 import com.graphhopper.routing.DijkstraBidirectionRef;
-import com.graphhopper.routing.DijkstraSimple;
-import com.graphhopper.routing.Path;
 import com.graphhopper.routing.PathBidirRef;
 import com.graphhopper.routing.RoutingAlgorithm;
 import com.graphhopper.routing.util.AbstractAlgoPreparation;
 import com.graphhopper.routing.util.CarStreetType;
 import com.graphhopper.routing.util.EdgeLevelFilter;
+import com.graphhopper.routing.util.PrecomputedWeights;
 import com.graphhopper.routing.util.ShortestCarCalc;
 import com.graphhopper.routing.util.WeightCalculation;
-import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphOverlay;
 import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.Storable;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.RawEdgeIterator;
 import com.graphhopper.util.StopWatch;
+import gnu.trove.list.array.TDoubleArrayList;
 import gnu.trove.list.array.TIntArrayList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -68,21 +77,42 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     private WeightCalculation prepareWeightCalc;
     private LevelGraph g;
     // the most important nodes comes last
-    private MySortedCollection sortedNodes;
+    private IndexedSortedCollection sortedNodes;
     private WeightedNode refs[];
     private TIntArrayList originalEdges;
     // shortcut is one direction, speed is only involved while recalculating the endNode weights - see prepareEdges
     static final int scOneDir = CarStreetType.flags(0, false);
     static final int scBothDir = CarStreetType.flags(0, true);
-    private Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
-    private List<NodeCH> goalNodes = new ArrayList<NodeCH>();
-    private EdgeLevelFilterCH edgeFilter;
-    private OneToManyDijkstraCH algo;
+    private ShortcutFinder finder;
+    // the weights of all edges and shortcuts, the edges itself keep their real distance
+    private PrecomputedWeights chWeights;
+    private CHQueryGraph queryGraph;
     private int updateSize;
     private boolean removesHigher2LowerEdges = true;
     private long visitedNodes = 0;
     private long counter;
     private int newShortcuts;
+    private int threads = 1;
+    private ExecutorService executor;
+    // one finder per thread and the nodes of the current round for the parallel contraction
+    private ShortcutFinder[] finders;
+    private boolean[] contracting;
+    // above this mean degree of the uncontracted graph the witness limits shrink
+    private static final double SPARSE_DEGREE = 5;
+    private int maxSettledNodes = 500;
+    private int maxHops = 5;
+    private boolean lazyUpdates = true;
+    private boolean neighborUpdates = true;
+    private int periodicUpdates = 20;
+    private long priorityUpdates;
+    private boolean stallOnDemand = true;
+    // the level of the next contracted node
+    private int nextLevel;
+    private int checkpointInterval;
+    private boolean resume;
+    private boolean resumed;
+    private DataAccess checkpoint;
+    private int checkpoints;
 
     public PrepareContractionHierarchies() {
         prepareWeightCalc = ShortestCarCalc.DEFAULT;
@@ -104,6 +134,72 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return this;
     }
 
+    /**
+     * The number of threads to contract nodes. With more than one thread
+     * every round contracts an independent set of nodes in parallel: nodes
+     * with a lower priority than all their uncontracted neighbors. Their
+     * witness searches avoid all nodes of the set, so the shortcuts are
+     * correct although they are found concurrently. Then the graph is changed
+     * in a single threaded merge step. Default is 1, which contracts one node
+     * after the other.
+     */
+    public PrepareContractionHierarchies threads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("At least one thread is necessary but was " + threads);
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * If enabled the priority of a node is calculated again before it is
+     * contracted and the node is queued again if it is no longer the
+     * minimum. Only used by the sequential contraction. Default is true.
+     */
+    public PrepareContractionHierarchies lazyUpdates(boolean lazyUpdates) {
+        this.lazyUpdates = lazyUpdates;
+        return this;
+    }
+
+    /**
+     * If enabled the priorities of the uncontracted neighbors are calculated
+     * again after a node was contracted. Default is true.
+     */
+    public PrepareContractionHierarchies neighborUpdates(boolean neighborUpdates) {
+        this.neighborUpdates = neighborUpdates;
+        return this;
+    }
+
+    /**
+     * Calculates the priorities of all uncontracted nodes again after the
+     * specified percentage of the nodes was contracted, 0 disables this. Every
+     * update runs the witness searches of all remaining nodes and so it is
+     * expensive while lazy and neighbor updates already keep most priorities
+     * up to date. Default is 20.
+     */
+    public PrepareContractionHierarchies periodicUpdates(int percentage) {
+        if (percentage < 0 || percentage > 100)
+            throw new IllegalArgumentException("Percentage of periodic updates has to be in [0, 100] but was "
+                    + percentage);
+        this.periodicUpdates = percentage;
+        return this;
+    }
+
+    /**
+     * Limits every witness search to the specified number of settled nodes and
+     * hops (edges) from its start. The limits are used as long as the
+     * uncontracted graph is sparse and shrink in proportion when its mean
+     * degree grows above 5. Smaller limits speed
+     * up the preparation but lead to more shortcuts. Default is 500 and 5.
+     */
+    public PrepareContractionHierarchies witnessLimits(int maxSettledNodes, int maxHops) {
+        if (maxSettledNodes < 1 || maxHops < 1)
+            throw new IllegalArgumentException("Witness limits need to be positive but were "
+                    + maxSettledNodes + ", " + maxHops);
+        this.maxSettledNodes = maxSettledNodes;
+        this.maxHops = maxHops;
+        return this;
+    }
+
     /**
      * Disconnect is very important to massivly speed up query time on mobile
      * devices. If enabled it will remove the edge going from the higher level
@@ -116,33 +212,203 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return this;
     }
 
+    /**
+     * Stall-on-demand for the query algorithms: a node is not expanded if an
+     * edge from a reached node proves that its weight is not optimal. Then
+     * the upward search does not continue with suboptimal nodes which it
+     * would visit otherwise. Only used for createAlgo and createQueryAlgo.
+     * Default is true.
+     */
+    public PrepareContractionHierarchies stallOnDemand(boolean stallOnDemand) {
+        this.stallOnDemand = stallOnDemand;
+        return this;
+    }
+
+    /**
+     * Writes a checkpoint after every specified number of contracted nodes:
+     * the graph with the levels and shortcuts, the weights, the priorities of
+     * the nodes and the original edge counts of the shortcuts are flushed into
+     * the directory of the graph. Use a Directory which stores its files,
+     * e.g. a RAMDirectory with store=true. Default is 0 which disables
+     * checkpoints. A RAMDataAccess writes only the segments changed since the
+     * last checkpoint and a memory mapped one only the changed pages.
+     * <p/>
+     * A memory mapped graph can contain changes made after the last checkpoint.
+     * Levels after the checkpoint are reset on resume but shortcuts are only
+     * detected via the edge count, which then fails the resume.
+     */
+    public PrepareContractionHierarchies checkpointInterval(int contractions) {
+        if (contractions < 0)
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative but was " + contractions);
+        this.checkpointInterval = contractions;
+        return this;
+    }
+
+    /**
+     * @param resume if true doWork continues from the last checkpoint of an
+     * interrupted preparation if one exists. The graph has to be loaded from
+     * the files of this checkpoint. Without a checkpoint the preparation
+     * starts from scratch.
+     */
+    public PrepareContractionHierarchies resume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * @return the number of checkpoints written by the last doWork
+     */
+    public int checkpoints() {
+        return checkpoints;
+    }
+
     @Override
     public PrepareContractionHierarchies doWork() {
         super.doWork();
-        initFromGraph();
-        if (!prepareEdges())
-            return this;
+        if (removesHigher2LowerEdges && g instanceof LevelGraphOverlay)
+            throw new IllegalStateException("Edges of a LevelGraphOverlay cannot be removed. "
+                    + "Use removeHigher2LowerEdges(false)");
+        queryGraph = null;
+        checkpoints = 0;
+        resumed = resume && initFromCheckpoint();
+        if (!resumed) {
+            initFromGraph();
+            if (!prepareEdges())
+                return this;
+        }
 
-        if (!prepareNodes())
-            return this;
-        contractNodes();
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads);
+            contracting = new boolean[g.nodes()];
+            finders = new ShortcutFinder[threads];
+            for (int i = 0; i < threads; i++) {
+                finders[i] = new ShortcutFinder(contracting);
+            }
+        }
+        try {
+            if (resumed)
+                updateWitnessLimits();
+            else if (!prepareNodes())
+                return this;
+            if (threads > 1)
+                contractNodesParallel();
+            else
+                contractNodes();
+        } finally {
+            if (executor != null)
+                executor.shutdown();
+            executor = null;
+            finders = null;
+            contracting = null;
+        }
+        chWeights.flush();
+        removeCheckpoint();
         return this;
     }
 
     boolean prepareEdges() {
         // in CH the flags will be ignored (calculating the new flags for the shortcuts is impossible)
         // also several shortcuts would be necessary with the different modes (e.g. fastest and extractPath)
-        // so calculate the weight and store this as distance, then use only distance instead of getWeight
+        // so the weights are calculated once into a separate array in initFromGraph
+        // and the edges keep their real distance
         RawEdgeIterator iter = g.allEdges();
         int c = 0;
         while (iter.next()) {
             c++;
-            iter.distance(prepareWeightCalc.getWeight(iter.distance(), iter.flags()));
             setOrigEdgeCount(iter.edge(), 1);
         }
         return c > 0;
     }
 
+    private PrecomputedWeights createWeights() {
+        return new PrecomputedWeights(g, prepareWeightCalc, directory(), "ch_weights_" + storageName());
+    }
+
+    private Directory directory() {
+        if (g instanceof LevelGraphOverlay)
+            return ((LevelGraphOverlay) g).directory();
+        if (!(g instanceof GraphStorage))
+            throw new IllegalStateException("CH weights need a GraphStorage but was " + g.getClass().getSimpleName());
+        return ((GraphStorage) g).directory();
+    }
+
+    /**
+     * @return the suffix of the files of this preparation. The files of an
+     * overlay belong to its shortcuts, otherwise to the weighting.
+     */
+    private String storageName() {
+        if (g instanceof LevelGraphOverlay)
+            return ((LevelGraphOverlay) g).name();
+        return prepareWeightCalc.toString().toLowerCase();
+    }
+
+    /**
+     * @return the weights of all edges including the shortcuts. If the graph
+     * was prepared before they are loaded from disc or, if not stored, they
+     * are recalculated from the edges and the skipped edges of the shortcuts.
+     * Synchronized as the algorithms can be created from several threads.
+     */
+    public synchronized PrecomputedWeights weights() {
+        if (chWeights == null) {
+            PrecomputedWeights tmp = createWeights();
+            if (!tmp.loadExisting())
+                calcShortcutWeights(tmp.prepare());
+            chWeights = tmp;
+        }
+        return chWeights;
+    }
+
+    /**
+     * The flags of a shortcut do not contain a speed, so its weight is the sum
+     * of the weights of its skipped edges.
+     */
+    private void calcShortcutWeights(PrecomputedWeights weights) {
+        boolean[] done = new boolean[weights.edges()];
+        RawEdgeIterator iter = g.allEdges();
+        while (iter.next()) {
+            calcShortcutWeight(weights, done, g.getEdgeProps(iter.edge(), iter.nodeB()));
+        }
+    }
+
+    private double calcShortcutWeight(PrecomputedWeights weights, boolean[] done, EdgeSkipIterator iter) {
+        int edge = iter.edge();
+        if (done[edge] || !iter.isShortcut()) {
+            done[edge] = true;
+            return weights.weight(edge);
+        }
+
+        // skippedEdge1 is adjacent to the smaller node, see setSkippedEdges
+        int smaller = Math.min(iter.baseNode(), iter.node());
+        int bigger = Math.max(iter.baseNode(), iter.node());
+        double weight = calcShortcutWeight(weights, done, skippedEdge(edge, iter.skippedEdge1(), smaller))
+                + calcShortcutWeight(weights, done, skippedEdge(edge, iter.skippedEdge2(), bigger));
+        weights.weight(edge, weight);
+        done[edge] = true;
+        return weight;
+    }
+
+    private EdgeSkipIterator skippedEdge(int shortcut, int skippedEdge, int node) {
+        EdgeSkipIterator iter = g.getEdgeProps(skippedEdge, node);
+        if (iter.isEmpty())
+            throw new IllegalStateException("Cannot find skipped edge " + skippedEdge + " of shortcut " + shortcut
+                    + " at node " + node);
+        return iter;
+    }
+
+    /**
+     * @return the graph without shortcuts for algorithms without contraction
+     * hierarchies. Requires removeHigher2LowerEdges(false), otherwise the
+     * preparation removed edges from the graph. For a LevelGraphOverlay this
+     * is the graph below the overlay.
+     */
+    public Graph baseGraph() {
+        if (g instanceof LevelGraphOverlay)
+            return ((LevelGraphOverlay) g).baseGraph();
+        if (removesHigher2LowerEdges)
+            throw new IllegalStateException("The base graph is incomplete if higher to lower edges are removed");
+        return new BaseGraphView(g);
+    }
+
     // TODO we can avoid node level if we store this into a temporary array and 
     // disconnect all edges which goes from higher to lower level 
     // => should already be satisfied => no edgeFilter necessary    
@@ -153,10 +419,20 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         for (int node = 0; node < len; node++) {
             refs[node] = new WeightedNode(node, 0);
         }
+        updateWitnessLimits();
+
+        if (threads > 1) {
+            TIntArrayList nodes = new TIntArrayList(len);
+            for (int node = 0; node < len; node++) {
+                nodes.add(node);
+            }
+            updatePriorities(nodes);
+        }
 
         for (int node = 0; node < len; node++) {
             WeightedNode wn = refs[node];
-            wn.priority = calculatePriority(node);
+            if (threads <= 1)
+                wn.priority = calculatePriority(node);
             sortedNodes.insert(wn.node, wn.priority);
         }
 
@@ -166,31 +442,33 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     }
 
     void contractNodes() {
-        int level = 1;
-        counter = 0;
+        // use all nodes and not the remaining ones to keep the intervals after a resume
         if (updateSize <= 0)
-            updateSize = Math.max(10, sortedNodes.size() / 10);
+            updateSize = Math.max(10, g.nodes() / 10);
+        long periodicSize = periodicSize(g.nodes());
 
         int updateCounter = 0;
         StopWatch sw = new StopWatch();
+        StopWatch allSW = new StopWatch().start();
         // no update all => 600k shortcuts and 3min
         while (!sortedNodes.isEmpty()) {
-            if (counter % updateSize == 0) {
-                // periodically update priorities of ALL nodes            
-                if (updateCounter > 0 && updateCounter % 2 == 0) {
-                    int len = g.nodes();
-                    sw.start();
-                    // TODO avoid to traverse all nodes -> via a new sortedNodes.iterator()
-                    for (int node = 0; node < len; node++) {
-                        WeightedNode wNode = refs[node];
-                        if (g.getLevel(node) != 0)
-                            continue;
-                        int old = wNode.priority;
-                        wNode.priority = calculatePriority(node);
-                        sortedNodes.update(node, old, wNode.priority);
-                    }
-                    sw.stop();
+            if (counter > 0 && counter % periodicSize == 0) {
+                // periodically update priorities of ALL uncontracted nodes
+                sw.start();
+                TIntArrayList nodes = sortedNodes.keys();
+                for (int i = 0; i < nodes.size(); i++) {
+                    int node = nodes.get(i);
+                    WeightedNode wNode = refs[node];
+                    int old = wNode.priority;
+                    wNode.priority = calculatePriority(node);
+                    sortedNodes.update(node, old, wNode.priority);
                 }
+                sw.stop();
+            }
+
+            if (counter % updateSize == 0) {
+                if (updateCounter > 0)
+                    updateWitnessLimits();
                 updateCounter++;
                 logger.info(counter + ", nodes: " + sortedNodes.size() + ", shortcuts:" + newShortcuts
                         + ", updateAllTime:" + sw.getSeconds() + ", " + updateCounter
@@ -200,9 +478,11 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             counter++;
             WeightedNode wn = refs[sortedNodes.pollKey()];
 
-            // update priority of current endNode via simulating 'addShortcuts'
-            wn.priority = calculatePriority(wn.node);
-            if (!sortedNodes.isEmpty() && wn.priority > sortedNodes.peekValue()) {
+            if (lazyUpdates) {
+                // update priority of current endNode via simulating 'addShortcuts'
+                wn.priority = calculatePriority(wn.node);
+            }
+            if (lazyUpdates && !sortedNodes.isEmpty() && wn.priority > sortedNodes.peekValue()) {
                 // endNode got more important => insert as new value and contract it later
                 sortedNodes.insert(wn.node, wn.priority);
                 continue;
@@ -219,8 +499,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 //                    + ", peekVal:" + (!sortedNodes.isEmpty() ? sortedNodes.peekValue() : -1)
 //                    + ", size:" + sortedNodes.size());
 
-            g.setLevel(wn.node, level);
-            level++;
+            g.setLevel(wn.node, nextLevel);
+            nextLevel++;
 
             // recompute priority of uncontracted neighbors
             EdgeIterator iter = g.getEdges(wn.node);
@@ -230,18 +510,234 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
                     continue;
 
                 int nn = iter.node();
-                WeightedNode neighborWn = refs[nn];
-                int tmpOld = neighborWn.priority;
-                neighborWn.priority = calculatePriority(nn);
-                if (neighborWn.priority != tmpOld) {
-                    sortedNodes.update(nn, tmpOld, neighborWn.priority);
+                if (neighborUpdates) {
+                    WeightedNode neighborWn = refs[nn];
+                    int tmpOld = neighborWn.priority;
+                    neighborWn.priority = calculatePriority(nn);
+                    if (neighborWn.priority != tmpOld) {
+                        sortedNodes.update(nn, tmpOld, neighborWn.priority);
+                    }
                 }
 
                 if (removesHigher2LowerEdges)
                     ((LevelGraphStorage) g).disconnect(iter, EdgeSkipIterator.NO_EDGE, false);
             }
+
+            if (isCheckpointDue() && !sortedNodes.isEmpty())
+                checkpoint();
+        }
+        logger.info("new shortcuts " + newShortcuts + ", " + prepareWeightCalc + ", " + updatePolicy()
+                + ", priority updates:" + priorityUpdates + ", updateAllTime:" + sw.getSeconds()
+                + ", time:" + allSW.stop().getSeconds());
+    }
+
+    /**
+     * @return the number of contractions between two updates of all
+     * priorities or Long.MAX_VALUE if periodic updates are disabled
+     */
+    private long periodicSize(int nodes) {
+        if (periodicUpdates <= 0)
+            return Long.MAX_VALUE;
+        // at least 20 contractions to avoid updating all nodes of tiny graphs again and again
+        return Math.max(20, (long) nodes * periodicUpdates / 100);
+    }
+
+    private String updatePolicy() {
+        return "lazy:" + lazyUpdates + ", neighbors:" + neighborUpdates + ", periodic:" + periodicUpdates + "%";
+    }
+
+    void contractNodesParallel() {
+        int len = g.nodes();
+        TIntArrayList remaining = new TIntArrayList(len);
+        for (int node = 0; node < len; node++) {
+            if (!resumed || g.getLevel(node) == 0)
+                remaining.add(node);
+        }
+        // marks the neighbors which need a new priority
+        boolean[] changed = new boolean[len];
+        int rounds = 0;
+        long periodicSize = periodicSize(len);
+        long nextPeriodicUpdate = periodicSize == Long.MAX_VALUE
+                ? periodicSize : (counter / periodicSize + 1) * periodicSize;
+        int nextCheckpoint = checkpointInterval <= 0
+                ? Integer.MAX_VALUE : (nextLevel - 1) / checkpointInterval * checkpointInterval + checkpointInterval;
+        StopWatch sw = new StopWatch().start();
+        while (!remaining.isEmpty()) {
+            final TIntArrayList independent = findIndependentNodes(remaining);
+            for (int i = 0; i < independent.size(); i++) {
+                contracting[independent.get(i)] = true;
+            }
+
+            final List<List<Shortcut>> found = new ArrayList<List<Shortcut>>(independent.size());
+            for (int i = 0; i < independent.size(); i++) {
+                found.add(null);
+            }
+            runParallel(independent.size(), new NodeTask() {
+                @Override public void run(ShortcutFinder tmpFinder, int index) {
+                    found.set(index, new ArrayList<Shortcut>(tmpFinder.findShortcuts(independent.get(index))));
+                }
+            });
+
+            // merge the shortcuts single threaded
+            TIntArrayList neighbors = new TIntArrayList();
+            for (int i = 0; i < independent.size(); i++) {
+                int v = independent.get(i);
+                newShortcuts += addShortcuts(found.get(i));
+                g.setLevel(v, nextLevel);
+                nextLevel++;
+                counter++;
+                contracting[v] = false;
+                EdgeIterator iter = g.getEdges(v);
+                while (iter.next()) {
+                    int nn = iter.node();
+                    if (g.getLevel(nn) != 0)
+                        continue;
+                    if (!changed[nn]) {
+                        changed[nn] = true;
+                        neighbors.add(nn);
+                    }
+                    if (removesHigher2LowerEdges)
+                        ((LevelGraphStorage) g).disconnect(iter, EdgeSkipIterator.NO_EDGE, false);
+                }
+            }
+            for (int i = 0; i < neighbors.size(); i++) {
+                changed[neighbors.get(i)] = false;
+            }
+
+            int size = 0;
+            for (int i = 0; i < remaining.size(); i++) {
+                int node = remaining.get(i);
+                if (g.getLevel(node) == 0)
+                    remaining.setQuick(size++, node);
+            }
+            remaining.remove(size, remaining.size() - size);
+
+            if (counter >= nextPeriodicUpdate) {
+                nextPeriodicUpdate += periodicSize;
+                updatePriorities(remaining);
+            } else if (neighborUpdates)
+                updatePriorities(neighbors);
+            rounds++;
+            if (nextLevel - 1 >= nextCheckpoint && !remaining.isEmpty()) {
+                nextCheckpoint += checkpointInterval;
+                checkpoint();
+            }
+            if (rounds % 10 == 0) {
+                updateWitnessLimits();
+                logger.info("round " + rounds + ", contracted: " + counter + ", nodes: " + remaining.size()
+                        + ", shortcuts:" + newShortcuts + ", memory:" + Helper.getMemInfo());
+            }
+        }
+        logger.info("new shortcuts " + newShortcuts + ", " + prepareWeightCalc + ", " + updatePolicy()
+                + ", priority updates:" + priorityUpdates + ", rounds:" + rounds
+                + ", threads:" + threads + ", time:" + sw.stop().getSeconds());
+    }
+
+    /**
+     * @return the nodes with a smaller priority than all their uncontracted
+     * neighbors, no two of them are adjacent. The node with the smallest
+     * priority is always included.
+     */
+    TIntArrayList findIndependentNodes(TIntArrayList nodes) {
+        TIntArrayList independent = new TIntArrayList();
+        for (int i = 0; i < nodes.size(); i++) {
+            int v = nodes.get(i);
+            int priority = refs[v].priority;
+            boolean minimum = true;
+            EdgeIterator iter = g.getEdges(v);
+            while (iter.next()) {
+                int u = iter.node();
+                if (u == v || g.getLevel(u) != 0)
+                    continue;
+                int uPriority = refs[u].priority;
+                if (uPriority < priority || uPriority == priority && u < v) {
+                    minimum = false;
+                    break;
+                }
+            }
+            if (minimum)
+                independent.add(v);
+        }
+        return independent;
+    }
+
+    /**
+     * Calculates the priorities of the specified nodes in parallel.
+     */
+    void updatePriorities(final TIntArrayList nodes) {
+        priorityUpdates += nodes.size();
+        runParallel(nodes.size(), new NodeTask() {
+            @Override public void run(ShortcutFinder tmpFinder, int index) {
+                int node = nodes.get(index);
+                refs[node].priority = tmpFinder.calculatePriority(node);
+            }
+        });
+    }
+
+    private interface NodeTask {
+
+        void run(ShortcutFinder tmpFinder, int index);
+    }
+
+    /**
+     * Runs the task for the indices 0 to size-1 on all threads, every thread
+     * with its own finder.
+     */
+    private void runParallel(final int size, final NodeTask task) {
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+        for (final ShortcutFinder tmpFinder : finders) {
+            futures.add(executor.submit(new Runnable() {
+                @Override public void run() {
+                    int index;
+                    while ((index = next.getAndIncrement()) < size) {
+                        task.run(tmpFinder, index);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Adapts the limits of the witness searches to the mean degree of the
+     * uncontracted nodes: the denser the remaining graph the more expensive
+     * is every search.
+     */
+    void updateWitnessLimits() {
+        long edges = 0;
+        int nodes = 0;
+        int len = g.nodes();
+        for (int node = 0; node < len; node++) {
+            if (g.getLevel(node) != 0)
+                continue;
+            nodes++;
+            EdgeIterator iter = g.getEdges(node);
+            while (iter.next()) {
+                if (g.getLevel(iter.node()) == 0)
+                    edges++;
+            }
+        }
+        double meanDegree = nodes == 0 ? 0 : (double) edges / nodes;
+        double factor = meanDegree <= SPARSE_DEGREE ? 1 : SPARSE_DEGREE / meanDegree;
+        int settled = Math.max(1, (int) (maxSettledNodes * factor));
+        int hops = Math.max(1, (int) (maxHops * factor));
+        finder.limits(settled, hops);
+        if (finders != null) {
+            for (ShortcutFinder tmpFinder : finders) {
+                tmpFinder.limits(settled, hops);
+            }
         }
-        logger.info("new shortcuts " + newShortcuts + ", " + prepareWeightCalc);
+        logger.info("mean degree:" + (float) meanDegree + ", witness limits settled:" + settled + ", hops:" + hops);
     }
 
     int shortcuts() {
@@ -249,186 +745,354 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
     }
 
     /**
-     * Calculates the priority of endNode v without changing the graph. Warning:
-     * the calculated priority must NOT depend on priority(v) and therefor
-     * findShortcuts should also not depend on the priority(v). Otherwise
-     * updating the priority before contracting in contractNodes() could lead to
-     * a slowishor even endless loop.
+     * @return the number of priority calculations of the last preparation
      */
-    int calculatePriority(int v) {
-        // set of shortcuts that would be added if endNode v would be contracted next.
-        Collection<Shortcut> tmpShortcuts = findShortcuts(v);
-        // from shortcuts we can compute the edgeDifference
-
-        // # low influence: with it the shortcut creation is slightly faster
-        //
-        // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
-        // meanDegree is used instead of outDegree+inDegree as if one endNode is in both directions
-        // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
-        int degree = GraphUtility.count(g.getEdges(v));
-        int edgeDifference = tmpShortcuts.size() - degree;
-
-        // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
-        //
-        // every endNode has an 'original edge' number associated. initially it is r=1
-        // when a new shortcut is introduced then r of the associated edges is summed up:
-        // r(u,w)=r(u,v)+r(v,w) now we can define
-        // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
-        int originalEdgesCount = 0;
-        for (Shortcut sc : tmpShortcuts) {
-            originalEdgesCount += sc.originalEdges;
-        }
-
-        // # lowest influence on preparation speed or shortcut creation count 
-        // (but according to paper should speed up queries)
-        //
-        // number of already contracted neighbors of v
-        int contractedNeighbors = 0;
-        EdgeSkipIterator iter = g.getEdges(v);
-        while (iter.next()) {
-            if (iter.isShortcut())
-                contractedNeighbors++;
-        }
+    long priorityUpdates() {
+        return priorityUpdates;
+    }
 
-        // unterfranken example
-        // 10, 50, 1 => 180s preparation, q 3.3ms
-        //  2,  4, 1 => 200s preparation, q 3.0ms
-        // according to the paper do a simple linear combination of the properties to get the priority
-        return 10 * edgeDifference + 50 * originalEdgesCount + contractedNeighbors;
+    /**
+     * Calculates the priority of endNode v without changing the graph.
+     *
+     * @see ShortcutFinder#calculatePriority(int)
+     */
+    int calculatePriority(int v) {
+        priorityUpdates++;
+        return finder.calculatePriority(v);
     }
 
     PrepareContractionHierarchies initFromGraph() {
         originalEdges = new TIntArrayList(g.nodes() / 2, -1);
-        edgeFilter = new EdgeLevelFilterCH(this.g);
-        sortedNodes = new MySortedCollection(g.nodes());
+        sortedNodes = new IndexedSortedCollection(g.nodes());
         refs = new WeightedNode[g.nodes()];
+        chWeights = createWeights().prepare();
+        finder = new ShortcutFinder(null);
+        priorityUpdates = 0;
+        nextLevel = 1;
+        counter = 0;
+        newShortcuts = 0;
         return this;
     }
 
-    static class EdgeLevelFilterCH extends EdgeLevelFilter {
+    /**
+     * Writes the state of the contraction, see checkpointInterval.
+     */
+    void checkpoint() {
+        StopWatch sw = new StopWatch().start();
+        ((Storable) g).flush();
+        chWeights.flush();
+        int nodes = g.nodes();
+        int edges = chWeights.edges();
+        if (checkpoint == null)
+            checkpoint = directory().findCreate("ch_checkpoint_" + storageName());
+        if (checkpoint.capacity() == 0)
+            checkpoint.createNew(4L * (nodes + edges));
+        checkpoint.ensureCapacity(4L * (nodes + edges));
+        // write only changed values so that the flush skips unchanged segments or pages
+        for (int node = 0; node < nodes; node++) {
+            if (checkpoint.getInt(node) != refs[node].priority)
+                checkpoint.setInt(node, refs[node].priority);
+        }
+        for (int edge = 0; edge < edges; edge++) {
+            int count = getOrigEdgeCount(edge);
+            if (checkpoint.getInt(nodes + edge) != count)
+                checkpoint.setInt(nodes + edge, count);
+        }
+        checkpoint.setHeader(0, nodes);
+        checkpoint.setHeader(1, edges);
+        checkpoint.setHeader(2, nextLevel);
+        checkpoint.setHeader(3, (int) counter);
+        checkpoint.setHeader(4, newShortcuts);
+        checkpoint.flush();
+        checkpoints++;
+        logger.info("checkpoint " + checkpoints + ", contracted: " + (nextLevel - 1) + ", shortcuts:" + newShortcuts
+                + ", took:" + sw.stop().getSeconds());
+    }
 
-        int avoidNode;
+    /**
+     * Restores the state of the contraction from the last checkpoint.
+     *
+     * @return false if there is no checkpoint
+     */
+    boolean initFromCheckpoint() {
+        checkpoint = directory().findCreate("ch_checkpoint_" + storageName());
+        if (checkpoint.capacity() == 0 && !checkpoint.loadExisting())
+            return false;
 
-        public EdgeLevelFilterCH(LevelGraph g) {
-            super(g);
+        int nodes = checkpoint.getHeader(0);
+        int edges = checkpoint.getHeader(1);
+        if (nodes != g.nodes())
+            throw new IllegalStateException("The checkpoint was written for " + nodes + " nodes but the graph has "
+                    + g.nodes() + ". Load the graph of the checkpoint");
+        // the weights of the checkpoint, they also validate the edge count of the graph
+        chWeights = createWeights();
+        if (!chWeights.loadExisting())
+            throw new IllegalStateException("The checkpoint has no CH weights " + prepareWeightCalc);
+        if (edges != chWeights.edges())
+            throw new IllegalStateException("The checkpoint was written for " + edges + " edges but the graph has "
+                    + chWeights.edges() + ". Load the graph of the checkpoint");
+
+        originalEdges = new TIntArrayList(edges, -1);
+        for (int edge = 0; edge < edges; edge++) {
+            setOrigEdgeCount(edge, checkpoint.getInt(nodes + edge));
         }
-
-        public EdgeLevelFilterCH setAvoidNode(int node) {
-            this.avoidNode = node;
-            return this;
+        nextLevel = checkpoint.getHeader(2);
+        counter = checkpoint.getHeader(3);
+        newShortcuts = checkpoint.getHeader(4);
+        priorityUpdates = 0;
+        sortedNodes = new IndexedSortedCollection(nodes);
+        refs = new WeightedNode[nodes];
+        for (int node = 0; node < nodes; node++) {
+            refs[node] = new WeightedNode(node, checkpoint.getInt(node));
+            // a level after the checkpoint could have been written into a memory mapped graph
+            if (g.getLevel(node) >= nextLevel)
+                g.setLevel(node, 0);
+            if (g.getLevel(node) == 0)
+                sortedNodes.insert(node, refs[node].priority);
         }
+        finder = new ShortcutFinder(null);
+        logger.info("resume from checkpoint, contracted: " + (nextLevel - 1) + ", nodes: " + sortedNodes.size()
+                + ", shortcuts:" + newShortcuts);
+        return true;
+    }
 
-        @Override public boolean accept() {
-            // ignore if it is skipNode or a endNode already contracted
-            int node = node();
-            return avoidNode != node && graph.getLevel(node) == 0;
-        }
+    private void removeCheckpoint() {
+        if (checkpoint == null)
+            return;
+        directory().remove(checkpoint);
+        checkpoint = null;
+    }
+
+    private boolean isCheckpointDue() {
+        return checkpointInterval > 0 && (nextLevel - 1) % checkpointInterval == 0;
     }
 
     /**
-     * Finds shortcuts, does not change the underlying graph.
+     * The state of the witness searches which find the shortcuts of a node.
+     * Every thread of a parallel contraction needs its own instance.
      */
-    Collection<Shortcut> findShortcuts(int v) {
-        // we can use distance instead of weight, see prepareEdges where distance is overwritten by weight!
-        goalNodes.clear();
-        shortcuts.clear();
-        EdgeIterator iter1 = g.getIncoming(v);
-        // TODO PERFORMANCE collect outgoing nodes (goal-nodes) only once and just skip u
-        while (iter1.next()) {
-            int u = iter1.node();
-            int lu = g.getLevel(u);
-            if (lu != 0)
-                continue;
+    class ShortcutFinder {
+
+        private final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
+        // the uncontracted outgoing nodes of the contracted node with edge, weight and distance
+        private final TIntArrayList targets = new TIntArrayList();
+        private final TIntArrayList targetEdges = new TIntArrayList();
+        private final TDoubleArrayList targetWeights = new TDoubleArrayList();
+        private final TDoubleArrayList targetDistances = new TDoubleArrayList();
+        private final EdgeLevelFilterCH edgeFilter;
+        private final WitnessSearch search;
+
+        /**
+         * @param avoidNodes the nodes which are contracted in the current
+         * parallel round or null
+         */
+        ShortcutFinder(boolean[] avoidNodes) {
+            edgeFilter = new EdgeLevelFilterCH(g).setAvoidNodes(avoidNodes);
+            search = new WitnessSearch(g, chWeights, edgeFilter);
+        }
+
+        void limits(int maxSettled, int maxHops) {
+            search.limits(maxSettled, maxHops);
+        }
+
+        /**
+         * Calculates the priority of endNode v without changing the graph. Warning:
+         * the calculated priority must NOT depend on priority(v) and therefor
+         * findShortcuts should also not depend on the priority(v). Otherwise
+         * updating the priority before contracting in contractNodes() could lead to
+         * a slowishor even endless loop.
+         */
+        int calculatePriority(int v) {
+            // set of shortcuts that would be added if endNode v would be contracted next.
+            Collection<Shortcut> tmpShortcuts = findShortcuts(v);
+            // from shortcuts we can compute the edgeDifference
+
+            // # low influence: with it the shortcut creation is slightly faster
+            //
+            // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
+            // meanDegree is used instead of outDegree+inDegree as if one endNode is in both directions
+            // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
+            int degree = GraphUtility.count(g.getEdges(v));
+            int edgeDifference = tmpShortcuts.size() - degree;
+
+            // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
+            //
+            // every endNode has an 'original edge' number associated. initially it is r=1
+            // when a new shortcut is introduced then r of the associated edges is summed up:
+            // r(u,w)=r(u,v)+r(v,w) now we can define
+            // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
+            int originalEdgesCount = 0;
+            for (Shortcut sc : tmpShortcuts) {
+                originalEdgesCount += sc.originalEdges;
+            }
+
+            // # lowest influence on preparation speed or shortcut creation count 
+            // (but according to paper should speed up queries)
+            //
+            // number of already contracted neighbors of v
+            int contractedNeighbors = 0;
+            EdgeSkipIterator iter = g.getEdges(v);
+            while (iter.next()) {
+                if (iter.isShortcut())
+                    contractedNeighbors++;
+            }
+
+            // unterfranken example
+            // 10, 50, 1 => 180s preparation, q 3.3ms
+            //  2,  4, 1 => 200s preparation, q 3.0ms
+            // according to the paper do a simple linear combination of the properties to get the priority
+            return 10 * edgeDifference + 50 * originalEdgesCount + contractedNeighbors;
+        }
 
-            double v_u_weight = iter1.distance();
-            // one-to-many extractPath path
-            goalNodes.clear();
+        /**
+         * Finds shortcuts, does not change the underlying graph.
+         */
+        Collection<Shortcut> findShortcuts(int v) {
+            shortcuts.clear();
+            // collect the outgoing nodes (the targets) only once and skip u later
+            targets.resetQuick();
+            targetEdges.resetQuick();
+            targetWeights.resetQuick();
+            targetDistances.resetQuick();
             EdgeIterator iter2 = g.getOutgoing(v);
-            double maxWeight = 0;
             while (iter2.next()) {
                 int w = iter2.node();
-                int lw = g.getLevel(w);
-                if (w == u || lw != 0)
+                if (g.getLevel(w) != 0)
                     continue;
-
-                NodeCH n = new NodeCH();
-                n.endNode = w;
-                n.originalEdges = getOrigEdgeCount(iter2.edge());
-                n.distance = v_u_weight + iter2.distance();
-                n.edge = iter2.edge();
-                goalNodes.add(n);
-
-                if (maxWeight < n.distance)
-                    maxWeight = n.distance;
+                targets.add(w);
+                targetEdges.add(iter2.edge());
+                targetWeights.add(chWeights.weight(iter2.edge()));
+                targetDistances.add(iter2.distance());
             }
+            if (targets.isEmpty())
+                return shortcuts.keySet();
+
+            edgeFilter.setAvoidNode(v);
+            EdgeIterator iter1 = g.getIncoming(v);
+            while (iter1.next()) {
+                int u = iter1.node();
+                int lu = g.getLevel(u);
+                if (lu != 0)
+                    continue;
 
-            if (goalNodes.isEmpty())
-                continue;
+                double v_u_weight = chWeights.weight(iter1.edge());
+                double maxWeight = -1;
+                for (int i = 0; i < targets.size(); i++) {
+                    if (targets.getQuick(i) != u)
+                        maxWeight = Math.max(maxWeight, v_u_weight + targetWeights.getQuick(i));
+                }
+                if (maxWeight < 0)
+                    continue;
 
-            // TODO instead of a weight-limit we could use a hop-limit 
-            // and successively increasing it when mean-degree of graph increases
-            algo = new OneToManyDijkstraCH(g).setFilter(edgeFilter.setAvoidNode(v));
-            algo.setLimit(maxWeight).calcPath(u, goalNodes);
-            internalFindShortcuts(goalNodes, u, iter1.edge());
+                search.search(u, maxWeight, targets, u);
+                internalFindShortcuts(u, iter1.edge(), v_u_weight, iter1.distance());
+            }
+            return shortcuts.keySet();
         }
-        return shortcuts.keySet();
-    }
 
-    void internalFindShortcuts(List<NodeCH> goalNodes, int fromNode, int skippedEdge1) {
-        int uOrigEdgeCount = getOrigEdgeCount(skippedEdge1);
-        for (NodeCH n : goalNodes) {
-            if (n.entry != null) {
-                Path path = algo.extractPath(n.entry);
-                if (path.found() && path.weight() <= n.distance) {
+        void internalFindShortcuts(int fromNode, int skippedEdge1, double v_u_weight, double v_u_distance) {
+            int uOrigEdgeCount = getOrigEdgeCount(skippedEdge1);
+            for (int i = 0; i < targets.size(); i++) {
+                int w = targets.getQuick(i);
+                if (w == fromNode)
+                    continue;
+
+                double weight = v_u_weight + targetWeights.getQuick(i);
+                if (search.weight(w) <= weight) {
                     // FOUND witness path, so do not add shortcut
                     continue;
                 }
-            }
 
-            // FOUND shortcut but be sure that it is the only shortcut in the collection 
-            // and also in the graph for u->w. If existing AND identical length => update flags.
-            // Hint: shortcuts are always one-way due to distinct level of every endNode but we don't
-            // know yet the levels so we need to determine the correct direction or if both directions
+                // FOUND shortcut but be sure that it is the only shortcut in the collection 
+                // and also in the graph for u->w. If existing AND identical length => update flags.
+                // Hint: shortcuts are always one-way due to distinct level of every endNode but we don't
+                // know yet the levels so we need to determine the correct direction or if both directions
 
-            // minor improvement: if (shortcuts.containsKey((long) n.endNode * refs.length + u)) 
-            // then two shortcuts with the same nodes (u<->n.endNode) exists => check current shortcut against both
+                // minor improvement: if (shortcuts.containsKey((long) n.endNode * refs.length + u)) 
+                // then two shortcuts with the same nodes (u<->n.endNode) exists => check current shortcut against both
 
-            Shortcut sc = new Shortcut(fromNode, n.endNode, n.distance);
-            if (shortcuts.containsKey(sc))
-                continue;
-            else {
-                Shortcut tmpSc = new Shortcut(n.endNode, fromNode, n.distance);
-                Shortcut tmpRetSc = shortcuts.get(tmpSc);
-                if (tmpRetSc != null) {
-                    tmpRetSc.flags = scBothDir;
+                Shortcut sc = new Shortcut(fromNode, w, weight);
+                if (shortcuts.containsKey(sc))
                     continue;
+                else {
+                    Shortcut tmpSc = new Shortcut(w, fromNode, weight);
+                    Shortcut tmpRetSc = shortcuts.get(tmpSc);
+                    if (tmpRetSc != null) {
+                        tmpRetSc.flags = scBothDir;
+                        continue;
+                    }
                 }
+
+                shortcuts.put(sc, sc);
+                sc.distance = v_u_distance + targetDistances.getQuick(i);
+                sc.skippedEdge1 = skippedEdge1;
+                sc.skippedEdge2 = targetEdges.getQuick(i);
+                sc.originalEdges = uOrigEdgeCount + getOrigEdgeCount(targetEdges.getQuick(i));
             }
+        }
+    }
+
+    static class EdgeLevelFilterCH extends EdgeLevelFilter {
+
+        int avoidNode;
+        boolean[] avoidNodes;
+
+        public EdgeLevelFilterCH(LevelGraph g) {
+            super(g);
+        }
 
-            shortcuts.put(sc, sc);
-            sc.skippedEdge1 = skippedEdge1;
-            sc.skippedEdge2 = n.edge;
-            sc.originalEdges = uOrigEdgeCount + n.originalEdges;
+        public EdgeLevelFilterCH setAvoidNode(int node) {
+            this.avoidNode = node;
+            return this;
+        }
+
+        public EdgeLevelFilterCH setAvoidNodes(boolean[] nodes) {
+            this.avoidNodes = nodes;
+            return this;
+        }
+
+        @Override public boolean accept() {
+            // ignore if it is skipNode or a endNode already contracted
+            int node = node();
+            return avoidNode != node && graph.getLevel(node) == 0 && (avoidNodes == null || !avoidNodes[node]);
         }
     }
 
+    /**
+     * Finds shortcuts, does not change the underlying graph.
+     */
+    Collection<Shortcut> findShortcuts(int v) {
+        return finder.findShortcuts(v);
+    }
+
     /**
      * Introduces the necessary shortcuts for endNode v in the graph.
      */
     int addShortcuts(int v) {
-        Collection<Shortcut> foundShortcuts = findShortcuts(v);
+        return addShortcuts(findShortcuts(v));
+    }
+
+    int addShortcuts(Collection<Shortcut> foundShortcuts) {
         int tmpNewShortcuts = 0;
         for (Shortcut sc : foundShortcuts) {
             boolean updatedInGraph = false;
             // check if we need to update some existing shortcut in the graph
             EdgeSkipIterator iter = g.getOutgoing(sc.from);
             while (iter.next()) {
+                double weight = chWeights.weight(iter.edge());
+                if (iter.node() == sc.to && weight <= sc.weight
+                        && (!CarStreetType.isBoth(sc.flags) || CarStreetType.isBoth(iter.flags()))) {
+                    // a node contracted in the same parallel round added an equal or better edge
+                    updatedInGraph = true;
+                    break;
+                }
                 if (iter.isShortcut() && iter.node() == sc.to
                         && CarStreetType.canBeOverwritten(iter.flags(), sc.flags)
-                        && iter.distance() > sc.distance) {
+                        && weight > sc.weight) {
                     iter.flags(sc.flags);
-                    iter.skippedEdges(sc.skippedEdge1, sc.skippedEdge2);
+                    setSkippedEdges(iter, sc);
                     iter.distance(sc.distance);
+                    chWeights.weight(iter.edge(), sc.weight);
                     setOrigEdgeCount(iter.edge(), sc.originalEdges);
                     updatedInGraph = true;
                     break;
@@ -437,7 +1101,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 
             if (!updatedInGraph) {
                 iter = g.edge(sc.from, sc.to, sc.distance, sc.flags);
-                iter.skippedEdges(sc.skippedEdge1, sc.skippedEdge2);
+                setSkippedEdges(iter, sc);
+                chWeights.weight(iter.edge(), sc.weight);
                 setOrigEdgeCount(iter.edge(), sc.originalEdges);
                 tmpNewShortcuts++;
             }
@@ -445,6 +1110,19 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         return tmpNewShortcuts;
     }
 
+    /**
+     * Stores the skipped edge which is adjacent to the node with the smaller
+     * id first. Path4CH, ManyToManyCH and the weight calculation rely on this
+     * order and look up every skipped edge only at this node.
+     */
+    private static void setSkippedEdges(EdgeSkipIterator iter, Shortcut sc) {
+        // skippedEdge1 of the shortcut is adjacent to its from node
+        if (sc.from < sc.to)
+            iter.skippedEdges(sc.skippedEdge1, sc.skippedEdge2);
+        else
+            iter.skippedEdges(sc.skippedEdge2, sc.skippedEdge1);
+    }
+
     private void setOrigEdgeCount(int index, int value) {
         originalEdges.ensureCapacity(index + 1);
         originalEdges.setQuick(index, value);
@@ -457,7 +1135,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 
     @Override
     public DijkstraBidirectionRef createAlgo() {
-        // do not change weight within DijkstraBidirectionRef => so use ShortestCalc
+        // the weights of the edges and shortcuts are read from the prepared weights
+        final boolean stall = stallOnDemand;
         DijkstraBidirectionRef dijkstra = new DijkstraBidirectionRef(g) {
             @Override protected void initCollections(int nodes) {
                 // algorithm with CH does not need that much memory pre allocated
@@ -466,11 +1145,11 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
 
             @Override public boolean checkFinishCondition() {
                 // changed finish condition for CH
-                if (currFrom == null)
-                    return currTo.weight >= shortest.weight();
-                else if (currTo == null)
-                    return currFrom.weight >= shortest.weight();
-                return currFrom.weight >= shortest.weight() && currTo.weight >= shortest.weight();
+                if (currFrom < 0)
+                    return currToWeight() >= shortest.weight();
+                else if (currTo < 0)
+                    return currFromWeight() >= shortest.weight();
+                return currFromWeight() >= shortest.weight() && currToWeight() >= shortest.weight();
             }
 
             @Override public RoutingAlgorithm type(WeightCalculation wc) {
@@ -478,43 +1157,35 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             }
 
             @Override protected PathBidirRef createPath() {
-                // CH changes the distance in prepareEdges to the weight
-                // now we need to transform it back to the real distance
-                WeightCalculation wc = new WeightCalculation() {
-                    @Override public String toString() {
-                        return "INVERSE";
-                    }
-
-                    @Override public double getMinWeight(double distance) {
-                        throw new IllegalStateException("getMinWeight not supported yet");
-                    }
-
-                    @Override public double getWeight(double distance, int flags) {
-                        return distance;
-                    }
-
-                    @Override public long getTime(double distance, int flags) {
-                        return prepareWeightCalc.getTime(revertWeight(distance, flags), flags);
-                    }
+                // the edges keep their real distance, only shortcuts need to be expanded
+                return new Path4CH(graph, prepareWeightCalc);
+            }
 
-                    @Override public double revertWeight(double weight, int flags) {
-                        return prepareWeightCalc.revertWeight(weight, flags);
-                    }
-                };
-                return new Path4CH(graph, wc);
+            @Override protected boolean isStalled(int node, double weight, boolean out) {
+                if (!stall)
+                    return false;
+                // the edges from the higher nodes which the upward search skips
+                EdgeIterator iter = GraphUtility.getEdges(graph, node, !out);
+                while (iter.next()) {
+                    if (reachedWeight(iter.node(), out) + calcWeight(iter) < weight)
+                        return true;
+                }
+                return false;
             }
 
             @Override public String name() {
                 return "dijkstraCH";
             }
         };
+        dijkstra.weights(weights());
+        dijkstra.pruning(true);
         if (!removesHigher2LowerEdges)
             dijkstra.edgeFilter(new EdgeLevelFilter(g));
         return dijkstra;
     }
 
     public AStarBidirection createAStar() {
-        // do not change weight within AStarBidirection => so use ShortestCalc
+        // the weights of the edges and shortcuts are read from the prepared weights
         AStarBidirection astar = new AStarBidirection(g) {
             @Override protected void initCollections(int nodes) {
                 // algorithm with CH does not need that much memory pre allocated
@@ -536,103 +1207,46 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             }
 
             @Override protected PathBidirRef createPath() {
-                // CH changes the distance in prepareEdges to the weight
-                // now we need to transform it back to the real distance
-                WeightCalculation wc = new WeightCalculation() {
-                    @Override public String toString() {
-                        return "INVERSE";
-                    }
-
-                    @Override public double getMinWeight(double distance) {
-                        throw new IllegalStateException("getMinWeight not supported yet");
-                    }
-
-                    @Override public double getWeight(double distance, int flags) {
-                        return distance;
-                    }
-
-                    @Override public long getTime(double distance, int flags) {
-                        return prepareWeightCalc.getTime(revertWeight(distance, flags), flags);
-                    }
-
-                    @Override public double revertWeight(double weight, int flags) {
-                        return prepareWeightCalc.revertWeight(weight, flags);
-                    }
-                };
-                return new Path4CH(graph, wc);
+                // the edges keep their real distance, only shortcuts need to be expanded
+                return new Path4CH(graph, prepareWeightCalc);
             }
 
             @Override public String name() {
                 return "astarCH";
             }
         };
+        astar.weights(weights());
+        // no stall-on-demand as A* settles nodes before their weight is optimal and
+        // a stalled node could be the only upward continuation of the path
+        astar.setPruning(true);
+        if (!removesHigher2LowerEdges)
+            astar.setEdgeFilter(new EdgeLevelFilter(g));
         return astar;
     }
 
     /**
-     * Use an one-to-many algorithm to make preparation faster. We need to use
-     * DijkstraSimple as AStar or DijkstraBidirection cannot be efficiently used
-     * with multiple goals
+     * @return the bucket based many-to-many algorithm for the prepared graph
      */
-    static class OneToManyDijkstraCH extends DijkstraSimple {
-
-        EdgeLevelFilter filter;
-        double limit;
-        Collection<NodeCH> goals;
-
-        public OneToManyDijkstraCH(Graph graph) {
-            super(graph);
-            type(ShortestCarCalc.DEFAULT);
-        }
-
-        public OneToManyDijkstraCH setFilter(EdgeLevelFilter filter) {
-            this.filter = filter;
-            return this;
-        }
-
-        @Override
-        protected final EdgeIterator neighbors(int neighborNode) {
-            return filter.doFilter(super.neighbors(neighborNode));
-        }
-
-        OneToManyDijkstraCH setLimit(double weight) {
-            limit = weight;
-            return this;
-        }
-
-        @Override public OneToManyDijkstraCH clear() {
-            super.clear();
-            return this;
-        }
-
-        @Override public Path calcPath(int from, int to) {
-            throw new IllegalArgumentException("call the other calcPath instead");
-        }
-
-        Path calcPath(int from, Collection<NodeCH> goals) {
-            this.goals = goals;
-            return super.calcPath(from, -1);
-        }
-
-        @Override public boolean finished(EdgeEntry curr, int _ignoreTo) {
-            if (curr.weight > limit)
-                return true;
+    public ManyToManyCH createManyToMany() {
+        return new ManyToManyCH(this, g, weights(), !removesHigher2LowerEdges);
+    }
 
-            int found = 0;
-            for (NodeCH n : goals) {
-                if (n.endNode == curr.endNode) {
-                    n.entry = curr;
-                    found++;
-                } else if (n.entry != null) {
-                    found++;
-                }
-            }
-            return found == goals.size();
-        }
+    /**
+     * @return the compact query-only copy of the prepared graph. It is created
+     * on the first call and shared by all algorithms of createQueryAlgo.
+     */
+    public synchronized CHQueryGraph queryGraph() {
+        if (queryGraph == null)
+            queryGraph = new CHQueryGraph(g, weights());
+        return queryGraph;
+    }
 
-        @Override public String name() {
-            return "dijkstraOne2Many";
-        }
+    /**
+     * @return the bidirectional Dijkstra on the compact query graph which
+     * avoids the linked edge lists and the level filter of createAlgo
+     */
+    public DijkstraCHQuery createQueryAlgo() {
+        return new DijkstraCHQuery(queryGraph()).stallOnDemand(stallOnDemand);
     }
 
     private static class WeightedNode {
@@ -656,14 +1270,16 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
         int to;
         int skippedEdge1;
         int skippedEdge2;
+        double weight;
+        // the real distance, the sum of the distances of the skipped edges
         double distance;
         int originalEdges;
         int flags = scOneDir;
 
-        public Shortcut(int from, int to, double dist) {
+        public Shortcut(int from, int to, double weight) {
             this.from = from;
             this.to = to;
-            this.distance = dist;
+            this.weight = weight;
         }
 
         @Override
@@ -672,7 +1288,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             hash = 23 * hash + from;
             hash = 23 * hash + to;
             return 23 * hash
-                    + (int) (Double.doubleToLongBits(this.distance) ^ (Double.doubleToLongBits(this.distance) >>> 32));
+                    + (int) (Double.doubleToLongBits(this.weight) ^ (Double.doubleToLongBits(this.weight) >>> 32));
         }
 
         @Override
@@ -683,24 +1299,11 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation<Prepa
             if (this.from != other.from || this.to != other.to)
                 return false;
 
-            return Double.doubleToLongBits(this.distance) == Double.doubleToLongBits(other.distance);
+            return Double.doubleToLongBits(this.weight) == Double.doubleToLongBits(other.weight);
         }
 
         @Override public String toString() {
-            return from + "->" + to + ", dist:" + distance;
-        }
-    }
-
-    static class NodeCH {
-
-        int endNode;
-        int originalEdges;
-        int edge;
-        EdgeEntry entry;
-        double distance;
-
-        @Override public String toString() {
-            return "" + endNode;
+            return from + "->" + to + ", weight:" + weight + ", dist:" + distance;
         }
     }
 }
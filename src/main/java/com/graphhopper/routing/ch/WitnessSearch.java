@@ -0,0 +1,162 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.SearchState;
+import com.graphhopper.routing.util.EdgeLevelFilter;
+import com.graphhopper.routing.util.PrecomputedWeights;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * A one-to-many Dijkstra on the uncontracted part of the graph which looks
+ * for witness paths, i.e. paths which make a shortcut unnecessary. The search
+ * state, the hop counts and the target marks are allocated once and reused
+ * for all searches, so one instance per thread is sufficient for the whole
+ * preparation.
+ *
+ * Besides the weight limit the search stops after maxSettled settled nodes
+ * and does not expand nodes which are maxHops edges away from the start. A
+ * witness which is not found only leads to an additional shortcut, so the
+ * limits trade preparation time against the number of shortcuts.
+ *
+ * @author Peter Karich
+ */
+class WitnessSearch {
+
+    private final LevelGraph g;
+    private final PrecomputedWeights weights;
+    private final EdgeLevelFilter filter;
+    private final SearchState state;
+    private int[] hops;
+    private int[] targetMarks;
+    private int mark;
+    private int maxSettled = Integer.MAX_VALUE;
+    private int maxHops = Integer.MAX_VALUE;
+
+    /**
+     * @param weights the weights of all edges including the shortcuts
+     * @param filter accepts the edges the witness paths are allowed to use
+     */
+    WitnessSearch(LevelGraph g, PrecomputedWeights weights, EdgeLevelFilter filter) {
+        this.g = g;
+        this.weights = weights;
+        this.filter = filter;
+        int nodes = Math.max(10, g.nodes());
+        state = new SearchState(nodes);
+        hops = new int[nodes];
+        targetMarks = new int[nodes];
+    }
+
+    WitnessSearch limits(int maxSettled, int maxHops) {
+        if (maxSettled < 1 || maxHops < 1)
+            throw new IllegalArgumentException("Limits need to be positive but were " + maxSettled + ", " + maxHops);
+        this.maxSettled = maxSettled;
+        this.maxHops = maxHops;
+        return this;
+    }
+
+    int maxSettled() {
+        return maxSettled;
+    }
+
+    int maxHops() {
+        return maxHops;
+    }
+
+    /**
+     * Searches from the specified node until all targets are settled or one
+     * of the limits is reached.
+     *
+     * @param skipNode a target which is ignored, e.g. the start node itself
+     */
+    void search(int from, double maxWeight, TIntArrayList targets, int skipNode) {
+        state.reset();
+        mark++;
+        if (mark < 0) {
+            Arrays.fill(targetMarks, 0);
+            mark = 1;
+        }
+        ensureNode(from);
+        int remaining = 0;
+        for (int i = 0; i < targets.size(); i++) {
+            int target = targets.getQuick(i);
+            ensureNode(target);
+            if (target == skipNode || targetMarks[target] == mark)
+                continue;
+            targetMarks[target] = mark;
+            remaining++;
+        }
+        if (remaining == 0)
+            return;
+
+        state.start(from);
+        hops[from] = 0;
+        int node = from;
+        while (true) {
+            if (hops[node] < maxHops) {
+                double weight = state.weight(node);
+                EdgeIterator iter = filter.doFilter(g.getOutgoing(node));
+                while (iter.next()) {
+                    int next = iter.node();
+                    ensureNode(next);
+                    double tmpWeight = weight + weights.weight(iter.edge());
+                    if (state.update(next, tmpWeight, iter.edge(), node, tmpWeight))
+                        hops[next] = hops[node] + 1;
+                }
+            }
+
+            if (state.isEmpty() || state.settledNodes() >= maxSettled || state.peekKey() > maxWeight)
+                break;
+            node = state.pollMin();
+            if (targetMarks[node] == mark) {
+                remaining--;
+                if (remaining == 0)
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the weight of the shortest path found in the last search to
+     * the specified node or Double.MAX_VALUE if it was not reached. Reached
+     * but not settled nodes return the weight of an existing path, which is
+     * sufficient for a witness.
+     */
+    double weight(int node) {
+        return state.weight(node);
+    }
+
+    /**
+     * @return the number of settled nodes of the last search
+     */
+    int settledNodes() {
+        return state.settledNodes();
+    }
+
+    private void ensureNode(int node) {
+        if (node < hops.length)
+            return;
+        int len = Math.max(node + 1, hops.length * 3 / 2);
+        hops = Arrays.copyOf(hops, len);
+        targetMarks = Arrays.copyOf(targetMarks, len);
+    }
+}
@@ -18,6 +18,7 @@
  */
 package com.graphhopper.routing.rideshare;
 
+import com.graphhopper.coll.IntDoubleIndexedHeap;
 import com.graphhopper.coll.MyBitSet;
 import com.graphhopper.coll.MyBitSetImpl;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
@@ -32,7 +33,6 @@ import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * Public transport represents a collection of Locations. Then there are two
@@ -95,13 +95,13 @@ public class DijkstraShortestOf2ToPub extends AbstractRoutingAlgorithm {
             return new DijkstraBidirection(graph).calcPath(fromP1, toP2);
 
         visitedFrom = new MyBitSetImpl(graph.nodes());
-        PriorityQueue<EdgeEntry> prioQueueFrom = new PriorityQueue<EdgeEntry>();
+        IntDoubleIndexedHeap prioQueueFrom = new IntDoubleIndexedHeap(1000, graph.nodes());
         shortestDistMapFrom = new TIntObjectHashMap<EdgeEntry>();
 
         EdgeEntry entryTo = new EdgeEntry(EdgeIterator.NO_EDGE, toP2, 0);
         currTo = entryTo;
         visitedTo = new MyBitSetImpl(graph.nodes());
-        PriorityQueue<EdgeEntry> prioQueueTo = new PriorityQueue<EdgeEntry>();
+        IntDoubleIndexedHeap prioQueueTo = new IntDoubleIndexedHeap(1000, graph.nodes());
         shortestDistMapTo = new TIntObjectHashMap<EdgeEntry>();
 
         shortest = new PathBidirRef(graph, weightCalc);
@@ -119,7 +119,7 @@ public class DijkstraShortestOf2ToPub extends AbstractRoutingAlgorithm {
             if (currFrom != null) {
                 shortestDistMapOther = shortestDistMapTo;
                 fillEdges(currFrom, visitedFrom, prioQueueFrom, shortestDistMapFrom);
-                currFrom = prioQueueFrom.poll();
+                currFrom = prioQueueFrom.isEmpty() ? null : shortestDistMapFrom.get(prioQueueFrom.poll_element());
                 if (currFrom != null) {
                     if (checkFinishCondition())
                         break;
@@ -131,7 +131,7 @@ public class DijkstraShortestOf2ToPub extends AbstractRoutingAlgorithm {
             if (currTo != null) {
                 shortestDistMapOther = shortestDistMapFrom;
                 fillEdges(currTo, visitedTo, prioQueueTo, shortestDistMapTo);
-                currTo = prioQueueTo.poll();
+                currTo = prioQueueTo.isEmpty() ? null : shortestDistMapTo.get(prioQueueTo.poll_element());
                 if (currTo != null) {
                     if (checkFinishCondition())
                         break;
@@ -164,7 +164,7 @@ public class DijkstraShortestOf2ToPub extends AbstractRoutingAlgorithm {
     }
 
     void fillEdges(EdgeEntry curr, MyBitSet visitedMain,
-            PriorityQueue<EdgeEntry> prioQueue, TIntObjectMap<EdgeEntry> shortestDistMap) {
+            IntDoubleIndexedHeap prioQueue, TIntObjectMap<EdgeEntry> shortestDistMap) {
 
         int currVertexFrom = curr.endNode;
         EdgeIterator iter = graph.getOutgoing(currVertexFrom);
@@ -179,13 +179,12 @@ public class DijkstraShortestOf2ToPub extends AbstractRoutingAlgorithm {
                 de = new EdgeEntry(iter.edge(), tmpV, tmp);
                 de.parent = curr;
                 shortestDistMap.put(tmpV, de);
-                prioQueue.add(de);
+                prioQueue.insert_(tmp, tmpV);
             } else if (de.weight > tmp) {
-                prioQueue.remove(de);
                 de.edge = iter.edge();
                 de.weight = tmp;
                 de.parent = curr;
-                prioQueue.add(de);
+                prioQueue.insertOrUpdate(tmp, tmpV);
             }
 
             updateShortest(de, tmpV);
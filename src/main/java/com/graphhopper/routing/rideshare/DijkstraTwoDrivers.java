@@ -21,7 +21,6 @@ package com.graphhopper.routing.rideshare;
 import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.Path;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.EdgeEntry;
 
 /**
  * @author Peter Karich,
@@ -29,8 +28,8 @@ import com.graphhopper.storage.EdgeEntry;
 public class DijkstraTwoDrivers {
 
     private Graph graph;
-    private DijkstraBidirectionRef driverA;
-    private DijkstraBidirectionRef driverB;
+    private DijkstraBidirectionCombined driverA;
+    private DijkstraBidirectionCombined driverB;
     private int meetingPoint;
     private int fromA, toA;
     private int fromB, toB;
@@ -85,16 +84,18 @@ public class DijkstraTwoDrivers {
         // -> hmmh should this be lower to make it faster? because it is min(currA1, currA2) and not currA1+currA2
 
         driverA = new DijkstraBidirectionCombined(graph) {
-            @Override public DijkstraBidirectionRef getOtherDriver() {
+            @Override public DijkstraBidirectionCombined getOtherDriver() {
                 return driverB;
             }
-        }.initFrom(fromA).initTo(toA).initPath();
+        };
+        driverA.initFrom(fromA).initTo(toA).initPath();
 
         driverB = new DijkstraBidirectionCombined(graph) {
-            @Override public DijkstraBidirectionRef getOtherDriver() {
+            @Override public DijkstraBidirectionCombined getOtherDriver() {
                 return driverA;
             }
-        }.initFrom(fromB).initTo(toB).initPath();
+        };
+        driverB.initFrom(fromB).initTo(toB).initPath();
 
         while (true) {
             driverA.fillEdgesFrom();
@@ -125,40 +126,33 @@ public class DijkstraTwoDrivers {
             super(graph);
         }
 
-        public abstract DijkstraBidirectionRef getOtherDriver();
+        public abstract DijkstraBidirectionCombined getOtherDriver();
 
         @Override public boolean checkFinishCondition() {
-            if (currFrom == null)
-                return currTo.weight >= shortest.weight();
-            else if (currTo == null)
-                return currFrom.weight >= shortest.weight();
+            if (currFrom < 0)
+                return currToWeight() >= shortest.weight();
+            else if (currTo < 0)
+                return currFromWeight() >= shortest.weight();
 
-            return Math.min(currFrom.weight, currTo.weight) >= shortest.weight();
+            return Math.min(currFromWeight(), currToWeight()) >= shortest.weight();
         }
 
-        @Override protected void updateShortest(EdgeEntry shortestDE, int currLoc) {
-            EdgeEntry fromOther = getOtherDriver().shortestWeightFrom(currLoc);
-            EdgeEntry toOther = getOtherDriver().shortestWeightTo(currLoc);
-            EdgeEntry entryOther = shortestWeightMapOther.get(currLoc);
-            if (fromOther == null || toOther == null || entryOther == null)
+        @Override protected void updateShortest(int node, double weight) {
+            DijkstraBidirectionCombined other = getOtherDriver();
+            if (!other.stateFrom.isReached(node) || !other.stateTo.isReached(node)
+                    || !stateOther.isReached(node))
                 return;
 
             // update μ
-            double shortestOther = fromOther.weight + toOther.weight;
-            double shortestCurrent = shortestDE.weight + entryOther.weight;
+            double shortestOther = other.stateFrom.weight(node) + other.stateTo.weight(node);
+            double shortestCurrent = weight + stateOther.weight(node);
             double newShortest = shortestCurrent + shortestOther;
             if (newShortest < overallDistance) {
                 // LATER: minimize not only the sum but also the difference => multi modal search!
                 overallDistance = newShortest;
-                meetingPoint = currLoc;
-
-                getOtherDriver().shortest.edgeEntry(fromOther);
-                getOtherDriver().shortest.edgeEntryTo(toOther);
-                getOtherDriver().shortest.weight(shortestOther);
-
-                shortest.edgeEntry(shortestDE);
-                shortest.edgeEntryTo(entryOther);
-                shortest.weight(shortestCurrent);
+                meetingPoint = node;
+                other.meetingNode(node, shortestOther);
+                meetingNode(node, shortestCurrent);
             }
         }
     }
@@ -18,6 +18,7 @@
  */
 package com.graphhopper.routing.rideshare;
 
+import com.graphhopper.coll.IntDoubleIndexedHeap;
 import com.graphhopper.coll.MyBitSet;
 import com.graphhopper.coll.MyBitSetImpl;
 import com.graphhopper.routing.AbstractRoutingAlgorithm;
@@ -31,7 +32,6 @@ import com.graphhopper.util.GraphUtility;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
-import java.util.PriorityQueue;
 
 /**
  * Public transport represents a collection of Locations. Now it is the aim to
@@ -81,13 +81,13 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm {
             return new Path(graph, weightCalc);
 
         visitedFrom = new MyBitSetImpl(graph.nodes());
-        PriorityQueue<EdgeEntry> prioQueueFrom = new PriorityQueue<EdgeEntry>();
+        IntDoubleIndexedHeap prioQueueFrom = new IntDoubleIndexedHeap(1000, graph.nodes());
         shortestDistMapFrom = new TIntObjectHashMap<EdgeEntry>();
 
         EdgeEntry entryTo = new EdgeEntry(EdgeIterator.NO_EDGE, destination, 0);
         EdgeEntry currTo = entryTo;
         visitedTo = new MyBitSetImpl(graph.nodes());
-        PriorityQueue<EdgeEntry> prioQueueTo = new PriorityQueue<EdgeEntry>();
+        IntDoubleIndexedHeap prioQueueTo = new IntDoubleIndexedHeap(1000, graph.nodes());
         shortestDistMapTo = new TIntObjectHashMap<EdgeEntry>();
         shortestDistMapTo.put(destination, entryTo);
 
@@ -119,7 +119,7 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm {
             shortestDistMapOther = shortestDistMapTo;
             fillEdges(shortest, currFrom, visitedFrom, prioQueueFrom, shortestDistMapFrom, true);
             if (!prioQueueFrom.isEmpty()) {
-                currFrom = prioQueueFrom.poll();
+                currFrom = shortestDistMapFrom.get(prioQueueFrom.poll_element());
                 visitedFrom.add(currFrom.endNode);
             } else
                 finish++;
@@ -127,7 +127,7 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm {
             shortestDistMapOther = shortestDistMapFrom;
             fillEdges(shortest, currTo, visitedTo, prioQueueTo, shortestDistMapTo, false);
             if (!prioQueueTo.isEmpty()) {
-                currTo = prioQueueTo.poll();
+                currTo = shortestDistMapTo.get(prioQueueTo.poll_element());
                 visitedTo.add(currTo.endNode);
             } else
                 finish++;
@@ -140,7 +140,7 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm {
     }
 
     void fillEdges(PathBidirRef shortest, EdgeEntry curr, MyBitSet visitedMain,
-            PriorityQueue<EdgeEntry> prioQueue,
+            IntDoubleIndexedHeap prioQueue,
             TIntObjectMap<EdgeEntry> shortestDistMap, boolean out) {
 
         int currVertexFrom = curr.endNode;
@@ -150,19 +150,18 @@ public class DijkstraWhichToOne extends AbstractRoutingAlgorithm {
             if (visitedMain.contains(tmpV))
                 continue;
 
-            double tmp = weightCalc.getWeight(iter.distance(), iter.flags()) + curr.weight;
+            double tmp = calcWeight(iter) + curr.weight;
             EdgeEntry de = shortestDistMap.get(tmpV);
             if (de == null) {
                 de = new EdgeEntry(iter.edge(), tmpV, tmp);
                 de.parent = curr;
                 shortestDistMap.put(tmpV, de);
-                prioQueue.add(de);
+                prioQueue.insert_(tmp, tmpV);
             } else if (de.weight > tmp) {
-                prioQueue.remove(de);
                 de.edge = iter.edge();
                 de.weight = tmp;
                 de.parent = curr;
-                prioQueue.add(de);
+                prioQueue.insertOrUpdate(tmp, tmpV);
             }
 
             updateShortest(de, tmpV);
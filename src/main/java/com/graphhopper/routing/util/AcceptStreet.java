@@ -18,23 +18,73 @@
  */
 package com.graphhopper.routing.util;
 
-import java.util.Map;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import java.util.Map.Entry;
 
 /**
+ * Decides which highways are accepted and converts their properties into
+ * edge flags. The flags of every accepted highway value are calculated once in
+ * the constructor so that parsing a way only needs one hash lookup.
+ *
  * @author Peter Karich
  */
 public class AcceptStreet {
 
+    public static final int NOT_ACCEPTED = -1;
+    private static final String[] FOOT_WAYS = {"footway", "path", "steps", "pedestrian"};
+    private static final String[] BIKE_WAYS = {"cycleway", "path"};
     private boolean car;
     private boolean publicTransport;
     private boolean bike;
     private boolean foot;
+    private final TObjectIntHashMap<String> highwayIds = new TObjectIntHashMap<String>(
+            20, 0.5f, NOT_ACCEPTED);
+    private int[] bothFlags;
+    private int[] onewayFlags;
 
     public AcceptStreet(boolean car, boolean publicTransport, boolean bike, boolean foot) {
         this.car = car;
         this.publicTransport = publicTransport;
         this.bike = bike;
         this.foot = foot;
+
+        // add bike support later
+        // http://wiki.openstreetmap.org/wiki/Cycleway
+        // http://wiki.openstreetmap.org/wiki/Map_Features#Cycleway
+        // https://github.com/Tristramg/osm4routing/blob/master/parameters.cc
+        // + TODO bike flags
+        // + some foot paths?
+        if (foot) {
+            for (String val : FOOT_WAYS) {
+                addHighway(val);
+            }
+        }
+        if (bike) {
+            for (String val : BIKE_WAYS) {
+                addHighway(val);
+            }
+        }
+        // TODO if(publicTransport)
+
+        bothFlags = new int[highwayIds.size() + CarStreetType.SPEED.size()];
+        onewayFlags = new int[bothFlags.length];
+        if (car) {
+            for (Entry<String, Integer> e : CarStreetType.SPEED.entrySet()) {
+                int id = addHighway(e.getKey());
+                int speed = e.getValue() * CarStreetType.FACTOR;
+                bothFlags[id] = CarStreetType.flags(speed, true);
+                onewayFlags[id] = CarStreetType.flags(speed, false);
+            }
+        }
+    }
+
+    private int addHighway(String val) {
+        int id = highwayIds.get(val);
+        if (id == NOT_ACCEPTED) {
+            id = highwayIds.size();
+            highwayIds.put(val, id);
+        }
+        return id;
     }
 
     public boolean acceptsCar() {
@@ -54,41 +104,24 @@ public class AcceptStreet {
     }
 
     /**
-     * Collect way properties of different kind of streets
+     * @return the id of the specified highway value or NOT_ACCEPTED if no
+     * accepted kind of street is using it
      */
-    public boolean handleWay(Map<String, Object> speed, String val) {
-        boolean handled = false;
-        if (foot) {
-            if ("footway".equals(val) || "path".equals(val) || "steps".equals(val)
-                    || "pedestrian".equals(val)) {
-                handled = true;
-                speed.put("foot", 5);
-            }
-        }
-        if (bike) {
-            // add bike support later
-            // http://wiki.openstreetmap.org/wiki/Cycleway
-            // http://wiki.openstreetmap.org/wiki/Map_Features#Cycleway
-            // https://github.com/Tristramg/osm4routing/blob/master/parameters.cc
-            // + TODO toFlags
-            // + some foot paths?
-            if ("cycleway".equals(val) || "path".equals(val)) {
-                handled = true;
-                speed.put("bike", 10);
-            }
-        }
-
-        if (publicTransport) {
-        }
+    public int highwayId(String highway) {
+        if (highway == null)
+            return NOT_ACCEPTED;
+        return highwayIds.get(highway);
+    }
 
-        if (car) {
-            Integer integ = CarStreetType.SPEED.get(val);
-            if (integ != null) {
-                handled = true;
-                speed.put("car", integ);
-            }
-        }
-        return handled;
+    /**
+     * Collect way properties of different kind of streets
+     *
+     * @return true if the specified highway value is accepted
+     */
+    public boolean handleWay(WayProperties properties, String highway) {
+        int id = highwayId(highway);
+        properties.highway(id);
+        return id != NOT_ACCEPTED;
     }
 
     /**
@@ -97,26 +130,10 @@ public class AcceptStreet {
      *
      * Every byte contains the speed and the possible direction.
      */
-    public int toFlags(Map<String, Object> properties) {
-        int flags = 0;
-        boolean bothways = !"yes".equals(properties.get("oneway"));
-        Integer integ;
-        if (car) {
-            integ = (Integer) properties.get("car");
-            if (integ != null) {
-                integ *= CarStreetType.FACTOR;
-                flags = CarStreetType.flags(integ, bothways);
-            }
-        }
-        // TODO if(publicTransport)
-        if (bike) {
-            integ = (Integer) properties.get("bike");
-            if (integ != null) {
-                // TODO
-                // flags |= BikeEdgeFlags.flags(integ, bothway);
-            }
-        }
-        // TODO if(foot)
-        return flags;
+    public int toFlags(WayProperties properties) {
+        int id = properties.highway();
+        if (id == NOT_ACCEPTED)
+            return 0;
+        return properties.oneway() ? onewayFlags[id] : bothFlags[id];
     }
 }
@@ -0,0 +1,67 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.RoutingAlgorithm;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps one algorithm instance per algorithm name and thread. The algorithms
+ * allocate node sized collections on creation, which is expensive for big
+ * graphs, but their clear method is cheap. So instead of creating a new
+ * algorithm for every query get a cleared one from this pool.
+ *
+ * An instance returned by get must not be used after the next get call for
+ * the same name in the same thread.
+ *
+ * @author Peter Karich
+ */
+public abstract class AlgorithmPool {
+
+    private final ThreadLocal<Map<String, RoutingAlgorithm>> algos = new ThreadLocal<Map<String, RoutingAlgorithm>>() {
+        @Override protected Map<String, RoutingAlgorithm> initialValue() {
+            return new HashMap<String, RoutingAlgorithm>();
+        }
+    };
+
+    /**
+     * @return a cleared algorithm for the specified name which is only used by
+     * the current thread
+     */
+    public RoutingAlgorithm get(String algorithm) {
+        Map<String, RoutingAlgorithm> map = algos.get();
+        RoutingAlgorithm algo = map.get(algorithm);
+        if (algo == null) {
+            algo = createAlgo(algorithm);
+            map.put(algorithm, algo);
+        } else
+            algo.clear();
+        return algo;
+    }
+
+    /**
+     * Removes the algorithms of the current thread.
+     */
+    public void release() {
+        algos.remove();
+    }
+
+    protected abstract RoutingAlgorithm createAlgo(String algorithm);
+}
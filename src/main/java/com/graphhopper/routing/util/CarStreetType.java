@@ -107,8 +107,9 @@ public class CarStreetType {
         if ((flags & 3) == 3)
             return flags;
 
+        // keep edges without any direction inaccessible
         int speed = flags >>> 2;
-        return (speed << 2) | (~flags) & 3;
+        return (speed << 2) | (flags & FORWARD) << 1 | (flags & BACKWARD) >>> 1;
     }
 
     public static int getSpeedPart(int flags) {
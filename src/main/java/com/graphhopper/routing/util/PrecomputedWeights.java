@@ -0,0 +1,134 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.RawEdgeIterator;
+
+/**
+ * Stores the weight of every edge for one weight calculation, so that an
+ * algorithm does not need to decode the flags and the distance on every
+ * relaxation. The weight of an edge is the same for both directions, the
+ * access in one direction is still determined via the flags of the edge
+ * iterator. The weights are stored as floats.
+ *
+ * Call prepare after the graph is complete, the weights are not updated if
+ * edges are changed or added later.
+ *
+ * @author Peter Karich
+ */
+public class PrecomputedWeights implements Storable {
+
+    private final Graph graph;
+    private final WeightCalculation weightCalc;
+    private final DataAccess weights;
+    private int edgeCount;
+
+    public PrecomputedWeights(Graph graph, WeightCalculation weightCalc, Directory dir) {
+        this(graph, weightCalc, dir, "weights_" + weightCalc.toString().toLowerCase());
+    }
+
+    /**
+     * @param name the name of the weights in the directory
+     */
+    public PrecomputedWeights(Graph graph, WeightCalculation weightCalc, Directory dir, String name) {
+        this.graph = graph;
+        this.weightCalc = weightCalc;
+        weights = dir.findCreate(name);
+    }
+
+    public WeightCalculation weightCalculation() {
+        return weightCalc;
+    }
+
+    /**
+     * Calculates the weights of all edges.
+     */
+    public PrecomputedWeights prepare() {
+        RawEdgeIterator iter = graph.allEdges();
+        // the weights could be already in the directory from an earlier instance
+        if (weights.capacity() == 0)
+            weights.createNew(100);
+        edgeCount = 0;
+        while (iter.next()) {
+            int edge = iter.edge();
+            weights.ensureCapacity(((long) edge + 1) * 4);
+            weights.setInt(edge, Float.floatToIntBits((float) weightCalc.getWeight(iter.distance(), iter.flags())));
+            edgeCount = Math.max(edgeCount, edge + 1);
+        }
+        return this;
+    }
+
+    /**
+     * @return the weight of the specified edge
+     */
+    public double weight(int edge) {
+        return Float.intBitsToFloat(weights.getInt(edge));
+    }
+
+    /**
+     * Overwrites the weight of the specified edge, e.g. for an edge which was
+     * added after prepare.
+     */
+    public PrecomputedWeights weight(int edge, double weight) {
+        weights.ensureCapacity(((long) edge + 1) * 4);
+        weights.setInt(edge, Float.floatToIntBits((float) weight));
+        edgeCount = Math.max(edgeCount, edge + 1);
+        return this;
+    }
+
+    public int edges() {
+        return edgeCount;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (weights.capacity() == 0 && !weights.loadExisting())
+            return false;
+        edgeCount = weights.getHeader(0);
+        int expected = 0;
+        RawEdgeIterator iter = graph.allEdges();
+        while (iter.next()) {
+            expected = Math.max(expected, iter.edge() + 1);
+        }
+        if (edgeCount != expected)
+            throw new IllegalStateException("Weights for " + edgeCount + " edges do not match the graph with "
+                    + expected + " edges. Call prepare again.");
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        weights.setHeader(0, edgeCount);
+        weights.flush();
+    }
+
+    @Override
+    public void close() {
+        weights.close();
+    }
+
+    @Override
+    public long capacity() {
+        return weights.capacity();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.PointList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Removes tower nodes with exactly two neighbors if both edges have the same
+ * flags, e.g. where two ways meet end to end or only the name changes. The
+ * two edges are replaced by one edge and the removed node becomes a pillar
+ * node of its geometry. Call this after the subnetworks were removed and
+ * before any algorithm preparation.
+ *
+ * The old edges stay in the edge area but are no longer reachable from any
+ * node after optimize.
+ *
+ * @author Peter Karich
+ */
+public class PrepareDegreeTwoNodes {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+    private final Graph g;
+    private int removedNodes = -1;
+
+    public PrepareDegreeTwoNodes(Graph g) {
+        this.g = g;
+    }
+
+    public void doWork() {
+        removedNodes = mergeEdges();
+        logger.info("optimize to remove degree two nodes(" + removedNodes + ")");
+        g.optimize();
+    }
+
+    /**
+     * @return the number of nodes which were removed in the last doWork call
+     */
+    public int removedNodes() {
+        return removedNodes;
+    }
+
+    /**
+     * Marks all mergeable degree two nodes as removed and creates the merged
+     * edges. Neighbors of a removed node keep their degree, so chains of degree
+     * two nodes collapse into a single edge within one pass.
+     *
+     * @return the number of nodes marked as removed
+     */
+    int mergeEdges() {
+        int removed = 0;
+        int nodes = g.nodes();
+        for (int node = 0; node < nodes; node++) {
+            if (g.isNodeRemoved(node))
+                continue;
+
+            EdgeIterator first = null;
+            EdgeIterator second = null;
+            int degree = 0;
+            EdgeIterator iter = g.getEdges(node);
+            while (iter.next()) {
+                if (g.isNodeRemoved(iter.node()))
+                    continue;
+                degree++;
+                if (degree > 2)
+                    break;
+                if (first == null)
+                    first = g.getEdgeProps(iter.edge(), iter.node());
+                else
+                    second = g.getEdgeProps(iter.edge(), iter.node());
+            }
+            if (degree != 2)
+                continue;
+
+            int from = first.node();
+            int to = second.node();
+            // avoid loops and keep parallel edges apart
+            if (from == to || from == node || to == node)
+                continue;
+
+            // the flags of first are oriented node->from, but the merged edge starts at from
+            int flags = CarStreetType.swapDirection(first.flags());
+            if (flags != second.flags() || !canMerge(first, second))
+                continue;
+
+            PointList pillars = first.wayGeometry();
+            pillars.reverse();
+            PointList secondPillars = second.wayGeometry();
+            PointList points = new PointList(pillars.size() + 1 + secondPillars.size());
+            for (int i = 0; i < pillars.size(); i++) {
+                points.add(pillars.latitude(i), pillars.longitude(i));
+            }
+            points.add(g.getLatitude(node), g.getLongitude(node));
+            for (int i = 0; i < secondPillars.size(); i++) {
+                points.add(secondPillars.latitude(i), secondPillars.longitude(i));
+            }
+
+            EdgeIterator merged = g.edge(from, to, first.distance() + second.distance(), flags);
+            merged.wayGeometry(points);
+            onMerge(first.edge(), second.edge(), merged.edge());
+            g.markNodeRemoved(node);
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Override to forbid merging of the specified edges. Both edges start at
+     * the degree two node.
+     */
+    protected boolean canMerge(EdgeIterator first, EdgeIterator second) {
+        return true;
+    }
+
+    /**
+     * Override to get notified about the edge which replaces the two specified
+     * edges.
+     */
+    protected void onMerge(int firstEdge, int secondEdge, int mergedEdge) {
+    }
+}
@@ -53,9 +53,11 @@ public class RoutingAlgorithmSpecialAreaTests {
     private Logger logger = LoggerFactory.getLogger(getClass());
     private final Graph unterfrankenGraph;
     private final Location2IDIndex idx;
+    private final AlgorithmPreparation prepare;
 
     public RoutingAlgorithmSpecialAreaTests(OSMReader reader) {
         this.unterfrankenGraph = reader.graph();
+        this.prepare = reader.preparation();
         StopWatch sw = new StopWatch().start();
         idx = reader.location2IDIndex();
         logger.info(idx.getClass().getSimpleName() + " index. Size:" + idx.calcMemInMB() + " MB, took:" + sw.stop().getSeconds());
@@ -114,9 +116,6 @@ public class RoutingAlgorithmSpecialAreaTests {
     }
 
     public void runShortestPathPerf(int runs, RoutingAlgorithm algo) throws Exception {
-        BBox bbox = unterfrankenGraph.bounds();
-        double minLat = bbox.minLat, minLon = bbox.minLon;
-        double maxLat = bbox.maxLat, maxLon = bbox.maxLon;
         if (unterfrankenGraph instanceof LevelGraph) {
             if (algo instanceof DijkstraBidirectionRef)
                 algo = new PrepareContractionHierarchies().graph(unterfrankenGraph).createAlgo();
@@ -129,9 +128,36 @@ public class RoutingAlgorithmSpecialAreaTests {
             logger.info("[experimental] using shortcuts with " + algo);
         } else
             logger.info("running " + algo);
+        measure(runs, algo);
+    }
+
+    /**
+     * Compares the settled nodes and the query time of the CH algorithms with
+     * and without stall-on-demand on the prepared graph.
+     */
+    public void runStallOnDemandPerf(int runs) {
+        if (!(prepare instanceof PrepareContractionHierarchies))
+            throw new IllegalStateException("run this only with a prepared graph. Use osmreader.chShortcuts=true");
 
+        PrepareContractionHierarchies prepareCH = (PrepareContractionHierarchies) prepare;
+        for (boolean stall : new boolean[]{false, true}) {
+            prepareCH.stallOnDemand(stall);
+            logger.info("stall-on-demand " + stall);
+            // warmup
+            measure(runs / 10, prepareCH.createAlgo());
+            measure(runs, prepareCH.createAlgo());
+            measure(runs, prepareCH.createQueryAlgo());
+        }
+        prepareCH.stallOnDemand(true);
+    }
+
+    private void measure(int runs, RoutingAlgorithm algo) {
+        BBox bbox = unterfrankenGraph.bounds();
+        double minLat = bbox.minLat, minLon = bbox.minLon;
+        double maxLat = bbox.maxLat, maxLon = bbox.maxLon;
         Random rand = new Random(123);
         StopWatch sw = new StopWatch();
+        long visited = 0;
 
         // System.out.println("cap:" + ((GraphStorage) unterfrankenGraph).capacity());
         for (int i = 0; i < runs; i++) {
@@ -153,6 +179,7 @@ public class RoutingAlgorithmSpecialAreaTests {
             sw.start();
             Path p = algo.calcPath(from, to);
             sw.stop();
+            visited += algo.calcVisitedNodes();
             if (!p.found()) {
                 // there are still paths not found cause of oneway motorways => only routable in one direction
                 // e.g. unterfrankenGraph.getLatitude(798809) + "," + unterfrankenGraph.getLongitude(798809)
@@ -164,6 +191,8 @@ public class RoutingAlgorithmSpecialAreaTests {
             if (i % 20 == 0)
                 logger.info(i + " " + sw.getSeconds() / (i + 1) + " secs/run");// (" + p + ")");            
         }
+        logger.info(algo + ": " + sw.getSeconds() / Math.max(1, runs) + " secs/run, "
+                + visited / Math.max(1, runs) + " visited nodes/run");
     }
 
     void testIndex() {
@@ -0,0 +1,63 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+/**
+ * The routing relevant properties of one OSM way. Only primitives are stored
+ * so one instance can be reused for all ways while importing.
+ *
+ * @author Peter Karich
+ */
+public class WayProperties {
+
+    private int highway = AcceptStreet.NOT_ACCEPTED;
+    private boolean oneway;
+
+    public WayProperties clear() {
+        highway = AcceptStreet.NOT_ACCEPTED;
+        oneway = false;
+        return this;
+    }
+
+    /**
+     * @return the id of the highway value, see AcceptStreet.highwayId
+     */
+    public int highway() {
+        return highway;
+    }
+
+    public WayProperties highway(int highwayId) {
+        this.highway = highwayId;
+        return this;
+    }
+
+    public boolean oneway() {
+        return oneway;
+    }
+
+    public WayProperties oneway(boolean oneway) {
+        this.oneway = oneway;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "highway:" + highway + ", oneway:" + oneway;
+    }
+}
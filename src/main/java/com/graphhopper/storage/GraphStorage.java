@@ -79,6 +79,8 @@ public class GraphStorage implements Graph, Storable {
     // 0 stands for no separate geoRef
     private int maxGeoRef = 1;
     private boolean initialized = false;
+    private volatile boolean frozen = false;
+    private NodeMoveListener moveListener;
 
     public GraphStorage(Directory dir) {
         this.dir = dir;
@@ -122,6 +124,42 @@ public class GraphStorage implements Graph, Storable {
         return dir;
     }
 
+    /**
+     * Gets informed about the nodes which optimize moves into the place of
+     * removed nodes, e.g. to keep data stored per node id in sync.
+     */
+    public interface NodeMoveListener {
+
+        void moved(int oldNode, int newNode);
+    }
+
+    /**
+     * @param listener is called for every node moved by optimize or null
+     */
+    public GraphStorage nodeMoveListener(NodeMoveListener listener) {
+        moveListener = listener;
+        return this;
+    }
+
+    /**
+     * Makes this graph read-only: every later modification throws an
+     * IllegalStateException. A frozen graph can be shared by several threads,
+     * e.g. to run one routing algorithm per thread on it.
+     */
+    public GraphStorage freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    protected final void checkNotFrozen() {
+        if (frozen)
+            throw new IllegalStateException("Cannot modify a frozen graph");
+    }
+
     GraphStorage segmentSize(int bytes) {
         if (initialized)
             throw new IllegalStateException("You cannot configure this GraphStorage after calling createNew.");
@@ -151,6 +189,13 @@ public class GraphStorage implements Graph, Storable {
         return nodeCount;
     }
 
+    /**
+     * @return the number of created edges including the edges of removed nodes
+     */
+    int edgeCount() {
+        return edgeCount;
+    }
+
     @Override
     public double getLatitude(int index) {
         return Helper.intToDegree(nodes.getInt((long) index * nodeEntrySize + N_LAT));
@@ -183,6 +228,7 @@ public class GraphStorage implements Graph, Storable {
 
     @Override
     public void setNode(int index, double lat, double lon) {
+        checkNotFrozen();
         ensureNodeIndex(index);
         long tmp = (long) index * nodeEntrySize;
         nodes.setInt(tmp + N_LAT, Helper.degreeToInt(lat));
@@ -212,6 +258,7 @@ public class GraphStorage implements Graph, Storable {
         if (nodeIndex < nodeCount)
             return;
 
+        checkNotFrozen();
         long oldNodes = nodeCount;
         nodeCount = nodeIndex + 1;
         long deltaCap = (long) nodeCount * nodeEntrySize * 4 - nodes.capacity();
@@ -256,6 +303,7 @@ public class GraphStorage implements Graph, Storable {
 
     @Override
     public EdgeIterator edge(int a, int b, double distance, int flags) {
+        checkNotFrozen();
         ensureNodeIndex(Math.max(a, b));
         int edge = internalEdgeAdd(a, b, distance, flags);
         EdgeIterable iter = new EdgeIterable(edge, a, false, false);
@@ -426,6 +474,7 @@ public class GraphStorage implements Graph, Storable {
         }
 
         @Override public void distance(double dist) {
+            checkNotFrozen();
             edges.setInt(edgePointer + E_DIST, distToInt(dist));
         }
 
@@ -434,7 +483,9 @@ public class GraphStorage implements Graph, Storable {
         }
 
         @Override public void flags(int flags) {
-            throw new UnsupportedOperationException("Not supported yet.");
+            checkNotFrozen();
+            // flags are stored in the direction nodeA -> nodeB
+            edges.setInt(edgePointer + E_FLAGS, flags);
         }
 
         @Override public int edge() {
@@ -592,6 +643,7 @@ public class GraphStorage implements Graph, Storable {
         }
 
         @Override public void distance(double dist) {
+            checkNotFrozen();
             edges.setInt(edgePointer + E_DIST, distToInt(dist));
         }
 
@@ -600,6 +652,7 @@ public class GraphStorage implements Graph, Storable {
         }
 
         @Override public void flags(int fl) {
+            checkNotFrozen();
             flags = fl;
             int nep = edges.getInt(getLinkPosInEdgeArea(baseNode, node, edgePointer));
             int neop = edges.getInt(getLinkPosInEdgeArea(node, baseNode, edgePointer));
@@ -611,6 +664,7 @@ public class GraphStorage implements Graph, Storable {
         }
 
         @Override public void wayGeometry(PointList pillarNodes) {
+            checkNotFrozen();
             if (pillarNodes != null && !pillarNodes.isEmpty()) {
                 int len = pillarNodes.size();
                 int geoRef = nextGeoRef(len * 2);
@@ -709,16 +763,19 @@ public class GraphStorage implements Graph, Storable {
 
     @Override
     public void markNodeRemoved(int index) {
+        checkNotFrozen();
         removedNodes().add(index);
     }
 
     @Override
     public boolean isNodeRemoved(int index) {
-        return removedNodes().contains(index);
+        // do not create the bitset here, reading must not modify the graph
+        return removedNodes != null && removedNodes.contains(index);
     }
 
     @Override
     public void optimize() {
+        checkNotFrozen();
         // Deletes only nodes. 
         // It reduces the fragmentation of the node space but introduces new unused edges.
         inPlaceNodeRemove(removedNodes().cardinality());
@@ -782,6 +839,11 @@ public class GraphStorage implements Graph, Storable {
                 toUpdatedSet.add(currNode);
             }
 
+            // all nodes after delNode are removed => nothing to move but the
+            // edges of the remaining deleted nodes still need to be disconnected
+            if (toMoveNode < delNode)
+                continue;
+
             toMoveNode--;
             for (; toMoveNode >= 0; toMoveNode--) {
                 if (!removedNodes.contains(toMoveNode))
@@ -789,7 +851,7 @@ public class GraphStorage implements Graph, Storable {
             }
 
             if (toMoveNode < delNode)
-                break;
+                continue;
 
             oldToNewMap.put(toMoveNode, delNode);
             itemsToMove++;
@@ -834,6 +896,8 @@ public class GraphStorage implements Graph, Storable {
             for (int j = 0; j < nodeEntrySize; j++) {
                 nodes.setInt(newOffset + j, nodes.getInt(oldOffset + j));
             }
+            if (moveListener != null)
+                moveListener.moved(oldI, newI);
         }
 
         // *rewrites* all edges connected to moved nodes
@@ -0,0 +1,499 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.GraphUtility;
+import static com.graphhopper.util.Helper.*;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.RawEdgeIterator;
+import com.graphhopper.util.shapes.BBox;
+
+/**
+ * A LevelGraph on top of a GraphStorage which keeps the levels and the
+ * shortcuts of one preparation in separate files of the same directory. The
+ * file names get the name of the overlay as suffix, e.g. levels_fastest and
+ * shortcuts_fastest, so several preparations share the nodes, edges, geometry
+ * and the location index of the base graph.
+ *
+ * The base graph must not change after createNew. Shortcuts get the edge ids
+ * after the last edge of the base graph and every edge created via this
+ * overlay is a shortcut. Edges cannot be removed, so use the preparation with
+ * removeHigher2LowerEdges(false).
+ *
+ * @author Peter Karich
+ */
+public class LevelGraphOverlay implements LevelGraph, Storable {
+
+    private static final float INT_DIST_FACTOR = 1000f;
+    // node memory layout: level,shortcutRef
+    private static final int N_LEVEL = 0, N_SHORTCUT_REF = 1, NODE_SIZE = 2;
+    // shortcut memory layout: nodeA,nodeB,linkA,linkB,dist,flags,skippedEdge1,skippedEdge2
+    private static final int S_NODEA = 0, S_NODEB = 1, S_LINKA = 2, S_LINKB = 3, S_DIST = 4, S_FLAGS = 5,
+            S_SKIP_EDGE1 = 6, S_SKIP_EDGE2 = 7, SHORTCUT_SIZE = 8;
+    private final GraphStorage base;
+    private final String name;
+    private final DataAccess levels;
+    private final DataAccess shortcuts;
+    private int baseEdges;
+    private int shortcutCount;
+
+    public LevelGraphOverlay(GraphStorage base, String name) {
+        this.base = base;
+        this.name = name;
+        levels = base.directory().findCreate("levels_" + name);
+        shortcuts = base.directory().findCreate("shortcuts_" + name);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the graph without the shortcuts of this overlay
+     */
+    public GraphStorage baseGraph() {
+        return base;
+    }
+
+    public Directory directory() {
+        return base.directory();
+    }
+
+    public LevelGraphOverlay createNew() {
+        baseEdges = base.edgeCount();
+        shortcutCount = 0;
+        int nodes = base.nodes();
+        levels.createNew((long) Math.max(10, nodes) * NODE_SIZE * 4);
+        for (int node = 0; node < nodes; node++) {
+            levels.setInt((long) node * NODE_SIZE + N_SHORTCUT_REF, EdgeIterator.NO_EDGE);
+        }
+        shortcuts.createNew(100);
+        return this;
+    }
+
+    /**
+     * @return the number of shortcuts
+     */
+    public int shortcuts() {
+        return shortcutCount;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= base.nodes())
+            throw new IllegalStateException("node " + node + " out of bounds [0," + nf(base.nodes()) + ")");
+    }
+
+    @Override public void setLevel(int node, int level) {
+        checkNode(node);
+        levels.setInt((long) node * NODE_SIZE + N_LEVEL, level);
+    }
+
+    @Override public int getLevel(int node) {
+        checkNode(node);
+        return levels.getInt((long) node * NODE_SIZE + N_LEVEL);
+    }
+
+    @Override public int nodes() {
+        return base.nodes();
+    }
+
+    @Override public void setNode(int node, double lat, double lon) {
+        throw new UnsupportedOperationException("Change the nodes of the base graph before creating the overlay");
+    }
+
+    @Override public double getLatitude(int node) {
+        return base.getLatitude(node);
+    }
+
+    @Override public double getLongitude(int node) {
+        return base.getLongitude(node);
+    }
+
+    @Override public BBox bounds() {
+        return base.bounds();
+    }
+
+    @Override public EdgeSkipIterator edge(int a, int b, double distance, boolean bothDirections) {
+        return edge(a, b, distance, CarStreetType.flagsDefault(bothDirections));
+    }
+
+    /**
+     * Creates a shortcut between the nodes a and b. Set the skipped edges
+     * afterwards.
+     */
+    @Override public EdgeSkipIterator edge(int a, int b, double distance, int flags) {
+        checkNode(a);
+        checkNode(b);
+        if (a == b)
+            throw new IllegalArgumentException("Shortcuts cannot be loops " + a);
+
+        int shortcut = shortcutCount;
+        shortcutCount++;
+        long pointer = (long) shortcut * SHORTCUT_SIZE;
+        shortcuts.ensureCapacity((pointer + SHORTCUT_SIZE) * 4);
+        int nodeA = a, nodeB = b;
+        if (a > b) {
+            nodeA = b;
+            nodeB = a;
+            flags = CarStreetType.swapDirection(flags);
+        }
+        // prepend the shortcut to the lists of both nodes
+        shortcuts.setInt(pointer + S_NODEA, nodeA);
+        shortcuts.setInt(pointer + S_NODEB, nodeB);
+        shortcuts.setInt(pointer + S_LINKA, shortcutRef(nodeA));
+        shortcuts.setInt(pointer + S_LINKB, shortcutRef(nodeB));
+        shortcuts.setInt(pointer + S_DIST, (int) (distance * INT_DIST_FACTOR));
+        shortcuts.setInt(pointer + S_FLAGS, flags);
+        shortcuts.setInt(pointer + S_SKIP_EDGE1, EdgeIterator.NO_EDGE);
+        shortcuts.setInt(pointer + S_SKIP_EDGE2, EdgeIterator.NO_EDGE);
+        levels.setInt((long) nodeA * NODE_SIZE + N_SHORTCUT_REF, shortcut);
+        levels.setInt((long) nodeB * NODE_SIZE + N_SHORTCUT_REF, shortcut);
+
+        OverlayIterator iter = new OverlayIterator(null, a, false, false);
+        iter.setShortcut(shortcut);
+        return iter;
+    }
+
+    private int shortcutRef(int node) {
+        return levels.getInt((long) node * NODE_SIZE + N_SHORTCUT_REF);
+    }
+
+    @Override public EdgeSkipIterator getEdgeProps(int edgeId, int endNode) {
+        if (edgeId < baseEdges)
+            return new OverlayIterator(base.getEdgeProps(edgeId, endNode), endNode, false, false);
+        int shortcut = edgeId - baseEdges;
+        if (shortcut >= shortcutCount)
+            throw new IllegalStateException("edgeId " + edgeId + " out of bounds [0," + nf(baseEdges + shortcutCount) + ")");
+        long pointer = (long) shortcut * SHORTCUT_SIZE;
+        int nodeA = shortcuts.getInt(pointer + S_NODEA);
+        int nodeB = shortcuts.getInt(pointer + S_NODEB);
+        int baseNode;
+        if (endNode == nodeB)
+            baseNode = nodeA;
+        else if (endNode == nodeA)
+            baseNode = nodeB;
+        else
+            return GraphUtility.EMPTY;
+        OverlayIterator iter = new OverlayIterator(null, baseNode, false, false);
+        iter.setShortcut(shortcut);
+        return iter;
+    }
+
+    @Override public RawEdgeIterator allEdges() {
+        return new AllOverlayIterator(base.allEdges());
+    }
+
+    @Override public EdgeSkipIterator getEdges(int node) {
+        return new OverlayIterator(base.getEdges(node), node, true, true);
+    }
+
+    @Override public EdgeSkipIterator getIncoming(int node) {
+        return new OverlayIterator(base.getIncoming(node), node, true, false);
+    }
+
+    @Override public EdgeSkipIterator getOutgoing(int node) {
+        return new OverlayIterator(base.getOutgoing(node), node, false, true);
+    }
+
+    @Override public Graph copyTo(Graph g) {
+        throw new UnsupportedOperationException("Copy the base graph instead");
+    }
+
+    @Override public void markNodeRemoved(int index) {
+        throw new UnsupportedOperationException("Remove nodes of the base graph before creating the overlay");
+    }
+
+    @Override public boolean isNodeRemoved(int index) {
+        return base.isNodeRemoved(index);
+    }
+
+    @Override public void optimize() {
+        throw new UnsupportedOperationException("Optimize the base graph before creating the overlay");
+    }
+
+    /**
+     * Iterates first through the edges of the base graph and then through the
+     * shortcuts of a node. If created for a single edge next returns false.
+     */
+    private class OverlayIterator implements EdgeSkipIterator {
+
+        private final EdgeIterator baseIter;
+        private final boolean in;
+        private final boolean out;
+        private final int baseNode;
+        private boolean inBase;
+        private int nextShortcut;
+        private long pointer;
+        private int node;
+        private int flags;
+
+        OverlayIterator(EdgeIterator baseIter, int baseNode, boolean in, boolean out) {
+            this.baseIter = baseIter;
+            this.baseNode = baseNode;
+            this.in = in;
+            this.out = out;
+            inBase = baseIter != null;
+            nextShortcut = in || out ? shortcutRef(baseNode) : EdgeIterator.NO_EDGE;
+        }
+
+        void setShortcut(int shortcut) {
+            inBase = false;
+            nextShortcut = EdgeIterator.NO_EDGE;
+            readShortcut(shortcut);
+        }
+
+        private void readShortcut(int shortcut) {
+            pointer = (long) shortcut * SHORTCUT_SIZE;
+            int nodeA = shortcuts.getInt(pointer + S_NODEA);
+            flags = shortcuts.getInt(pointer + S_FLAGS);
+            if (nodeA == baseNode) {
+                node = shortcuts.getInt(pointer + S_NODEB);
+                nextShortcut = shortcuts.getInt(pointer + S_LINKA);
+            } else {
+                node = nodeA;
+                nextShortcut = shortcuts.getInt(pointer + S_LINKB);
+                flags = CarStreetType.swapDirection(flags);
+            }
+        }
+
+        @Override public boolean next() {
+            if (inBase) {
+                if (baseIter.next())
+                    return true;
+                inBase = false;
+            }
+            while (nextShortcut != EdgeIterator.NO_EDGE) {
+                readShortcut(nextShortcut);
+                if ((in || CarStreetType.isForward(flags)) && (out || CarStreetType.isBackward(flags)))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override public int edge() {
+            if (inBase)
+                return baseIter.edge();
+            return baseEdges + (int) (pointer / SHORTCUT_SIZE);
+        }
+
+        @Override public int baseNode() {
+            if (inBase)
+                return baseIter.baseNode();
+            return baseNode;
+        }
+
+        @Override public int node() {
+            if (inBase)
+                return baseIter.node();
+            return node;
+        }
+
+        @Override public PointList wayGeometry() {
+            if (inBase)
+                return baseIter.wayGeometry();
+            return new PointList(0);
+        }
+
+        @Override public void wayGeometry(PointList list) {
+            if (inBase)
+                baseIter.wayGeometry(list);
+            else
+                throw new IllegalStateException("Shortcuts have no geometry");
+        }
+
+        @Override public double distance() {
+            if (inBase)
+                return baseIter.distance();
+            return shortcuts.getInt(pointer + S_DIST) / INT_DIST_FACTOR;
+        }
+
+        @Override public void distance(double dist) {
+            if (inBase)
+                baseIter.distance(dist);
+            else
+                shortcuts.setInt(pointer + S_DIST, (int) (dist * INT_DIST_FACTOR));
+        }
+
+        @Override public int flags() {
+            if (inBase)
+                return baseIter.flags();
+            return flags;
+        }
+
+        @Override public void flags(int flags) {
+            if (inBase) {
+                baseIter.flags(flags);
+                return;
+            }
+            this.flags = flags;
+            // the flags are stored in the direction nodeA -> nodeB
+            if (baseNode > node)
+                flags = CarStreetType.swapDirection(flags);
+            shortcuts.setInt(pointer + S_FLAGS, flags);
+        }
+
+        @Override public boolean isEmpty() {
+            if (inBase)
+                return baseIter.isEmpty();
+            return false;
+        }
+
+        @Override public int skippedEdge1() {
+            if (inBase)
+                return EdgeIterator.NO_EDGE;
+            return shortcuts.getInt(pointer + S_SKIP_EDGE1);
+        }
+
+        @Override public int skippedEdge2() {
+            if (inBase)
+                return EdgeIterator.NO_EDGE;
+            return shortcuts.getInt(pointer + S_SKIP_EDGE2);
+        }
+
+        @Override public void skippedEdges(int edge1, int edge2) {
+            if (inBase)
+                throw new IllegalStateException("Edge " + baseIter.edge() + " of the base graph cannot skip edges");
+            shortcuts.setInt(pointer + S_SKIP_EDGE1, edge1);
+            shortcuts.setInt(pointer + S_SKIP_EDGE2, edge2);
+        }
+
+        @Override public boolean isShortcut() {
+            return !inBase && EdgeIterator.Edge.isValid(skippedEdge1());
+        }
+
+        @Override public String toString() {
+            return edge() + " " + baseNode() + "-" + node();
+        }
+    }
+
+    private class AllOverlayIterator implements RawEdgeIterator {
+
+        private final RawEdgeIterator baseIter;
+        private boolean inBase = true;
+        private int shortcut = -1;
+
+        AllOverlayIterator(RawEdgeIterator baseIter) {
+            this.baseIter = baseIter;
+        }
+
+        private long pointer() {
+            return (long) shortcut * SHORTCUT_SIZE;
+        }
+
+        @Override public boolean next() {
+            if (inBase) {
+                if (baseIter.next())
+                    return true;
+                inBase = false;
+            }
+            shortcut++;
+            return shortcut < shortcutCount;
+        }
+
+        @Override public int nodeA() {
+            if (inBase)
+                return baseIter.nodeA();
+            return shortcuts.getInt(pointer() + S_NODEA);
+        }
+
+        @Override public int nodeB() {
+            if (inBase)
+                return baseIter.nodeB();
+            return shortcuts.getInt(pointer() + S_NODEB);
+        }
+
+        @Override public double distance() {
+            if (inBase)
+                return baseIter.distance();
+            return shortcuts.getInt(pointer() + S_DIST) / INT_DIST_FACTOR;
+        }
+
+        @Override public void distance(double dist) {
+            if (inBase)
+                baseIter.distance(dist);
+            else
+                shortcuts.setInt(pointer() + S_DIST, (int) (dist * INT_DIST_FACTOR));
+        }
+
+        @Override public int flags() {
+            if (inBase)
+                return baseIter.flags();
+            return shortcuts.getInt(pointer() + S_FLAGS);
+        }
+
+        @Override public void flags(int flags) {
+            if (inBase)
+                baseIter.flags(flags);
+            else
+                shortcuts.setInt(pointer() + S_FLAGS, flags);
+        }
+
+        @Override public int edge() {
+            if (inBase)
+                return baseIter.edge();
+            return baseEdges + shortcut;
+        }
+
+        @Override public boolean isEmpty() {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!levels.loadExisting())
+            return false;
+        if (!shortcuts.loadExisting())
+            throw new IllegalStateException("Cannot load shortcuts of " + name + ". Corrupt file or directory? "
+                    + base.directory());
+        baseEdges = shortcuts.getHeader(0);
+        shortcutCount = shortcuts.getHeader(1);
+        if (baseEdges != base.edgeCount() || levels.getHeader(0) != base.nodes())
+            throw new IllegalStateException("The shortcuts of " + name + " do not match the base graph with "
+                    + nf(base.nodes()) + " nodes and " + nf(base.edgeCount()) + " edges");
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        levels.setHeader(0, base.nodes());
+        shortcuts.setHeader(0, baseEdges);
+        shortcuts.setHeader(1, shortcutCount);
+        levels.flush();
+        shortcuts.flush();
+    }
+
+    @Override
+    public void close() {
+        levels.close();
+        shortcuts.close();
+    }
+
+    @Override
+    public long capacity() {
+        return levels.capacity() + shortcuts.capacity();
+    }
+
+    @Override public String toString() {
+        return name + " shortcuts:" + nf(shortcutCount) + ", base " + base;
+    }
+}
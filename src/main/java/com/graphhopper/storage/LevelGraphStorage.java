@@ -44,6 +44,7 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph {
     }
 
     @Override public final void setLevel(int index, int level) {
+        checkNotFrozen();
         ensureNodeIndex(index);
         nodes.setInt((long) index * nodeEntrySize + I_LEVEL, level);
     }
@@ -62,6 +63,7 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph {
     }
 
     @Override public EdgeSkipIterator edge(int a, int b, double distance, int flags) {
+        checkNotFrozen();
         ensureNodeIndex(Math.max(a, b));
         int edgeId = internalEdgeAdd(a, b, distance, flags);
         EdgeSkipIterator iter = new EdgeSkipIteratorImpl(edgeId, a, false, false);
@@ -98,6 +100,7 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph {
         }
 
         @Override public void skippedEdges(int edge1, int edge2) {
+            checkNotFrozen();
             if (EdgeIterator.Edge.isValid(edge1) != EdgeIterator.Edge.isValid(edge2))
                 throw new IllegalStateException("Skipped edges of a shortcuts needs "
                         + "to be both valid but wasn't " + edge1 + ", " + edge2);
@@ -123,6 +126,7 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph {
      * direction.
      */
     public int disconnect(EdgeIterator iter, long prevEdgePointer, boolean sameDirection) {
+        checkNotFrozen();
         // open up package protected API for now ...
         if (sameDirection)
             internalEdgeDisconnect(iter.edge(), prevEdgePointer, iter.baseNode(), iter.node());
@@ -165,6 +169,7 @@ public class LevelGraphStorage extends GraphStorage implements LevelGraph {
         }
 
         @Override public void skippedEdges(int edge1, int edge2) {
+            checkNotFrozen();
             edges.setInt(edgePointer + I_SKIP_EDGE1, edge1);
             edges.setInt(edgePointer + I_SKIP_EDGE2, edge2);
         }
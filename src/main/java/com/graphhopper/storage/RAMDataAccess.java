@@ -26,13 +26,18 @@ import java.util.Arrays;
 
 /**
  * This is an in-memory data structure but with the possibility to be stored on
- * flush().
+ * flush(). After the first flush or a load only the segments changed since
+ * then are written.
  *
  * @author Peter Karich
  */
 public class RAMDataAccess extends AbstractDataAccess {
 
     private int[][] segments = new int[0][];
+    // the segments written by setInt since the last flush or load
+    private boolean[] dirty = new boolean[0];
+    // the number of bytes of the segments in the file, -1 if they are unknown
+    private long storedBytes = -1;
     private boolean closed = false;
     private boolean store;
     private transient int segmentSizeIntsPower;
@@ -70,6 +75,8 @@ public class RAMDataAccess extends AbstractDataAccess {
                 rda.segments[i] = Arrays.copyOf(area, area.length);
             }
             rda.segmentSize(segmentSizeInBytes);
+            rda.dirty = new boolean[segments.length];
+            rda.storedBytes = -1;
             // leave id, store and close unchanged
             return da;
         } else
@@ -103,6 +110,9 @@ public class RAMDataAccess extends AbstractDataAccess {
                 newSegs[i] = new int[1 << segmentSizeIntsPower];
             }
             segments = newSegs;
+            // the file can still contain older data of trimmed segments
+            dirty = Arrays.copyOf(dirty, newSegs.length);
+            Arrays.fill(dirty, newSegs.length - segmentsToCreate, newSegs.length, true);
         } catch (OutOfMemoryError err) {
             throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new memory. Old capacity: "
                     + cap + ", requested bytes:" + todoBytes + ", segmentSizeIntsPower:" + segmentSizeIntsPower
@@ -141,6 +151,8 @@ public class RAMDataAccess extends AbstractDataAccess {
                     }
                     segments[s] = area;
                 }
+                dirty = new boolean[segmentCount];
+                storedBytes = byteCount;
                 return true;
             } finally {
                 raFile.close();
@@ -160,11 +172,18 @@ public class RAMDataAccess extends AbstractDataAccess {
             RandomAccessFile raFile = new RandomAccessFile(fullName(), "rw");
             try {
                 long len = capacity();
+                // rewrite everything if the file was changed or truncated by someone else
+                boolean all = storedBytes < 0 || raFile.length() < HEADER_OFFSET + storedBytes;
                 writeHeader(raFile, len, segmentSizeInBytes);
-                raFile.seek(HEADER_OFFSET);
                 // raFile.writeInt() <- too slow, so copy into byte array
+                long bytes = 0;
                 for (int s = 0; s < segments.length; s++) {
                     int area[] = segments[s];
+                    long offset = bytes;
+                    bytes += area.length * 4L;
+                    if (!all && !dirty[s] && bytes <= storedBytes)
+                        continue;
+                    raFile.seek(HEADER_OFFSET + offset);
                     int intLen = area.length;
                     byte[] byteArea = new byte[intLen * 4];
                     for (int i = 0; i < intLen; i++) {
@@ -173,6 +192,8 @@ public class RAMDataAccess extends AbstractDataAccess {
                     }
                     raFile.write(byteArea);
                 }
+                Arrays.fill(dirty, false);
+                storedBytes = bytes;
             } finally {
                 raFile.close();
             }
@@ -186,6 +207,7 @@ public class RAMDataAccess extends AbstractDataAccess {
         int bufferIndex = (int) (longIndex >>> segmentSizeIntsPower);
         int index = (int) (longIndex & indexDivisor);
         segments[bufferIndex][index] = value;
+        dirty[bufferIndex] = true;
     }
 
     @Override
@@ -199,6 +221,7 @@ public class RAMDataAccess extends AbstractDataAccess {
     public void close() {
         super.close();
         segments = new int[0][];
+        dirty = new boolean[0];
         closed = true;
     }
 
@@ -229,6 +252,7 @@ public class RAMDataAccess extends AbstractDataAccess {
             remainingSegments++;
 
         segments = Arrays.copyOf(segments, remainingSegments);
+        dirty = Arrays.copyOf(dirty, remainingSegments);
     }
 
     boolean releaseSegment(int segNumber) {
@@ -0,0 +1,198 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A DataAccess which starts in memory and switches transparently to a memory
+ * mapped file when the memory budget of its SpillDirectory would be exceeded.
+ * Once spilled it stays memory mapped.
+ *
+ * @see SpillDirectory
+ * @author Peter Karich
+ */
+public class SpillDataAccess extends AbstractDataAccess {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final String location;
+    private final SpillDirectory dir;
+    private DataAccess current;
+    private boolean spilled = false;
+
+    SpillDataAccess(String name, String location, SpillDirectory dir) {
+        super(name, location);
+        this.location = location;
+        this.dir = dir;
+        current = new RAMDataAccess(name, location, true);
+    }
+
+    /**
+     * @return true if the data was moved into a memory mapped file
+     */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    @Override
+    public void createNew(long bytes) {
+        if (!dir.fits(roundUp(Math.max(10 * 4, bytes)))) {
+            spill(bytes);
+            return;
+        }
+        long old = memoryCapacity();
+        current.createNew(bytes);
+        dir.reserve(memoryCapacity() - old);
+    }
+
+    @Override
+    public void ensureCapacity(long bytes) {
+        if (!spilled && bytes > current.capacity() && !dir.fits(roundUp(bytes) - current.capacity()))
+            spill(bytes);
+        long old = memoryCapacity();
+        current.ensureCapacity(bytes);
+        dir.reserve(memoryCapacity() - old);
+    }
+
+    /**
+     * Moves the in-memory data into a memory mapped file with at least the
+     * specified capacity.
+     */
+    private void spill(long bytes) {
+        RAMDataAccess ram = (RAMDataAccess) current;
+        long ramCapacity = ram.capacity();
+        MMapDataAccess mmap = new MMapDataAccess(name, location);
+        mmap.segmentSize(segmentSizeInBytes);
+        mmap.createNew(Math.max(bytes, ramCapacity));
+        if (ramCapacity > 0)
+            ram.copyTo(mmap);
+        else
+            for (int h = 0; h < header.length; h++) {
+                mmap.setHeader(h, ram.getHeader(h));
+            }
+
+        ram.close();
+        dir.reserve(-ramCapacity);
+        current = mmap;
+        spilled = true;
+        logger.info("moved " + name + " with " + ramCapacity + " bytes into a memory mapped file, "
+                + "requested:" + bytes + ", budget:" + dir.budget() + ", used:" + dir.usedBytes());
+    }
+
+    private long roundUp(long bytes) {
+        long segments = bytes / segmentSizeInBytes;
+        if (bytes % segmentSizeInBytes != 0)
+            segments++;
+        return segments * segmentSizeInBytes;
+    }
+
+    /**
+     * @return the bytes this object currently holds in the heap
+     */
+    private long memoryCapacity() {
+        return spilled ? 0 : current.capacity();
+    }
+
+    @Override
+    public boolean loadExisting() {
+        File file = new File(fullName());
+        if (!spilled && file.exists() && !dir.fits(file.length())) {
+            current = new MMapDataAccess(name, location).segmentSize(segmentSizeInBytes);
+            spilled = true;
+        }
+        long old = memoryCapacity();
+        boolean loaded = current.loadExisting();
+        segmentSizeInBytes = current.segmentSize();
+        dir.reserve(memoryCapacity() - old);
+        return loaded;
+    }
+
+    @Override
+    public void setInt(long index, int value) {
+        current.setInt(index, value);
+    }
+
+    @Override
+    public int getInt(long index) {
+        return current.getInt(index);
+    }
+
+    @Override
+    public void setHeader(int index, int value) {
+        current.setHeader(index, value);
+    }
+
+    @Override
+    public int getHeader(int index) {
+        return current.getHeader(index);
+    }
+
+    @Override
+    public void flush() {
+        current.flush();
+    }
+
+    @Override
+    public void close() {
+        dir.reserve(-memoryCapacity());
+        current.close();
+    }
+
+    @Override
+    public long capacity() {
+        return current.capacity();
+    }
+
+    @Override
+    public void trimTo(long bytes) {
+        long old = memoryCapacity();
+        current.trimTo(bytes);
+        dir.reserve(memoryCapacity() - old);
+    }
+
+    @Override
+    public DataAccess copyTo(DataAccess da) {
+        return current.copyTo(da);
+    }
+
+    @Override
+    public DataAccess segmentSize(int bytes) {
+        super.segmentSize(bytes);
+        current.segmentSize(bytes);
+        return this;
+    }
+
+    @Override
+    public int segments() {
+        return current.segments();
+    }
+
+    @Override
+    public void rename(String newName) {
+        current.rename(newName);
+        name = newName;
+    }
+
+    @Override
+    public String toString() {
+        return fullName() + (spilled ? " (mmap)" : " (ram)");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+/**
+ * Manages DataAccess objects which are kept in memory as long as all of them
+ * together fit into the specified memory budget. If a DataAccess object grows
+ * beyond the budget it is moved into a memory mapped file.
+ *
+ * @see SpillDataAccess
+ * @author Peter Karich
+ */
+public class SpillDirectory extends AbstractDirectory {
+
+    private final long budget;
+    private long usedBytes;
+
+    /**
+     * @param budget the maximum number of bytes which are kept in the heap
+     */
+    public SpillDirectory(String _location, long budget) {
+        super(_location);
+        if (budget < 0)
+            throw new IllegalArgumentException("Memory budget cannot be negative " + budget);
+        this.budget = budget;
+        mkdirs();
+    }
+
+    @Override
+    protected DataAccess create(String id, String location) {
+        return new SpillDataAccess(id, location, this);
+    }
+
+    @Override
+    public void remove(DataAccess da) {
+        // free the memory before the files are removed
+        da.close();
+        super.remove(da);
+    }
+
+    /**
+     * Reserves memory of the budget for structures not managed by this
+     * directory, e.g. hash maps.
+     */
+    public void reserve(long bytes) {
+        usedBytes += bytes;
+    }
+
+    /**
+     * @return true if the specified additional bytes can be kept in memory
+     */
+    boolean fits(long bytes) {
+        return usedBytes + bytes <= budget;
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    /**
+     * @return the bytes of the budget which are currently in use
+     */
+    public long usedBytes() {
+        return usedBytes;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+
+/**
+ * Stores the costs of turning from one edge into another at a via node, e.g.
+ * created from the turn restrictions of OSM. Only a small fraction of all
+ * nodes has such entries so there is no per node data. Instead a table of the
+ * via nodes (sorted by node id) points into a block of (fromEdge, toEdge,
+ * cost) entries which are grouped by via node. A lookup is a binary search in
+ * the via table followed by a linear scan through a few entries.
+ *
+ * New entries are collected in memory and written into the DataAccess via
+ * build or flush.
+ *
+ * @author Peter Karich
+ */
+public class TurnCostStorage implements Storable {
+
+    /**
+     * The cost of a forbidden turn
+     */
+    public static final double FORBIDDEN = Double.POSITIVE_INFINITY;
+    private static final int VIA_ROW = 2;
+    private static final int ENTRY_ROW = 3;
+    private final DataAccess costs;
+    private int viaCount;
+    private int entryCount;
+    // via, fromEdge, toEdge and the cost as float bits of not yet built entries
+    private TIntArrayList pending;
+
+    public TurnCostStorage(Directory dir) {
+        costs = dir.findCreate("turnCosts");
+    }
+
+    public TurnCostStorage createNew() {
+        costs.createNew(100);
+        viaCount = 0;
+        entryCount = 0;
+        pending = null;
+        build();
+        return this;
+    }
+
+    /**
+     * Adds the costs (in the unit of the weight calculation) of the turn from
+     * fromEdge into toEdge at the specified node.
+     */
+    public TurnCostStorage addTurnCost(int viaNode, int fromEdge, int toEdge, double cost) {
+        if (cost < 0)
+            throw new IllegalArgumentException("Turn costs cannot be negative: " + cost);
+        if (pending == null)
+            pending = readEntries();
+        pending.add(viaNode);
+        pending.add(fromEdge);
+        pending.add(toEdge);
+        pending.add(Float.floatToIntBits((float) cost));
+        return this;
+    }
+
+    public TurnCostStorage forbidTurn(int viaNode, int fromEdge, int toEdge) {
+        return addTurnCost(viaNode, fromEdge, toEdge, FORBIDDEN);
+    }
+
+    /**
+     * @return the costs of the turn from fromEdge into toEdge at viaNode, 0 if
+     * there is no entry and FORBIDDEN if the turn is not allowed
+     */
+    public double turnCost(int viaNode, int fromEdge, int toEdge) {
+        int row = findVia(viaNode);
+        if (row < 0)
+            return 0;
+        long pointer = (long) row * VIA_ROW + 1;
+        int start = costs.getInt(pointer);
+        int end = costs.getInt(pointer + VIA_ROW);
+        long entries = (long) (viaCount + 1) * VIA_ROW;
+        for (int i = start; i < end; i++) {
+            long entryPointer = entries + (long) i * ENTRY_ROW;
+            if (costs.getInt(entryPointer) == fromEdge && costs.getInt(entryPointer + 1) == toEdge)
+                return Float.intBitsToFloat(costs.getInt(entryPointer + 2));
+        }
+        return 0;
+    }
+
+    /**
+     * @return true if the specified node has at least one turn cost entry
+     */
+    public boolean isViaNode(int node) {
+        return findVia(node) >= 0;
+    }
+
+    /**
+     * @return the row of the via node or -1 if it has no entries
+     */
+    private int findVia(int viaNode) {
+        if (pending != null)
+            throw new IllegalStateException("Call build before reading turn costs");
+        int low = 0;
+        int high = viaCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int node = costs.getInt((long) mid * VIA_ROW);
+            if (node < viaNode)
+                low = mid + 1;
+            else if (node > viaNode)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    public boolean isForbidden(int viaNode, int fromEdge, int toEdge) {
+        return turnCost(viaNode, fromEdge, toEdge) == FORBIDDEN;
+    }
+
+    /**
+     * @return the number of nodes with at least one turn cost entry
+     */
+    public int viaNodes() {
+        return viaCount;
+    }
+
+    public int entries() {
+        return entryCount;
+    }
+
+    private TIntArrayList readEntries() {
+        TIntArrayList list = new TIntArrayList(Math.max(10, (entryCount + 1) * 4));
+        long entries = (long) (viaCount + 1) * VIA_ROW;
+        for (int row = 0; row < viaCount; row++) {
+            int node = costs.getInt((long) row * VIA_ROW);
+            int start = costs.getInt((long) row * VIA_ROW + 1);
+            int end = costs.getInt((long) (row + 1) * VIA_ROW + 1);
+            for (int i = start; i < end; i++) {
+                long entryPointer = entries + (long) i * ENTRY_ROW;
+                list.add(node);
+                list.add(costs.getInt(entryPointer));
+                list.add(costs.getInt(entryPointer + 1));
+                list.add(costs.getInt(entryPointer + 2));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Writes the pending entries into the DataAccess.
+     */
+    public TurnCostStorage build() {
+        if (pending == null)
+            pending = new TIntArrayList(0);
+
+        int size = pending.size() / 4;
+        // sort by via node and keep the insertion order within one via node
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = ((long) pending.get(i * 4) << 32) | i;
+        }
+        Arrays.sort(order);
+        int vias = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || (int) (order[i] >> 32) != (int) (order[i - 1] >> 32))
+                vias++;
+        }
+
+        long entries = (long) (vias + 1) * VIA_ROW;
+        costs.ensureCapacity((entries + (long) size * ENTRY_ROW) * 4);
+        int row = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (int) order[i] * 4;
+            int node = pending.get(index);
+            if (i == 0 || (int) (order[i] >> 32) != (int) (order[i - 1] >> 32)) {
+                costs.setInt((long) row * VIA_ROW, node);
+                costs.setInt((long) row * VIA_ROW + 1, i);
+                row++;
+            }
+            long entryPointer = entries + (long) i * ENTRY_ROW;
+            costs.setInt(entryPointer, pending.get(index + 1));
+            costs.setInt(entryPointer + 1, pending.get(index + 2));
+            costs.setInt(entryPointer + 2, pending.get(index + 3));
+        }
+        // sentinel row to get the end of the last via node
+        costs.setInt((long) vias * VIA_ROW, Integer.MAX_VALUE);
+        costs.setInt((long) vias * VIA_ROW + 1, size);
+        viaCount = vias;
+        entryCount = size;
+        pending = null;
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting() {
+        if (!costs.loadExisting())
+            return false;
+        viaCount = costs.getHeader(0);
+        entryCount = costs.getHeader(1);
+        pending = null;
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        if (pending != null)
+            build();
+        costs.setHeader(0, viaCount);
+        costs.setHeader(1, entryCount);
+        costs.flush();
+    }
+
+    @Override
+    public void close() {
+        costs.close();
+    }
+
+    @Override
+    public long capacity() {
+        return costs.capacity();
+    }
+}
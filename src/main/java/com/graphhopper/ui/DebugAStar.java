@@ -19,7 +19,6 @@
 package com.graphhopper.ui;
 
 import com.graphhopper.routing.AStar;
-import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -42,9 +41,9 @@ public class DebugAStar extends AStar implements DebugAlgo {
         this.g2 = g2;
     }
 
-    @Override public void updateShortest(EdgeEntry shortestDE, int currLoc) {
+    @Override public void updateShortest(int node, double weight) {
         if (g2 != null)
-            mg.plotNode(g2, currLoc, Color.YELLOW);
-        super.updateShortest(shortestDE, currLoc);
+            mg.plotNode(g2, node, Color.YELLOW);
+        super.updateShortest(node, weight);
     }
 }
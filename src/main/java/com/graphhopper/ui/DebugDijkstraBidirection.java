@@ -19,7 +19,6 @@
 package com.graphhopper.ui;
 
 import com.graphhopper.routing.DijkstraBidirectionRef;
-import com.graphhopper.storage.EdgeEntry;
 import com.graphhopper.storage.Graph;
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -42,14 +41,14 @@ public class DebugDijkstraBidirection extends DijkstraBidirectionRef implements
         this.g2 = g2;
     }
 
-    @Override public void updateShortest(EdgeEntry shortestDE, int currLoc) {
+    @Override public void updateShortest(int node, double weight) {
         if (g2 != null) {
             if (edgeFilter() == null)
-                mg.plotNode(g2, currLoc, Color.ORANGE);
+                mg.plotNode(g2, node, Color.ORANGE);
             else
-                mg.plotNode(g2, currLoc, Color.BLUE);
+                mg.plotNode(g2, node, Color.BLUE);
         }
-        // System.out.println("new node:" + currLoc);
-        super.updateShortest(shortestDE, currLoc);
+        // System.out.println("new node:" + node);
+        super.updateShortest(node, weight);
     }
 }
@@ -21,7 +21,6 @@ package com.graphhopper.ui;
 import com.graphhopper.routing.AStar;
 import com.graphhopper.routing.DijkstraSimple;
 import com.graphhopper.storage.Graph;
-import com.graphhopper.storage.EdgeEntry;
 import java.awt.Color;
 import java.awt.Graphics2D;
 
@@ -43,9 +42,9 @@ public class DebugDijkstraSimple extends DijkstraSimple implements DebugAlgo {
         this.g2 = g2;
     }
 
-    @Override public void updateShortest(EdgeEntry shortestDE, int currLoc) {
+    @Override public void updateShortest(int node, double weight) {
         if (g2 != null)
-            mg.plotNode(g2, currLoc, Color.YELLOW);
-        super.updateShortest(shortestDE, currLoc);
+            mg.plotNode(g2, node, Color.YELLOW);
+        super.updateShortest(node, weight);
     }
 }
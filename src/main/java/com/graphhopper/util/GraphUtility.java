@@ -384,6 +384,14 @@ public class GraphUtility {
         }
         return endNode;
     }
+
+    /**
+     * Creates a key for the specified edge traversed from fromNode to toNode.
+     * Used by edge based algorithms to distinguish both directions of an edge.
+     */
+    public static int createEdgeKey(int edge, int fromNode, int toNode) {
+        return edge * 2 + (toNode > fromNode ? 1 : 0);
+    }
     public static final EdgeSkipIterator EMPTY = new EdgeSkipIterator() {
         @Override public boolean isShortcut() {
             return false;
@@ -410,7 +418,7 @@ public class GraphUtility {
         }
 
         @Override public boolean next() {
-            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+            return false;
         }
 
         @Override public int edge() {
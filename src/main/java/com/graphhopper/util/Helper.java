@@ -17,12 +17,19 @@ package com.graphhopper.util;
 
 import com.graphhopper.routing.AStar;
 import com.graphhopper.routing.AStarBidirection;
+import com.graphhopper.routing.AStarEdgeBased;
 import com.graphhopper.routing.DijkstraBidirection;
+import com.graphhopper.routing.DijkstraBidirectionEdgeBased;
+import com.graphhopper.routing.DijkstraBidirectionParallel;
 import com.graphhopper.routing.DijkstraBidirectionRef;
 import com.graphhopper.routing.DijkstraSimple;
 import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.alt.PrepareLandmarks;
 import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.FastestCarCalc;
 import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.util.shapes.BBox;
 import gnu.trove.list.TIntList;
@@ -164,9 +171,12 @@ public class Helper {
      * set the _graph for the instance otherwise you'll get NPE when calling
      * createAlgo. Possible values for algorithmStr: astar (A* algorithm),
      * astarbi (bidirectional A*) dijkstra (Dijkstra), dijkstrabi and
-     * dijkstraNative (a bit faster bidirectional Dijkstra).
+     * dijkstraNative (a bit faster bidirectional Dijkstra) and alt (A* with
+     * landmarks, which are prepared in doWork).
      */
     public static AlgorithmPreparation createAlgoPrepare(final String algorithmStr) {
+        if ("alt".equalsIgnoreCase(algorithmStr))
+            return new PrepareLandmarks();
         return new NoOpAlgorithmPreparation() {
             @Override
             public RoutingAlgorithm createAlgo() {
@@ -178,9 +188,21 @@ public class Helper {
     /**
      * Possible values: astar (A* algorithm), astarbi (bidirectional A*)
      * dijkstra (Dijkstra), dijkstrabi and dijkstraNative (a bit faster
-     * bidirectional Dijkstra).
+     * bidirectional Dijkstra), dijkstrabiParallel (both directions on
+     * separate threads), astaredge and dijkstrabiedge (edge based A* and
+     * bidirectional Dijkstra, see their turnCosts method for turn
+     * restrictions). The landmark algorithms alt and altbi need a preparation
+     * and are created via PrepareLandmarks.
      */
     public static RoutingAlgorithm createAlgoFromString(Graph g, String algorithmStr) {
+        return createAlgoFromString(g, algorithmStr, ShortestCarCalc.DEFAULT);
+    }
+
+    /**
+     * @see #createAlgoFromString(Graph, String)
+     * @param weightCalc the weight calculation of the algorithm
+     */
+    public static RoutingAlgorithm createAlgoFromString(Graph g, String algorithmStr, WeightCalculation weightCalc) {
         if (g == null) {
             throw new NullPointerException("You have to specify a graph different from null!");
         }
@@ -189,14 +211,35 @@ public class Helper {
             algo = new DijkstraBidirectionRef(g);
         } else if ("dijkstraNative".equalsIgnoreCase(algorithmStr)) {
             algo = new DijkstraBidirection(g);
+        } else if ("dijkstrabiParallel".equalsIgnoreCase(algorithmStr)) {
+            algo = new DijkstraBidirectionParallel(g);
         } else if ("dijkstra".equalsIgnoreCase(algorithmStr)) {
             algo = new DijkstraSimple(g);
         } else if ("astarbi".equalsIgnoreCase(algorithmStr)) {
             algo = new AStarBidirection(g).setApproximation(true);
+        } else if ("astaredge".equalsIgnoreCase(algorithmStr)) {
+            algo = new AStarEdgeBased(g);
+        } else if ("dijkstrabiedge".equalsIgnoreCase(algorithmStr)) {
+            algo = new DijkstraBidirectionEdgeBased(g);
+        } else if ("alt".equalsIgnoreCase(algorithmStr) || "altbi".equalsIgnoreCase(algorithmStr)) {
+            throw new IllegalArgumentException("The landmarks of " + algorithmStr + " need to be prepared, "
+                    + "use PrepareLandmarks.doWork and then createAlgo or createAStarBidirection");
         } else {
             algo = new AStar(g);
         }
-        return algo;
+        return algo.type(weightCalc);
+    }
+
+    /**
+     * Possible values: fastest and shortest. An empty string or null returns
+     * shortest.
+     */
+    public static WeightCalculation createWeightCalculation(String weighting) {
+        if (isEmpty(weighting) || "shortest".equalsIgnoreCase(weighting))
+            return ShortestCarCalc.DEFAULT;
+        if ("fastest".equalsIgnoreCase(weighting))
+            return FastestCarCalc.DEFAULT;
+        throw new IllegalArgumentException("Weighting " + weighting + " not supported. Use fastest or shortest");
     }
 
     /**
@@ -339,7 +382,7 @@ public class Helper {
      * The file version is independent of the real world version. E.g. to make
      * major version jumps without the need to change the file version.
      */
-    public static final int VERSION_FILE = 5;
+    public static final int VERSION_FILE = 6;
     /**
      * The version without the snapshot string
      */
@@ -21,7 +21,12 @@ package com.graphhopper;
 import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -67,4 +72,291 @@ public class GraphHopperAPITest {
         assertTrue(ph.found());
         assertEquals(3, ph.points().size());
     }
+
+    @Test
+    public void testLoadOSMWithWeightings() {
+        String str = "./target/tmp/weightings-gh";
+        Helper.removeDir(new File(str));
+        GraphHopper instance = new GraphHopper().graphHopperLocation(str).chWeightings("fastest", "shortest");
+        instance.load("./src/test/resources/com/graphhopper/reader/test-osm.xml");
+        GHRequest request = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4);
+        for (String weighting : new String[]{"fastest", "shortest"}) {
+            GHResponse ch = instance.route(new GHRequest(request.from(), request.to()).
+                    algorithm("dijkstrabi").weighting(weighting));
+            GHResponse flexible = instance.route(new GHRequest(request.from(), request.to()).
+                    algorithm("dijkstra").weighting(weighting));
+            assertTrue(ch.found());
+            assertEquals(flexible.distance(), ch.distance(), 1e-3);
+            assertEquals(flexible.points().size(), ch.points().size());
+        }
+        // the first weighting is the default
+        assertEquals(instance.route(new GHRequest(request.from(), request.to()).algorithm("astarbi").
+                weighting("fastest")).distance(),
+                instance.route(new GHRequest(request.from(), request.to()).algorithm("astarbi")).distance(), 1e-3);
+
+        // load the prepared overlays
+        instance = new GraphHopper().chWeightings("fastest", "shortest");
+        instance.load(str);
+        GHResponse rsp = instance.route(new GHRequest(request.from(), request.to()).
+                algorithm("dijkstrabi").weighting("shortest"));
+        assertTrue(rsp.found());
+        assertEquals(3, rsp.points().size());
+
+        // the names are case insensitive
+        instance = new GraphHopper().chWeightings("Fastest", "SHORTEST");
+        instance.load(str);
+        rsp = instance.route(new GHRequest(request.from(), request.to()).
+                algorithm("dijkstrabi").weighting("Shortest"));
+        assertTrue(rsp.found());
+        assertEquals(3, rsp.points().size());
+
+        try {
+            new GraphHopper().chWeightings("fastest", "other");
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+        Helper.removeDir(new File(str));
+    }
+
+    @Test
+    public void testTurnRestrictions() {
+        String str = "./target/tmp/restrictions-gh";
+        Helper.removeDir(new File(str));
+        GraphHopper instance = new GraphHopper().graphHopperLocation(str).turnRestrictions(true);
+        instance.load("./src/test/resources/com/graphhopper/reader/test-restrictions-detour.xml");
+        GHRequest request = new GHRequest(49.9, 10, 50, 9.9);
+        // without turn costs the route turns left at the via node
+        GHResponse rsp = instance.route(new GHRequest(request.from(), request.to()).algorithm("dijkstra"));
+        assertEquals(3, rsp.points().size());
+        assertEquals(50, rsp.points().latitude(1), 1e-5);
+        for (String algo : new String[]{"astaredge", "dijkstrabiedge"}) {
+            assertDetour(instance.route(new GHRequest(request.from(), request.to()).algorithm(algo)));
+        }
+
+        // load the stored turn restrictions
+        instance = new GraphHopper();
+        instance.load(str);
+        assertDetour(instance.route(new GHRequest(request.from(), request.to()).algorithm("astaredge")));
+        Helper.removeDir(new File(str));
+    }
+
+    private void assertDetour(GHResponse rsp) {
+        assertTrue(rsp.found());
+        assertEquals(3, rsp.points().size());
+        assertEquals(49.8, rsp.points().latitude(1), 1e-5);
+        assertEquals(9.8, rsp.points().longitude(1), 1e-5);
+    }
+
+    @Test
+    public void testKeepBaseGraphUsesPreparedWeighting() {
+        String str = "./target/tmp/keepbase-gh";
+        Helper.removeDir(new File(str));
+        GraphHopper instance = new GraphHopper().graphHopperLocation(str).contractionHierarchies(true).
+                chKeepBaseGraph(true);
+        instance.load("./src/test/resources/com/graphhopper/reader/test-osm-weightings.xml");
+        GHRequest request = new GHRequest(51.0, 9.0, 51.0, 9.1);
+        GHResponse ch = instance.route(new GHRequest(request.from(), request.to()).
+                algorithm("dijkstrabi").weighting("fastest"));
+        assertTrue(ch.found());
+        // the longer motorway is faster than the direct residential street
+        assertTrue(ch.distance() > 8000);
+        for (String weighting : new String[]{"fastest", ""}) {
+            for (String algo : new String[]{"dijkstra", "astar"}) {
+                GHResponse rsp = instance.route(new GHRequest(request.from(), request.to()).
+                        algorithm(algo).weighting(weighting));
+                assertTrue(rsp.found());
+                assertEquals(algo + " " + weighting, ch.distance(), rsp.distance(), 1e-3);
+                assertEquals(algo + " " + weighting, ch.time(), rsp.time());
+            }
+        }
+        Helper.removeDir(new File(str));
+    }
+
+    static GraphStorage createGrid(int size, Random rand) {
+        return createGrid(size, rand, 1000);
+    }
+
+    static GraphStorage createGrid(int size, Random rand, int minDistance) {
+        GraphStorage graph = new GraphBuilder().create();
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                graph.setNode(y * size + x, 42 + y * 0.01, 10 + x * 0.01);
+            }
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int node = y * size + x;
+                if (x + 1 < size)
+                    graph.edge(node, node + 1, minDistance + rand.nextInt(500), rand.nextInt(5) > 0);
+                if (y + 1 < size)
+                    graph.edge(node, node + size, minDistance + rand.nextInt(500), rand.nextInt(5) > 0);
+            }
+        }
+        return graph;
+    }
+
+    @Test
+    public void testConcurrentRoute() throws Exception {
+        final int size = 20;
+        Random rand = new Random(0);
+        GraphStorage graph = createGrid(size, rand);
+        final GraphHopper instance = new GraphHopper(graph);
+        final String[] algos = {"dijkstra", "dijkstrabi", "astar", "astarbi", "alt", "altbi", "dijkstrabiParallel"};
+        final int queries = 100;
+        final GHRequest[] requests = new GHRequest[queries];
+        final GHResponse[] expected = new GHResponse[queries];
+        for (int i = 0; i < queries; i++) {
+            int from = rand.nextInt(size * size);
+            int to = rand.nextInt(size * size);
+            requests[i] = new GHRequest(graph.getLatitude(from), graph.getLongitude(from),
+                    graph.getLatitude(to), graph.getLongitude(to)).algorithm(algos[i % algos.length]);
+            expected[i] = instance.route(requests[i]);
+        }
+
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t * 13;
+            threads[t] = new Thread() {
+                @Override public void run() {
+                    for (int round = 0; round < 5; round++) {
+                        for (int j = 0; j < queries; j++) {
+                            int i = (j + offset) % queries;
+                            GHResponse rsp = instance.route(requests[i]);
+                            if (rsp.found() != expected[i].found()
+                                    || Math.abs(rsp.distance() - expected[i].distance()) > 1e-6
+                                    || rsp.points().size() != expected[i].points().size())
+                                errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+        assertTrue(graph.isFrozen());
+    }
+
+    @Test
+    public void testBatchRoute() {
+        int size = 10;
+        Random rand = new Random(1);
+        GraphStorage graph = createGrid(size, rand);
+        GraphHopper instance = new GraphHopper(graph).workerThreads(3);
+        String[] algos = {"dijkstrabi", "astar"};
+        List<GHRequest> requests = new ArrayList<GHRequest>();
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(size * size);
+            int to = rand.nextInt(size * size);
+            requests.add(new GHRequest(graph.getLatitude(from), graph.getLongitude(from),
+                    graph.getLatitude(to), graph.getLongitude(to)).algorithm(algos[i % algos.length]));
+        }
+
+        GHBatchResponse batch = instance.route(requests);
+        assertEquals(50, batch.size());
+        assertEquals(3, batch.threads());
+        int found = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            GHResponse expected = instance.route(requests.get(i));
+            assertEquals(expected.found(), batch.get(i).found());
+            assertEquals(expected.distance(), batch.get(i).distance(), 1e-6);
+            assertEquals(expected.points().size(), batch.get(i).points().size());
+            if (expected.found())
+                found++;
+        }
+        assertEquals(found, batch.found());
+
+        assertEquals(0, instance.route(new ArrayList<GHRequest>()).size());
+    }
+
+    @Test
+    public void testMatrix() {
+        int size = 10;
+        Random rand = new Random(2);
+        GraphStorage graph = createGrid(size, rand);
+        GraphHopper instance = new GraphHopper(graph);
+        List<GHPoint> sources = new ArrayList<GHPoint>();
+        List<GHPoint> targets = new ArrayList<GHPoint>();
+        for (int i = 0; i < 12; i++) {
+            int node = rand.nextInt(size * size);
+            GHPoint point = new GHPoint(graph.getLatitude(node), graph.getLongitude(node));
+            if (i % 2 == 0)
+                sources.add(point);
+            else
+                targets.add(point);
+        }
+
+        GHMatrixResponse matrix = instance.matrix(sources, targets, true);
+        assertEquals(6, matrix.sources());
+        assertEquals(6, matrix.targets());
+        assertEquals(36, matrix.distances().length);
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < targets.size(); j++) {
+                GHResponse expected = instance.route(new GHRequest(sources.get(i), targets.get(j)).algorithm("dijkstra"));
+                assertEquals(expected.found(), matrix.found(i, j));
+                if (!expected.found())
+                    continue;
+                assertEquals(expected.distance(), matrix.distance(i, j), 1e-6);
+                assertEquals(expected.time(), matrix.time(i, j));
+                assertEquals(expected.points().size(), matrix.points(i, j).size());
+            }
+        }
+
+        try {
+            instance.matrix(sources, targets, false).points(0, 0);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testMatrixUnreachable() {
+        GraphStorage graph = new GraphBuilder().create();
+        graph.setNode(0, 42, 10);
+        graph.setNode(1, 42, 10.1);
+        graph.setNode(2, 43, 11);
+        graph.setNode(3, 43, 11.1);
+        graph.edge(0, 1, 10000, true);
+        graph.edge(2, 3, 10000, true);
+        GraphHopper instance = new GraphHopper(graph);
+        List<GHPoint> sources = new ArrayList<GHPoint>();
+        sources.add(new GHPoint(42, 10));
+        List<GHPoint> targets = new ArrayList<GHPoint>();
+        targets.add(new GHPoint(43, 11));
+        targets.add(new GHPoint(43, 11.1));
+
+        GHMatrixResponse matrix = instance.matrix(sources, targets, true);
+        for (int j = 0; j < targets.size(); j++) {
+            assertFalse(matrix.found(0, j));
+            assertEquals(0, matrix.points(0, j).size());
+        }
+    }
+
+    @Test
+    public void testLandmarksWithWeighting() {
+        Random rand = new Random(3);
+        // the edges are longer than the beeline, otherwise A* is not exact
+        GraphStorage graph = createGrid(10, rand, 1200);
+        GraphHopper instance = new GraphHopper(graph);
+        for (int i = 0; i < 20; i++) {
+            int from = rand.nextInt(100);
+            int to = rand.nextInt(100);
+            GHRequest request = new GHRequest(graph.getLatitude(from), graph.getLongitude(from),
+                    graph.getLatitude(to), graph.getLongitude(to));
+            for (String weighting : new String[]{"fastest", "shortest"}) {
+                GHResponse expected = instance.route(new GHRequest(request.from(), request.to()).
+                        algorithm("dijkstra").weighting(weighting));
+                for (String algo : new String[]{"alt", "altbi"}) {
+                    GHResponse rsp = instance.route(new GHRequest(request.from(), request.to()).
+                            algorithm(algo).weighting(weighting));
+                    assertEquals(algo + " " + weighting, expected.found(), rsp.found());
+                    assertEquals(algo + " " + weighting, expected.distance(), rsp.distance(), 1e-6);
+                    assertEquals(algo + " " + weighting, expected.time(), rsp.time());
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.RAMDirectory;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Peter Karich
+ */
+public class DataAccessLongIntMapTest {
+
+    @Test
+    public void testPut() {
+        DataAccessLongIntMap instance = new DataAccessLongIntMap(new RAMDirectory(), "map", 10, -1);
+        assertEquals(-1, instance.get(0));
+        assertEquals(-1, instance.put(0, 123));
+        assertEquals(123, instance.get(0));
+        assertEquals(-1, instance.put(Long.MAX_VALUE / 2, 4));
+        assertEquals(-1, instance.put(-5, 5));
+        assertEquals(123, instance.put(0, 6));
+        assertEquals(6, instance.get(0));
+        assertEquals(4, instance.get(Long.MAX_VALUE / 2));
+        assertEquals(5, instance.get(-5));
+        assertEquals(-1, instance.get(5));
+        assertEquals(3, instance.size());
+        instance.close();
+    }
+
+    @Test
+    public void testGrow() {
+        RAMDirectory dir = new RAMDirectory();
+        DataAccessLongIntMap instance = new DataAccessLongIntMap(dir, "map", 10, -1);
+        Random rand = new Random(0);
+        long[] keys = new long[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i % 2 == 0 ? i : rand.nextLong();
+            instance.put(keys[i], i);
+        }
+        assertEquals(keys.length, instance.size());
+        assertTrue(instance.capacity() >= keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, instance.get(keys[i]));
+        }
+        instance.close();
+    }
+
+    @Test
+    public void testMinValueKey() {
+        DataAccessLongIntMap instance = new DataAccessLongIntMap(new RAMDirectory(), "map", 10, -1);
+        assertEquals(-1, instance.get(Long.MIN_VALUE));
+        try {
+            instance.put(Long.MIN_VALUE, 1);
+            fail();
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+}
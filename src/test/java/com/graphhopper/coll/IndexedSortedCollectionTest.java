@@ -0,0 +1,169 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.util.Helper;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IndexedSortedCollectionTest {
+
+    @Test
+    public void testPoll() {
+        IndexedSortedCollection instance = new IndexedSortedCollection(100);
+        assertTrue(instance.isEmpty());
+        instance.insert(0, 10);
+        assertEquals(10, instance.peekValue());
+        assertEquals(1, instance.size());
+        instance.insert(1, 2);
+        assertEquals(2, instance.peekValue());
+        assertEquals(1, instance.pollKey());
+        assertEquals(0, instance.pollKey());
+        assertEquals(0, instance.size());
+        try {
+            instance.pollKey();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testInsert() {
+        IndexedSortedCollection instance = new IndexedSortedCollection(100);
+        instance.insert(0, 10);
+        assertEquals(1, instance.size());
+        assertEquals(10, instance.peekValue());
+        assertEquals(0, instance.peekKey());
+        instance.update(0, 10, 2);
+        assertEquals(2, instance.peekValue());
+        assertEquals(1, instance.size());
+        instance.insert(1, 0);
+        assertEquals(0, instance.peekValue());
+        assertEquals(2, instance.size());
+        try {
+            instance.insert(0, 11);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        // grows for larger keys
+        instance.insert(1000, -1);
+        assertEquals(1000, instance.peekKey());
+        assertEquals(3, instance.size());
+    }
+
+    @Test
+    public void testUpdate() {
+        IndexedSortedCollection instance = new IndexedSortedCollection(100);
+        instance.insert(0, 10);
+        instance.insert(1, 11);
+        assertEquals(10, instance.peekValue());
+        instance.update(0, 10, 12);
+        assertEquals(11, instance.peekValue());
+        assertEquals(2, instance.size());
+        assertEquals(12, instance.getValue(0));
+        try {
+            instance.update(0, 10, 13);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            instance.update(2, 10, 13);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testDuplicateValues() {
+        IndexedSortedCollection instance = new IndexedSortedCollection(10);
+        instance.insert(3, 5);
+        instance.insert(7, 5);
+        instance.insert(5, 5);
+        instance.insert(1, 6);
+        assertEquals(7, instance.pollKey());
+        assertEquals(5, instance.pollKey());
+        assertEquals(3, instance.pollKey());
+        assertEquals(1, instance.pollKey());
+        assertTrue(instance.isEmpty());
+    }
+
+    @Test
+    public void testClear() {
+        IndexedSortedCollection instance = new IndexedSortedCollection(10);
+        instance.insert(3, 5);
+        instance.insert(4, 2);
+        instance.clear();
+        assertTrue(instance.isEmpty());
+        assertFalse(instance.contains(3));
+        instance.insert(3, 1);
+        assertEquals(3, instance.pollKey());
+    }
+
+    @Test
+    public void testKeys() {
+        IndexedSortedCollection instance = new IndexedSortedCollection(10);
+        instance.insert(3, 5);
+        instance.insert(4, 2);
+        instance.insert(8, 2);
+        instance.pollKey();
+        TIntArrayList keys = instance.keys();
+        keys.sort();
+        assertEquals(Helper.createTList(3, 4), keys);
+    }
+
+    @Test
+    public void testSameValuesAsMySortedCollection() {
+        Random rand = new Random(0);
+        int keys = 1000;
+        IndexedSortedCollection instance = new IndexedSortedCollection(keys);
+        MySortedCollection expected = new MySortedCollection(keys);
+        int[] values = new int[keys];
+        for (int key = 0; key < keys; key++) {
+            values[key] = rand.nextInt(100);
+            instance.insert(key, values[key]);
+            expected.insert(key, values[key]);
+        }
+        for (int i = 0; i < 5000; i++) {
+            int key = rand.nextInt(keys);
+            if (!instance.contains(key))
+                continue;
+            int value = rand.nextInt(100);
+            instance.update(key, values[key], value);
+            expected.update(key, values[key], value);
+            values[key] = value;
+            if (i % 10 == 0) {
+                assertEquals(expected.peekValue(), instance.peekValue());
+                int polled = instance.pollKey();
+                expected.remove(polled, values[polled]);
+            }
+        }
+        while (!expected.isEmpty()) {
+            assertEquals(expected.size(), instance.size());
+            assertEquals(expected.peekValue(), instance.peekValue());
+            int polled = instance.pollKey();
+            expected.remove(polled, values[polled]);
+        }
+        assertTrue(instance.isEmpty());
+    }
+}
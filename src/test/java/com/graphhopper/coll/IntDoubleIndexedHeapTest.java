@@ -0,0 +1,87 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IntDoubleIndexedHeapTest extends AbstractBinHeapTest {
+
+    @Override
+    public BinHeapWrapper<Number, Integer> createHeap(int capacity) {
+        return new IntDoubleIndexedHeap(capacity, 1000);
+    }
+
+    @Test
+    public void testDecreaseKey() {
+        IntDoubleIndexedHeap heap = new IntDoubleIndexedHeap(10, 100);
+        for (int i = 0; i < 50; i++) {
+            heap.insert_(100 + i, i);
+        }
+        assertTrue(heap.contains(40));
+        assertEquals(140, heap.getKey(40), 1e-6);
+        assertTrue(heap.update_(1, 40));
+        assertTrue(heap.update_(200, 0));
+        assertFalse(heap.update_(1, 60));
+        assertEquals(40, heap.poll_element());
+        assertFalse(heap.contains(40));
+        assertEquals(1, heap.poll_element());
+        assertEquals(48, heap.size());
+        heap.insertOrUpdate(50, 40);
+        assertEquals(40, heap.peek_element());
+        try {
+            heap.insert_(3, 40);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testRandomUpdates() {
+        // compare the dense and sparse index with the minimum of an array
+        IntDoubleIndexedHeap dense = new IntDoubleIndexedHeap(10, 10);
+        IntDoubleIndexedHeap sparse = new IntDoubleIndexedHeap(10);
+        double[] keys = new double[1000];
+        Arrays.fill(keys, Double.MAX_VALUE);
+        Random rand = new Random(0);
+        for (int i = 0; i < 5000; i++) {
+            int element = rand.nextInt(keys.length);
+            double key = rand.nextDouble();
+            dense.insertOrUpdate(key, element);
+            sparse.insertOrUpdate(key, element);
+            keys[element] = key;
+            if (i % 3 == 0) {
+                int min = 0;
+                for (int j = 1; j < keys.length; j++) {
+                    if (keys[j] < keys[min])
+                        min = j;
+                }
+                assertEquals(min, dense.poll_element());
+                assertEquals(min, sparse.poll_element());
+                keys[min] = Double.MAX_VALUE;
+            }
+            assertEquals(dense.size(), sparse.size());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class MyVersionedBitSetTest extends AbstractMyBitSetTest {
+
+    @Override
+    public MyBitSet createBitSet(int no) {
+        return new MyVersionedBitSet(no);
+    }
+
+    @Test
+    public void testManyClears() {
+        MyBitSet bs = createBitSet(10);
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(bs.contains(i % 10));
+            bs.add(i % 10);
+            bs.add(i % 10);
+            assertEquals(1, bs.cardinality());
+            bs.clear();
+        }
+    }
+}
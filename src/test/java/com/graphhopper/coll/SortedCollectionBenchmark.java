@@ -0,0 +1,107 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.util.StopWatch;
+import java.util.Random;
+
+/**
+ * Compares MySortedCollection and IndexedSortedCollection for the operations
+ * of the contraction hierarchies preparation: insert all nodes, then poll
+ * nodes and update the priority of some neighbors after every poll. Run it
+ * via main, it is not executed by the unit tests.
+ *
+ * @author Peter Karich
+ */
+public class SortedCollectionBenchmark {
+
+    // keeps the JIT from removing the benchmarked code
+    static long sink;
+
+    public static void main(String[] args) {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        for (int round = 0; round < rounds; round++) {
+            // the first rounds warm up the JIT
+            StopWatch oldSW = new StopWatch();
+            StopWatch newSW = new StopWatch();
+            sink += runMySortedCollection(nodes, oldSW);
+            sink += runIndexedSortedCollection(nodes, newSW);
+            System.out.println("round " + round + ", nodes:" + nodes
+                    + ", MySortedCollection:" + oldSW.getSeconds() + "s"
+                    + ", IndexedSortedCollection:" + newSW.getSeconds() + "s");
+        }
+    }
+
+    static long runMySortedCollection(int nodes, StopWatch sw) {
+        Random rand = new Random(1);
+        int[] values = new int[nodes];
+        boolean[] polled = new boolean[nodes];
+        sw.start();
+        MySortedCollection coll = new MySortedCollection(nodes);
+        for (int node = 0; node < nodes; node++) {
+            values[node] = rand.nextInt(1000);
+            coll.insert(node, values[node]);
+        }
+        long check = 0;
+        while (!coll.isEmpty()) {
+            int node = coll.pollKey();
+            polled[node] = true;
+            check += coll.isEmpty() ? 0 : coll.peekValue();
+            for (int i = 0; i < 3; i++) {
+                int neighbor = rand.nextInt(nodes);
+                if (polled[neighbor])
+                    continue;
+                int value = values[neighbor] + rand.nextInt(20) - 5;
+                coll.update(neighbor, values[neighbor], value);
+                values[neighbor] = value;
+            }
+        }
+        sw.stop();
+        return check;
+    }
+
+    static long runIndexedSortedCollection(int nodes, StopWatch sw) {
+        Random rand = new Random(1);
+        int[] values = new int[nodes];
+        boolean[] polled = new boolean[nodes];
+        sw.start();
+        IndexedSortedCollection coll = new IndexedSortedCollection(nodes);
+        for (int node = 0; node < nodes; node++) {
+            values[node] = rand.nextInt(1000);
+            coll.insert(node, values[node]);
+        }
+        long check = 0;
+        while (!coll.isEmpty()) {
+            int node = coll.pollKey();
+            polled[node] = true;
+            check += coll.isEmpty() ? 0 : coll.peekValue();
+            for (int i = 0; i < 3; i++) {
+                int neighbor = rand.nextInt(nodes);
+                if (polled[neighbor])
+                    continue;
+                int value = values[neighbor] + rand.nextInt(20) - 5;
+                coll.update(neighbor, values[neighbor], value);
+                values[neighbor] = value;
+            }
+        }
+        sw.stop();
+        return check;
+    }
+}
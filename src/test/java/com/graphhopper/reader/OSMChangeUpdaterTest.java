@@ -0,0 +1,175 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.routing.util.CarStreetType;
+import com.graphhopper.routing.util.PrepareRoutingSubnetworks;
+import com.graphhopper.storage.AbstractGraphTester;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.Location2IDIndex;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMChangeUpdaterTest {
+
+    private String dir = "./target/tmp/test-db";
+
+    @Before public void setUp() {
+        new File(dir).mkdirs();
+    }
+
+    @After public void tearDown() {
+        Helper.removeDir(new File(dir));
+    }
+
+    OSMReader importOSM() {
+        OSMReader reader = new OSMReader(new GraphStorage(new RAMDirectory(dir, false)), 1000).
+                storeOSMIds(true).indexCapacity(1000);
+        reader.helper().preProcess(getClass().getResourceAsStream("test-osm.xml"));
+        reader.writeOsm2Graph(getClass().getResourceAsStream("test-osm.xml"));
+        reader.optimize();
+        reader.flush();
+        return reader;
+    }
+
+    @Test public void testMapping() {
+        OSMReader reader = importOSM();
+        Graph graph = reader.graph();
+        OSMIDMapping mapping = reader.osmIds();
+        int node20 = AbstractGraphTester.getIdOf(graph, 52);
+        int node50 = AbstractGraphTester.getIdOf(graph, 49);
+        assertEquals(20, mapping.getNodeId(node20));
+        assertEquals(50, mapping.getNodeId(node50));
+
+        EdgeIterator iter = graph.getEdges(node20);
+        int ways = 0;
+        while (iter.next()) {
+            if (iter.node() == node50)
+                assertEquals(11, mapping.getWayId(iter.edge()));
+            else
+                assertEquals(10, mapping.getWayId(iter.edge()));
+            ways++;
+        }
+        assertEquals(3, ways);
+    }
+
+    @Test public void testMappingSameCoordinates() {
+        GraphStorage graph = new GraphStorage(new RAMDirectory(dir, false));
+        OSMReader reader = new OSMReader(graph, 1000).storeOSMIds(true).indexCapacity(1000);
+        reader.helper().preProcess(getClass().getResourceAsStream("test-osm-samecoords.xml"));
+        reader.writeOsm2Graph(getClass().getResourceAsStream("test-osm-samecoords.xml"));
+        // removing the sub network moves the remaining nodes while optimizing
+        new PrepareRoutingSubnetworks(graph).minNetworkSize(3).doWork();
+        reader.optimize();
+        reader.flush();
+
+        assertEquals(4, graph.nodes());
+        OSMIDMapping mapping = reader.osmIds();
+        int node1 = AbstractGraphTester.getIdOf(graph, 51.1);
+        int node3 = AbstractGraphTester.getIdOf(graph, 51.3);
+        assertEquals(1, mapping.getNodeId(node1));
+        assertEquals(3, mapping.getNodeId(node3));
+
+        // node 6 and 7 share their coordinates but are different junctions
+        int bridges = 0;
+        for (int node = 0; node < graph.nodes(); node++) {
+            if (Math.abs(graph.getLatitude(node) - 51.4) > 1e-4)
+                continue;
+            EdgeIterator iter = graph.getEdges(node);
+            assertTrue(iter.next());
+            if (mapping.getNodeId(node) == 6) {
+                assertEquals(node3, iter.node());
+                assertEquals(20, mapping.getWayId(iter.edge()));
+            } else {
+                assertEquals(7, mapping.getNodeId(node));
+                assertEquals(node1, iter.node());
+                assertEquals(30, mapping.getWayId(iter.edge()));
+            }
+            bridges++;
+        }
+        assertEquals(2, bridges);
+    }
+
+    @Test public void testApply() {
+        OSMReader reader = importOSM();
+        GraphStorage graph = (GraphStorage) reader.graph();
+        OSMChangeUpdater updater = new OSMChangeUpdater(graph, reader.osmIds());
+        updater.apply(getClass().getResourceAsStream("test-osc.xml"));
+        Location2IDIndex index = updater.rebuildIndex(1000);
+
+        assertEquals(5, graph.nodes());
+        int node10 = AbstractGraphTester.getIdOf(graph, 51.2492152);
+        int node20 = AbstractGraphTester.getIdOf(graph, 52);
+        int node30 = AbstractGraphTester.getIdOf(graph, 51.2);
+        int node50 = AbstractGraphTester.getIdOf(graph, 49.1);
+        int node60 = AbstractGraphTester.getIdOf(graph, 51.3);
+
+        // way 10 was deleted
+        assertEquals(0, GraphUtility.count(graph.getOutgoing(node10)));
+
+        // way 11 is now a oneway primary road
+        assertEquals(1, GraphUtility.count(graph.getOutgoing(node20)));
+        assertEquals(0, GraphUtility.count(graph.getOutgoing(node50)));
+        EdgeIterator iter = graph.getOutgoing(node20);
+        assertTrue(iter.next());
+        assertEquals(node50, iter.node());
+        CarStreetType flags = new CarStreetType(iter.flags());
+        assertEquals((int) CarStreetType.SPEED.get("primary"), flags.getSpeedPart());
+        assertTrue(flags.isForward());
+        assertFalse(flags.isBackward());
+        AbstractGraphTester.assertPList(Helper.createPointList(51.25, 9.43), iter.wayGeometry());
+        // node 50 was moved
+        DistanceCalc calc = new DistanceCalc();
+        double expected = calc.calcDist(52, 9, 51.25, 9.43) + calc.calcDist(51.25, 9.43, 49.1, 10);
+        assertEquals(expected, iter.distance(), 1);
+
+        // way 12 was created
+        assertEquals(60, reader.osmIds().getNodeId(node60));
+        assertEquals(1, GraphUtility.count(graph.getOutgoing(node30)));
+        iter = graph.getOutgoing(node30);
+        assertTrue(iter.next());
+        assertEquals(node60, iter.node());
+        AbstractGraphTester.assertPList(Helper.createPointList(51.35, 9.55), iter.wayGeometry());
+        assertEquals(12, reader.osmIds().getWayId(iter.edge()));
+
+        assertEquals(node60, index.findID(51.3, 9.5));
+    }
+
+    @Test public void testLevelGraphNotSupported() {
+        try {
+            new OSMChangeUpdater(new LevelGraphStorage(new RAMDirectory()),
+                    new OSMIDMapping(new RAMDirectory()));
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+}
@@ -18,11 +18,17 @@
  */
 package com.graphhopper.reader;
 
+import com.graphhopper.routing.AStarEdgeBased;
+import com.graphhopper.routing.DijkstraBidirectionEdgeBased;
 import com.graphhopper.routing.util.CarStreetType;
 import com.graphhopper.storage.AbstractGraphTester;
 import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.LevelGraphStorage;
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.SpillDataAccess;
+import com.graphhopper.storage.SpillDirectory;
+import com.graphhopper.storage.TurnCostStorage;
 import com.graphhopper.util.EdgeIterator;
 import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
@@ -112,6 +118,110 @@ public class OSMReaderTest {
         assertEquals(51.249, graph.getLatitude(reader.location2IDIndex().findID(51.2492152, 9.4317166)), 1e-3);
     }
 
+    @Test public void testSpillTemporaryData() {
+        OSMReader reader = init(new OSMReader(buildGraph(dir), 1000));
+        // no memory at all => everything goes into memory mapped files
+        SpillDirectory tmpDir = new SpillDirectory(dir + "/import-tmp", 0);
+        ((OSMReaderHelperDoubleParse) reader.helper()).tmpDirectory(tmpDir);
+        preProcess(reader);
+        reader.writeOsm2Graph(getClass().getResourceAsStream("test-osm.xml"));
+        assertTrue(((SpillDataAccess) tmpDir.findCreate("tmpLatitudes")).isSpilled());
+        assertTrue(((SpillDataAccess) tmpDir.findCreate("tmpOsmIdMap0")).isSpilled());
+        reader.optimize();
+        reader.flush();
+
+        Graph graph = reader.graph();
+        assertEquals(4, graph.nodes());
+        int internalIdMain = AbstractGraphTester.getIdOf(graph, 52);
+        int internalId3 = AbstractGraphTester.getIdOf(graph, 49);
+        EdgeIterator iter = GraphUtility.until(graph.getOutgoing(internalIdMain), internalId3);
+        AbstractGraphTester.assertPList(Helper.createPointList(51.25, 9.43), iter.wayGeometry());
+    }
+
+    @Test public void testTurnRestrictions() {
+        OSMReader reader = init(new OSMReader(buildGraph(dir), 1000)).turnRestrictions(true);
+        reader.helper().preProcess(getClass().getResourceAsStream("test-restrictions.xml"));
+        reader.writeOsm2Graph(getClass().getResourceAsStream("test-restrictions.xml"));
+        reader.optimize();
+        reader.flush();
+
+        Graph graph = reader.graph();
+        assertEquals(5, graph.nodes());
+        int south = AbstractGraphTester.getIdOf(graph, 49.9);
+        int north = AbstractGraphTester.getIdOf(graph, 50.1);
+        int center = reader.location2IDIndex().findID(50, 10);
+        int west = reader.location2IDIndex().findID(50, 9.9);
+        int east = reader.location2IDIndex().findID(50, 10.1);
+        int edgeSouth = GraphUtility.until(graph.getEdges(center), south).edge();
+        int edgeNorth = GraphUtility.until(graph.getEdges(center), north).edge();
+        int edgeWest = GraphUtility.until(graph.getEdges(center), west).edge();
+        int edgeEast = GraphUtility.until(graph.getEdges(center), east).edge();
+
+        TurnCostStorage turnCosts = reader.turnCosts();
+        assertEquals(1, turnCosts.viaNodes());
+        assertEquals(3, turnCosts.entries());
+        // no_left_turn
+        assertTrue(turnCosts.isForbidden(center, edgeSouth, edgeWest));
+        assertFalse(turnCosts.isForbidden(center, edgeSouth, edgeEast));
+        // only_straight_on
+        assertFalse(turnCosts.isForbidden(center, edgeNorth, edgeSouth));
+        assertTrue(turnCosts.isForbidden(center, edgeNorth, edgeWest));
+        assertTrue(turnCosts.isForbidden(center, edgeNorth, edgeEast));
+        // via way and no restriction
+        assertFalse(turnCosts.isForbidden(center, edgeEast, edgeWest));
+
+        assertFalse(new DijkstraBidirectionEdgeBased(graph).turnCosts(turnCosts).calcPath(south, west).found());
+        assertTrue(new DijkstraBidirectionEdgeBased(graph).turnCosts(turnCosts).calcPath(south, east).found());
+        assertTrue(new AStarEdgeBased(graph).turnCosts(turnCosts).calcPath(north, south).found());
+        assertFalse(new AStarEdgeBased(graph).turnCosts(turnCosts).calcPath(north, east).found());
+    }
+
+    @Test public void testTurnRestrictionWaysThroughViaNode() {
+        OSMReader reader = init(new OSMReader(buildGraph(dir), 1000)).turnRestrictions(true);
+        reader.helper().preProcess(getClass().getResourceAsStream("test-restrictions-through.xml"));
+        reader.writeOsm2Graph(getClass().getResourceAsStream("test-restrictions-through.xml"));
+        reader.optimize();
+        reader.flush();
+
+        Graph graph = reader.graph();
+        assertEquals(5, graph.nodes());
+        int south = AbstractGraphTester.getIdOf(graph, 49.9);
+        int north = AbstractGraphTester.getIdOf(graph, 50.1);
+        int center = reader.location2IDIndex().findID(50, 10);
+        int west = reader.location2IDIndex().findID(50, 9.9);
+        int east = reader.location2IDIndex().findID(50, 10.1);
+        int edgeSouth = GraphUtility.until(graph.getEdges(center), south).edge();
+        int edgeNorth = GraphUtility.until(graph.getEdges(center), north).edge();
+        int edgeWest = GraphUtility.until(graph.getEdges(center), west).edge();
+        int edgeEast = GraphUtility.until(graph.getEdges(center), east).edge();
+
+        TurnCostStorage turnCosts = reader.turnCosts();
+        assertEquals(1, turnCosts.entries());
+        assertTrue(turnCosts.isForbidden(center, edgeWest, edgeEast));
+        // ambiguous as the from way passes through the via node
+        assertFalse(turnCosts.isForbidden(center, edgeSouth, edgeWest));
+        assertFalse(turnCosts.isForbidden(center, edgeNorth, edgeWest));
+        // ambiguous as the to way passes through the via node
+        assertFalse(turnCosts.isForbidden(center, edgeWest, edgeSouth));
+        assertFalse(turnCosts.isForbidden(center, edgeWest, edgeNorth));
+        assertFalse(turnCosts.isForbidden(center, edgeEast, edgeWest));
+    }
+
+    @Test public void testTurnRestrictionsWithCH() {
+        OSMReader reader = init(new OSMReader(new LevelGraphStorage(new RAMDirectory(dir, false)), 1000)).
+                turnRestrictions(true).setCHShortcuts("fastest");
+        reader.helper().preProcess(getClass().getResourceAsStream("test-restrictions.xml"));
+        reader.writeOsm2Graph(getClass().getResourceAsStream("test-restrictions.xml"));
+        reader.optimize();
+        reader.flush();
+
+        // the restrictions are resolved before the preparation removes edges
+        // from the via node or adds shortcuts to it
+        TurnCostStorage turnCosts = reader.turnCosts();
+        assertEquals(1, turnCosts.viaNodes());
+        assertEquals(3, turnCosts.entries());
+    }
+
     @Test public void testSort() {
         OSMReader reader = preProcess(init(new OSMReader(buildGraph(dir), 1000).sort(true)));
         reader.writeOsm2Graph(getClass().getResourceAsStream("test-osm.xml"));
@@ -0,0 +1,109 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.TurnCostStorage;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class AStarEdgeBasedTest extends AbstractRoutingAlgorithmTester {
+
+    @Override
+    public AlgorithmPreparation prepareGraph(Graph g, final WeightCalculation calc) {
+        return new NoOpAlgorithmPreparation() {
+            @Override public RoutingAlgorithm createAlgo() {
+                return new AStarEdgeBased(_graph).type(calc);
+            }
+        }.graph(g);
+    }
+
+    @Override protected float maxSecondsPerRun() {
+        // every node is settled up to twice (best arrival and one other edge) so
+        // the search polls roughly three times the keys of the node based one
+        return 0.15f;
+    }
+
+    RoutingAlgorithm createAlgo(Graph g, TurnCostStorage turnCosts) {
+        return new AStarEdgeBased(g).turnCosts(turnCosts);
+    }
+
+    // 0-1-2
+    //   | |
+    //   3-4
+    static Graph createTurnGraph(Graph graph) {
+        graph.edge(0, 1, 1, true);
+        graph.edge(1, 2, 1, true);
+        graph.edge(1, 3, 1, true);
+        graph.edge(3, 4, 1, true);
+        graph.edge(4, 2, 1, true);
+        return graph;
+    }
+
+    static int edge(Graph g, int from, int to) {
+        return GraphUtility.until(g.getEdges(from), to).edge();
+    }
+
+    @Test public void testForbiddenTurn() {
+        Graph g = createTurnGraph(createGraph());
+        TurnCostStorage turnCosts = new TurnCostStorage(new RAMDirectory()).createNew();
+        turnCosts.forbidTurn(1, edge(g, 0, 1), edge(g, 1, 2)).build();
+
+        Path p = createAlgo(g, turnCosts).calcPath(0, 2);
+        assertEquals(Helper.createTList(0, 1, 3, 4, 2), p.calcNodes());
+        assertEquals(4, p.weight(), 1e-4);
+
+        // the other direction is not restricted
+        p = createAlgo(g, turnCosts).calcPath(2, 0);
+        assertEquals(Helper.createTList(2, 1, 0), p.calcNodes());
+    }
+
+    @Test public void testTurnCosts() {
+        Graph g = createTurnGraph(createGraph());
+        TurnCostStorage turnCosts = new TurnCostStorage(new RAMDirectory()).createNew();
+        turnCosts.addTurnCost(1, edge(g, 0, 1), edge(g, 1, 2), 1.5).build();
+        Path p = createAlgo(g, turnCosts).calcPath(0, 2);
+        assertEquals(Helper.createTList(0, 1, 2), p.calcNodes());
+        assertEquals(3.5, p.weight(), 1e-4);
+        assertEquals(2, p.distance(), 1e-4);
+
+        turnCosts = new TurnCostStorage(new RAMDirectory()).createNew();
+        turnCosts.addTurnCost(1, edge(g, 0, 1), edge(g, 1, 2), 3).build();
+        p = createAlgo(g, turnCosts).calcPath(0, 2);
+        assertEquals(Helper.createTList(0, 1, 3, 4, 2), p.calcNodes());
+        assertEquals(4, p.weight(), 1e-4);
+    }
+
+    @Test public void testNoUTurn() {
+        Graph g = createTurnGraph(createGraph());
+        TurnCostStorage turnCosts = new TurnCostStorage(new RAMDirectory()).createNew();
+        turnCosts.forbidTurn(1, edge(g, 0, 1), edge(g, 1, 2)).
+                forbidTurn(1, edge(g, 0, 1), edge(g, 1, 3)).build();
+        assertFalse(createAlgo(g, turnCosts).calcPath(0, 2).found());
+    }
+}
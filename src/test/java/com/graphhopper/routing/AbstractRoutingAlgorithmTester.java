@@ -362,7 +362,11 @@ public abstract class AbstractRoutingAlgorithmTester {
 
         float perRun = sw.stop().getSeconds() / ((float) (N - noJvmWarming));
         System.out.println("# " + name + ":" + sw.stop().getSeconds() + ", per run:" + perRun);
-        assertTrue("speed to low!? " + perRun + " per run", perRun < 0.07);
+        assertTrue("speed to low!? " + perRun + " per run", perRun < maxSecondsPerRun());
+    }
+
+    protected float maxSecondsPerRun() {
+        return 0.07f;
     }
 
     public Graph getMatrixGraph() {
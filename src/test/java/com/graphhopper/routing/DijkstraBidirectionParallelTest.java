@@ -0,0 +1,67 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionParallelTest extends AbstractRoutingAlgorithmTester {
+
+    @Override
+    public AlgorithmPreparation prepareGraph(Graph g, final WeightCalculation calc) {
+        return new NoOpAlgorithmPreparation() {
+            @Override public RoutingAlgorithm createAlgo() {
+                return new DijkstraBidirectionParallel(_graph).type(calc);
+            }
+        }.graph(g);
+    }
+
+    @Test
+    public void testCompareWithDijkstra() {
+        Graph g = getMatrixAlikeGraph();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RoutingAlgorithm algo = new DijkstraBidirectionParallel(g).executor(executor).type(FastestCarCalc.DEFAULT);
+            Random rand = new Random(1);
+            // many queries on one instance to catch races of the two threads
+            for (int i = 0; i < 2000; i++) {
+                int from = rand.nextInt(g.nodes());
+                int to = rand.nextInt(g.nodes());
+                Path expected = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+                Path p = algo.clear().calcPath(from, to);
+                assertEquals(from + "->" + to, expected.found(), p.found());
+                assertEquals(from + "->" + to, expected.weight(), p.weight(), 1e-6);
+                assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-6);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -55,6 +55,21 @@ public class DijkstraBidirectionRefTest extends AbstractRoutingAlgorithmTester {
         assertEquals(Helper.createTList(0, 2, 3, 4), p.calcNodes());
     }
 
+    @Test
+    public void testReuseAfterClear() {
+        Graph g = getMatrixGraph();
+        DijkstraBidirectionRef db = new DijkstraBidirectionRef(g);
+        int[][] queries = {{45, 72}, {36, 91}, {34, 36}, {72, 45}, {91, 36}};
+        for (int[] query : queries) {
+            Path expected = new DijkstraSimple(g).calcPath(query[0], query[1]);
+            Path p = db.clear().calcPath(query[0], query[1]);
+            assertTrue(p.found());
+            assertEquals(expected.weight(), p.weight(), 1e-4);
+            assertEquals(query[0], p.calcNodes().get(0));
+            assertEquals(query[1], p.calcNodes().get(p.calcNodes().size() - 1));
+        }
+    }
+
     @Test
     public void testCannotCalculateSP2() {
         Graph g = createGraph();
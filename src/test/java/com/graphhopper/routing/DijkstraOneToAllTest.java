@@ -0,0 +1,91 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.storage.Graph;
+import gnu.trove.set.hash.TIntHashSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class DijkstraOneToAllTest {
+
+    @Test
+    public void testWeightLimit() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        double limit = 100;
+        ReachableNodes reachable = new DijkstraOneToAll(g).weightLimit(limit).calcReachable(42);
+        assertEquals(42, reachable.startNode());
+        assertEquals(42, reachable.node(0));
+        assertEquals(0, reachable.weight(0), 1e-6);
+        TIntHashSet set = new TIntHashSet(reachable.nodes());
+        assertEquals(reachable.size(), set.size());
+        for (int i = 1; i < reachable.size(); i++) {
+            assertTrue(reachable.weight(i - 1) <= reachable.weight(i));
+        }
+
+        int count = 0;
+        for (int node = 0; node < g.nodes(); node++) {
+            Path p = new DijkstraSimple(g).calcPath(42, node);
+            boolean expected = p.found() && p.weight() <= limit;
+            assertEquals("node " + node, expected, set.contains(node));
+            if (expected)
+                count++;
+        }
+        assertEquals(count, reachable.size());
+        assertTrue(count + " of " + g.nodes(), count > 1 && count < g.nodes());
+    }
+
+    @Test
+    public void testTimeLimit() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        long limit = 30;
+        DijkstraOneToAll algo = new DijkstraOneToAll(g);
+        algo.type(FastestCarCalc.DEFAULT);
+        ReachableNodes reachable = algo.timeLimit(limit).calcReachable(13);
+        TIntHashSet set = new TIntHashSet(reachable.nodes());
+        for (int i = 0; i < reachable.size(); i++) {
+            Path p = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(13, reachable.node(i));
+            assertEquals(p.weight(), reachable.weight(i), 1e-6);
+            assertEquals(p.distance(), reachable.distance(i), 1e-6);
+            assertEquals(p.time(), reachable.time(i));
+            assertTrue(reachable.time(i) <= limit);
+        }
+        for (int node = 0; node < g.nodes(); node++) {
+            Path p = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(13, node);
+            assertEquals("node " + node, p.found() && p.time() <= limit, set.contains(node));
+        }
+    }
+
+    @Test
+    public void testUnlimited() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        DijkstraOneToAll algo = new DijkstraOneToAll(g);
+        ReachableNodes reachable = algo.calcReachable(0);
+        assertEquals(g.nodes(), reachable.size());
+        assertEquals(g.nodes(), algo.calcVisitedNodes());
+
+        // reuse the instance with a distance limit
+        reachable = algo.distanceLimit(0).calcReachable(0);
+        assertEquals(1, reachable.size());
+    }
+}
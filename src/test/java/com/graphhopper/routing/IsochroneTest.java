@@ -0,0 +1,70 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.util.PointList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IsochroneTest {
+
+    // 3x3 grid with the start node 4 in the center
+    Graph createGrid() {
+        Graph g = new GraphBuilder().create();
+        for (int i = 0; i < 9; i++) {
+            g.setNode(i, 0.01 * (i / 3), 0.01 * (i % 3));
+        }
+        for (int i = 0; i < 9; i++) {
+            if (i % 3 < 2)
+                g.edge(i, i + 1, 1000, true);
+            if (i < 6)
+                g.edge(i, i + 3, 1000, true);
+        }
+        return g;
+    }
+
+    @Test
+    public void testPolygon() {
+        Graph g = createGrid();
+        ReachableNodes reachable = new DijkstraOneToAll(g).weightLimit(1000).calcReachable(4);
+        assertEquals(5, reachable.size());
+        PointList polygon = new Isochrone(g).sectors(8).calcPolygon(reachable);
+        // four corners plus the closing point
+        assertEquals(5, polygon.size());
+        assertEquals(polygon.latitude(0), polygon.latitude(4), 1e-6);
+        assertEquals(polygon.longitude(0), polygon.longitude(4), 1e-6);
+
+        reachable = new DijkstraOneToAll(g).calcReachable(4);
+        polygon = new Isochrone(g).sectors(8).calcPolygon(reachable);
+        assertEquals(9, polygon.size());
+    }
+
+    @Test
+    public void testNoArea() {
+        Graph g = createGrid();
+        ReachableNodes reachable = new DijkstraOneToAll(g).weightLimit(10).calcReachable(4);
+        assertEquals(1, reachable.size());
+        assertEquals(0, new Isochrone(g).calcPolygon(reachable).size());
+    }
+}
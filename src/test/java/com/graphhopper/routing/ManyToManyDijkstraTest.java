@@ -0,0 +1,88 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ManyToManyDijkstraTest {
+
+    @Test
+    public void testCompareWithDijkstra() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        int[] sources = {0, 13, 42, 99, 13};
+        int[] targets = {149, 7, 13, 0, 88, 120};
+        DistanceMatrix matrix = new ManyToManyDijkstra(g).type(FastestCarCalc.DEFAULT).calcPaths(true).
+                calcMatrix(sources, targets);
+        assertEquals(5, matrix.sources());
+        assertEquals(6, matrix.targets());
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                Path expected = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(sources[i], targets[j]);
+                assertEquals(expected.found(), matrix.found(i, j));
+                assertEquals(expected.weight(), matrix.weight(i, j), 1e-6);
+                assertEquals(expected.distance(), matrix.distance(i, j), 1e-6);
+                assertEquals(expected.time(), matrix.time(i, j));
+                assertEquals(expected.calcNodes(), matrix.path(i, j).calcNodes());
+            }
+        }
+    }
+
+    @Test
+    public void testUnreachable() {
+        Graph g = new GraphBuilder().create();
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 10, false);
+        g.edge(3, 4, 10, true);
+        DistanceMatrix matrix = new ManyToManyDijkstra(g).calcMatrix(new int[]{0, 2}, new int[]{2, 4, 0});
+        assertTrue(matrix.found(0, 0));
+        assertEquals(20, matrix.distance(0, 0), 1e-6);
+        assertFalse(matrix.found(0, 1));
+        assertEquals(Double.MAX_VALUE, matrix.distance(0, 1), 1e-6);
+        assertEquals(Long.MAX_VALUE, matrix.time(0, 1));
+        assertEquals(0, matrix.distance(0, 2), 1e-6);
+        assertTrue(matrix.found(1, 0));
+        assertFalse(matrix.found(1, 2));
+        try {
+            matrix.path(0, 0);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testUnreachablePaths() {
+        Graph g = new GraphBuilder().create();
+        g.edge(0, 1, 10, true);
+        g.edge(2, 3, 10, true);
+        DistanceMatrix matrix = new ManyToManyDijkstra(g).calcPaths(true).calcMatrix(new int[]{0}, new int[]{2, 3});
+        assertTrue(matrix.hasPaths());
+        for (int j = 0; j < 2; j++) {
+            assertFalse(matrix.found(0, j));
+            assertFalse(matrix.path(0, j).found());
+            assertEquals(0, matrix.path(0, j).calcPoints().size());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.util.EdgeIterator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class SearchStateTest {
+
+    @Test
+    public void testUpdate() {
+        SearchState state = new SearchState(10);
+        state.start(0);
+        assertTrue(state.isSettled(0));
+        assertEquals(EdgeIterator.NO_EDGE, state.parentEdge(0));
+
+        assertTrue(state.update(3, 5, 7, 0, 5));
+        assertFalse(state.update(3, 6, 8, 0, 6));
+        assertTrue(state.update(3, 4, 9, 0, 4));
+        assertTrue(state.update(2, 4.5, 1, 0, 4.5));
+        assertEquals(9, state.parentEdge(3));
+        assertTrue(state.isReached(3));
+        assertFalse(state.isSettled(3));
+
+        assertEquals(3, state.pollMin());
+        assertTrue(state.isSettled(3));
+        assertFalse(state.update(3, 1, 2, 0, 1));
+        assertEquals(2, state.pollMin());
+        assertTrue(state.isEmpty());
+        assertEquals(3, state.settledNodes());
+    }
+
+    @Test
+    public void testReset() {
+        SearchState state = new SearchState(10);
+        state.start(0);
+        state.update(1, 2, 3, 0, 2);
+        state.update(2, 3, 4, 0, 3);
+        state.pollMin();
+        state.reset();
+        assertTrue(state.isEmpty());
+        assertFalse(state.isReached(0));
+        assertFalse(state.isReached(1));
+        assertEquals(Double.MAX_VALUE, state.weight(2), 1e-5);
+        assertEquals(0, state.settledNodes());
+        // nodes of the previous search can be added again
+        assertTrue(state.update(2, 7, 4, 0, 7));
+        assertEquals(2, state.pollMin());
+    }
+
+    @Test
+    public void testGrow() {
+        SearchState state = new SearchState(10);
+        state.start(0);
+        assertTrue(state.update(100, 2, 3, 0, 2));
+        assertEquals(2, state.weight(100), 1e-5);
+        assertFalse(state.isReached(1000));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.alt;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareLandmarksTest {
+
+    private String location = "./target/tmp/landmarks";
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testLowerBound() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LandmarkStorage landmarks = new PrepareLandmarks().graph(g).type(FastestCarCalc.DEFAULT).
+                landmarks(4).doWork().landmarkStorage();
+        assertEquals(4, landmarks.landmarks());
+        for (int from = 0; from < g.nodes(); from += 7) {
+            for (int to = 0; to < g.nodes(); to += 11) {
+                Path p = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+                assertTrue(p.found());
+                double bound = landmarks.lowerBound(from, to);
+                assertTrue(from + "->" + to + " " + bound + " > " + p.weight(), bound <= p.weight() * (1 + 1e-6));
+            }
+        }
+        int l = landmarks.landmarkNode(0);
+        assertEquals(0, landmarks.fromLandmark(0, l), 1e-6);
+        assertEquals(landmarks.fromLandmark(0, 5), landmarks.lowerBound(l, 5), 1e-6);
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        PrepareLandmarks prepare = new PrepareLandmarks().graph(g).landmarks(3).
+                directory(new RAMDirectory(location, true)).doWork();
+        prepare.landmarkStorage().flush();
+        double bound = prepare.landmarkStorage().lowerBound(3, 42);
+
+        PrepareLandmarks loaded = new PrepareLandmarks().graph(g).directory(new RAMDirectory(location, true));
+        assertTrue(loaded.loadExisting());
+        assertEquals(3, loaded.landmarkStorage().landmarks());
+        assertEquals(bound, loaded.landmarkStorage().lowerBound(3, 42), 1e-6);
+        assertEquals(prepare.createAlgo().calcPath(3, 42).weight(),
+                loaded.createAlgo().calcPath(3, 42).weight(), 1e-6);
+    }
+
+    @Test
+    public void testCreateAlgoWithoutPreparation() {
+        try {
+            new PrepareLandmarks().graph(AbstractRoutingAlgorithmTester.getMatrixAlikeGraph()).createAlgo();
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.util.StopWatch;
+import java.util.Random;
+
+/**
+ * Prepares a road like grid graph with random edge distances with different
+ * priority update policies and prints preparation time, priority
+ * calculations, shortcuts and the mean visited nodes and time of random
+ * queries. Run it via main, it is not executed by the unit tests.
+ *
+ * @author Peter Karich
+ */
+public class CHUpdatePolicyBenchmark {
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        // warm up the JIT
+        run("warmup", new PrepareContractionHierarchies(), width, queries);
+
+        run("lazy+neighbors+periodic 20%", new PrepareContractionHierarchies(), width, queries);
+        run("lazy+neighbors+periodic 50%", new PrepareContractionHierarchies().periodicUpdates(50), width, queries);
+        run("lazy+neighbors", new PrepareContractionHierarchies().periodicUpdates(0), width, queries);
+        run("neighbors", new PrepareContractionHierarchies().periodicUpdates(0).lazyUpdates(false), width, queries);
+        run("lazy", new PrepareContractionHierarchies().periodicUpdates(0).neighborUpdates(false), width, queries);
+        run("none", new PrepareContractionHierarchies().periodicUpdates(0).lazyUpdates(false).
+                neighborUpdates(false), width, queries);
+    }
+
+    static LevelGraph createGrid(int width) {
+        LevelGraph g = new GraphBuilder().levelGraphCreate();
+        Random rand = new Random(12);
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < width; x++) {
+                int node = y * width + x;
+                g.setNode(node, y * 0.01, x * 0.01);
+                if (x > 0)
+                    g.edge(node - 1, node, 50 + rand.nextInt(100), true);
+                if (y > 0)
+                    g.edge(node - width, node, 50 + rand.nextInt(100), true);
+            }
+        }
+        return g;
+    }
+
+    static void run(String name, PrepareContractionHierarchies prepare, int width, int queries) {
+        LevelGraph g = createGrid(width);
+        StopWatch prepareSW = new StopWatch().start();
+        prepare.graph(g).doWork();
+        prepareSW.stop();
+
+        Random rand = new Random(0);
+        long visited = 0;
+        StopWatch querySW = new StopWatch().start();
+        for (int i = 0; i < queries; i++) {
+            RoutingAlgorithm algo = prepare.createAlgo();
+            algo.calcPath(rand.nextInt(g.nodes()), rand.nextInt(g.nodes()));
+            visited += algo.calcVisitedNodes();
+        }
+        querySW.stop();
+        System.out.println(name + ": prepare " + prepareSW.getSeconds() + "s"
+                + ", priority updates:" + prepare.priorityUpdates()
+                + ", shortcuts:" + prepare.shortcuts()
+                + ", visited nodes per query:" + visited / queries
+                + ", per query:" + querySW.getSeconds() * 1000 / queries + "ms");
+    }
+}
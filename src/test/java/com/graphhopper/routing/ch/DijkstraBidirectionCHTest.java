@@ -75,6 +75,33 @@ public class DijkstraBidirectionCHTest extends AbstractRoutingAlgorithmTester {
 
     @Test
     public void testPathRecursiveUnpacking() {
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(createUnpackingGraph(false));
+        Path p = prepare.createAlgo().calcPath(0, 7);
+        assertEquals(Helper.createTList(0, 2, 5, 7), p.calcNodes());
+        assertEquals(4, p.calcNodes().size());
+        assertEquals(4.2, p.distance(), 1e-5);
+
+        p = prepare.createQueryAlgo().calcPath(7, 0);
+        assertEquals(Helper.createTList(7, 5, 2, 0), p.calcNodes());
+        assertEquals(4.2, p.distance(), 1e-5);
+    }
+
+    @Test
+    public void testPathUnpackingWithSwappedSkippedEdges() {
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(createUnpackingGraph(true));
+        try {
+            prepare.createAlgo().calcPath(0, 7);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Cannot find skipped edge"));
+        }
+    }
+
+    /**
+     * @param swapped if true the skipped edges are stored in the wrong order:
+     * the first one is not adjacent to the smaller node
+     */
+    LevelGraphStorage createUnpackingGraph(boolean swapped) {
         LevelGraphStorage g2 = (LevelGraphStorage) createGraph();
         g2.edge(0, 1, 1, true);
         EdgeSkipIterator iter1_1 = g2.edge(0, 2, 1.4, true);
@@ -92,9 +119,15 @@ public class DijkstraBidirectionCHTest extends AbstractRoutingAlgorithmTester {
 
         // simulate preparation
         EdgeSkipIterator iter2_1 = g2.edge(0, 5, 2.8, CarStreetType.flags(0, true));
-        iter2_1.skippedEdges(iter1_1.edge(), iter1_2.edge());
         EdgeSkipIterator iter2_2 = g2.edge(5, 7, 1.4, CarStreetType.flags(0, true));
-        g2.edge(0, 7, 4.2, CarStreetType.flags(0, true)).skippedEdges(iter2_1.edge(), iter2_2.edge());
+        EdgeSkipIterator iter3 = g2.edge(0, 7, 4.2, CarStreetType.flags(0, true));
+        if (swapped) {
+            iter2_1.skippedEdges(iter1_2.edge(), iter1_1.edge());
+            iter3.skippedEdges(iter2_2.edge(), iter2_1.edge());
+        } else {
+            iter2_1.skippedEdges(iter1_1.edge(), iter1_2.edge());
+            iter3.skippedEdges(iter2_1.edge(), iter2_2.edge());
+        }
         g2.setLevel(1, 0);
         g2.setLevel(3, 1);
         g2.setLevel(4, 2);
@@ -103,10 +136,6 @@ public class DijkstraBidirectionCHTest extends AbstractRoutingAlgorithmTester {
         g2.setLevel(5, 5);
         g2.setLevel(7, 6);
         g2.setLevel(0, 7);
-
-        Path p = new PrepareContractionHierarchies().graph(g2).createAlgo().calcPath(0, 7);
-        assertEquals(Helper.createTList(0, 2, 5, 7), p.calcNodes());
-        assertEquals(4, p.calcNodes().size());
-        assertEquals(4.2, p.distance(), 1e-5);
+        return g2;
     }
 }
@@ -0,0 +1,73 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.util.AlgorithmPreparation;
+import com.graphhopper.routing.util.NoOpAlgorithmPreparation;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.LevelGraph;
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ * Runs the routing tests with the bidirectional Dijkstra on the compact query
+ * graph of the preparation.
+ *
+ * @author Peter Karich
+ */
+public class DijkstraCHQueryTest extends AbstractRoutingAlgorithmTester {
+
+    // graph is expensive to create and to prepare!
+    private static Graph preparedMatrixGraph;
+    private static PrepareContractionHierarchies matrixPrepare;
+
+    @Override public Graph getMatrixGraph() {
+        if (preparedMatrixGraph == null) {
+            LevelGraph lg = createGraph();
+            getMatrixAlikeGraph().copyTo(lg);
+            matrixPrepare = new PrepareContractionHierarchies().graph(lg).doWork();
+            preparedMatrixGraph = lg;
+        }
+        return preparedMatrixGraph;
+    }
+
+    @Override
+    protected LevelGraph createGraph() {
+        return new GraphBuilder().levelGraphCreate();
+    }
+
+    @Override
+    public AlgorithmPreparation prepareGraph(Graph g, WeightCalculation calc) {
+        final PrepareContractionHierarchies prepare = g == preparedMatrixGraph
+                ? matrixPrepare : new PrepareContractionHierarchies().graph(g).type(calc).doWork();
+        return new NoOpAlgorithmPreparation() {
+            @Override public RoutingAlgorithm createAlgo() {
+                return prepare.createQueryAlgo();
+            }
+        }.graph(g);
+    }
+
+    @Test @Override public void testPerformance() throws IOException {
+        // the preparation takes too long, see DijkstraBidirectionCHTest
+    }
+}
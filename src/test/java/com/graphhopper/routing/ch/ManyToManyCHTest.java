@@ -0,0 +1,105 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.FastestCarCalc;
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.routing.util.WeightCalculation;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.LevelGraph;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ManyToManyCHTest {
+
+    void compareWithDijkstra(WeightCalculation calc, boolean removeHigher2LowerEdges) {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph lg = new GraphBuilder().levelGraphCreate();
+        g.copyTo(lg);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(lg).type(calc).
+                removeHigher2LowerEdges(removeHigher2LowerEdges).doWork();
+
+        int[] sources = {0, 13, 42, 99, 13, 149};
+        int[] targets = {149, 7, 13, 0, 88, 120, 55};
+        DistanceMatrix matrix = prepare.createManyToMany().calcPaths(true).calcMatrix(sources, targets);
+        for (int i = 0; i < sources.length; i++) {
+            for (int j = 0; j < targets.length; j++) {
+                String str = sources[i] + "->" + targets[j];
+                Path expected = new DijkstraSimple(g).type(calc).calcPath(sources[i], targets[j]);
+                // the prepared graph stores the weight with a precision of 1e-3 per edge
+                assertEquals(str, expected.found(), matrix.found(i, j));
+                assertEquals(str, expected.weight(), matrix.weight(i, j), 1e-3 * expected.calcNodes().size());
+                assertEquals(str, expected.distance(), matrix.distance(i, j), 1e-2 * expected.distance());
+
+                // the unpacked shortcuts must match the path of the CH query exactly
+                Path path = matrix.path(i, j);
+                assertEquals(str, path.distance(), matrix.distance(i, j), 1e-6);
+                assertEquals(str, path.time(), matrix.time(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testShortest() {
+        compareWithDijkstra(ShortestCarCalc.DEFAULT, true);
+    }
+
+    @Test
+    public void testFastest() {
+        compareWithDijkstra(FastestCarCalc.DEFAULT, true);
+    }
+
+    @Test
+    public void testWithHigher2LowerEdges() {
+        compareWithDijkstra(ShortestCarCalc.DEFAULT, false);
+    }
+
+    @Test
+    public void testWrongWeightCalculation() {
+        LevelGraph lg = new GraphBuilder().levelGraphCreate();
+        lg.edge(0, 1, 10, true);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(lg).doWork();
+        try {
+            prepare.createManyToMany().type(FastestCarCalc.DEFAULT);
+            fail();
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testUnreachablePaths() {
+        LevelGraph lg = new GraphBuilder().levelGraphCreate();
+        lg.edge(0, 1, 10, true);
+        lg.edge(2, 3, 10, true);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(lg).doWork();
+        DistanceMatrix matrix = prepare.createManyToMany().calcPaths(true).calcMatrix(new int[]{0, 2}, new int[]{3});
+        assertFalse(matrix.found(0, 0));
+        assertFalse(matrix.path(0, 0).found());
+        assertTrue(matrix.found(1, 0));
+        assertTrue(matrix.path(1, 0).found());
+    }
+}
@@ -18,28 +18,31 @@
  */
 package com.graphhopper.routing.ch;
 
+import com.graphhopper.routing.AbstractRoutingAlgorithmTester;
 import com.graphhopper.routing.DijkstraSimple;
 import com.graphhopper.routing.Path;
 import com.graphhopper.routing.RoutingAlgorithm;
-import com.graphhopper.routing.ch.PrepareContractionHierarchies.NodeCH;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies.Shortcut;
 import com.graphhopper.routing.util.CarStreetType;
 import com.graphhopper.routing.util.FastestCarCalc;
 import com.graphhopper.routing.util.ShortestCarCalc;
 import com.graphhopper.routing.util.WeightCalculation;
 import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
 import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.LevelGraphOverlay;
 import com.graphhopper.storage.LevelGraphStorage;
+import com.graphhopper.storage.RAMDirectory;
 import com.graphhopper.util.EdgeSkipIterator;
 import com.graphhopper.storage.GraphBuilder;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.GraphUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.RawEdgeIterator;
-import java.util.ArrayList;
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Random;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -71,50 +74,6 @@ public class PrepareContractionHierarchiesTest {
         return g;
     }
 
-    List<NodeCH> createGoals(int... gNodes) {
-        List<NodeCH> goals = new ArrayList<NodeCH>();
-        for (int i = 0; i < gNodes.length; i++) {
-            NodeCH n = new NodeCH();
-            n.endNode = gNodes[i];
-            goals.add(n);
-        }
-        return goals;
-    }
-
-    @Test
-    public void testShortestPathSkipNode() {
-        LevelGraph g = createExampleGraph();
-        double normalDist = new DijkstraSimple(g).calcPath(4, 2).distance();
-        PrepareContractionHierarchies.OneToManyDijkstraCH algo = new PrepareContractionHierarchies.OneToManyDijkstraCH(g)
-                .setFilter(new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(3));
-        List<NodeCH> gs = createGoals(2);
-        algo.clear().setLimit(10).calcPath(4, gs);
-        Path p = algo.extractPath(gs.get(0).entry);
-        assertTrue(p.distance() > normalDist);
-    }
-
-    @Test
-    public void testShortestPathSkipNode2() {
-        LevelGraph g = createExampleGraph();
-        double normalDist = new DijkstraSimple(g).calcPath(4, 2).distance();
-        PrepareContractionHierarchies.OneToManyDijkstraCH algo = new PrepareContractionHierarchies.OneToManyDijkstraCH(g).
-                setFilter(new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(3));
-        List<NodeCH> gs = createGoals(1, 2);
-        algo.clear().setLimit(10).calcPath(4, gs);
-        Path p = algo.extractPath(gs.get(1).entry);
-        assertTrue(p.distance() > normalDist);
-    }
-
-    @Test
-    public void testShortestPathLimit() {
-        LevelGraph g = createExampleGraph();
-        PrepareContractionHierarchies.OneToManyDijkstraCH algo = new PrepareContractionHierarchies.OneToManyDijkstraCH(g)
-                .setFilter(new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(0));
-        List<NodeCH> gs = createGoals(1);
-        algo.clear().setLimit(2).calcPath(4, gs);
-        assertNull(gs.get(0).entry);
-    }
-
     @Test
     public void testAddShortcuts() {
         LevelGraph g = createExampleGraph();
@@ -296,16 +255,17 @@ public class PrepareContractionHierarchiesTest {
         assertEquals(2, sc.size());
     }
 
-    void initUnpackingGraph(LevelGraphStorage g, WeightCalculation w) {
+    void initUnpackingGraph(LevelGraphStorage g) {
+        // the edges keep their real distance, the weights are calculated from the preparation
         double dist = 1;
         int flags = CarStreetType.flags(30, false);
-        g.edge(10, 0, w.getWeight(dist, flags), flags);
-        EdgeSkipIterator iter1 = g.edge(0, 1, w.getWeight(dist, flags), flags);
-        EdgeSkipIterator iter2 = g.edge(1, 2, w.getWeight(dist, flags), flags);
-        EdgeSkipIterator iter3 = g.edge(2, 3, w.getWeight(dist, flags), flags);
-        EdgeSkipIterator iter4 = g.edge(3, 4, w.getWeight(dist, flags), flags);
-        EdgeSkipIterator iter5 = g.edge(4, 5, w.getWeight(dist, flags), flags);
-        EdgeSkipIterator iter6 = g.edge(5, 6, w.getWeight(dist, flags), flags);
+        g.edge(10, 0, dist, flags);
+        EdgeSkipIterator iter1 = g.edge(0, 1, dist, flags);
+        EdgeSkipIterator iter2 = g.edge(1, 2, dist, flags);
+        EdgeSkipIterator iter3 = g.edge(2, 3, dist, flags);
+        EdgeSkipIterator iter4 = g.edge(3, 4, dist, flags);
+        EdgeSkipIterator iter5 = g.edge(4, 5, dist, flags);
+        EdgeSkipIterator iter6 = g.edge(5, 6, dist, flags);
         int f = PrepareContractionHierarchies.scOneDir;
 
         int tmp = iter1.edge();
@@ -337,7 +297,7 @@ public class PrepareContractionHierarchiesTest {
     public void testUnpackingOrder() {
         LevelGraphStorage g = (LevelGraphStorage) createGraph();
         WeightCalculation calc = ShortestCarCalc.DEFAULT;
-        initUnpackingGraph(g, calc);
+        initUnpackingGraph(g);
         PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g);
         RoutingAlgorithm algo = prepare.type(calc).createAlgo();
         Path p = algo.calcPath(10, 6);
@@ -350,7 +310,7 @@ public class PrepareContractionHierarchiesTest {
         LevelGraphStorage g = (LevelGraphStorage) createGraph();
         PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(g);
         WeightCalculation calc = FastestCarCalc.DEFAULT;
-        initUnpackingGraph(g, calc);
+        initUnpackingGraph(g);
         RoutingAlgorithm algo = prepare.type(calc).createAlgo();
         Path p = algo.calcPath(10, 6);
         assertEquals(7, p.distance(), 1e-1);
@@ -477,6 +437,330 @@ public class PrepareContractionHierarchiesTest {
         System.out.println("---");
     }
 
+    @Test
+    public void testParallelPreparation() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraph lg = createGraph();
+        g.copyTo(lg);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().graph(lg).threads(4);
+        prepare.doWork();
+        for (int node = 0; node < lg.nodes(); node++) {
+            assertTrue(lg.getLevel(node) > 0);
+        }
+
+        Random rand = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = new DijkstraSimple(g).calcPath(from, to);
+            Path p = prepare.createAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.weight(), p.weight(), 1e-3 * g.nodes());
+            assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-3 * g.nodes());
+        }
+    }
+
+    void assertSameRoutes(Graph g, PrepareContractionHierarchies prepare) {
+        Random rand = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = new DijkstraSimple(g).calcPath(from, to);
+            Path p = prepare.createAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.weight(), p.weight(), 1e-3 * g.nodes());
+        }
+    }
+
+    PrepareContractionHierarchies prepareMatrixGraph(PrepareContractionHierarchies prepare) {
+        LevelGraph lg = createGraph();
+        AbstractRoutingAlgorithmTester.getMatrixAlikeGraph().copyTo(lg);
+        prepare.graph(lg).doWork();
+        return prepare;
+    }
+
+    @Test
+    public void testUpdatePolicies() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        PrepareContractionHierarchies all = prepareMatrixGraph(new PrepareContractionHierarchies().periodicUpdates(10));
+        assertSameRoutes(g, all);
+        PrepareContractionHierarchies lazy = prepareMatrixGraph(new PrepareContractionHierarchies().periodicUpdates(0));
+        assertSameRoutes(g, lazy);
+        PrepareContractionHierarchies none = prepareMatrixGraph(new PrepareContractionHierarchies().periodicUpdates(0).
+                lazyUpdates(false).neighborUpdates(false));
+        assertSameRoutes(g, none);
+        PrepareContractionHierarchies parallel = prepareMatrixGraph(new PrepareContractionHierarchies().threads(2).
+                periodicUpdates(0));
+        assertSameRoutes(g, parallel);
+
+        // only the initial calculation
+        assertEquals(g.nodes(), none.priorityUpdates());
+        assertTrue(lazy.priorityUpdates() > none.priorityUpdates());
+        assertTrue(all.priorityUpdates() > lazy.priorityUpdates());
+
+        try {
+            new PrepareContractionHierarchies().periodicUpdates(101);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    double sumDistances(Graph g) {
+        double sum = 0;
+        RawEdgeIterator iter = g.allEdges();
+        while (iter.next()) {
+            sum += iter.distance();
+        }
+        return sum;
+    }
+
+    @Test
+    public void testKeepBaseGraph() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        PrepareContractionHierarchies prepare = prepareMatrixGraph(new PrepareContractionHierarchies().
+                type(FastestCarCalc.DEFAULT).removeHigher2LowerEdges(false));
+        assertTrue(prepare.shortcuts() > 0);
+        Graph baseGraph = prepare.baseGraph();
+        assertEquals(GraphUtility.countEdges(g), GraphUtility.countEdges(baseGraph));
+        assertEquals(sumDistances(g), sumDistances(baseGraph), 1e-3);
+
+        Random rand = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+            Path base = new DijkstraSimple(baseGraph).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+            assertEquals(from + "->" + to, expected.calcNodes(), base.calcNodes());
+            assertEquals(from + "->" + to, expected.distance(), base.distance(), 1e-6);
+            Path ch = prepare.createAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.weight(), ch.weight(), 1e-2);
+            assertEquals(from + "->" + to, expected.distance(), ch.distance(), 1e-2);
+            Path astar = prepare.createAStar().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.weight(), astar.weight(), 1e-2);
+        }
+
+        try {
+            prepareMatrixGraph(new PrepareContractionHierarchies()).baseGraph();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testOverlays() {
+        GraphStorage g = new GraphBuilder().create();
+        AbstractRoutingAlgorithmTester.getMatrixAlikeGraph().copyTo(g);
+        double distances = sumDistances(g);
+        PrepareContractionHierarchies fastest = new PrepareContractionHierarchies().type(FastestCarCalc.DEFAULT).
+                removeHigher2LowerEdges(false).graph(new LevelGraphOverlay(g, "fastest").createNew()).doWork();
+        PrepareContractionHierarchies shortest = new PrepareContractionHierarchies().
+                removeHigher2LowerEdges(false).graph(new LevelGraphOverlay(g, "shortest").createNew()).doWork();
+        assertTrue(fastest.shortcuts() > 0);
+        assertTrue(shortest.shortcuts() > 0);
+        assertSame(g, fastest.baseGraph());
+        assertEquals(distances, sumDistances(g), 1e-3);
+
+        Random rand = new Random(2);
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = new DijkstraSimple(g).type(FastestCarCalc.DEFAULT).calcPath(from, to);
+            Path p = fastest.createAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.weight(), p.weight(), 1e-2);
+            assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-2);
+
+            expected = new DijkstraSimple(g).calcPath(from, to);
+            p = shortest.createAStar().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-2);
+        }
+
+        try {
+            new PrepareContractionHierarchies().graph(new LevelGraphOverlay(g, "other").createNew()).doWork();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    void assertQueryGraph(Graph g, PrepareContractionHierarchies prepare) {
+        CHQueryGraph queryGraph = prepare.queryGraph();
+        LevelGraph lg = queryGraph.graph();
+        assertEquals(g.nodes(), queryGraph.nodes());
+        for (boolean out : new boolean[]{true, false}) {
+            int count = 0;
+            for (int node = 0; node < lg.nodes(); node++) {
+                for (int i = queryGraph.firstEdge(node, out); i < queryGraph.lastEdge(node, out); i++) {
+                    count++;
+                    int adjNode = queryGraph.adjNode(i, out);
+                    assertTrue(lg.getLevel(node) <= lg.getLevel(adjNode));
+                    assertEquals(prepare.weights().weight(queryGraph.edge(i, out)), queryGraph.weight(i, out), 1e-6);
+                    assertFalse(lg.getEdgeProps(queryGraph.edge(i, out), adjNode).isEmpty());
+                }
+            }
+            assertEquals(queryGraph.edges(out), count);
+        }
+
+        Random rand = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = prepare.createAlgo().calcPath(from, to);
+            Path p = prepare.createQueryAlgo().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.found(), p.found());
+            assertEquals(from + "->" + to, expected.weight(), p.weight(), 1e-3);
+            assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-3);
+            Path reference = new DijkstraSimple(g).calcPath(from, to);
+            assertEquals(from + "->" + to, reference.distance(), p.distance(), 1e-3 * g.nodes());
+        }
+    }
+
+    @Test
+    public void testQueryGraph() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        PrepareContractionHierarchies removed = prepareMatrixGraph(new PrepareContractionHierarchies());
+        assertQueryGraph(g, removed);
+        PrepareContractionHierarchies kept = prepareMatrixGraph(new PrepareContractionHierarchies().
+                removeHigher2LowerEdges(false));
+        assertQueryGraph(g, kept);
+        assertSame(kept.queryGraph(), kept.queryGraph());
+
+        // the rows of the upper levels are stored at the end
+        CHQueryGraph queryGraph = kept.queryGraph();
+        LevelGraph lg = queryGraph.graph();
+        int lowest = 0;
+        int highest = 0;
+        for (int node = 1; node < lg.nodes(); node++) {
+            if (lg.getLevel(node) < lg.getLevel(lowest))
+                lowest = node;
+            if (lg.getLevel(node) > lg.getLevel(highest))
+                highest = node;
+        }
+        assertTrue(queryGraph.firstEdge(lowest, true) < queryGraph.firstEdge(highest, true));
+        assertEquals(queryGraph.edges(true), queryGraph.lastEdge(highest, true));
+
+        try {
+            kept.createQueryAlgo().type(FastestCarCalc.DEFAULT);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testSkippedEdgeOrder() {
+        PrepareContractionHierarchies prepare = prepareMatrixGraph(new PrepareContractionHierarchies());
+        LevelGraph lg = prepare.queryGraph().graph();
+        int shortcuts = 0;
+        RawEdgeIterator iter = lg.allEdges();
+        while (iter.next()) {
+            EdgeSkipIterator sc = lg.getEdgeProps(iter.edge(), iter.nodeB());
+            if (!sc.isShortcut())
+                continue;
+            shortcuts++;
+            int smaller = Math.min(iter.nodeA(), iter.nodeB());
+            int bigger = Math.max(iter.nodeA(), iter.nodeB());
+            assertFalse(lg.getEdgeProps(sc.skippedEdge1(), smaller).isEmpty());
+            assertFalse(lg.getEdgeProps(sc.skippedEdge2(), bigger).isEmpty());
+        }
+        assertTrue(shortcuts > 0);
+    }
+
+    @Test
+    public void testStallOnDemand() {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        PrepareContractionHierarchies prepare = prepareMatrixGraph(new PrepareContractionHierarchies().
+                removeHigher2LowerEdges(false));
+        int visited = 0, visitedStalled = 0, visitedQuery = 0, visitedQueryStalled = 0;
+        Random rand = new Random(4);
+        for (int i = 0; i < 100; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = new DijkstraSimple(g).calcPath(from, to);
+            RoutingAlgorithm[] algos = new RoutingAlgorithm[]{
+                prepare.stallOnDemand(false).createAlgo(), prepare.stallOnDemand(true).createAlgo(),
+                prepare.stallOnDemand(false).createQueryAlgo(), prepare.stallOnDemand(true).createQueryAlgo()};
+            for (RoutingAlgorithm algo : algos) {
+                Path p = algo.calcPath(from, to);
+                assertEquals(from + "->" + to, expected.distance(), p.distance(), 1e-3 * g.nodes());
+            }
+            visited += algos[0].calcVisitedNodes();
+            visitedStalled += algos[1].calcVisitedNodes();
+            visitedQuery += algos[2].calcVisitedNodes();
+            visitedQueryStalled += algos[3].calcVisitedNodes();
+
+            Path astar = prepare.createAStar().calcPath(from, to);
+            assertEquals(from + "->" + to, expected.distance(), astar.distance(), 1e-3 * g.nodes());
+        }
+        assertTrue(visitedStalled + " vs. " + visited, visitedStalled < visited);
+        assertTrue(visitedQueryStalled + " vs. " + visitedQuery, visitedQueryStalled < visitedQuery);
+    }
+
+    @Test
+    public void testCheckpointAndResume() {
+        testCheckpointAndResume(1);
+        testCheckpointAndResume(2);
+    }
+
+    void testCheckpointAndResume(int threads) {
+        String location = "./target/tmp/ch-checkpoint";
+        Helper.removeDir(new File(location));
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        LevelGraphStorage lg = new LevelGraphStorage(new RAMDirectory(location, true));
+        lg.createNew(g.nodes());
+        g.copyTo(lg);
+        lg.flush();
+        PrepareContractionHierarchies interrupted = new PrepareContractionHierarchies() {
+            @Override void checkpoint() {
+                super.checkpoint();
+                if (checkpoints() == 2)
+                    throw new RuntimeException("interrupted");
+            }
+        }.threads(threads).checkpointInterval(g.nodes() / 5).graph(lg);
+        try {
+            interrupted.doWork();
+            assertTrue(false);
+        } catch (RuntimeException ex) {
+            assertEquals("interrupted", ex.getMessage());
+        }
+
+        LevelGraphStorage loaded = new LevelGraphStorage(new RAMDirectory(location, true));
+        assertTrue(loaded.loadExisting());
+        int contracted = 0;
+        for (int node = 0; node < loaded.nodes(); node++) {
+            if (loaded.getLevel(node) > 0)
+                contracted++;
+        }
+        assertTrue(contracted > 0);
+        assertTrue(contracted < loaded.nodes());
+
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies().threads(threads).
+                checkpointInterval(g.nodes() / 5).resume(true).graph(loaded).doWork();
+        for (int node = 0; node < loaded.nodes(); node++) {
+            assertTrue(loaded.getLevel(node) > 0);
+        }
+        // only the checkpoints after the resumed one are written
+        assertTrue(prepare.checkpoints() <= 3);
+        for (String name : new File(location).list()) {
+            assertFalse(name, name.startsWith("ch_checkpoint_"));
+        }
+        Random rand = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            int from = rand.nextInt(g.nodes());
+            int to = rand.nextInt(g.nodes());
+            Path expected = new DijkstraSimple(g).calcPath(from, to);
+            assertEquals(from + "->" + to, expected.distance(), prepare.createAlgo().calcPath(from, to).distance(),
+                    1e-3 * g.nodes());
+            assertEquals(from + "->" + to, expected.distance(), prepare.createQueryAlgo().calcPath(from, to).distance(),
+                    1e-3 * g.nodes());
+        }
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testIllegalThreads() {
+        try {
+            new PrepareContractionHierarchies().threads(0);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
     @Test
     public void testBits() {
         int fromNode = Integer.MAX_VALUE / 3 * 2;
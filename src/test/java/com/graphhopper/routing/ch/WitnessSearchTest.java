@@ -0,0 +1,134 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.util.PrecomputedWeights;
+import com.graphhopper.routing.util.ShortestCarCalc;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.LevelGraph;
+import gnu.trove.list.array.TIntArrayList;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class WitnessSearchTest {
+
+    LevelGraph createExampleGraph() {
+        LevelGraph g = new GraphBuilder().levelGraphCreate();
+
+        //5-1-----2
+        //   \ __/|
+        //    0   |
+        //   /    |
+        //  4-----3
+        //
+        g.edge(0, 1, 1, true);
+        g.edge(0, 2, 1, true);
+        g.edge(0, 4, 3, true);
+        g.edge(1, 2, 2, true);
+        g.edge(2, 3, 1, true);
+        g.edge(4, 3, 2, true);
+        g.edge(5, 1, 2, true);
+        return g;
+    }
+
+    LevelGraph createLineGraph() {
+        LevelGraph g = new GraphBuilder().levelGraphCreate();
+        g.edge(0, 1, 1, true);
+        g.edge(1, 2, 1, true);
+        g.edge(2, 3, 1, true);
+        g.edge(3, 4, 1, true);
+        return g;
+    }
+
+    WitnessSearch createSearch(LevelGraph g, int avoidNode) {
+        PrecomputedWeights weights = new PrecomputedWeights(g, new ShortestCarCalc(), new RAMDirectory()).prepare();
+        return new WitnessSearch(g, weights, new PrepareContractionHierarchies.EdgeLevelFilterCH(g).setAvoidNode(avoidNode));
+    }
+
+    TIntArrayList targets(int... nodes) {
+        return new TIntArrayList(nodes);
+    }
+
+    @Test
+    public void testShortestPathSkipNode() {
+        LevelGraph g = createExampleGraph();
+        double normalDist = new DijkstraSimple(g).calcPath(4, 2).distance();
+        WitnessSearch search = createSearch(g, 3);
+        search.search(4, 10, targets(2), -1);
+        assertTrue(search.weight(2) > normalDist);
+    }
+
+    @Test
+    public void testShortestPathSkipNode2() {
+        LevelGraph g = createExampleGraph();
+        double normalDist = new DijkstraSimple(g).calcPath(4, 2).distance();
+        WitnessSearch search = createSearch(g, 3);
+        search.search(4, 10, targets(1, 2), -1);
+        assertTrue(search.weight(2) > normalDist);
+        assertEquals(4, search.weight(1), 1e-6);
+    }
+
+    @Test
+    public void testShortestPathLimit() {
+        LevelGraph g = createExampleGraph();
+        WitnessSearch search = createSearch(g, 0);
+        search.search(4, 2, targets(1), -1);
+        assertEquals(Double.MAX_VALUE, search.weight(1), 1e-6);
+    }
+
+    @Test
+    public void testHopLimit() {
+        LevelGraph g = createLineGraph();
+        WitnessSearch search = createSearch(g, -1).limits(100, 2);
+        search.search(0, 10, targets(3), -1);
+        assertEquals(Double.MAX_VALUE, search.weight(3), 1e-6);
+
+        search.limits(100, 3);
+        search.search(0, 10, targets(3), -1);
+        assertEquals(3, search.weight(3), 1e-6);
+    }
+
+    @Test
+    public void testSettledLimit() {
+        LevelGraph g = createLineGraph();
+        WitnessSearch search = createSearch(g, -1).limits(2, 100);
+        search.search(0, 10, targets(4), -1);
+        assertEquals(2, search.weight(2), 1e-6);
+        assertEquals(Double.MAX_VALUE, search.weight(3), 1e-6);
+        assertEquals(2, search.settledNodes());
+    }
+
+    @Test
+    public void testReuse() {
+        LevelGraph g = createLineGraph();
+        WitnessSearch search = createSearch(g, 2);
+        search.search(0, 10, targets(4), -1);
+        assertEquals(Double.MAX_VALUE, search.weight(4), 1e-6);
+        assertEquals(1, search.weight(1), 1e-6);
+
+        search.search(4, 10, targets(3, 4), 4);
+        assertEquals(1, search.weight(3), 1e-6);
+        assertEquals(Double.MAX_VALUE, search.weight(1), 1e-6);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class AlgorithmPoolTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        final Graph g = new GraphStorage(new RAMDirectory()).createNew(10);
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 10, true);
+        final AlgorithmPool pool = new AlgorithmPool() {
+            @Override protected RoutingAlgorithm createAlgo(String algorithm) {
+                return new DijkstraSimple(g);
+            }
+        };
+        RoutingAlgorithm algo = pool.get("dijkstra");
+        assertEquals(20, algo.calcPath(0, 2).distance(), 1e-5);
+        assertSame(algo, pool.get("dijkstra"));
+        assertEquals(10, algo.calcPath(0, 1).distance(), 1e-5);
+        assertNotSame(algo, pool.get("other"));
+
+        final AtomicReference<RoutingAlgorithm> other = new AtomicReference<RoutingAlgorithm>();
+        Thread t = new Thread() {
+            @Override public void run() {
+                other.set(pool.get("dijkstra"));
+            }
+        };
+        t.start();
+        t.join();
+        assertNotNull(other.get());
+        assertNotSame(algo, other.get());
+
+        pool.release();
+        assertNotSame(algo, pool.get("dijkstra"));
+    }
+}
@@ -18,8 +18,6 @@
  */
 package com.graphhopper.routing.util;
 
-import java.util.HashMap;
-import java.util.Map;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -52,16 +50,32 @@ public class CarStreetTypeTest {
         assertFalse(fl.isForward());
         assertTrue(fl.isBackward());
         assertEquals(CarStreetType.DEFAULT_SPEED, fl.getSpeedPart());
+
+        fl = new CarStreetType(CarStreetType.swapDirection(CarStreetType.flagsDefault(false) & ~3));
+        assertFalse(fl.isForward());
+        assertFalse(fl.isBackward());
+        assertEquals(CarStreetType.DEFAULT_SPEED, fl.getSpeedPart());
     }
 
     @Test
     public void testService() {
-        Map<String, Object> p = new HashMap<String, Object>();
-        p.put("car", CarStreetType.SPEED.get("service"));
-        CarStreetType fl = new CarStreetType(new AcceptStreet(true, false, false, false).toFlags(p));
+        AcceptStreet accept = new AcceptStreet(true, false, false, false);
+        WayProperties p = new WayProperties();
+        assertTrue(accept.handleWay(p, "service"));
+        CarStreetType fl = new CarStreetType(accept.toFlags(p));
         assertTrue(fl.isForward());
         assertTrue(fl.isBackward());
         assertTrue(fl.isService());
+
+        fl = new CarStreetType(accept.toFlags(p.oneway(true)));
+        assertTrue(fl.isForward());
+        assertFalse(fl.isBackward());
+        assertTrue(fl.isService());
+
+        assertFalse(accept.handleWay(p.clear(), "footway"));
+        assertEquals(0, accept.toFlags(p));
+        assertFalse(accept.handleWay(p, null));
+        assertTrue(new AcceptStreet(false, false, false, true).handleWay(p, "footway"));
     }
 
     @Test
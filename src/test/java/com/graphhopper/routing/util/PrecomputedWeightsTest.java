@@ -0,0 +1,130 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.AStar;
+import com.graphhopper.routing.AbstractRoutingAlgorithm;
+import com.graphhopper.routing.DijkstraBidirectionRef;
+import com.graphhopper.routing.DijkstraSimple;
+import com.graphhopper.routing.Path;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.RawEdgeIterator;
+import java.io.File;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PrecomputedWeightsTest {
+
+    private String location = "./target/tmp/weights";
+
+    @Before
+    public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    Graph createGraph() {
+        Graph g = new GraphBuilder().create();
+        g.setNode(0, 0, 0);
+        g.setNode(1, 0, 0.01);
+        g.setNode(2, 0.01, 0.01);
+        g.setNode(3, 0.01, 0.02);
+        // fast detour 0-1-2-3 and slow direct way 0-3
+        g.edge(0, 1, 1000, CarStreetType.flags(100, true));
+        g.edge(1, 2, 1000, CarStreetType.flags(100, false));
+        g.edge(2, 3, 1000, CarStreetType.flags(100, true));
+        g.edge(0, 3, 2000, CarStreetType.flags(10, true));
+        return g;
+    }
+
+    @Test
+    public void testWeights() {
+        Graph g = createGraph();
+        PrecomputedWeights weights = new PrecomputedWeights(g, FastestCarCalc.DEFAULT, new RAMDirectory()).prepare();
+        assertEquals(4, weights.edges());
+        RawEdgeIterator iter = g.allEdges();
+        while (iter.next()) {
+            double expected = FastestCarCalc.DEFAULT.getWeight(iter.distance(), iter.flags());
+            assertEquals(expected, weights.weight(iter.edge()), expected * 1e-6);
+        }
+    }
+
+    @Test
+    public void testSameRoutes() {
+        Graph g = createGraph();
+        PrecomputedWeights weights = new PrecomputedWeights(g, FastestCarCalc.DEFAULT, new RAMDirectory()).prepare();
+        AbstractRoutingAlgorithm[] algos = {new DijkstraSimple(g), new AStar(g), new DijkstraBidirectionRef(g)};
+        for (AbstractRoutingAlgorithm algo : algos) {
+            algo.weights(weights);
+            Path p = algo.calcPath(0, 3);
+            assertEquals(algo.name(), Helper.createTList(0, 1, 2, 3), p.calcNodes());
+            algo.clear();
+            p = algo.calcPath(3, 0);
+            // 2->1 is not allowed
+            assertEquals(algo.name(), Helper.createTList(3, 0), p.calcNodes());
+            algo.clear();
+        }
+    }
+
+    @Test
+    public void testTypeRemovesOtherWeights() {
+        Graph g = createGraph();
+        PrecomputedWeights weights = new PrecomputedWeights(g, FastestCarCalc.DEFAULT, new RAMDirectory()).prepare();
+        DijkstraSimple algo = new DijkstraSimple(g);
+        algo.weights(weights);
+        algo.type(ShortestCarCalc.DEFAULT);
+        assertEquals(Helper.createTList(0, 3), algo.calcPath(0, 3).calcNodes());
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        Graph g = createGraph();
+        PrecomputedWeights weights = new PrecomputedWeights(g, FastestCarCalc.DEFAULT,
+                new RAMDirectory(location, true)).prepare();
+        weights.flush();
+        weights.close();
+
+        weights = new PrecomputedWeights(g, FastestCarCalc.DEFAULT, new RAMDirectory(location, true));
+        assertTrue(weights.loadExisting());
+        assertEquals(4, weights.edges());
+        assertEquals(1000 / CarStreetType.getSpeedPart(CarStreetType.flags(10, true)) * 2, weights.weight(3), 1e-3);
+
+        assertFalse(new PrecomputedWeights(g, ShortestCarCalc.DEFAULT,
+                new RAMDirectory(location, true)).loadExisting());
+
+        g.edge(1, 3, 1000, true);
+        try {
+            new PrecomputedWeights(g, FastestCarCalc.DEFAULT, new RAMDirectory(location, true)).loadExisting();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.storage.AbstractGraphTester;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class PrepareDegreeTwoNodesTest {
+
+    Graph createGraph() {
+        return new GraphBuilder().create();
+    }
+
+    // 0-1-2-3-4
+    //     |
+    //     5
+    Graph createChainGraph() {
+        Graph g = createGraph();
+        for (int i = 0; i < 6; i++) {
+            g.setNode(i, 50 + i / 10d, 10 + i / 10d);
+        }
+        g.edge(0, 1, 1, true);
+        g.edge(1, 2, 2, true);
+        g.edge(2, 3, 3, true);
+        g.edge(3, 4, 4, true);
+        g.edge(2, 5, 5, true);
+        return g;
+    }
+
+    @Test
+    public void testMergeChain() {
+        Graph g = createChainGraph();
+        PrepareDegreeTwoNodes instance = new PrepareDegreeTwoNodes(g);
+        instance.doWork();
+        assertEquals(2, instance.removedNodes());
+        assertEquals(4, g.nodes());
+
+        int node0 = AbstractGraphTester.getIdOf(g, 50);
+        int node2 = AbstractGraphTester.getIdOf(g, 50.2);
+        int node4 = AbstractGraphTester.getIdOf(g, 50.4);
+        int node5 = AbstractGraphTester.getIdOf(g, 50.5);
+        assertEquals(3, GraphUtility.count(g.getEdges(node2)));
+        assertEquals(1, GraphUtility.count(g.getEdges(node5)));
+
+        EdgeIterator iter = GraphUtility.until(g.getEdges(node0), node2);
+        assertEquals(3, iter.distance(), 1e-4);
+        AbstractGraphTester.assertPList(Helper.createPointList(50.1, 10.1), iter.wayGeometry());
+
+        iter = GraphUtility.until(g.getEdges(node4), node2);
+        assertEquals(7, iter.distance(), 1e-4);
+        AbstractGraphTester.assertPList(Helper.createPointList(50.3, 10.3), iter.wayGeometry());
+    }
+
+    @Test
+    public void testMergeKeepsDirectionAndGeometry() {
+        Graph g = createGraph();
+        g.setNode(0, 50, 10);
+        g.setNode(1, 50.1, 10.1);
+        g.setNode(2, 50.2, 10.2);
+        g.edge(0, 1, 1, false).wayGeometry(Helper.createPointList(50.05, 10.05));
+        // stored in the opposite direction but still a oneway from 1 to 2
+        g.edge(2, 1, 2, CarStreetType.swapDirection(CarStreetType.flagsDefault(false))).
+                wayGeometry(Helper.createPointList(50.15, 10.15));
+
+        PrepareDegreeTwoNodes instance = new PrepareDegreeTwoNodes(g);
+        instance.doWork();
+        assertEquals(1, instance.removedNodes());
+        assertEquals(2, g.nodes());
+
+        int node0 = AbstractGraphTester.getIdOf(g, 50);
+        int node2 = AbstractGraphTester.getIdOf(g, 50.2);
+        assertEquals(1, GraphUtility.count(g.getOutgoing(node0)));
+        assertEquals(0, GraphUtility.count(g.getOutgoing(node2)));
+        EdgeIterator iter = g.getOutgoing(node0);
+        assertTrue(iter.next());
+        assertEquals(node2, iter.node());
+        assertEquals(3, iter.distance(), 1e-4);
+        AbstractGraphTester.assertPList(Helper.createPointList(50.05, 10.05, 50.1, 10.1, 50.15, 10.15),
+                iter.wayGeometry());
+    }
+
+    @Test
+    public void testDoNotMergeDifferentFlags() {
+        Graph g = createGraph();
+        g.edge(0, 1, 1, true);
+        g.edge(1, 2, 1, false);
+        g.edge(2, 3, 1, CarStreetType.flags(50, true));
+        PrepareDegreeTwoNodes instance = new PrepareDegreeTwoNodes(g);
+        instance.doWork();
+        assertEquals(0, instance.removedNodes());
+        assertEquals(4, g.nodes());
+    }
+
+    @Test
+    public void testDoNotMergeLoops() {
+        Graph g = createGraph();
+        // 0-1-2-0 is a ring of degree two nodes => keep at least a triangle
+        g.edge(0, 1, 1, true);
+        g.edge(1, 2, 1, true);
+        g.edge(2, 0, 1, true);
+        PrepareDegreeTwoNodes instance = new PrepareDegreeTwoNodes(g);
+        instance.doWork();
+        assertEquals(1, instance.removedNodes());
+        assertEquals(2, g.nodes());
+        assertEquals(2, GraphUtility.count(g.getEdges(0)));
+    }
+
+    @Test
+    public void testCanMerge() {
+        Graph g = createChainGraph();
+        PrepareDegreeTwoNodes instance = new PrepareDegreeTwoNodes(g) {
+            @Override protected boolean canMerge(EdgeIterator first, EdgeIterator second) {
+                return first.node() != 4 && second.node() != 4;
+            }
+        };
+        instance.doWork();
+        assertEquals(1, instance.removedNodes());
+        assertEquals(5, g.nodes());
+    }
+}
@@ -536,6 +536,36 @@ public abstract class AbstractGraphTester {
         assertEquals(1, GraphUtility.count(g.getEdges(getIdOf(g, 11))));
     }
 
+    @Test
+    public void testSimpleDelete4() {
+        Graph g = createGraph();
+        g.setNode(1, 1, 1);
+        g.setNode(5, 5, 1);
+        g.setNode(6, 6, 1);
+        g.setNode(9, 9, 1);
+        g.edge(1, 5, 15, true);
+        g.edge(5, 9, 59, true);
+        g.edge(6, 9, 69, true);
+        g.edge(1, 9, 19, true);
+
+        // only the first deleted node gets a moved node, 6 is deleted after
+        // all remaining nodes were moved but its edges need to be disconnected too
+        g.markNodeRemoved(0);
+        g.markNodeRemoved(2);
+        g.markNodeRemoved(3);
+        g.markNodeRemoved(4);
+        g.markNodeRemoved(6);
+        g.markNodeRemoved(7);
+        g.markNodeRemoved(8);
+        g.optimize();
+
+        assertEquals(3, g.nodes());
+        assertEquals(Arrays.<String>asList(), GraphUtility.getProblems(g));
+        assertEquals(2, GraphUtility.count(g.getEdges(getIdOf(g, 9))));
+        assertEquals(2, GraphUtility.count(g.getEdges(getIdOf(g, 5))));
+        assertEquals(2, GraphUtility.count(g.getEdges(getIdOf(g, 1))));
+    }
+
     @Test
     public void testDeleteAndOptimize() {
         Graph g = createGraph();
@@ -149,4 +149,41 @@ public class GraphStorageTest extends AbstractGraphTester {
         // let 0 unchanged -> no side effects
         assertEquals(Arrays.asList(1, 3), GraphUtility.neighbors(g.getEdges(0)));
     }
+
+    @Test
+    public void testFreeze() {
+        GraphStorage g = (GraphStorage) createGraph();
+        g.setNode(0, 10, 10);
+        g.setNode(1, 11, 11);
+        g.edge(0, 1, 10, true);
+        g.freeze();
+        assertTrue(g.isFrozen());
+        assertFalse(g.isNodeRemoved(0));
+        assertEquals(1, GraphUtility.count(g.getEdges(0)));
+
+        try {
+            g.edge(1, 2, 10, true);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            g.setNode(2, 12, 12);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        EdgeIterator iter = g.getEdges(0);
+        iter.next();
+        try {
+            iter.distance(20);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            g.markNodeRemoved(1);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(10, g.getEdgeProps(iter.edge(), 1).distance(), 1e-5);
+        assertEquals(2, g.nodes());
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterator;
+import com.graphhopper.util.GraphUtility;
+import com.graphhopper.util.Helper;
+import java.io.File;
+import java.util.Arrays;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class LevelGraphOverlayTest {
+
+    private String location = "./target/tmp/overlay";
+
+    @Before public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @After public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    GraphStorage createBaseGraph(Directory dir) {
+        GraphStorage g = new GraphStorage(dir).createNew(10);
+        // 0-1-2-3
+        g.edge(0, 1, 1, true);
+        g.edge(1, 2, 2, true);
+        g.edge(2, 3, 3, false);
+        return g;
+    }
+
+    @Test public void testShortcuts() {
+        GraphStorage base = createBaseGraph(new RAMDirectory());
+        LevelGraphOverlay fastest = new LevelGraphOverlay(base, "fastest").createNew();
+        LevelGraphOverlay shortest = new LevelGraphOverlay(base, "shortest").createNew();
+
+        fastest.setLevel(1, 5);
+        EdgeSkipIterator iter = fastest.edge(2, 0, 3, false);
+        assertEquals(3, iter.edge());
+        assertEquals(2, iter.baseNode());
+        assertEquals(0, iter.node());
+        iter.skippedEdges(1, 0);
+        assertTrue(iter.isShortcut());
+        assertEquals(1, fastest.shortcuts());
+        fastest.edge(0, 3, 6, false).skippedEdges(3, 2);
+
+        assertEquals(5, fastest.getLevel(1));
+        assertEquals(0, shortest.getLevel(1));
+        assertEquals(0, shortest.shortcuts());
+        assertEquals(2, GraphUtility.count(base.getEdges(1)));
+        assertEquals(3, GraphUtility.count(base.allEdges()));
+        assertEquals(3, GraphUtility.count(shortest.allEdges()));
+        assertEquals(5, GraphUtility.count(fastest.allEdges()));
+
+        // the shortcut 2->0 is only outgoing for 2 and incoming for 0
+        assertEquals(Arrays.asList(1, 3), GraphUtility.neighbors(fastest.getOutgoing(0)));
+        assertEquals(Arrays.asList(1, 2), GraphUtility.neighbors(fastest.getIncoming(0)));
+        assertEquals(Arrays.asList(1, 3, 0), GraphUtility.neighbors(fastest.getOutgoing(2)));
+        assertEquals(Arrays.asList(1), GraphUtility.neighbors(shortest.getOutgoing(0)));
+
+        EdgeSkipIterator props = fastest.getEdgeProps(3, 0);
+        assertEquals(2, props.baseNode());
+        assertEquals(1, props.skippedEdge1());
+        assertEquals(3, props.distance(), 1e-6);
+        assertTrue(fastest.getEdgeProps(3, 1).isEmpty());
+        props = fastest.getEdgeProps(1, 2);
+        assertFalse(props.isShortcut());
+        assertEquals(1, props.baseNode());
+        assertEquals(2, props.node());
+        assertEquals(2, props.distance(), 1e-6);
+        assertEquals(EdgeIterator.NO_EDGE, props.skippedEdge1());
+        try {
+            props.skippedEdges(0, 1);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test public void testSaveAndLoad() {
+        GraphStorage base = createBaseGraph(new RAMDirectory(location, true));
+        LevelGraphOverlay overlay = new LevelGraphOverlay(base, "fastest").createNew();
+        overlay.setLevel(3, 2);
+        overlay.edge(0, 2, 3, true).skippedEdges(0, 1);
+        base.flush();
+        overlay.flush();
+
+        base = new GraphStorage(new RAMDirectory(location, true));
+        assertTrue(base.loadExisting());
+        assertFalse(new LevelGraphOverlay(base, "shortest").loadExisting());
+        overlay = new LevelGraphOverlay(base, "fastest");
+        assertTrue(overlay.loadExisting());
+        assertEquals(1, overlay.shortcuts());
+        assertEquals(2, overlay.getLevel(3));
+        assertEquals(Arrays.asList(1, 2), GraphUtility.neighbors(overlay.getEdges(0)));
+        assertEquals(1, GraphUtility.count(base.getEdges(0)));
+    }
+}
@@ -18,6 +18,12 @@
  */
 package com.graphhopper.storage;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
 /**
  *
  * @author Peter Karich
@@ -28,4 +34,38 @@ public class RAMDataAccessTest extends DataAccessTest {
     public DataAccess createDataAccess(String name) {
         return new RAMDataAccess(name, directory, true).segmentSize(128);
     }
+
+    @Test
+    public void testFlushOnlyChangedSegments() throws IOException {
+        DataAccess da = createDataAccess(name);
+        da.createNew(300);
+        da.setInt(7, 123);
+        da.setInt(40, 4);
+        da.flush();
+
+        // the first segment is unchanged so the next flush must not overwrite this
+        RandomAccessFile raFile = new RandomAccessFile(directory + name, "rw");
+        raFile.seek(AbstractDataAccess.HEADER_OFFSET + 7 * 4);
+        raFile.writeInt(42);
+        raFile.close();
+        da.setInt(41, 5);
+        da.flush();
+
+        DataAccess loaded = createDataAccess(name);
+        assertTrue(loaded.loadExisting());
+        assertEquals(42, loaded.getInt(7));
+        assertEquals(4, loaded.getInt(40));
+        assertEquals(5, loaded.getInt(41));
+        loaded.close();
+
+        // a removed file is written completely
+        assertTrue(new File(directory + name).delete());
+        da.flush();
+        loaded = createDataAccess(name);
+        assertTrue(loaded.loadExisting());
+        assertEquals(123, loaded.getInt(7));
+        assertEquals(5, loaded.getInt(41));
+        loaded.close();
+        da.close();
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class SpillDataAccessTest extends DataAccessTest {
+
+    @Override
+    public DataAccess createDataAccess(String name) {
+        // small budget so that some of the tests spill
+        return new SpillDirectory(directory, 1024).findCreate(name).segmentSize(128);
+    }
+
+    @Test
+    public void testSpill() {
+        SpillDirectory dir = new SpillDirectory(directory, 1024);
+        SpillDataAccess da = (SpillDataAccess) dir.findCreate(name).segmentSize(128);
+        da.createNew(512);
+        da.setHeader(0, 12);
+        da.setInt(100, 100);
+        assertFalse(da.isSpilled());
+        assertEquals(512, dir.usedBytes());
+
+        da.ensureCapacity(1024);
+        da.setInt(200, 200);
+        assertFalse(da.isSpilled());
+        assertEquals(1024, dir.usedBytes());
+
+        da.ensureCapacity(1025);
+        assertTrue(da.isSpilled());
+        assertEquals(0, dir.usedBytes());
+        assertEquals(12, da.getHeader(0));
+        assertEquals(100, da.getInt(100));
+        assertEquals(200, da.getInt(200));
+        da.setInt(280, 280);
+        assertEquals(280, da.getInt(280));
+
+        // the budget is shared with other objects
+        DataAccess da2 = dir.findCreate(name + "2").segmentSize(128);
+        dir.reserve(800);
+        da2.createNew(128);
+        assertFalse(((SpillDataAccess) da2).isSpilled());
+        da2.ensureCapacity(256);
+        assertTrue(((SpillDataAccess) da2).isSpilled());
+        assertEquals(800, dir.usedBytes());
+
+        dir.remove(da);
+        dir.remove(da2);
+    }
+}
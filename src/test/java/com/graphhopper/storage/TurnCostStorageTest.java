@@ -0,0 +1,94 @@
+/*
+ *  Licensed to Peter Karich under one or more contributor license 
+ *  agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  Peter Karich licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except 
+ *  in compliance with the License. You may obtain a copy of the 
+ *  License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import java.io.File;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class TurnCostStorageTest {
+
+    private String location = "./target/tmp/turncosts";
+
+    @Before public void setUp() {
+        Helper.removeDir(new File(location));
+    }
+
+    @After public void tearDown() {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test public void testLookup() {
+        TurnCostStorage turnCosts = new TurnCostStorage(new RAMDirectory()).createNew();
+        assertEquals(0, turnCosts.turnCost(1, 2, 3), 1e-6);
+
+        turnCosts.addTurnCost(20, 1, 2, 5).forbidTurn(3, 4, 5).addTurnCost(20, 2, 1, 7).
+                forbidTurn(100, 1, 2).build();
+        assertEquals(3, turnCosts.viaNodes());
+        assertEquals(4, turnCosts.entries());
+        assertEquals(5, turnCosts.turnCost(20, 1, 2), 1e-6);
+        assertEquals(7, turnCosts.turnCost(20, 2, 1), 1e-6);
+        assertEquals(0, turnCosts.turnCost(20, 1, 3), 1e-6);
+        assertTrue(turnCosts.isForbidden(3, 4, 5));
+        assertTrue(turnCosts.isForbidden(100, 1, 2));
+        assertFalse(turnCosts.isForbidden(100, 2, 1));
+        assertEquals(0, turnCosts.turnCost(4, 4, 5), 1e-6);
+        assertEquals(0, turnCosts.turnCost(0, 4, 5), 1e-6);
+
+        // add to an already built storage
+        turnCosts.addTurnCost(4, 4, 5, 2);
+        try {
+            turnCosts.turnCost(4, 4, 5);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        turnCosts.build();
+        assertEquals(4, turnCosts.viaNodes());
+        assertEquals(2, turnCosts.turnCost(4, 4, 5), 1e-6);
+        assertEquals(5, turnCosts.turnCost(20, 1, 2), 1e-6);
+    }
+
+    @Test public void testNegativeCosts() {
+        try {
+            new TurnCostStorage(new RAMDirectory()).createNew().addTurnCost(1, 2, 3, -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex) {
+        }
+    }
+
+    @Test public void testLoad() {
+        TurnCostStorage turnCosts = new TurnCostStorage(new RAMDirectory(location, true)).createNew();
+        turnCosts.addTurnCost(20, 1, 2, 5).forbidTurn(3, 4, 5);
+        turnCosts.flush();
+        turnCosts.close();
+
+        turnCosts = new TurnCostStorage(new RAMDirectory(location, true));
+        assertTrue(turnCosts.loadExisting());
+        assertEquals(2, turnCosts.entries());
+        assertEquals(5, turnCosts.turnCost(20, 1, 2), 1e-6);
+        assertTrue(turnCosts.isForbidden(3, 4, 5));
+        assertFalse(new TurnCostStorage(new RAMDirectory(location + "2", true)).loadExisting());
+    }
+}
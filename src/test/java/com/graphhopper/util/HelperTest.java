@@ -18,6 +18,11 @@
  */
 package com.graphhopper.util;
 
+import com.graphhopper.routing.AStarEdgeBased;
+import com.graphhopper.routing.DijkstraBidirectionEdgeBased;
+import com.graphhopper.routing.alt.PrepareLandmarks;
+import com.graphhopper.storage.GraphStorage;
+import com.graphhopper.storage.RAMDirectory;
 import java.io.File;
 import org.junit.After;
 import org.junit.Test;
@@ -56,4 +61,24 @@ public class HelperTest {
         assertTrue(new File("./target/tmp/test/folder1/folder 3").isDirectory());
         Helper.removeDir(new File(to));
     }
+
+    @Test
+    public void testCreateEdgeBasedAlgos() {
+        GraphStorage g = new GraphStorage(new RAMDirectory()).createNew(10);
+        assertTrue(Helper.createAlgoFromString(g, "astaredge") instanceof AStarEdgeBased);
+        assertTrue(Helper.createAlgoFromString(g, "dijkstrabiEdge") instanceof DijkstraBidirectionEdgeBased);
+    }
+
+    @Test
+    public void testCreateLandmarkAlgosNeedPreparation() {
+        GraphStorage g = new GraphStorage(new RAMDirectory()).createNew(10);
+        for (String algo : new String[]{"alt", "altbi"}) {
+            try {
+                Helper.createAlgoFromString(g, algo);
+                assertTrue(false);
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+        assertTrue(Helper.createAlgoPrepare("alt") instanceof PrepareLandmarks);
+    }
 }